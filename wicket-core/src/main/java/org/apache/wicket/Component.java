@@ -53,15 +53,18 @@ import org.apache.wicket.markup.MarkupException;
 import org.apache.wicket.markup.MarkupNotFoundException;
 import org.apache.wicket.markup.MarkupStream;
 import org.apache.wicket.markup.WicketTag;
+import org.apache.wicket.markup.head.HeaderContributionCache;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.StringHeaderItem;
 import org.apache.wicket.markup.html.IHeaderContributor;
+import org.apache.wicket.markup.html.IStaticHeaderContributor;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.markup.html.form.FormComponent;
 import org.apache.wicket.markup.html.form.IFormSubmitListener;
 import org.apache.wicket.markup.html.internal.HtmlHeaderContainer;
 import org.apache.wicket.markup.html.panel.DefaultMarkupSourcingStrategy;
 import org.apache.wicket.markup.html.panel.IMarkupSourcingStrategy;
+import org.apache.wicket.markup.outputcache.OutputCachingBehavior;
 import org.apache.wicket.model.CompoundPropertyModel;
 import org.apache.wicket.model.IComponentAssignedModel;
 import org.apache.wicket.model.IComponentInheritedModel;
@@ -447,6 +450,10 @@ public abstract class Component
 	private static final short RFLAG_CONFIGURED = 0x10;
 	private static final short RFLAG_BEFORE_RENDER_SUPER_CALL_VERIFIED = 0x20;
 	private static final short RFLAG_INITIALIZE_SUPER_CALL_VERIFIED = 0x40;
+	/** the output is taken from or put into an output cache */
+	private static final short RFLAG_OUTPUT_CACHING = 0x80;
+	/** the output has been found in the output cache */
+	private static final short RFLAG_OUTPUT_CACHED = 0x100;
 
 	/**
 	 * Flags that only keep their value during the request. Useful for cache markers, etc. At the
@@ -916,6 +923,14 @@ public abstract class Component
 		if ((determineVisibility()) && !getFlag(FLAG_RENDERING) &&
 			!getFlag(FLAG_PREPARED_FOR_RENDER))
 		{
+			if (getRequestFlag(RFLAG_OUTPUT_CACHED))
+			{
+				// the output is taken from the cache, so neither this component nor its children
+				// have to be prepared
+				setFlag(FLAG_PREPARED_FOR_RENDER, true);
+				return;
+			}
+
 			setRequestFlag(RFLAG_BEFORE_RENDER_SUPER_CALL_VERIFIED, false);
 
 			getApplication().getComponentPreOnBeforeRenderListeners().onBeforeRender(this);
@@ -2391,9 +2406,16 @@ public abstract class Component
 
 			try
 			{
-				notifyBehaviorsComponentBeforeRender();
-				onRender();
-				notifyBehaviorsComponentRendered();
+				if (getRequestFlag(RFLAG_OUTPUT_CACHING))
+				{
+					renderOutputCaching();
+				}
+				else
+				{
+					notifyBehaviorsComponentBeforeRender();
+					onRender();
+					notifyBehaviorsComponentRendered();
+				}
 
 				// Component has been rendered
 				rendered();
@@ -2418,6 +2440,36 @@ public abstract class Component
 		}
 	}
 
+	/**
+	 * Writes the output of this component from its output cache, or renders it and hands it to the
+	 * cache.
+	 */
+	private void renderOutputCaching()
+	{
+		OutputCachingBehavior caching = getBehaviors(OutputCachingBehavior.class).get(0);
+		Response response = getResponse();
+		if (getRequestFlag(RFLAG_OUTPUT_CACHED))
+		{
+			response.write(caching.getCachedMarkup());
+			return;
+		}
+
+		StringResponse output = new StringResponse();
+		getRequestCycle().setResponse(output);
+		try
+		{
+			notifyBehaviorsComponentBeforeRender();
+			onRender();
+			notifyBehaviorsComponentRendered();
+		}
+		finally
+		{
+			getRequestCycle().setResponse(response);
+		}
+		response.write(output.getBuffer());
+		caching.onMarkupRendered(this, output.getBuffer());
+	}
+
 	/**
 	 * Called when a runtime exception is caught during the render process
 	 * 
@@ -2715,7 +2767,14 @@ public abstract class Component
 					RequestCycle.get().setResponse(oldResponse);
 				}
 				// Then let the component itself to contribute to the header
-				renderHead(this, response);
+				if (this instanceof IStaticHeaderContributor)
+				{
+					HeaderContributionCache.get(getApplication()).renderHead(this, response);
+				}
+				else
+				{
+					renderHead(this, response);
+				}
 
 				response.markRendered(this);
 			}
@@ -2727,7 +2786,15 @@ public abstract class Component
 				{
 					if (response.wasRendered(behavior) == false)
 					{
-						behavior.renderHead(this, response);
+						if (behavior instanceof IStaticHeaderContributor)
+						{
+							HeaderContributionCache.get(getApplication()).renderHead(this,
+								behavior, response);
+						}
+						else
+						{
+							behavior.renderHead(this, response);
+						}
 						List<IClusterable> pair = Arrays.asList(this, behavior);
 						response.markRendered(pair);
 					}
@@ -4211,6 +4278,44 @@ public abstract class Component
 		return false;
 	}
 
+	/**
+	 * THIS METHOD IS NOT PART OF THE WICKET PUBLIC API. DO NOT USE IT!
+	 * <p>
+	 * Tells this component whether its output is handled by an {@link OutputCachingBehavior} during
+	 * the current request.
+	 * 
+	 * @param caching
+	 *            whether the output is taken from or put into the output cache
+	 * @param cached
+	 *            whether the output has been found in the cache
+	 */
+	public final void internalSetOutputCaching(final boolean caching, final boolean cached)
+	{
+		setRequestFlag(RFLAG_OUTPUT_CACHING, caching);
+		setRequestFlag(RFLAG_OUTPUT_CACHED, caching && cached);
+	}
+
+	/**
+	 * @return <code>true</code> if the output of this component is taken from or put into an
+	 *         output cache during the current request
+	 * @see OutputCachingBehavior
+	 */
+	public final boolean isOutputCaching()
+	{
+		return getRequestFlag(RFLAG_OUTPUT_CACHING);
+	}
+
+	/**
+	 * @return <code>true</code> if the output of this component is taken from an output cache
+	 *         during the current request, i.e. neither this component nor its children are
+	 *         rendered
+	 * @see OutputCachingBehavior
+	 */
+	public final boolean isOutputCached()
+	{
+		return getRequestFlag(RFLAG_OUTPUT_CACHED);
+	}
+
 	/**
 	 * 
 	 * @return <code>true</code> if component has been prepared for render
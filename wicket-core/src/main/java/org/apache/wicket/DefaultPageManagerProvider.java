@@ -28,6 +28,7 @@ import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
 import org.apache.wicket.serialize.ISerializer;
 import org.apache.wicket.settings.IStoreSettings;
+import org.apache.wicket.settings.def.StoreSettings;
 import org.apache.wicket.util.lang.Bytes;
 
 /**
@@ -58,7 +59,12 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 		if (dataStore.canBeAsynchronous())
 		{
 			int capacity = storeSettings.getAsynchronousQueueCapacity();
-			dataStore = new AsynchronousDataStore(dataStore, capacity);
+			int writerCount = 1;
+			if (storeSettings instanceof StoreSettings)
+			{
+				writerCount = ((StoreSettings)storeSettings).getAsynchronousWriterCount();
+			}
+			dataStore = new AsynchronousDataStore(dataStore, capacity, writerCount);
 		}
 
 		IPageStore pageStore = newPageStore(dataStore);
@@ -68,8 +74,17 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 
 	protected IPageStore newPageStore(IDataStore dataStore)
 	{
-		int inmemoryCacheSize = getStoreSettings().getInmemoryCacheSize();
+		IStoreSettings storeSettings = getStoreSettings();
+		int inmemoryCacheSize = storeSettings.getInmemoryCacheSize();
 		ISerializer pageSerializer = application.getFrameworkSettings().getSerializer();
+		if (storeSettings instanceof StoreSettings)
+		{
+			StoreSettings settings = (StoreSettings)storeSettings;
+			Bytes inmemoryCacheMaxSize = settings.getInmemoryCacheMaxSize();
+			boolean softReferences = settings.isInmemoryCacheSoftReferences();
+			return new DefaultPageStore(pageSerializer, dataStore, inmemoryCacheSize,
+				inmemoryCacheMaxSize, softReferences);
+		}
 		return new DefaultPageStore(pageSerializer, dataStore, inmemoryCacheSize);
 	}
 
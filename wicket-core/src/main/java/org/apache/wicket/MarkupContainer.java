@@ -20,8 +20,10 @@ import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.IMarkupFragment;
@@ -101,9 +103,21 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 	/** Log for reporting. */
 	private static final Logger log = LoggerFactory.getLogger(MarkupContainer.class);
 
+	/**
+	 * Number of children from which on the children are looked up by their id in
+	 * {@link #childIndex} instead of iterating over all of them
+	 */
+	private static final int CHILD_INDEX_THRESHOLD = 32;
+
 	/** List of children or single child */
 	private Object children;
 
+	/**
+	 * Map from the id of a child to its index in {@link #children}. Used only for containers with
+	 * many children and rebuilt lazily after the children were shifted.
+	 */
+	private transient Map<String, Integer> childIndex;
+
 	/**
 	 * @see org.apache.wicket.Component#Component(String)
 	 */
@@ -630,6 +644,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			}
 
 			children = null;
+			childIndex = null;
 		}
 
 		return this;
@@ -980,6 +995,11 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			}
 			((ChildList)children).add(child);
 		}
+
+		if (childIndex != null)
+		{
+			childIndex.put(child.getId(), children_size() - 1);
+		}
 	}
 
 	/**
@@ -1076,6 +1096,14 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		{
 			return null;
 		}
+
+		final Map<String, Integer> index = getChildIndex();
+		if (index != null)
+		{
+			final Integer i = index.get(id);
+			return i != null ? children_get(i) : null;
+		}
+
 		Component component = null;
 		if ((children instanceof Object[] == false) && (children instanceof List == false))
 		{
@@ -1121,6 +1149,14 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		{
 			return -1;
 		}
+
+		final Map<String, Integer> index = getChildIndex();
+		if (index != null)
+		{
+			final Integer i = index.get(child.getId());
+			return i != null ? i : -1;
+		}
+
 		if (children instanceof Object[] == false && children instanceof ChildList == false)
 		{
 			if (getId(children).equals(child.getId()))
@@ -1181,6 +1217,20 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			return null;
 		}
 
+		if (childIndex != null)
+		{
+			final int size = children_size();
+			if (index == size - 1 && index >= CHILD_INDEX_THRESHOLD)
+			{
+				childIndex.remove(getId(children_get(index, false)));
+			}
+			else
+			{
+				// the following children are shifted, the index is rebuilt when needed again
+				childIndex = null;
+			}
+		}
+
 		if (children instanceof Component)
 		{
 			if (index == 0)
@@ -1264,6 +1314,12 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		{
 			throw new IndexOutOfBoundsException();
 		}
+
+		if (childIndex != null)
+		{
+			childIndex.remove(getId(replaced));
+			childIndex.put(getId(child), index);
+		}
 		return replaced;
 	}
 
@@ -1278,6 +1334,32 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		return (Component)children_set(index, child, true);
 	}
 
+	/**
+	 * Returns the index of the children by their id, building it if the container has enough
+	 * children.
+	 * 
+	 * @return The index or {@code null} if the children should be searched one by one
+	 */
+	private Map<String, Integer> getChildIndex()
+	{
+		if (childIndex == null)
+		{
+			final int size = children_size();
+			if (size < CHILD_INDEX_THRESHOLD)
+			{
+				return null;
+			}
+
+			final Map<String, Integer> index = new HashMap<String, Integer>(size * 2);
+			for (int i = 0; i < size; i++)
+			{
+				index.put(getId(children_get(i, false)), i);
+			}
+			childIndex = index;
+		}
+		return childIndex;
+	}
+
 	/**
 	 * 
 	 * @return The size of the children
@@ -1390,7 +1472,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			else if (tag.getFlag(ComponentTag.RENDER_RAW))
 			{
 				// No component found, but "render as raw markup" flag found
-				getResponse().write(element.toCharSequence());
+				element.writeTo(getResponse());
 				return true;
 			}
 			else
@@ -1436,7 +1518,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		else
 		{
 			// Render as raw markup
-			getResponse().write(element.toCharSequence());
+			element.writeTo(getResponse());
 			return true;
 		}
 
@@ -1892,6 +1974,12 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			list.childs[idx1] = list.childs[idx2];
 			list.childs[idx2] = tmp;
 		}
+
+		if (childIndex != null)
+		{
+			childIndex.put(getId(children_get(idx1, false)), idx1);
+			childIndex.put(getId(children_get(idx2, false)), idx2);
+		}
 	}
 
 	/**
@@ -31,6 +31,7 @@ import org.apache.wicket.markup.html.WebPage;
 import org.apache.wicket.markup.resolver.IComponentResolver;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.page.IPageManager;
+import org.apache.wicket.page.ReadOnlyPageAccess;
 import org.apache.wicket.pageStore.IPageStore;
 import org.apache.wicket.request.component.IRequestablePage;
 import org.apache.wicket.request.cycle.RequestCycle;
@@ -275,7 +276,8 @@ public abstract class Page extends MarkupContainer implements IRedirectListener,
 	{
 		checkHierarchyChange(this);
 
-		if (getFlag(FLAG_PREVENT_DIRTY))
+		if (getFlag(FLAG_PREVENT_DIRTY) ||
+			(isInitialization == false && ReadOnlyPageAccess.isActive()))
 		{
 			return;
 		}
@@ -610,6 +612,12 @@ public abstract class Page extends MarkupContainer implements IRedirectListener,
 							visit.dontGoDeeper();
 						}
 					}
+					else if (component.isOutputCached())
+					{
+						// the output of the component and its children was taken from the output
+						// cache, so its children are not rendered
+						visit.dontGoDeeper();
+					}
 				}
 			});
 
@@ -920,13 +920,27 @@ public abstract class Session implements IClusterable, IEventSink
 		return pageAccessSynchronizer.get().adapt(pageManager);
 	}
 
+	/**
+	 * Creates the {@link PageAccessSynchronizer} which synchronizes the access of the threads to
+	 * the pages of this session. Override to use another strategy, e.g.
+	 * {@link org.apache.wicket.page.FairPageAccessSynchronizer}.
+	 * 
+	 * @param timeout
+	 *            timeout value for acquiring a page lock
+	 * @return the page access synchronizer
+	 */
+	protected PageAccessSynchronizer newPageAccessSynchronizer(final Duration timeout)
+	{
+		return new PageAccessSynchronizer(timeout);
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void onEvent(IEvent<?> event)
 	{
 	}
 
-	private static final class PageAccessSynchronizerProvider extends
+	private final class PageAccessSynchronizerProvider extends
 		LazyInitializer<PageAccessSynchronizer>
 	{
 		private static final long serialVersionUID = 1L;
@@ -946,7 +960,7 @@ public abstract class Session implements IClusterable, IEventSink
 					"PageAccessSynchronizer created outside of application thread, using default timeout: {}",
 					timeout);
 			}
-			return new PageAccessSynchronizer(timeout);
+			return newPageAccessSynchronizer(timeout);
 		}
 	}
 
@@ -16,18 +16,22 @@
  */
 package org.apache.wicket.core.request.handler;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.Page;
 import org.apache.wicket.RequestListenerInterface;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.behavior.Behavior;
 import org.apache.wicket.core.request.handler.RenderPageRequestHandler.RedirectPolicy;
 import org.apache.wicket.core.request.handler.logger.ListenerInterfaceLogData;
+import org.apache.wicket.page.ReadOnlyPageAccess;
 import org.apache.wicket.request.ILoggableRequestHandler;
 import org.apache.wicket.request.IRequestCycle;
 import org.apache.wicket.request.component.IRequestableComponent;
 import org.apache.wicket.request.component.IRequestablePage;
 import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.settings.IRequestCycleSettings;
+import org.apache.wicket.settings.def.RequestCycleSettings;
 import org.apache.wicket.util.lang.Args;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +58,12 @@ public class ListenerInterfaceRequestHandler
 
 	private ListenerInterfaceLogData logData;
 
+	/**
+	 * Whether the page has been accessed read-only and thus may be used by other requests
+	 * concurrently
+	 */
+	private boolean pageReadOnly = false;
+
 	/**
 	 * Construct.
 	 *
@@ -125,7 +135,12 @@ public class ListenerInterfaceRequestHandler
 			logData = new ListenerInterfaceLogData(pageComponentProvider, listenerInterface,
 				behaviorId);
 		}
-		pageComponentProvider.detach();
+		if (pageReadOnly == false)
+		{
+			// a read-only page is detached by the last request which reads it, see
+			// PageAccessSynchronizer
+			pageComponentProvider.detach();
+		}
 	}
 
 	/**
@@ -153,9 +168,40 @@ public class ListenerInterfaceRequestHandler
 	 */
 	@Override
 	public void respond(final IRequestCycle requestCycle)
+	{
+		if (isReadOnly() == false)
+		{
+			internalRespond(requestCycle);
+			return;
+		}
+
+		final boolean wasReadOnly = ReadOnlyPageAccess.setActive(true);
+		try
+		{
+			internalRespond(requestCycle);
+		}
+		finally
+		{
+			ReadOnlyPageAccess.setActive(wasReadOnly);
+		}
+	}
+
+	/**
+	 * @return whether the listener interface is registered as read-only in the application
+	 * @see RequestCycleSettings#addReadOnlyListenerInterface(RequestListenerInterface)
+	 */
+	private boolean isReadOnly()
+	{
+		IRequestCycleSettings settings = Application.get().getRequestCycleSettings();
+		return settings instanceof RequestCycleSettings &&
+			((RequestCycleSettings)settings).isReadOnlyListenerInterface(listenerInterface);
+	}
+
+	private void internalRespond(final IRequestCycle requestCycle)
 	{
 		final IRequestablePage page = getPage();
 		final boolean freshPage = pageComponentProvider.isPageInstanceFresh();
+		pageReadOnly = ReadOnlyPageAccess.isActive() && freshPage == false;
 		final boolean isAjax = ((WebRequest)requestCycle.getRequest()).isAjax();
 
 		IRequestableComponent component = null;
@@ -26,6 +26,7 @@ import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.mapper.IPrefixedRequestMapper;
 import org.apache.wicket.request.mapper.info.ComponentInfo;
 import org.apache.wicket.request.mapper.info.PageComponentInfo;
 import org.apache.wicket.request.mapper.info.PageInfo;
@@ -63,10 +64,13 @@ import org.apache.wicket.util.string.Strings;
  *  /mount/point?2-5.click.1-foo-bar-baz (1 is behavior index, 5 is render count)
  *  (these will redirect to hybrid if page is not stateless)
  * </pre>
+ * <p>
+ * Subclasses which match urls outside of the mount path have to override
+ * {@link #getPrefixSegments()} to return <code>null</code>.
  *
  * @author Matej Knopp
  */
-public class MountedMapper extends AbstractBookmarkableMapper
+public class MountedMapper extends AbstractBookmarkableMapper implements IPrefixedRequestMapper
 {
 	private final IPageParametersEncoder pageParametersEncoder;
 
@@ -533,6 +537,15 @@ public class MountedMapper extends AbstractBookmarkableMapper
 		}
 	}
 
+	/**
+	 * @see org.apache.wicket.request.mapper.IPrefixedRequestMapper#getPrefixSegments()
+	 */
+	@Override
+	public String[] getPrefixSegments()
+	{
+		return getFixedLeadingSegments(mountSegments, mountSegments.length);
+	}
+
 	/**
 	 * @see AbstractBookmarkableMapper#checkPageClass(java.lang.Class)
 	 */
@@ -25,6 +25,7 @@ import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
 import org.apache.wicket.request.mapper.AbstractMapper;
+import org.apache.wicket.request.mapper.IPrefixedRequestMapper;
 import org.apache.wicket.request.mapper.parameter.IPageParametersEncoder;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.mapper.parameter.PageParametersEncoder;
@@ -66,7 +67,7 @@ import org.apache.wicket.util.string.Strings;
  *
  * @author Peter Ertl
  */
-public class ResourceMapper extends AbstractMapper implements IRequestMapper
+public class ResourceMapper extends AbstractMapper implements IPrefixedRequestMapper
 {
 	// encode page parameters into url + decode page parameters from url
 	private final IPageParametersEncoder parametersEncoder;
@@ -202,6 +203,18 @@ public class ResourceMapper extends AbstractMapper implements IRequestMapper
 		return encodePageParameters(url, parameters, parametersEncoder);
 	}
 
+	/**
+	 * The last mount segment is not part of the prefix since the caching strategy may decorate the
+	 * filename.
+	 * 
+	 * @see org.apache.wicket.request.mapper.IPrefixedRequestMapper#getPrefixSegments()
+	 */
+	@Override
+	public String[] getPrefixSegments()
+	{
+		return getFixedLeadingSegments(mountSegments, mountSegments.length - 1);
+	}
+
 	protected IResourceCachingStrategy getCachingStrategy()
 	{
 		return Application.get().getResourceSettings().getCachingStrategy();
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.core.util.crypt;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.Session;
+import org.apache.wicket.util.crypt.AesCrypt;
+import org.apache.wicket.util.crypt.CachingCrypt;
+import org.apache.wicket.util.crypt.ICrypt;
+import org.apache.wicket.util.crypt.ICryptFactory;
+
+/**
+ * Crypt factory that produces {@link AesCrypt} instances based on http session-specific encryption
+ * key, like {@link KeyInSessionSunJceCryptFactory}. The crypt is created once per session, so the
+ * keys are derived once only, and it remembers the recently encrypted urls of the session.
+ * 
+ * Note that the use of this crypt factory will result in an immediate creation of a http session
+ * 
+ * @see CachingCrypt
+ */
+public class KeyInSessionAesCryptFactory implements ICryptFactory
+{
+	/** metadata-key used to store the crypt in session metadata */
+	private static final MetaDataKey<SessionCrypt> KEY = new MetaDataKey<SessionCrypt>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	@Override
+	public ICrypt newCrypt()
+	{
+		Session session = Session.get();
+		session.bind();
+
+		// retrieve or generate the crypt of the session
+		SessionCrypt crypt = session.getMetaData(KEY);
+		if (crypt == null)
+		{
+			// generate new key
+			crypt = new SessionCrypt(session.getId() + "." + UUID.randomUUID().toString());
+			session.setMetaData(KEY, crypt);
+		}
+		return crypt;
+	}
+
+	/**
+	 * The crypt stored in the session. Only the key is serialized, the crypt and its cache are
+	 * recreated when needed.
+	 */
+	private static class SessionCrypt implements ICrypt, Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private String key;
+
+		private transient volatile ICrypt crypt;
+
+		private SessionCrypt(String key)
+		{
+			this.key = key;
+		}
+
+		private ICrypt getCrypt()
+		{
+			ICrypt current = crypt;
+			if (current == null)
+			{
+				AesCrypt aesCrypt = new AesCrypt();
+				aesCrypt.setKey(key);
+				current = new CachingCrypt(aesCrypt);
+				crypt = current;
+			}
+			return current;
+		}
+
+		@Override
+		public String decryptUrlSafe(String text)
+		{
+			return getCrypt().decryptUrlSafe(text);
+		}
+
+		@Override
+		public String encryptUrlSafe(String plainText)
+		{
+			return getCrypt().encryptUrlSafe(plainText);
+		}
+
+		@Override
+		public void setKey(String key)
+		{
+			this.key = key;
+			crypt = null;
+		}
+	}
+}
@@ -16,6 +16,9 @@
  */
 package org.apache.wicket.markup;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -49,6 +52,8 @@ import org.slf4j.LoggerFactory;
  */
 public class ComponentTag extends MarkupElement
 {
+	private static final long serialVersionUID = 1L;
+
 	/** Log. */
 	private static final Logger log = LoggerFactory.getLogger(ComponentTag.class);
 
@@ -90,7 +95,7 @@ public class ComponentTag extends MarkupElement
 	 * about the tags origin is lost. In some cases like wicket:head and wicket:link this
 	 * information however is required.
 	 */
-	private WeakReference<Class<? extends Component>> markupClassRef = null;
+	private transient WeakReference<Class<? extends Component>> markupClassRef = null;
 
 	/** added behaviors */
 	private List<Behavior> behaviors;
@@ -666,6 +671,15 @@ public class ComponentTag extends MarkupElement
 		return xmlTag.toCharSequence();
 	}
 
+	/**
+	 * @see org.apache.wicket.markup.MarkupElement#isImmutable()
+	 */
+	@Override
+	protected boolean isImmutable()
+	{
+		return xmlTag.isMutable() == false;
+	}
+
 	/**
 	 * Converts this object to a string representation.
 	 * 
@@ -730,8 +744,7 @@ public class ComponentTag extends MarkupElement
 					if (value != null)
 					{
 						response.write("=\"");
-						value = Strings.escapeMarkup(value);
-						response.write(value);
+						response.writeEscapedMarkup(value, false, false);
 						response.write("\"");
 					}
 				}
@@ -935,4 +948,17 @@ public class ComponentTag extends MarkupElement
 	public void onBeforeRender(final Component component, final MarkupStream markupStream)
 	{
 	}
+
+	private void writeObject(final ObjectOutputStream s) throws IOException
+	{
+		s.defaultWriteObject();
+		s.writeObject(getMarkupClass());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(final ObjectInputStream s) throws IOException, ClassNotFoundException
+	{
+		s.defaultReadObject();
+		setMarkupClass((Class<? extends Component>)s.readObject());
+	}
 }
@@ -16,9 +16,12 @@
  */
 package org.apache.wicket.markup;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
@@ -26,6 +29,7 @@ import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.settings.IMarkupSettings;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.listener.IChangeListener;
+import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.watch.IModifiable;
 import org.apache.wicket.util.watch.IModificationWatcher;
 import org.apache.wicket.util.watch.ModificationWatcher;
@@ -73,6 +77,21 @@ public class MarkupCache implements IMarkupCache
 	 */
 	private final Application application;
 
+	/** Number of markups found in the cache */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** Number of markups not found in the cache */
+	private final AtomicLong misses = new AtomicLong();
+
+	/** Number of markups loaded */
+	private final AtomicLong loads = new AtomicLong();
+
+	/** Time spent loading markups */
+	private final AtomicLong loadNanos = new AtomicLong();
+
+	/** Number of markups evicted from a bounded cache */
+	private final AtomicLong evictions = new AtomicLong();
+
 	/**
 	 * A convenient helper to get the markup cache registered with the application.
 	 * 
@@ -282,6 +301,7 @@ public class MarkupCache implements IMarkupCache
 		if ((enforceReload == false) && (cacheKey != null))
 		{
 			markup = getMarkupFromCache(cacheKey, container);
+			(markup != null ? hits : misses).incrementAndGet();
 		}
 
 		// If markup not found in cache or cache disabled, than ...
@@ -302,7 +322,10 @@ public class MarkupCache implements IMarkupCache
 				resourceStream.setCacheKey(cacheKey);
 
 				// load the markup and watch for changes
+				final long start = System.nanoTime();
 				markup = loadMarkupAndWatchForChanges(container, resourceStream, enforceReload);
+				loadNanos.addAndGet(System.nanoTime() - start);
+				loads.incrementAndGet();
 			}
 			else
 			{
@@ -562,9 +585,90 @@ public class MarkupCache implements IMarkupCache
 		return markupCacheKeyProvider;
 	}
 
+	/**
+	 * @return the number of markups found in the cache
+	 */
+	public final long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of markups not found in the cache
+	 */
+	public final long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of markups loaded from their resource streams
+	 */
+	public final long getLoadCount()
+	{
+		return loads.get();
+	}
+
+	/**
+	 * @return the time spent loading markups
+	 */
+	public final Duration getLoadTime()
+	{
+		return Duration.milliseconds(loadNanos.get() / 1000000);
+	}
+
+	/**
+	 * @return the number of markups evicted because the cache reached its maximum weight
+	 * @see #newBoundedCacheImplementation(long, Weigher)
+	 */
+	public final long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * @return the weight of all cached markups if the cache is bounded, {@code -1} otherwise
+	 * @see #newBoundedCacheImplementation(long, Weigher)
+	 */
+	public final long getWeight()
+	{
+		if (markupCache instanceof BoundedCacheImplementation)
+		{
+			return ((BoundedCacheImplementation<String, Markup>)markupCache).getWeight();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the maximum weight of the cached markups if the cache is bounded, {@code 0}
+	 *         otherwise
+	 * @see #newBoundedCacheImplementation(long, Weigher)
+	 */
+	public final long getMaxWeight()
+	{
+		if (markupCache instanceof BoundedCacheImplementation)
+		{
+			return ((BoundedCacheImplementation<String, Markup>)markupCache).getMaxWeight();
+		}
+		return 0;
+	}
+
+	/**
+	 * Resets the hit, miss, load and eviction statistics
+	 */
+	public final void resetStatistics()
+	{
+		hits.set(0);
+		misses.set(0);
+		loads.set(0);
+		loadNanos.set(0);
+		evictions.set(0);
+	}
+
 	/**
 	 * Allows you to change the map implementation which will hold the cache data. By default it is
 	 * a ConcurrentHashMap() in order to allow multiple thread to access the data in a secure way.
+	 * Return {@link #newBoundedCacheImplementation(long, Weigher)} to bound the cache.
 	 * 
 	 * @param <K>
 	 * @param <V>
@@ -575,6 +679,60 @@ public class MarkupCache implements IMarkupCache
 		return new DefaultCacheImplementation<K, V>();
 	}
 
+	/**
+	 * Creates a cache which is bounded by the weight of the cached markups and which reports its
+	 * evictions to {@link #onMarkupEvicted(Markup)}. To bound the markup cache return it from
+	 * {@link #newCacheImplementation()}, e.g.
+	 * 
+	 * <pre>
+	 * protected &lt;K, V&gt; ICache&lt;K, V&gt; newCacheImplementation()
+	 * {
+	 * 	return newBoundedCacheImplementation(10000, Weigher.ELEMENT_COUNT);
+	 * }
+	 * </pre>
+	 * 
+	 * @param <K>
+	 * @param <V>
+	 * @param maxWeight
+	 *            the maximum weight of the cached markups
+	 * @param weigher
+	 *            defines how the markups are weighed
+	 * @return new instance of a bounded cache implementation
+	 */
+	protected final <K, V> ICache<K, V> newBoundedCacheImplementation(final long maxWeight,
+		final Weigher weigher)
+	{
+		return new BoundedCacheImplementation<K, V>(maxWeight, weigher)
+		{
+			@Override
+			protected void onEvict(final K key, final V value)
+			{
+				if (value instanceof Markup)
+				{
+					onMarkupEvicted((Markup)value);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Called when a markup is evicted from a bounded cache. Stops watching its resource for
+	 * changes, it is watched again when the markup is loaded the next time.
+	 * 
+	 * @param markup
+	 */
+	protected void onMarkupEvicted(final Markup markup)
+	{
+		evictions.incrementAndGet();
+
+		final IModificationWatcher watcher = application.getResourceSettings().getResourceWatcher(
+			false);
+		if ((watcher != null) && (markup.getMarkupResourceStream() != null))
+		{
+			watcher.remove(markup.getMarkupResourceStream());
+		}
+	}
+
 	/**
 	 * MarkupCache allows you to implement you own cache implementation. ICache is the interface the
 	 * implementation must comply with.
@@ -735,4 +893,481 @@ public class MarkupCache implements IMarkupCache
 			clear();
 		}
 	}
+
+	/**
+	 * Defines the weight of a cache entry for the {@link BoundedCacheImplementation}
+	 */
+	public enum Weigher
+	{
+		/** Every entry weighs 1 */
+		ENTRY_COUNT {
+			@Override
+			public long weigh(final Object value)
+			{
+				return 1;
+			}
+		},
+
+		/** A markup weighs the number of its elements, everything else 1 */
+		ELEMENT_COUNT {
+			@Override
+			public long weigh(final Object value)
+			{
+				if (value instanceof Markup)
+				{
+					return Math.max(1, ((Markup)value).size());
+				}
+				return 1;
+			}
+		},
+
+		/** A markup weighs the number of its characters, a string its length, everything else 1 */
+		CHARACTER_COUNT {
+			@Override
+			public long weigh(final Object value)
+			{
+				long weight = 0;
+				if (value instanceof Markup)
+				{
+					final Markup markup = (Markup)value;
+					for (int i = 0; i < markup.size(); i++)
+					{
+						weight += markup.get(i).toCharSequence().length();
+					}
+				}
+				else if (value instanceof CharSequence)
+				{
+					weight = ((CharSequence)value).length();
+				}
+				return Math.max(1, weight);
+			}
+		};
+
+		/**
+		 * @param value
+		 * @return the weight of the cached value, at least 1
+		 */
+		public abstract long weigh(Object value);
+	}
+
+	/**
+	 * A cache which is bounded by the total weight of its entries.
+	 * <p>
+	 * The entries are spread over lock segments, each keeping its entries in a clock. Reading an
+	 * entry only bumps its small use counter, without locking. When the maximum weight is exceeded
+	 * the clock of the segment the new entry was added to is swept from its oldest entry on: an
+	 * entry used since it was passed the last time has its counter decremented and gets a second
+	 * chance behind the newest entry, the first entry without uses is evicted. Only the lock of the
+	 * swept segment is held, the other segments are swept in turn if it has no entry left to
+	 * evict. So an eviction costs constant amortized time, independent of the size of the cache.
+	 * </p>
+	 * <p>
+	 * A newly added entry is never evicted by its own addition. Entries heavier than the maximum
+	 * weight are not cached at all.
+	 * </p>
+	 * 
+	 * @param <K>
+	 * @param <V>
+	 */
+	public static class BoundedCacheImplementation<K, V> implements ICache<K, V>
+	{
+		/** the maximum number of lock segments */
+		private static final int MAX_SEGMENTS = 16;
+
+		/** smaller caches use fewer segments so their eviction order is close to a global one */
+		private static final int MIN_SEGMENT_WEIGHT = 20;
+
+		/** the use counter of an entry saturates at this value */
+		private static final int MAX_USES = 3;
+
+		private final ConcurrentHashMap<K, Entry<K, V>> cache = new ConcurrentHashMap<K, Entry<K, V>>();
+
+		private final Segment<K, V>[] segments;
+
+		private final long maxWeight;
+
+		private final Weigher weigher;
+
+		private final AtomicLong weight = new AtomicLong();
+
+		/**
+		 * Construct.
+		 * 
+		 * @param maxWeight
+		 *            the maximum weight of all entries
+		 * @param weigher
+		 *            defines the weight of the entries
+		 */
+		@SuppressWarnings("unchecked")
+		public BoundedCacheImplementation(final long maxWeight, final Weigher weigher)
+		{
+			this.maxWeight = Args.withinRange(1L, Long.MAX_VALUE, maxWeight, "maxWeight");
+			this.weigher = Args.notNull(weigher, "weigher");
+
+			int count = 1;
+			while ((count < MAX_SEGMENTS) && ((long)count * MIN_SEGMENT_WEIGHT <= maxWeight))
+			{
+				count <<= 1;
+			}
+			segments = new Segment[count];
+			for (int i = 0; i < count; i++)
+			{
+				segments[i] = new Segment<K, V>();
+			}
+		}
+
+		@Override
+		public void clear()
+		{
+			for (Segment<K, V> segment : segments)
+			{
+				synchronized (segment)
+				{
+					for (Entry<K, V> entry = segment.head.next; entry != segment.head; entry = entry.next)
+					{
+						cache.remove(entry.key, entry);
+						weight.addAndGet(-entry.weight);
+					}
+					segment.clear();
+				}
+			}
+		}
+
+		@Override
+		public boolean containsKey(final Object key)
+		{
+			if (key == null)
+			{
+				return false;
+			}
+			return cache.containsKey(key);
+		}
+
+		@Override
+		public V get(final Object key)
+		{
+			if (key == null)
+			{
+				return null;
+			}
+			Entry<K, V> entry = cache.get(key);
+			if (entry == null)
+			{
+				return null;
+			}
+			if (entry.uses < MAX_USES)
+			{
+				entry.uses++;
+			}
+			return entry.value;
+		}
+
+		@Override
+		public Collection<K> getKeys()
+		{
+			return cache.keySet();
+		}
+
+		@Override
+		public Collection<V> getValues()
+		{
+			List<V> values = new ArrayList<V>(cache.size());
+			for (Entry<K, V> entry : cache.values())
+			{
+				values.add(entry.value);
+			}
+			return values;
+		}
+
+		@Override
+		public void put(final K key, final V value)
+		{
+			long entryWeight = weigh(key, value);
+			if (entryWeight > maxWeight)
+			{
+				remove(key);
+				return;
+			}
+
+			Entry<K, V> entry = new Entry<K, V>(key, value, entryWeight);
+			int index = segmentIndex(key);
+			Segment<K, V> segment = segments[index];
+			synchronized (segment)
+			{
+				Entry<K, V> old = cache.put(key, entry);
+				if (old != null)
+				{
+					segment.unlink(old);
+					weight.addAndGet(-old.weight);
+				}
+				segment.link(entry);
+				weight.addAndGet(entryWeight);
+			}
+
+			if (weight.get() > maxWeight)
+			{
+				evict(index, entry);
+			}
+		}
+
+		@Override
+		public boolean remove(final K key)
+		{
+			if (key == null)
+			{
+				return false;
+			}
+			Segment<K, V> segment = segments[segmentIndex(key)];
+			synchronized (segment)
+			{
+				Entry<K, V> entry = cache.remove(key);
+				if (entry != null)
+				{
+					segment.unlink(entry);
+					weight.addAndGet(-entry.weight);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public int size()
+		{
+			return cache.size();
+		}
+
+		@Override
+		public void shutdown()
+		{
+			clear();
+		}
+
+		/**
+		 * Weighs the entry of a key again, e.g. because its value has grown, and evicts other
+		 * entries if the maximum weight is exceeded now.
+		 * 
+		 * @param key
+		 * @param value
+		 *            the value which is expected to be cached for the key, nothing is done if the
+		 *            key maps to another one
+		 */
+		public void reweigh(final K key, final V value)
+		{
+			int index = segmentIndex(key);
+			Segment<K, V> segment = segments[index];
+			Entry<K, V> entry;
+			synchronized (segment)
+			{
+				entry = cache.get(key);
+				if ((entry == null) || (entry.value != value))
+				{
+					return;
+				}
+
+				long entryWeight = weigh(key, value);
+				if (entryWeight > maxWeight)
+				{
+					cache.remove(key, entry);
+					segment.unlink(entry);
+					weight.addAndGet(-entry.weight);
+					return;
+				}
+				weight.addAndGet(entryWeight - entry.weight);
+				entry.weight = entryWeight;
+			}
+
+			if (weight.get() > maxWeight)
+			{
+				evict(index, entry);
+			}
+		}
+
+		/**
+		 * @return the weight of all entries
+		 */
+		public long getWeight()
+		{
+			return weight.get();
+		}
+
+		/**
+		 * @return the maximum weight of all entries
+		 */
+		public long getMaxWeight()
+		{
+			return maxWeight;
+		}
+
+		/**
+		 * Weighs an entry, by default with the {@link Weigher} of this cache
+		 * 
+		 * @param key
+		 * @param value
+		 * @return the weight of the entry, at least 1
+		 */
+		protected long weigh(final K key, final V value)
+		{
+			return weigher.weigh(value);
+		}
+
+		/**
+		 * Called after an entry has been evicted
+		 * 
+		 * @param key
+		 * @param value
+		 */
+		protected void onEvict(final K key, final V value)
+		{
+		}
+
+		private int segmentIndex(final Object key)
+		{
+			int hash = key.hashCode();
+			hash ^= (hash >>> 16);
+			return hash & (segments.length - 1);
+		}
+
+		/**
+		 * Evicts entries until the cache is within its maximum weight again
+		 * 
+		 * @param start
+		 *            the index of the segment to sweep first
+		 * @param added
+		 *            the entry just added, which is not evicted
+		 */
+		private void evict(final int start, final Entry<K, V> added)
+		{
+			List<Entry<K, V>> evicted = new ArrayList<Entry<K, V>>(1);
+			for (int i = 0; (i < segments.length) && (weight.get() > maxWeight); i++)
+			{
+				Segment<K, V> segment = segments[(start + i) & (segments.length - 1)];
+				synchronized (segment)
+				{
+					Entry<K, V> victim;
+					while ((weight.get() > maxWeight) && ((victim = segment.sweep(added)) != null))
+					{
+						cache.remove(victim.key, victim);
+						weight.addAndGet(-victim.weight);
+						evicted.add(victim);
+					}
+				}
+			}
+
+			// notify without holding a lock
+			for (Entry<K, V> entry : evicted)
+			{
+				onEvict(entry.key, entry.value);
+			}
+		}
+
+		/**
+		 * The clock of a lock segment, a circular list of its entries from the oldest to the
+		 * newest. Guarded by the segment's monitor.
+		 * 
+		 * @param <K>
+		 * @param <V>
+		 */
+		private static final class Segment<K, V>
+		{
+			/** sentinel of the list, its next entry is the oldest one */
+			private final Entry<K, V> head = new Entry<K, V>(null, null, 0);
+
+			private int count;
+
+			private Segment()
+			{
+				clear();
+			}
+
+			private void clear()
+			{
+				head.next = head;
+				head.previous = head;
+				count = 0;
+			}
+
+			private void link(final Entry<K, V> entry)
+			{
+				entry.previous = head.previous;
+				entry.next = head;
+				head.previous.next = entry;
+				head.previous = entry;
+				count++;
+			}
+
+			private void unlink(final Entry<K, V> entry)
+			{
+				entry.previous.next = entry.next;
+				entry.next.previous = entry.previous;
+				entry.previous = null;
+				entry.next = null;
+				count--;
+			}
+
+			/**
+			 * Moves the clock hand to the next entry without uses and unlinks it.
+			 * 
+			 * @param spared
+			 *            an entry which must not be evicted
+			 * @return the entry to evict or {@code null} if there is no entry but the spared one
+			 */
+			private Entry<K, V> sweep(final Entry<K, V> spared)
+			{
+				// concurrent readers may keep bumping the uses, so the sweep is limited
+				int steps = (MAX_USES + 1) * count;
+				while ((count > 1) || ((count == 1) && (head.next != spared)))
+				{
+					Entry<K, V> entry = head.next;
+					if (entry != spared)
+					{
+						if ((entry.uses <= 0) || (steps <= 0))
+						{
+							unlink(entry);
+							return entry;
+						}
+						entry.uses--;
+					}
+
+					// second chance behind the newest entry
+					unlink(entry);
+					link(entry);
+					steps--;
+				}
+				return null;
+			}
+		}
+
+		/**
+		 * A cached value with its weight and usage
+		 * 
+		 * @param <K>
+		 * @param <V>
+		 */
+		private static final class Entry<K, V>
+		{
+			private final K key;
+
+			private final V value;
+
+			/** guarded by the monitor of the segment */
+			private long weight;
+
+			/** uses since the clock hand passed the entry, may lose updates */
+			private volatile int uses = 0;
+
+			/** guarded by the monitor of the segment */
+			private Entry<K, V> previous;
+
+			/** guarded by the monitor of the segment */
+			private Entry<K, V> next;
+
+			private Entry(final K key, final V value, final long weight)
+			{
+				this.key = key;
+				this.value = value;
+				this.weight = weight;
+			}
+		}
+	}
 }
@@ -16,6 +16,11 @@
  */
 package org.apache.wicket.markup;
 
+import java.nio.charset.Charset;
+
+import org.apache.wicket.request.Response;
+import org.apache.wicket.util.io.IClusterable;
+
 /**
  * Base class for different kinds of markup elements. Markup elements are held in a Markup container
  * object.
@@ -31,8 +36,15 @@ package org.apache.wicket.markup;
  * @see ComponentTag
  * @author Jonathan Locke
  */
-public abstract class MarkupElement
+public abstract class MarkupElement implements IClusterable
 {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The bytes of an immutable element in the charset they have been requested for last
+	 */
+	private transient volatile EncodedBytes encodedBytes;
+
 	/**
 	 * Constructor.
 	 */
@@ -68,6 +80,57 @@ public abstract class MarkupElement
 	 */
 	public abstract CharSequence toCharSequence();
 
+	/**
+	 * Gets the bytes of {@link #toCharSequence()} in the given charset. The bytes of
+	 * {@link #isImmutable() immutable} elements are encoded once per charset only.
+	 * 
+	 * @param charset
+	 * @return the bytes, which must not be modified
+	 */
+	public final byte[] getBytes(final Charset charset)
+	{
+		EncodedBytes encoded = encodedBytes;
+		if (encoded != null && encoded.charset.equals(charset))
+		{
+			return encoded.bytes;
+		}
+
+		byte[] bytes = toCharSequence().toString().getBytes(charset);
+		if (isImmutable())
+		{
+			encodedBytes = new EncodedBytes(charset, bytes);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Writes this element to the response, as pre-encoded bytes if the response
+	 * {@link Response#getPreEncodedCharset() takes them}.
+	 * 
+	 * @param response
+	 */
+	public final void writeTo(final Response response)
+	{
+		Charset charset = response.getPreEncodedCharset();
+		if (charset != null)
+		{
+			response.write(getBytes(charset));
+		}
+		else
+		{
+			response.write(toCharSequence());
+		}
+	}
+
+	/**
+	 * @return {@code true} if {@link #toCharSequence()} never changes, so that its bytes can be
+	 *         cached
+	 */
+	protected boolean isImmutable()
+	{
+		return false;
+	}
+
 	/**
 	 * Gets a string representation.
 	 * 
@@ -75,4 +138,20 @@ public abstract class MarkupElement
 	 *         wrong.
 	 */
 	public abstract String toUserDebugString();
+
+	/**
+	 * Bytes and the charset they are encoded in
+	 */
+	private static final class EncodedBytes
+	{
+		private final Charset charset;
+
+		private final byte[] bytes;
+
+		private EncodedBytes(final Charset charset, final byte[] bytes)
+		{
+			this.charset = charset;
+			this.bytes = bytes;
+		}
+	}
 }
@@ -0,0 +1,545 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.IApplicationListener;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.application.IClassResolver;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.border.Border;
+import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.mock.MockWebResponse;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the markup of all pages, panels and borders of some packages into the {@link IMarkupCache}
+ * when the application starts, so that the first requests after a deployment don't have to pay for
+ * parsing and merging the markup.
+ * <p>
+ * The classes are found by scanning the class path for the configured packages. Each class is
+ * instantiated once - pages with the {@link org.apache.wicket.IPageFactory page factory}, panels
+ * and borders with their {@code (String id)} constructor inside a dummy page - and its markup is
+ * loaded for every configured locale and style. Classes which can't be instantiated outside of a
+ * request are skipped. Since the constructors of the components are executed the warmup should
+ * be enabled only for packages whose components have no side effects on construction.
+ * </p>
+ * <p>
+ * The markup is loaded in parallel by a fixed number of threads. Register the warmup as
+ * {@link IApplicationListener} in {@link Application#init()}, it will run after the application
+ * has been initialized completely:
+ * </p>
+ * 
+ * <pre>
+ * <code>
+ * protected void init()
+ * {
+ * 	super.init();
+ * 
+ * 	getApplicationListeners().add(
+ * 		new MarkupWarmup(&quot;com.example.pages&quot;).setLocales(Locale.ENGLISH, Locale.GERMAN));
+ * }
+ * </code>
+ * </pre>
+ * 
+ * @see MarkupCache
+ */
+public class MarkupWarmup implements IApplicationListener
+{
+	private static final Logger log = LoggerFactory.getLogger(MarkupWarmup.class);
+
+	private static final String CLASS_EXTENSION = ".class";
+
+	private final List<String> packageNames;
+
+	private List<Locale> locales = Collections.emptyList();
+
+	private List<String> styles = Collections.singletonList(null);
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private volatile Duration duration;
+
+	private volatile int warmedUpCount;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param packageNames
+	 *            the names of the packages to scan, including their sub packages
+	 */
+	public MarkupWarmup(final String... packageNames)
+	{
+		Args.notNull(packageNames, "packageNames");
+
+		this.packageNames = Arrays.asList(packageNames);
+	}
+
+	/**
+	 * Sets the locales to load the markup for. By default the markup is loaded for the locale of a
+	 * new session only.
+	 * 
+	 * @param locales
+	 * @return {@code this} for chaining
+	 */
+	public MarkupWarmup setLocales(final Locale... locales)
+	{
+		Args.notNull(locales, "locales");
+
+		this.locales = Arrays.asList(locales);
+		return this;
+	}
+
+	/**
+	 * Sets the styles to load the markup for. {@code null} stands for no style, which is the
+	 * default.
+	 * 
+	 * @param styles
+	 * @return {@code this} for chaining
+	 */
+	public MarkupWarmup setStyles(final String... styles)
+	{
+		Args.notNull(styles, "styles");
+
+		this.styles = Arrays.asList(styles);
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads loading the markup. Defaults to the number of processors.
+	 * 
+	 * @param threads
+	 * @return {@code this} for chaining
+	 */
+	public MarkupWarmup setThreads(final int threads)
+	{
+		this.threads = Args.withinRange(1, Integer.MAX_VALUE, threads, "threads");
+		return this;
+	}
+
+	/**
+	 * @return the duration of the last warmup or {@code null} if there was none yet
+	 */
+	public Duration getDuration()
+	{
+		return duration;
+	}
+
+	/**
+	 * @return the number of classes whose markup has been loaded by the last warmup
+	 */
+	public int getWarmedUpCount()
+	{
+		return warmedUpCount;
+	}
+
+	/**
+	 * @see org.apache.wicket.IApplicationListener#onAfterInitialized(org.apache.wicket.Application)
+	 */
+	@Override
+	public void onAfterInitialized(final Application application)
+	{
+		warmUp(application);
+	}
+
+	/**
+	 * @see org.apache.wicket.IApplicationListener#onBeforeDestroyed(org.apache.wicket.Application)
+	 */
+	@Override
+	public void onBeforeDestroyed(final Application application)
+	{
+	}
+
+	/**
+	 * Loads the markup of all classes found in the configured packages and waits until it is done.
+	 * 
+	 * @param application
+	 *            the application whose markup cache to fill
+	 * @return the duration of the warmup
+	 */
+	public Duration warmUp(final Application application)
+	{
+		Args.notNull(application, "application");
+
+		final Time start = Time.now();
+		final List<Class<? extends MarkupContainer>> classes = scan(application);
+
+		final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(classes.size());
+		for (final Class<? extends MarkupContainer> clazz : classes)
+		{
+			tasks.add(new Callable<Boolean>()
+			{
+				@Override
+				public Boolean call() throws Exception
+				{
+					return warmUp(application, clazz);
+				}
+			});
+		}
+
+		int count = 0;
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads,
+			Math.max(1, tasks.size())), new WarmupThreadFactory(application.getName()));
+		try
+		{
+			for (Future<Boolean> result : executor.invokeAll(tasks))
+			{
+				if (result.get())
+				{
+					count++;
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			log.warn("The markup warmup of application '{}' has been interrupted",
+				application.getName());
+		}
+		catch (ExecutionException e)
+		{
+			throw new WicketRuntimeException("Markup warmup failed", e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		warmedUpCount = count;
+		duration = Duration.elapsed(start);
+		log.info(
+			"Loaded the markup of {} of {} classes of application '{}' in {}, skipped {} classes",
+			new Object[] { count, classes.size(), application.getName(), duration,
+					classes.size() - count });
+		return duration;
+	}
+
+	/**
+	 * Loads the markup of a single class for all configured locales and styles.
+	 * 
+	 * @param application
+	 * @param clazz
+	 * @return {@code true} if the markup has been loaded, {@code false} if the class has been
+	 *         skipped
+	 */
+	private boolean warmUp(final Application application, final Class<? extends MarkupContainer> clazz)
+	{
+		ThreadContext.setApplication(application);
+		try
+		{
+			MockWebRequest request = new MockWebRequest(Url.parse(""));
+			MockWebResponse response = new MockWebResponse();
+			RequestCycle requestCycle = application.createRequestCycle(request, response);
+			ThreadContext.setRequestCycle(requestCycle);
+			Session session = application.newSession(request, response);
+			ThreadContext.setSession(session);
+
+			MarkupContainer container = newContainer(clazz);
+
+			List<Locale> sessionLocales = locales.isEmpty() ? Collections.singletonList(session.getLocale())
+				: locales;
+			for (Locale locale : sessionLocales)
+			{
+				session.setLocale(locale);
+				for (String style : styles)
+				{
+					session.setStyle(style);
+					container.getAssociatedMarkup();
+				}
+			}
+			return true;
+		}
+		catch (VirtualMachineError e)
+		{
+			throw e;
+		}
+		catch (Throwable t)
+		{
+			// e.g. an ExceptionInInitializerError or NoClassDefFoundError of a single class must
+			// not abort the whole warmup
+			log.debug("Unable to load the markup of " + clazz.getName(), t);
+			return false;
+		}
+		finally
+		{
+			ThreadContext.detach();
+		}
+	}
+
+	/**
+	 * Creates an instance of the given class to load the markup for. Pages are created by the
+	 * {@link org.apache.wicket.IPageFactory page factory}, all other containers with their
+	 * {@code (String id)} constructor and added to a dummy page.
+	 * 
+	 * @param clazz
+	 * @return the container
+	 * @throws RuntimeException
+	 *             if the container could not be created
+	 */
+	protected MarkupContainer newContainer(final Class<? extends MarkupContainer> clazz)
+	{
+		if (Page.class.isAssignableFrom(clazz))
+		{
+			return Application.get().getPageFactory().newPage(clazz.asSubclass(Page.class));
+		}
+
+		try
+		{
+			Constructor<? extends MarkupContainer> constructor = clazz.getConstructor(String.class);
+			MarkupContainer container = constructor.newInstance("warmup");
+			new WarmupPage().add(container);
+			return container;
+		}
+		catch (Exception e)
+		{
+			throw new WicketRuntimeException("Unable to create " + clazz.getName(), e);
+		}
+	}
+
+	/**
+	 * Decides whether the markup of the given class is to be loaded. By default these are the
+	 * public, concrete and top level or static nested pages, panels and borders.
+	 * 
+	 * @param clazz
+	 * @return {@code true} if the markup of the class should be loaded
+	 */
+	protected boolean accept(final Class<?> clazz)
+	{
+		int modifiers = clazz.getModifiers();
+		if (Modifier.isPublic(modifiers) == false || Modifier.isAbstract(modifiers) ||
+			(clazz.isMemberClass() && Modifier.isStatic(modifiers) == false))
+		{
+			return false;
+		}
+
+		if (Page.class.isAssignableFrom(clazz))
+		{
+			return Application.get().getPageFactory().isBookmarkable(clazz.asSubclass(Page.class));
+		}
+		return Panel.class.isAssignableFrom(clazz) || Border.class.isAssignableFrom(clazz);
+	}
+
+	/**
+	 * Finds the classes in the configured packages whose markup is to be loaded.
+	 * 
+	 * @param application
+	 * @return the classes
+	 */
+	private List<Class<? extends MarkupContainer>> scan(final Application application)
+	{
+		IClassResolver resolver = application.getApplicationSettings().getClassResolver();
+
+		Set<String> classNames = new TreeSet<String>();
+		for (String packageName : packageNames)
+		{
+			String path = packageName.replace('.', '/');
+			Iterator<URL> urls = resolver.getResources(path);
+			while (urls.hasNext())
+			{
+				URL url = urls.next();
+				try
+				{
+					scan(url, path, classNames);
+				}
+				catch (IOException e)
+				{
+					log.warn("Unable to scan " + url, e);
+				}
+			}
+		}
+
+		List<Class<? extends MarkupContainer>> classes = new ArrayList<Class<? extends MarkupContainer>>();
+		ThreadContext context = ThreadContext.detach();
+		ThreadContext.setApplication(application);
+		try
+		{
+			for (String className : classNames)
+			{
+				try
+				{
+					Class<?> clazz = resolver.resolveClass(className);
+					if (MarkupContainer.class.isAssignableFrom(clazz) && accept(clazz))
+					{
+						classes.add(clazz.asSubclass(MarkupContainer.class));
+					}
+				}
+				catch (ClassNotFoundException e)
+				{
+					log.debug("Unable to load class {}", className);
+				}
+				catch (LinkageError e)
+				{
+					log.debug("Unable to load class {}: {}", className, e.getMessage());
+				}
+			}
+		}
+		finally
+		{
+			ThreadContext.restore(context);
+		}
+		return classes;
+	}
+
+	/**
+	 * Collects the names of the top level and nested classes found at the url, which is either a
+	 * directory or a directory in a jar.
+	 */
+	private void scan(final URL url, final String path, final Set<String> classNames)
+		throws IOException
+	{
+		if ("file".equals(url.getProtocol()))
+		{
+			try
+			{
+				scan(new File(url.toURI()), path, classNames);
+			}
+			catch (URISyntaxException e)
+			{
+				throw new IOException(e.getMessage());
+			}
+			return;
+		}
+
+		URLConnection connection = url.openConnection();
+		if (connection instanceof JarURLConnection)
+		{
+			connection.setUseCaches(false);
+			JarFile jar = ((JarURLConnection)connection).getJarFile();
+			try
+			{
+				Enumeration<JarEntry> entries = jar.entries();
+				while (entries.hasMoreElements())
+				{
+					String name = entries.nextElement().getName();
+					if (name.startsWith(path + '/'))
+					{
+						addClassName(name, classNames);
+					}
+				}
+			}
+			finally
+			{
+				jar.close();
+			}
+		}
+		else
+		{
+			log.warn("Unable to scan {}, only directories and jar files are supported", url);
+		}
+	}
+
+	private void scan(final File directory, final String path, final Set<String> classNames)
+	{
+		File[] files = directory.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				String name = path + '/' + file.getName();
+				if (file.isDirectory())
+				{
+					scan(file, name, classNames);
+				}
+				else
+				{
+					addClassName(name, classNames);
+				}
+			}
+		}
+	}
+
+	private static void addClassName(final String resourceName, final Set<String> classNames)
+	{
+		// anonymous classes have no markup of their own
+		if (resourceName.endsWith(CLASS_EXTENSION) &&
+			resourceName.matches(".*\\$[0-9]+[^/]*") == false)
+		{
+			classNames.add(resourceName.substring(0,
+				resourceName.length() - CLASS_EXTENSION.length()).replace('/', '.'));
+		}
+	}
+
+	/**
+	 * The page panels and borders are added to, it has no markup of its own
+	 */
+	private static class WarmupPage extends WebPage
+	{
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Creates daemon threads named after the application
+	 */
+	private static class WarmupThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger counter = new AtomicInteger();
+
+		private final String applicationName;
+
+		private WarmupThreadFactory(final String applicationName)
+		{
+			this.applicationName = applicationName;
+		}
+
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "Wicket-MarkupWarmup-" + applicationName + "-" +
+				counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -26,6 +26,8 @@ package org.apache.wicket.markup;
  */
 public final class RawMarkup extends MarkupElement
 {
+	private static final long serialVersionUID = 1L;
+
 	/** The raw markup string * */
 	private final CharSequence string;
 
@@ -87,6 +89,15 @@ public final class RawMarkup extends MarkupElement
 		return string.hashCode();
 	}
 
+	/**
+	 * @see org.apache.wicket.markup.MarkupElement#isImmutable()
+	 */
+	@Override
+	protected boolean isImmutable()
+	{
+		return true;
+	}
+
 	/**
 	 * @see org.apache.wicket.markup.MarkupElement#toCharSequence()
 	 */
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.head;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Component;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.html.IStaticHeaderContributor;
+import org.apache.wicket.markup.outputcache.RecordingHeaderResponse;
+
+/**
+ * Caches the header items of {@link IStaticHeaderContributor}s per class. The first instance of a
+ * class renders its header items as usual while they are recorded, all later instances render the
+ * recorded items without calling {@code renderHead()}.
+ * 
+ * @see IStaticHeaderContributor
+ */
+public class HeaderContributionCache
+{
+	private static final MetaDataKey<HeaderContributionCache> KEY =
+		new MetaDataKey<HeaderContributionCache>()
+		{
+			private static final long serialVersionUID = 1L;
+		};
+
+	private final ConcurrentMap<Class<?>, List<HeaderItem>> contributions =
+		new ConcurrentHashMap<Class<?>, List<HeaderItem>>();
+
+	/**
+	 * Renders the header contribution of the component, the component must be an
+	 * {@link IStaticHeaderContributor}.
+	 * 
+	 * @param component
+	 * @param response
+	 */
+	public void renderHead(final Component component, final IHeaderResponse response)
+	{
+		List<HeaderItem> items = contributions.get(component.getClass());
+		if (items != null)
+		{
+			render(items, response);
+			return;
+		}
+
+		RecordingHeaderResponse recording = new RecordingHeaderResponse(response);
+		component.renderHead(component, recording);
+		contributions.putIfAbsent(component.getClass(),
+			new ArrayList<HeaderItem>(recording.getItems()));
+	}
+
+	/**
+	 * Renders the header contribution of the behavior, the behavior must be an
+	 * {@link IStaticHeaderContributor}.
+	 * 
+	 * @param component
+	 *            the component the behavior is attached to
+	 * @param behavior
+	 * @param response
+	 */
+	public void renderHead(final Component component, final Behavior behavior,
+		final IHeaderResponse response)
+	{
+		List<HeaderItem> items = contributions.get(behavior.getClass());
+		if (items != null)
+		{
+			render(items, response);
+			return;
+		}
+
+		RecordingHeaderResponse recording = new RecordingHeaderResponse(response);
+		behavior.renderHead(component, recording);
+		contributions.putIfAbsent(behavior.getClass(),
+			new ArrayList<HeaderItem>(recording.getItems()));
+	}
+
+	private static void render(final List<HeaderItem> items, final IHeaderResponse response)
+	{
+		for (int i = 0; i < items.size(); i++)
+		{
+			response.render(items.get(i));
+		}
+	}
+
+	/**
+	 * @return the number of classes with a cached contribution
+	 */
+	public int size()
+	{
+		return contributions.size();
+	}
+
+	/**
+	 * Removes all cached contributions.
+	 */
+	public void clear()
+	{
+		contributions.clear();
+	}
+
+	/**
+	 * @param application
+	 * @return the header contribution cache of the application
+	 */
+	public static HeaderContributionCache get(final Application application)
+	{
+		HeaderContributionCache cache = application.getMetaData(KEY);
+		if (cache == null)
+		{
+			synchronized (application)
+			{
+				cache = application.getMetaData(KEY);
+				if (cache == null)
+				{
+					cache = new HeaderContributionCache();
+					application.setMetaData(KEY, cache);
+				}
+			}
+		}
+		return cache;
+	}
+}
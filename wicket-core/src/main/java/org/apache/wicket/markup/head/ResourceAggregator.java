@@ -19,6 +19,7 @@ package org.apache.wicket.markup.head;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -173,6 +174,13 @@ public class ResourceAggregator extends DecoratingHeaderResponse
 	private final List<OnDomReadyHeaderItem> domReadyItemsToBeRendered;
 	private final List<OnLoadHeaderItem> loadItemsToBeRendered;
 
+	/**
+	 * The items to record for a rendered item, i.e. its (transitive) dependencies followed by the
+	 * item itself. Computed once per item, so rendering the same item again does not walk its
+	 * dependencies again.
+	 */
+	private final Map<HeaderItem, List<HeaderItem>> recordOrders;
+
 	private Object renderBase;
 	private int indexInRenderBase;
 	private int indexInRequest;
@@ -189,6 +197,7 @@ public class ResourceAggregator extends DecoratingHeaderResponse
 		itemsToBeRendered = new LinkedHashMap<HeaderItem, RecordedHeaderItem>();
 		domReadyItemsToBeRendered = new ArrayList<OnDomReadyHeaderItem>();
 		loadItemsToBeRendered = new ArrayList<OnLoadHeaderItem>();
+		recordOrders = new HashMap<HeaderItem, List<HeaderItem>>();
 	}
 
 	@Override
@@ -214,9 +223,8 @@ public class ResourceAggregator extends DecoratingHeaderResponse
 		return ret;
 	}
 
-	private void recordHeaderItem(HeaderItem item, Set<HeaderItem> depsDone)
+	private void recordHeaderItem(HeaderItem item)
 	{
-		renderDependencies(item, depsDone);
 		RecordedHeaderItem recordedItem = itemsToBeRendered.get(item);
 		if (recordedItem == null)
 		{
@@ -228,13 +236,52 @@ public class ResourceAggregator extends DecoratingHeaderResponse
 		indexInRequest++;
 	}
 
-	private void renderDependencies(HeaderItem item, Set<HeaderItem> depsDone)
+	/**
+	 * Records the dependencies of the item and, if {@code includeItem} is true, the item itself.
+	 * 
+	 * @param item
+	 * @param includeItem
+	 */
+	private void recordHeaderItems(HeaderItem item, boolean includeItem)
+	{
+		List<HeaderItem> recordOrder = recordOrders.get(item);
+		if (recordOrder == null)
+		{
+			recordOrder = new ArrayList<HeaderItem>();
+			Set<HeaderItem> depsDone = new LinkedHashSet<HeaderItem>();
+			if (includeItem)
+			{
+				depsDone.add(item);
+				collectHeaderItem(item, depsDone, recordOrder);
+			}
+			else
+			{
+				collectDependencies(item, depsDone, recordOrder);
+			}
+			recordOrders.put(item, recordOrder);
+		}
+
+		for (HeaderItem curItem : recordOrder)
+		{
+			recordHeaderItem(curItem);
+		}
+	}
+
+	private void collectHeaderItem(HeaderItem item, Set<HeaderItem> depsDone,
+		List<HeaderItem> recordOrder)
+	{
+		collectDependencies(item, depsDone, recordOrder);
+		recordOrder.add(item);
+	}
+
+	private void collectDependencies(HeaderItem item, Set<HeaderItem> depsDone,
+		List<HeaderItem> recordOrder)
 	{
 		for (HeaderItem curDependency : item.getDependencies())
 		{
 			if (depsDone.add(curDependency))
 			{
-				recordHeaderItem(curDependency, depsDone);
+				collectHeaderItem(curDependency, depsDone, recordOrder);
 			}
 			else
 			{
@@ -249,19 +296,17 @@ public class ResourceAggregator extends DecoratingHeaderResponse
 	{
 		if (item instanceof OnDomReadyHeaderItem)
 		{
-			renderDependencies(item, new LinkedHashSet<HeaderItem>());
+			recordHeaderItems(item, false);
 			domReadyItemsToBeRendered.add((OnDomReadyHeaderItem)item);
 		}
 		else if (item instanceof OnLoadHeaderItem)
 		{
-			renderDependencies(item, new LinkedHashSet<HeaderItem>());
+			recordHeaderItems(item, false);
 			loadItemsToBeRendered.add((OnLoadHeaderItem)item);
 		}
 		else
 		{
-			Set<HeaderItem> depsDone = new LinkedHashSet<HeaderItem>();
-			depsDone.add(item);
-			recordHeaderItem(item, depsDone);
+			recordHeaderItems(item, true);
 		}
 	}
 
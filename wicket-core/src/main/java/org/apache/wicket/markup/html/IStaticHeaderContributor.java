@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.html;
+
+/**
+ * Marks a component or behavior whose header contribution only depends on its class, i.e. its
+ * {@code renderHead()} renders the same {@link org.apache.wicket.markup.head.HeaderItem}s for all
+ * its instances.
+ * <p>
+ * The header items of such contributors are recorded once per class by the
+ * {@link org.apache.wicket.markup.head.HeaderContributionCache} and rendered again for all other
+ * instances, without calling {@code renderHead()}. The contribution must thus not depend on the
+ * state of the instance, e.g. its markup id, model or callback urls.
+ * 
+ * <pre>
+ * class DatePickerPanel extends Panel implements IStaticHeaderContributor
+ * {
+ * 	public void renderHead(IHeaderResponse response)
+ * 	{
+ * 		response.render(JavaScriptHeaderItem.forReference(DATEPICKER_JS));
+ * 		response.render(CssHeaderItem.forReference(DATEPICKER_CSS));
+ * 	}
+ * }
+ * </pre>
+ */
+public interface IStaticHeaderContributor
+{
+}
@@ -108,7 +108,7 @@ public class BorderBehavior extends Behavior
 			}
 			if (insideBorderMarkup)
 			{
-				response.write(elem.toCharSequence());
+				elem.writeTo(response);
 			}
 		}
 
@@ -144,7 +144,7 @@ public class BorderBehavior extends Behavior
 							", expected tag: </wicket:border>");
 				}
 			}
-			response.write(elem.toCharSequence());
+			elem.writeTo(response);
 		}
 	}
 
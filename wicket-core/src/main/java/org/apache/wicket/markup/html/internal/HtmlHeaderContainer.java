@@ -33,8 +33,10 @@ import org.apache.wicket.markup.head.PageHeaderItem;
 import org.apache.wicket.markup.head.internal.HeaderResponse;
 import org.apache.wicket.markup.html.TransparentWebMarkupContainer;
 import org.apache.wicket.markup.renderStrategy.AbstractHeaderRenderStrategy;
+import org.apache.wicket.protocol.http.StreamingWebResponse;
 import org.apache.wicket.request.Response;
 import org.apache.wicket.response.StringResponse;
+import org.apache.wicket.util.lang.Args;
 
 
 /**
@@ -192,6 +194,12 @@ public class HtmlHeaderContainer extends TransparentWebMarkupContainer
 					webResponse.write("</head>");
 				}
 			}
+
+			// send the complete header while the body is rendered
+			if (webResponse instanceof StreamingWebResponse)
+			{
+				((StreamingWebResponse)webResponse).flush();
+			}
 		}
 		finally
 		{
@@ -352,6 +360,20 @@ public class HtmlHeaderContainer extends TransparentWebMarkupContainer
 		return headerResponse;
 	}
 
+	/**
+	 * THIS METHOD IS NOT PART OF THE WICKET PUBLIC API. DO NOT USE IT!
+	 * <p>
+	 * Replaces the header response for the remainder of the header rendering, e.g. to record the
+	 * header items contributed by a part of the component hierarchy.
+	 * 
+	 * @param headerResponse
+	 *            the header response to use
+	 */
+	public final void internalSetHeaderResponse(final IHeaderResponse headerResponse)
+	{
+		this.headerResponse = Args.notNull(headerResponse, "headerResponse");
+	}
+
 	@Override
 	public IMarkupFragment getMarkup()
 	{
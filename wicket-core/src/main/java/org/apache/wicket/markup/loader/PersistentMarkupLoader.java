@@ -0,0 +1,470 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.loader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.Markup;
+import org.apache.wicket.markup.MarkupElement;
+import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.markup.MarkupResourceStream;
+import org.apache.wicket.markup.parser.IMarkupFilter;
+import org.apache.wicket.markup.parser.XmlTag;
+import org.apache.wicket.settings.IMarkupSettings;
+import org.apache.wicket.util.io.ByteArrayOutputStream;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+import org.apache.wicket.util.string.Strings;
+import org.apache.wicket.util.time.Time;
+import org.apache.wicket.util.value.IValueMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A drop-in replacement for {@link DefaultMarkupLoader} which keeps the parsed markup in files, so
+ * that it doesn't have to be parsed again after a restart of the application.
+ * <p>
+ * The {@link MarkupElement}s of each parsed markup file are serialized into a file of their own.
+ * An entry is valid as long as the last modification time and the length of the markup resource,
+ * the markup settings, the markup filters and the Wicket version are unchanged. Invalid entries
+ * are parsed again and replaced. Markup inheritance is applied on every load, like with
+ * {@link DefaultMarkupLoader}.
+ * </p>
+ * <p>
+ * Only the classes markup is made of can be read from the files, i.e. {@link MarkupElement}s,
+ * {@link XmlTag}s, their attributes and the {@link Behavior}s added by markup filters. Markup
+ * containing anything else is not stored.
+ * </p>
+ * Since {@link MarkupFactory#getMarkupLoader()} returns a new loader for each markup by default,
+ * the loader should be kept in the factory:
+ * 
+ * <pre>
+ * <code>
+ * getMarkupSettings().setMarkupFactory(new MarkupFactory()
+ * {
+ * 	private final IMarkupLoader markupLoader = new PersistentMarkupLoader();
+ * 
+ * 	public IMarkupLoader getMarkupLoader()
+ * 	{
+ * 		return markupLoader;
+ * 	}
+ * });
+ * </code>
+ * </pre>
+ * 
+ * @see MarkupElement
+ */
+public class PersistentMarkupLoader implements IMarkupLoader
+{
+	private static final Logger log = LoggerFactory.getLogger(PersistentMarkupLoader.class);
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final String FILE_EXTENSION = ".markup";
+
+	/**
+	 * The folder to keep the files in, {@code null} to use a folder in the file store folder of
+	 * the application
+	 */
+	private final File folder;
+
+	/**
+	 * Parses the markup not found in the files
+	 */
+	private final IMarkupLoader parsingLoader = new SimpleMarkupLoader();
+
+	/**
+	 * Loads the parsed markup from the files
+	 */
+	private final IMarkupLoader persistentLoader = new IMarkupLoader()
+	{
+		@Override
+		public Markup loadMarkup(final MarkupContainer container,
+			final MarkupResourceStream markupResourceStream, final IMarkupLoader baseLoader,
+			final boolean enforceReload) throws IOException, ResourceStreamNotFoundException
+		{
+			return loadParsedMarkup(container, markupResourceStream, enforceReload);
+		}
+	};
+
+	private final AtomicLong restored = new AtomicLong();
+
+	private final AtomicLong stored = new AtomicLong();
+
+	/**
+	 * The markup classes a serialization failure has been logged for already
+	 */
+	private final Set<String> unserializable = Collections.newSetFromMap(
+		new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Construct a loader which keeps its files in the file store folder of the application.
+	 * 
+	 * @see org.apache.wicket.settings.IStoreSettings#getFileStoreFolder()
+	 */
+	public PersistentMarkupLoader()
+	{
+		this(null);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param folder
+	 *            the folder to keep the files in
+	 */
+	public PersistentMarkupLoader(final File folder)
+	{
+		this.folder = folder;
+	}
+
+	/**
+	 * @see org.apache.wicket.markup.loader.IMarkupLoader#loadMarkup(org.apache.wicket.MarkupContainer,
+	 *      org.apache.wicket.markup.MarkupResourceStream,
+	 *      org.apache.wicket.markup.loader.IMarkupLoader, boolean)
+	 */
+	@Override
+	public final Markup loadMarkup(final MarkupContainer container,
+		final MarkupResourceStream markupResourceStream, final IMarkupLoader baseLoader,
+		final boolean enforceReload) throws IOException, ResourceStreamNotFoundException
+	{
+		IMarkupLoader loader = new InheritedMarkupMarkupLoader();
+		return loader.loadMarkup(container, markupResourceStream, persistentLoader, enforceReload);
+	}
+
+	/**
+	 * @return the number of markups which have been loaded from a file instead of being parsed
+	 */
+	public long getRestoredCount()
+	{
+		return restored.get();
+	}
+
+	/**
+	 * @return the number of parsed markups which have been written to a file
+	 */
+	public long getStoredCount()
+	{
+		return stored.get();
+	}
+
+	/**
+	 * @return the folder the files are kept in
+	 */
+	public File getFolder()
+	{
+		if (folder != null)
+		{
+			return folder;
+		}
+		Application application = Application.get();
+		return new File(application.getStoreSettings().getFileStoreFolder(),
+			application.getName() + "-markup");
+	}
+
+	/**
+	 * The key of the configuration the markup is parsed with. A file written with another
+	 * configuration is ignored.
+	 * 
+	 * @param markupResourceStream
+	 * @return the key
+	 */
+	protected String getConfigurationKey(final MarkupResourceStream markupResourceStream)
+	{
+		Application application = Application.get();
+		IMarkupSettings settings = application.getMarkupSettings();
+
+		StringBuilder key = new StringBuilder(512);
+		key.append(application.getFrameworkSettings().getVersion());
+		key.append(';').append(settings.getStripWicketTags());
+		key.append(';').append(settings.getStripComments());
+		key.append(';').append(settings.getCompressWhitespace());
+		key.append(';').append(settings.getDefaultMarkupEncoding());
+		for (IMarkupFilter filter : MarkupFactory.get()
+			.newMarkupParser(markupResourceStream)
+			.getMarkupFilters())
+		{
+			key.append(';').append(filter.getClass().getName());
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Loads the markup from its file or parses it if there is no valid file
+	 */
+	private Markup loadParsedMarkup(final MarkupContainer container,
+		final MarkupResourceStream markupResourceStream, final boolean enforceReload)
+		throws IOException, ResourceStreamNotFoundException
+	{
+		String location = markupResourceStream.locationAsString();
+		Time lastModified = markupResourceStream.lastModifiedTime();
+		if (location == null || lastModified == null)
+		{
+			// no way to tell whether a file is up to date
+			return parsingLoader.loadMarkup(container, markupResourceStream, null, enforceReload);
+		}
+
+		Class<?> markupClass = markupResourceStream.getMarkupClass();
+		String name = (markupClass != null ? markupClass.getName() : "") + '|' + location;
+		File file = new File(getFolder(), digest(name) + FILE_EXTENSION);
+
+		Bytes length = markupResourceStream.length();
+		String key = name + '|' + lastModified.getMilliseconds() + '|' +
+			(length != null ? length.bytes() : -1) + '|' + getConfigurationKey(markupResourceStream);
+
+		if (enforceReload == false && file.exists())
+		{
+			Markup markup = restore(file, key, markupResourceStream);
+			if (markup != null)
+			{
+				restored.incrementAndGet();
+				return markup;
+			}
+		}
+
+		Markup markup = parsingLoader.loadMarkup(container, markupResourceStream, null,
+			enforceReload);
+		store(file, key, markup);
+		return markup;
+	}
+
+	/**
+	 * @return the markup read from the file or {@code null} if the file is not valid
+	 */
+	private Markup restore(final File file, final String key,
+		final MarkupResourceStream markupResourceStream)
+	{
+		InputStream in = null;
+		try
+		{
+			in = new BufferedInputStream(new FileInputStream(file));
+			ObjectInputStream objects = new ClassResolverObjectInputStream(in);
+			if (objects.readInt() != FORMAT_VERSION || key.equals(objects.readObject()) == false)
+			{
+				log.debug("Markup file {} is outdated", file);
+				return null;
+			}
+
+			String encoding = (String)objects.readObject();
+			String doctype = (String)objects.readObject();
+			String wicketNamespace = (String)objects.readObject();
+			@SuppressWarnings("unchecked")
+			List<MarkupElement> elements = (List<MarkupElement>)objects.readObject();
+
+			markupResourceStream.setEncoding(encoding);
+			if (doctype != null)
+			{
+				markupResourceStream.setDoctype("!DOCTYPE " + doctype);
+			}
+			markupResourceStream.setWicketNamespace(wicketNamespace);
+
+			Markup markup = new Markup(markupResourceStream);
+			for (MarkupElement element : elements)
+			{
+				markup.addMarkupElement(element);
+			}
+			markup.makeImmutable();
+			return markup;
+		}
+		catch (Exception e)
+		{
+			log.debug("Unable to read markup file " + file, e);
+			return null;
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Writes the parsed markup to the file. The file is written under another name first so that
+	 * concurrent loads never see a partially written file.
+	 */
+	private void store(final File file, final String key, final Markup markup)
+	{
+		MarkupResourceStream markupResourceStream = markup.getMarkupResourceStream();
+		List<MarkupElement> elements = new ArrayList<MarkupElement>(markup.size());
+		for (int i = 0; i < markup.size(); i++)
+		{
+			elements.add(markup.get(i));
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+		try
+		{
+			ObjectOutputStream objects = new ObjectOutputStream(bytes);
+			objects.writeInt(FORMAT_VERSION);
+			objects.writeObject(key);
+			objects.writeObject(markupResourceStream.getEncoding());
+			objects.writeObject(markupResourceStream.getDoctype());
+			objects.writeObject(markupResourceStream.getWicketNamespace());
+			objects.writeObject(elements);
+			objects.close();
+		}
+		catch (IOException e)
+		{
+			// e.g. user data of a tag which is not serializable
+			Class<?> markupClass = markupResourceStream.getMarkupClass();
+			if (unserializable.add(markupClass != null ? markupClass.getName() : ""))
+			{
+				log.warn("Unable to serialize markup " + markupResourceStream +
+					", it will be parsed after each restart", e);
+			}
+			return;
+		}
+
+		File folder = file.getParentFile();
+		OutputStream out = null;
+		File temp = null;
+		try
+		{
+			folder.mkdirs();
+			temp = File.createTempFile(file.getName(), ".tmp", folder);
+			out = new BufferedOutputStream(new FileOutputStream(temp));
+			bytes.writeTo(out);
+			out.close();
+			out = null;
+
+			file.delete();
+			if (temp.renameTo(file))
+			{
+				stored.incrementAndGet();
+			}
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to write markup file " + file, e);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(out);
+			if (temp != null && temp.exists())
+			{
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * @return the hex encoded SHA-1 digest of the string
+	 */
+	private static String digest(final String string)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			return Strings.toHexString(digest.digest(string.getBytes("UTF-8")));
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return whether instances of the class may be read from a markup file
+	 */
+	private static boolean isMarkupClass(final Class<?> clazz)
+	{
+		if (MarkupElement.class.isAssignableFrom(clazz) || Behavior.class.isAssignableFrom(clazz) ||
+			IValueMap.class.isAssignableFrom(clazz) || Enum.class.isAssignableFrom(clazz))
+		{
+			return true;
+		}
+		if (clazz == XmlTag.class || clazz.getName().startsWith(XmlTag.class.getName() + '$'))
+		{
+			return true;
+		}
+		return clazz == String.class || clazz == Boolean.class || clazz == Integer.class ||
+			clazz == Long.class || clazz == Number.class || clazz == ArrayList.class ||
+			clazz == HashMap.class || clazz == LinkedHashMap.class;
+	}
+
+	/**
+	 * Resolves the classes of the deserialized markup with the
+	 * {@link org.apache.wicket.application.IClassResolver} of the application. Classes which are
+	 * not part of markup are rejected.
+	 */
+	private static class ClassResolverObjectInputStream extends ObjectInputStream
+	{
+		private ClassResolverObjectInputStream(final InputStream in) throws IOException
+		{
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException,
+			ClassNotFoundException
+		{
+			Class<?> clazz;
+			try
+			{
+				clazz = super.resolveClass(desc);
+			}
+			catch (ClassNotFoundException e)
+			{
+				clazz = Application.get()
+					.getApplicationSettings()
+					.getClassResolver()
+					.resolveClass(desc.getName());
+			}
+			if (isMarkupClass(clazz) == false)
+			{
+				throw new InvalidClassException(desc.getName(), "not a markup class");
+			}
+			return clazz;
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException
+		{
+			throw new InvalidClassException("proxy classes are not markup classes");
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import java.util.List;
+
+import org.apache.wicket.markup.head.HeaderItem;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * The output of a component held by an {@link OutputCache}: its markup and the header items
+ * contributed by the component and its children.
+ */
+public final class CachedOutput
+{
+	private final String markup;
+
+	private final List<HeaderItem> headerItems;
+
+	private final Time created;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param markup
+	 *            the rendered markup
+	 * @param headerItems
+	 *            the header items, unmodifiable
+	 */
+	CachedOutput(final String markup, final List<HeaderItem> headerItems)
+	{
+		this.markup = markup;
+		this.headerItems = headerItems;
+		created = Time.now();
+	}
+
+	/**
+	 * @return the rendered markup
+	 */
+	public CharSequence getMarkup()
+	{
+		return markup;
+	}
+
+	/**
+	 * @return the header items contributed by the component and its children in the order they
+	 *         have been rendered
+	 */
+	public List<HeaderItem> getHeaderItems()
+	{
+		return headerItems;
+	}
+
+	/**
+	 * @return when the output has been rendered
+	 */
+	public Time getCreated()
+	{
+		return created;
+	}
+
+	/**
+	 * @return the approximate number of bytes held by this output, not counting the header items
+	 *         which are usually shared
+	 */
+	public long getWeight()
+	{
+		return 2L * markup.length() + 16L * headerItems.size();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[CachedOutput length = " + markup.length() + ", header items = " +
+			headerItems.size() + ", created = " + created + "]";
+	}
+}
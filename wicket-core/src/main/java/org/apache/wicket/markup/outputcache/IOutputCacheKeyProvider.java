@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.util.io.IClusterable;
+
+/**
+ * Derives the key under which the output of a component is cached by an
+ * {@link OutputCachingBehavior}, usually from the model objects the output depends on.
+ * <p>
+ * The key must have proper {@link Object#equals(Object)} and {@link Object#hashCode()}
+ * implementations and must not change once it has been handed out. The component's class, page,
+ * path, locale, style and variation are added to the key by the behavior, they need not be part of
+ * the returned key.
+ * </p>
+ * 
+ * @see OutputCachingBehavior
+ */
+public interface IOutputCacheKeyProvider extends IClusterable
+{
+	/**
+	 * @param component
+	 *            the component whose output is to be cached
+	 * @return the key of the component's current output or {@code null} if the output must not be
+	 *         cached during this request
+	 */
+	Object getCacheKey(Component component);
+}
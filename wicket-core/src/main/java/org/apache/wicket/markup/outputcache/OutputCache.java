@@ -0,0 +1,424 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Component;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.markup.MarkupCache.BoundedCacheImplementation;
+import org.apache.wicket.markup.MarkupCache.Weigher;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.lang.Objects;
+import org.apache.wicket.util.time.Duration;
+
+/**
+ * An application wide cache of component output, shared by all {@link OutputCachingBehavior}s.
+ * <p>
+ * The cache is bounded by the approximate size of the cached outputs, the least frequently used
+ * outputs are evicted first. Outputs can be invalidated by the key provided by an
+ * {@link IOutputCacheKeyProvider}, by the component class or all at once.
+ * </p>
+ * 
+ * @see OutputCachingBehavior
+ */
+public class OutputCache
+{
+	/** the default maximum size of all cached outputs */
+	public static final Bytes DEFAULT_MAX_SIZE = Bytes.megabytes(10);
+
+	private static final MetaDataKey<OutputCache> KEY = new MetaDataKey<OutputCache>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	private final BoundedCacheImplementation<Key, CachedOutput> cache;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong stores = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of all cached outputs
+	 */
+	public OutputCache(final Bytes maxSize)
+	{
+		Args.notNull(maxSize, "maxSize");
+
+		cache = new BoundedCacheImplementation<Key, CachedOutput>(maxSize.bytes(),
+			Weigher.ENTRY_COUNT)
+		{
+			@Override
+			protected long weigh(final Key key, final CachedOutput value)
+			{
+				return Math.max(1, value.getWeight());
+			}
+
+			@Override
+			protected void onEvict(final Key key, final CachedOutput value)
+			{
+				evictions.incrementAndGet();
+				onEvicted(value);
+			}
+		};
+	}
+
+	/**
+	 * Gets the cached output of a component.
+	 * 
+	 * @param component
+	 *            the component
+	 * @param key
+	 *            the key of the output
+	 * @param timeToLive
+	 *            how long the output is valid, {@code null} for no limit
+	 * @return the cached output or {@code null}
+	 */
+	CachedOutput get(final Component component, final Key key, final Duration timeToLive)
+	{
+		CachedOutput output = cache.get(key);
+		if ((output != null) && (timeToLive != null) &&
+			output.getCreated().elapsedSince().greaterThan(timeToLive))
+		{
+			cache.remove(key);
+			output = null;
+		}
+
+		if (output != null)
+		{
+			hits.incrementAndGet();
+			onHit(component, output);
+		}
+		else
+		{
+			misses.incrementAndGet();
+			onMiss(component);
+		}
+		return output;
+	}
+
+	/**
+	 * Puts the output of a component into the cache.
+	 * 
+	 * @param key
+	 *            the key of the output
+	 * @param output
+	 *            the output
+	 */
+	void put(final Key key, final CachedOutput output)
+	{
+		stores.incrementAndGet();
+		cache.put(key, output);
+	}
+
+	/**
+	 * Removes all outputs cached under the given key of an {@link IOutputCacheKeyProvider}, e.g.
+	 * after the model object the key has been derived from has changed.
+	 * 
+	 * @param cacheKey
+	 *            the key returned by an {@link IOutputCacheKeyProvider}
+	 * @return the number of removed outputs
+	 */
+	public int invalidate(final Object cacheKey)
+	{
+		Args.notNull(cacheKey, "cacheKey");
+
+		int count = 0;
+		for (Key key : new ArrayList<Key>(cache.getKeys()))
+		{
+			if (cacheKey.equals(key.cacheKey) && cache.remove(key))
+			{
+				count++;
+			}
+		}
+		invalidations.addAndGet(count);
+		return count;
+	}
+
+	/**
+	 * Removes all cached outputs of the components of the given class.
+	 * 
+	 * @param componentClass
+	 *            the class of the components
+	 * @return the number of removed outputs
+	 */
+	public int invalidate(final Class<? extends Component> componentClass)
+	{
+		Args.notNull(componentClass, "componentClass");
+
+		int count = 0;
+		for (Key key : new ArrayList<Key>(cache.getKeys()))
+		{
+			if (componentClass.getName().equals(key.componentClass) && cache.remove(key))
+			{
+				count++;
+			}
+		}
+		invalidations.addAndGet(count);
+		return count;
+	}
+
+	/**
+	 * Removes all cached outputs.
+	 */
+	public void clear()
+	{
+		invalidations.addAndGet(cache.size());
+		cache.clear();
+	}
+
+	/**
+	 * @return the number of cached outputs
+	 */
+	public int size()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * @return the approximate size in bytes of all cached outputs
+	 */
+	public long getWeight()
+	{
+		return cache.getWeight();
+	}
+
+	/**
+	 * @return the maximum size in bytes of all cached outputs
+	 */
+	public long getMaxWeight()
+	{
+		return cache.getMaxWeight();
+	}
+
+	/**
+	 * @return the number of outputs found in the cache
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of outputs not found in the cache
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of outputs put into the cache
+	 */
+	public long getStoreCount()
+	{
+		return stores.get();
+	}
+
+	/**
+	 * @return the number of outputs evicted because the cache reached its maximum size
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * @return the number of outputs removed by {@link #invalidate(Object)},
+	 *         {@link #invalidate(Class)} or {@link #clear()}
+	 */
+	public long getInvalidationCount()
+	{
+		return invalidations.get();
+	}
+
+	/**
+	 * Resets the hit, miss, store, eviction and invalidation statistics
+	 */
+	public void resetStatistics()
+	{
+		hits.set(0);
+		misses.set(0);
+		stores.set(0);
+		evictions.set(0);
+		invalidations.set(0);
+	}
+
+	/**
+	 * Called when the output of a component has been found in the cache.
+	 * 
+	 * @param component
+	 *            the component
+	 * @param output
+	 *            the cached output
+	 */
+	protected void onHit(final Component component, final CachedOutput output)
+	{
+	}
+
+	/**
+	 * Called when the output of a component has not been found in the cache.
+	 * 
+	 * @param component
+	 *            the component
+	 */
+	protected void onMiss(final Component component)
+	{
+	}
+
+	/**
+	 * Called after an output has been evicted because the cache reached its maximum size.
+	 * 
+	 * @param output
+	 *            the evicted output
+	 */
+	protected void onEvicted(final CachedOutput output)
+	{
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[OutputCache size = " + size() + ", weight = " + getWeight() + ", hits = " +
+			hits + ", misses = " + misses + ", evictions = " + evictions + ", invalidations = " +
+			invalidations + "]";
+	}
+
+	/**
+	 * @param application
+	 * @return the output cache of the application
+	 */
+	public static OutputCache get(final Application application)
+	{
+		OutputCache cache = application.getMetaData(KEY);
+		if (cache == null)
+		{
+			synchronized (application)
+			{
+				cache = application.getMetaData(KEY);
+				if (cache == null)
+				{
+					cache = new OutputCache(DEFAULT_MAX_SIZE);
+					application.setMetaData(KEY, cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Replaces the output cache of an application, e.g. with one of a different size.
+	 * 
+	 * @param application
+	 * @param cache
+	 */
+	public static void set(final Application application, final OutputCache cache)
+	{
+		Args.notNull(cache, "cache");
+
+		application.setMetaData(KEY, cache);
+	}
+
+	/**
+	 * The key of a cached output: the key of the {@link IOutputCacheKeyProvider} qualified by
+	 * everything else the output of a component depends on.
+	 */
+	static final class Key
+	{
+		private final String componentClass;
+
+		private final String pageClass;
+
+		private final String path;
+
+		private final Locale locale;
+
+		private final String style;
+
+		private final String variation;
+
+		/** relative urls in the output depend on the depth of the request url */
+		private final int urlDepth;
+
+		private final Object cacheKey;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param component
+		 * @param urlDepth
+		 * @param cacheKey
+		 */
+		Key(final Component component, final int urlDepth, final Object cacheKey)
+		{
+			componentClass = component.getClass().getName();
+			pageClass = component.getPage().getClass().getName();
+			path = component.getPageRelativePath();
+			locale = component.getLocale();
+			style = component.getStyle();
+			variation = component.getVariation();
+			this.urlDepth = urlDepth;
+			this.cacheKey = cacheKey;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (obj instanceof Key == false)
+			{
+				return false;
+			}
+			Key that = (Key)obj;
+			return urlDepth == that.urlDepth && path.equals(that.path) &&
+				componentClass.equals(that.componentClass) && pageClass.equals(that.pageClass) &&
+				Objects.equal(locale, that.locale) && Objects.equal(style, that.style) &&
+				Objects.equal(variation, that.variation) && cacheKey.equals(that.cacheKey);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hashCode(componentClass, pageClass, path, locale, style, variation,
+				urlDepth, cacheKey);
+		}
+
+		@Override
+		public String toString()
+		{
+			return pageClass + ":" + path + " [" + componentClass + ", " + locale + ", " + style +
+				", " + variation + ", " + urlDepth + ", " + cacheKey + "]";
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import java.util.List;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Component;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.head.HeaderItem;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
+
+/**
+ * Caches the output of a component in the application's {@link OutputCache}: the rendered markup
+ * of the component and its children together with the header items they contribute.
+ * <p>
+ * The output is cached under a key derived by an {@link IOutputCacheKeyProvider}, usually from
+ * the model objects the output depends on, qualified by the component's class, page, path, locale,
+ * style and variation. If the output is found in the cache, neither
+ * {@link Component#onBeforeRender()} nor the render methods of the component and its children are
+ * called, the cached markup is written and the cached header items are rendered instead.
+ * </p>
+ * 
+ * <pre>
+ * add(new ProductPanel(&quot;product&quot;, productModel).add(new OutputCachingBehavior(
+ * 	new IOutputCacheKeyProvider()
+ * 	{
+ * 		public Object getCacheKey(Component component)
+ * 		{
+ * 			Product product = (Product)component.getDefaultModelObject();
+ * 			return product.getId() + &quot;:&quot; + product.getVersion();
+ * 		}
+ * 	})));
+ * </pre>
+ * <p>
+ * Only output which does not depend on the state of the page should be cached: the cached markup
+ * contains the markup ids and urls of the request which rendered it, so stateful links, forms and
+ * components updated by Ajax must not be part of a cached output. The output is neither taken from
+ * nor put into the cache during Ajax requests.
+ * </p>
+ * <p>
+ * A behavior instance must not be shared between components.
+ * </p>
+ * 
+ * @see OutputCache
+ */
+public class OutputCachingBehavior extends Behavior
+{
+	private static final long serialVersionUID = 1L;
+
+	private final IOutputCacheKeyProvider keyProvider;
+
+	private Duration timeToLive;
+
+	/** the key of the output during the current request */
+	private transient OutputCache.Key key;
+
+	/** the output found in the cache during the current request */
+	private transient CachedOutput cached;
+
+	/** the header items recorded during the current request */
+	private transient List<HeaderItem> headerItems;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param keyProvider
+	 *            derives the key under which the output is cached
+	 */
+	public OutputCachingBehavior(final IOutputCacheKeyProvider keyProvider)
+	{
+		this.keyProvider = Args.notNull(keyProvider, "keyProvider");
+	}
+
+	/**
+	 * Sets how long a cached output is used at most.
+	 * 
+	 * @param timeToLive
+	 *            the maximum age of the output, {@code null} for no limit
+	 * @return {@code this} for chaining
+	 */
+	public OutputCachingBehavior setTimeToLive(final Duration timeToLive)
+	{
+		this.timeToLive = timeToLive;
+		return this;
+	}
+
+	/**
+	 * @return the maximum age of the cached output, {@code null} for no limit
+	 */
+	public Duration getTimeToLive()
+	{
+		return timeToLive;
+	}
+
+	/**
+	 * @return the cache the output is held in, by default the application's
+	 */
+	protected OutputCache getOutputCache()
+	{
+		return OutputCache.get(Application.get());
+	}
+
+	/**
+	 * Whether the output of the component may be taken from or put into the cache during the
+	 * current request. By default it may during all but Ajax requests.
+	 * 
+	 * @param component
+	 *            the component
+	 * @return {@code true} if the output may be cached
+	 */
+	protected boolean isCacheable(final Component component)
+	{
+		Request request = RequestCycle.get().getRequest();
+		return (request instanceof WebRequest && ((WebRequest)request).isAjax()) == false;
+	}
+
+	@Override
+	public void onConfigure(final Component component)
+	{
+		super.onConfigure(component);
+
+		reset();
+
+		if (isCacheable(component))
+		{
+			Object cacheKey = keyProvider.getCacheKey(component);
+			if (cacheKey != null)
+			{
+				int urlDepth = RequestCycle.get().getRequest().getClientUrl().getSegments().size();
+				key = new OutputCache.Key(component, urlDepth, cacheKey);
+				cached = getOutputCache().get(component, key, timeToLive);
+			}
+		}
+		component.internalSetOutputCaching(key != null, cached != null);
+	}
+
+	/**
+	 * THIS METHOD IS NOT PART OF THE WICKET PUBLIC API. DO NOT USE IT!
+	 * 
+	 * @return the markup found in the cache during the current request
+	 */
+	public CharSequence getCachedMarkup()
+	{
+		return cached.getMarkup();
+	}
+
+	/**
+	 * THIS METHOD IS NOT PART OF THE WICKET PUBLIC API. DO NOT USE IT!
+	 * 
+	 * @return the header items found in the cache during the current request
+	 */
+	public List<HeaderItem> getCachedHeaderItems()
+	{
+		return cached.getHeaderItems();
+	}
+
+	/**
+	 * THIS METHOD IS NOT PART OF THE WICKET PUBLIC API. DO NOT USE IT!
+	 * <p>
+	 * Called after the header items of the component and its children have been rendered.
+	 * 
+	 * @param component
+	 *            the component
+	 * @param items
+	 *            the rendered header items
+	 */
+	public void onHeadRendered(final Component component, final List<HeaderItem> items)
+	{
+		headerItems = items;
+	}
+
+	/**
+	 * THIS METHOD IS NOT PART OF THE WICKET PUBLIC API. DO NOT USE IT!
+	 * <p>
+	 * Called after the component has been rendered, puts its output into the cache. The output is
+	 * not cached if the header items have not been rendered before, e.g. because the page has no
+	 * header.
+	 * 
+	 * @param component
+	 *            the component
+	 * @param markup
+	 *            the rendered markup
+	 */
+	public void onMarkupRendered(final Component component, final CharSequence markup)
+	{
+		if ((key != null) && (headerItems != null))
+		{
+			getOutputCache().put(key, new CachedOutput(markup.toString(), headerItems));
+		}
+	}
+
+	@Override
+	public void detach(final Component component)
+	{
+		reset();
+
+		super.detach(component);
+	}
+
+	private void reset()
+	{
+		key = null;
+		cached = null;
+		headerItems = null;
+	}
+}
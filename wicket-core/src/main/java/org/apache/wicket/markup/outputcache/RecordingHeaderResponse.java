@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.wicket.markup.head.HeaderItem;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.html.DecoratingHeaderResponse;
+
+/**
+ * A header response which records all header items rendered through it, so that they can be
+ * rendered again later on.
+ */
+public class RecordingHeaderResponse extends DecoratingHeaderResponse
+{
+	private final List<HeaderItem> items = new ArrayList<HeaderItem>();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param real
+	 *            the header response the items are rendered to
+	 */
+	public RecordingHeaderResponse(final IHeaderResponse real)
+	{
+		super(real);
+	}
+
+	@Override
+	public void render(final HeaderItem item)
+	{
+		items.add(item);
+		super.render(item);
+	}
+
+	/**
+	 * @return the recorded header items in the order they have been rendered
+	 */
+	public List<HeaderItem> getItems()
+	{
+		return Collections.unmodifiableList(items);
+	}
+}
@@ -0,0 +1,1115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.text.ParseException;
+
+import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.markup.parser.XmlTag.TagType;
+import org.apache.wicket.markup.parser.XmlTag.TextSegment;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.io.XmlReader;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.string.Strings;
+
+/**
+ * A markup pull parser which produces exactly the same elements as {@link XmlPullParser}, but
+ * scans the markup held in a single <code>char[]</code> in one pass. Tag names and attributes are
+ * located by hand-written scanners which only record int offsets into the buffer, instead of
+ * running the regular expressions of {@link org.apache.wicket.util.parse.metapattern.parsers.TagNameParser}
+ * and {@link org.apache.wicket.util.parse.metapattern.parsers.VariableAssignmentParser} over a
+ * copy of each tag's text. Strings are only created for the values which end up in the
+ * {@link XmlTag}, and the text of body elements is created lazily when {@link #getString()} is
+ * called.
+ * <p>
+ * The parser is not used by default. To use it, override {@link MarkupFactory#newXmlPullParser()}:
+ * 
+ * <pre>
+ * getMarkupSettings().setMarkupFactory(new MarkupFactory()
+ * {
+ * 	protected IXmlPullParser newXmlPullParser()
+ * 	{
+ * 		return new CharArrayXmlPullParser();
+ * 	}
+ * });
+ * </pre>
+ * 
+ * @see XmlPullParser
+ */
+public final class CharArrayXmlPullParser implements IXmlPullParser
+{
+	/**
+	 * Reads the xml data from an input stream and converts the chars according to its encoding
+	 * (<?xml ... encoding="..." ?>)
+	 */
+	private XmlReader xmlReader;
+
+	/** The complete markup */
+	private char[] input;
+
+	/** The number of valid chars in {@link #input} */
+	private int size;
+
+	/** The current read position */
+	private int position;
+
+	/** Start of the text returned by {@link #getInputFromPositionMarker(int)} */
+	private int positionMarker;
+
+	/** The current line number, updated lazily */
+	private int lineNumber = 1;
+
+	/** The current column number, updated lazily */
+	private int columnNumber = 1;
+
+	/** Up to which index lines and columns have been counted */
+	private int lastLineCountIndex;
+
+	/** temporary variable which will hold the name of the closing tag. */
+	private String skipUntilText;
+
+	/** The last substring selected from the input; null if not yet created */
+	private CharSequence lastText;
+
+	/** Offsets of the last body text, used to create {@link #lastText} on demand */
+	private int lastTextStart;
+
+	private int lastTextEnd;
+
+	/** Everything in between &lt;!DOCTYPE ... &gt; */
+	private CharSequence doctype;
+
+	/** The type of what is in lastText */
+	private HttpTagType lastType = HttpTagType.NOT_INITIALIZED;
+
+	/** The last tag found */
+	private XmlTag lastTag;
+
+	/** Offsets of the attribute matched by {@link #findAttribute(int, int)} */
+	private int keyStart;
+
+	private int keyEnd;
+
+	private int valueStart;
+
+	private int valueEnd;
+
+	private int attributeEnd;
+
+	/**
+	 * Construct.
+	 */
+	public CharArrayXmlPullParser()
+	{
+	}
+
+	@Override
+	public final String getEncoding()
+	{
+		return xmlReader.getEncoding();
+	}
+
+	@Override
+	public final CharSequence getDoctype()
+	{
+		return doctype;
+	}
+
+	@Override
+	public final CharSequence getInputFromPositionMarker(int toPos)
+	{
+		if (toPos < 0)
+		{
+			toPos = size;
+		}
+		else if (toPos < positionMarker)
+		{
+			return "";
+		}
+		return new String(input, positionMarker, toPos - positionMarker);
+	}
+
+	@Override
+	public final CharSequence getInput(final int fromPos, final int toPos)
+	{
+		return new String(input, fromPos, toPos - fromPos);
+	}
+
+	@Override
+	public final HttpTagType next() throws ParseException
+	{
+		// Reached end of markup file?
+		if (position >= size)
+		{
+			return HttpTagType.NOT_INITIALIZED;
+		}
+
+		if (skipUntilText != null)
+		{
+			skipUntil();
+			return lastType;
+		}
+
+		// Any more tags in the markup?
+		final int openBracketIndex = indexOf('<', position);
+
+		// Tag or Body?
+		if (input[position] != '<')
+		{
+			// It's a BODY. Like XmlPullParser it starts at the position marker.
+			if (openBracketIndex == -1)
+			{
+				setBodyText(positionMarker, size);
+				position = size;
+			}
+			else
+			{
+				setBodyText(positionMarker, openBracketIndex);
+				position = openBracketIndex;
+			}
+			lastType = HttpTagType.BODY;
+			return lastType;
+		}
+
+		// Determine the line number
+		countLinesTo(openBracketIndex);
+
+		// Get index of closing tag and advance past the tag
+		int closeBracketIndex = -1;
+		if (openBracketIndex < size - 1)
+		{
+			final char nextChar = input[openBracketIndex + 1];
+			if ((nextChar == '!') || (nextChar == '?'))
+			{
+				closeBracketIndex = indexOf('>', openBracketIndex);
+			}
+			else
+			{
+				closeBracketIndex = findOutOfQuotes('>', openBracketIndex);
+			}
+		}
+
+		if (closeBracketIndex == -1)
+		{
+			throw new ParseException("No matching close bracket at" + getLineAndColumnText(),
+				position);
+		}
+
+		// The tag text between open and close brackets
+		int textStart = openBracketIndex + 1;
+		int textEnd = closeBracketIndex;
+		if (textStart == textEnd)
+		{
+			throw new ParseException("Found empty tag: '<>' at" + getLineAndColumnText(),
+				position);
+		}
+
+		// Type of the tag, to be determined next
+		final TagType type;
+
+		// If the tag ends in '/', it's a "simple" tag like <foo/>
+		if (input[textEnd - 1] == '/')
+		{
+			type = TagType.OPEN_CLOSE;
+			textEnd--;
+		}
+		else if (input[textStart] == '/')
+		{
+			// The tag text starts with a '/', it's a simple close tag
+			type = TagType.CLOSE;
+			textStart++;
+		}
+		else
+		{
+			// It must be an open tag
+			type = TagType.OPEN;
+
+			// If open tag and starts with "s" like "script" or "style", than ...
+			if ((textEnd - textStart > XmlPullParser.STYLE.length()) &&
+				((input[textStart] == 's') || (input[textStart] == 'S')))
+			{
+				if (regionMatchesIgnoreCase(textStart, XmlPullParser.SCRIPT))
+				{
+					// prepare to skip everything between the open and close tag
+					skipUntilText = XmlPullParser.SCRIPT;
+				}
+				else if (regionMatchesIgnoreCase(textStart, XmlPullParser.STYLE))
+				{
+					// prepare to skip everything between the open and close tag
+					skipUntilText = XmlPullParser.STYLE;
+				}
+			}
+		}
+
+		if (textStart == textEnd)
+		{
+			// e.g. "</>"
+			throw new ParseException("Malformed tag" + getLineAndColumnText(), openBracketIndex);
+		}
+
+		// Handle special tags like <!-- and <![CDATA ...
+		final char firstChar = input[textStart];
+		if ((firstChar == '!') || (firstChar == '?'))
+		{
+			specialTagHandling(textStart, textEnd, openBracketIndex, closeBracketIndex);
+
+			countLinesTo(openBracketIndex);
+			TextSegment text = new TextSegment(lastText, openBracketIndex, lineNumber,
+				columnNumber);
+			lastTag = new XmlTag(text, type);
+
+			return lastType;
+		}
+
+		lastText = new String(input, openBracketIndex, closeBracketIndex + 1 - openBracketIndex);
+		TextSegment text = new TextSegment(lastText, openBracketIndex, lineNumber, columnNumber);
+		XmlTag tag = new XmlTag(text, type);
+		lastTag = tag;
+
+		// Parse the tag text and populate tag attributes
+		if (parseTagText(tag, textStart, textEnd))
+		{
+			// Move to position after the tag
+			position = closeBracketIndex + 1;
+			lastType = HttpTagType.TAG;
+			return lastType;
+		}
+		else
+		{
+			throw new ParseException("Malformed tag" + getLineAndColumnText(), openBracketIndex);
+		}
+	}
+
+	/**
+	 * Handle special tags like <!-- --> or <![CDATA[..]]> or <?xml>
+	 * 
+	 * @param textStart
+	 *            start of the text between the brackets
+	 * @param textEnd
+	 *            end (exclusive) of the text between the brackets
+	 * @param openBracketIndex
+	 * @param closeBracketIndex
+	 * @throws ParseException
+	 */
+	private void specialTagHandling(final int textStart, final int textEnd,
+		final int openBracketIndex, int closeBracketIndex) throws ParseException
+	{
+		// Handle comments
+		if (regionMatches(textStart, textEnd, "!--"))
+		{
+			// downlevel-revealed conditional comments e.g.: <!--[if (gt IE9)|!(IE)]><!-->
+			if (indexOf("![endif]--", textStart, textEnd) != -1)
+			{
+				lastText = getInput(openBracketIndex, closeBracketIndex + 1);
+				lastType = HttpTagType.CONDITIONAL_COMMENT_ENDIF;
+
+				// Move to position after the tag
+				position = closeBracketIndex + 1;
+				return;
+			}
+
+			// Conditional comment? E.g.
+			// "<!--[if IE]><a href='test.html'>my link</a><![endif]-->"
+			if (regionMatches(textStart, textEnd, "!--[if ") && (input[textEnd - 1] == ']'))
+			{
+				int pos = indexOf("]-->", openBracketIndex + 1, size);
+				if (pos == -1)
+				{
+					throw new ParseException("Unclosed conditional comment beginning at" +
+						getLineAndColumnText(), openBracketIndex);
+				}
+
+				pos += 4;
+				lastText = getInput(openBracketIndex, pos);
+
+				// Actually it is no longer a comment. It is now
+				// up to the browser to select the section appropriate.
+				position = closeBracketIndex + 1;
+				lastType = HttpTagType.CONDITIONAL_COMMENT;
+			}
+			else
+			{
+				// Normal comment section. Skip ahead to "-->" as the comment might contain a '>'
+				int pos = indexOf("-->", openBracketIndex + 1, size);
+				if (pos == -1)
+				{
+					throw new ParseException("Unclosed comment beginning at" +
+						getLineAndColumnText(), openBracketIndex);
+				}
+
+				pos += 3;
+				lastText = getInput(openBracketIndex, pos);
+				lastType = HttpTagType.COMMENT;
+				position = pos;
+			}
+			return;
+		}
+
+		// The closing tag of a conditional comment, e.g.
+		// "<!--[if IE]><a href='test.html'>my link</a><![endif]-->
+		// and also <!--<![endif]-->"
+		if ((textEnd - textStart == 10) && regionMatches(textStart, textEnd, "![endif]--"))
+		{
+			lastText = getInput(openBracketIndex, closeBracketIndex + 1);
+			lastType = HttpTagType.CONDITIONAL_COMMENT_ENDIF;
+			position = closeBracketIndex + 1;
+			return;
+		}
+
+		// CDATA sections might contain "<" which is not part of an XML tag.
+		// Make sure escaped "<" are treated right
+		if ((textEnd - textStart >= 8) && regionMatchesIgnoreCase(textStart, "![CDATA["))
+		{
+			int pos1 = openBracketIndex;
+			do
+			{
+				// Get index of closing tag and advance past the tag
+				closeBracketIndex = findChar('>', pos1);
+				if (closeBracketIndex == -1)
+				{
+					throw new ParseException("No matching close bracket at" +
+						getLineAndColumnText(), position);
+				}
+
+				pos1 = closeBracketIndex + 1;
+			}
+			while ((closeBracketIndex - openBracketIndex < 3) ||
+				(input[closeBracketIndex - 1] != ']') || (input[closeBracketIndex - 2] != ']'));
+
+			// Move to position after the tag
+			position = closeBracketIndex + 1;
+
+			lastText = getInput(openBracketIndex + 1, closeBracketIndex);
+			lastType = HttpTagType.CDATA;
+			return;
+		}
+
+		lastText = getInput(openBracketIndex, closeBracketIndex + 1);
+
+		if (input[textStart] == '?')
+		{
+			lastType = HttpTagType.PROCESSING_INSTRUCTION;
+		}
+		else if (regionMatches(textStart, textEnd, "!DOCTYPE"))
+		{
+			lastType = HttpTagType.DOCTYPE;
+
+			// Get the tagtext between open and close brackets
+			doctype = getInput(openBracketIndex + 1, closeBracketIndex);
+		}
+		else
+		{
+			lastType = HttpTagType.SPECIAL_TAG;
+		}
+
+		// Move to position after the tag
+		position = closeBracketIndex + 1;
+	}
+
+	/**
+	 * Whatever will be in between the current index and the closing tag, will be ignored (and thus
+	 * treated as raw markup (text). This is useful for tags like 'script'.
+	 * 
+	 * @throws ParseException
+	 */
+	private void skipUntil() throws ParseException
+	{
+		final int startIndex = position;
+		final int tagNameLen = skipUntilText.length();
+
+		int pos = position - 1;
+		do
+		{
+			pos = indexOf("</", pos + 1, size);
+			if ((pos == -1) || ((pos + (tagNameLen + 2)) >= size))
+			{
+				throw new ParseException(skipUntilText + " tag not closed" +
+					getLineAndColumnText(), startIndex);
+			}
+		}
+		while (regionMatchesIgnoreCase(pos + 2, skipUntilText) == false);
+
+		position = pos;
+		setBodyText(startIndex, pos);
+		lastType = HttpTagType.BODY;
+
+		// Check that the tag is properly closed
+		if (indexOf('>', pos + 2 + tagNameLen) == -1)
+		{
+			throw new ParseException(skipUntilText + " tag not closed" + getLineAndColumnText(),
+				startIndex);
+		}
+
+		// Reset the state variable
+		skipUntilText = null;
+	}
+
+	/**
+	 * Parses the text between the brackets of a tag. For example, "a href=foo.html". Produces
+	 * the same name, namespace and attributes as the regular expressions used by
+	 * {@link XmlPullParser}, including their handling of malformed attributes which are silently
+	 * skipped.
+	 * 
+	 * @param tag
+	 * @param textStart
+	 * @param textEnd
+	 * @return false in case of an error
+	 * @throws ParseException
+	 */
+	private boolean parseTagText(final XmlTag tag, final int textStart, final int textEnd)
+		throws ParseException
+	{
+		// (namespace:)?name
+		int pos = -1;
+		final int namespaceEnd = scanVariableName(textStart, textEnd);
+		if ((namespaceEnd > textStart) && (namespaceEnd < textEnd) && (input[namespaceEnd] == ':'))
+		{
+			final int nameEnd = scanXmlName(namespaceEnd + 1, textEnd);
+			if (nameEnd > namespaceEnd + 1)
+			{
+				tag.namespace = getInput(textStart, namespaceEnd).toString().toLowerCase();
+				tag.name = getInput(namespaceEnd + 1, nameEnd).toString();
+				pos = nameEnd;
+			}
+		}
+		if (pos == -1)
+		{
+			pos = scanXmlName(textStart, textEnd);
+			if (pos == textStart)
+			{
+				return false;
+			}
+			tag.name = getInput(textStart, pos).toString();
+		}
+
+		// Extract attributes
+		while ((pos < textEnd) && findAttribute(pos, textEnd))
+		{
+			String value;
+			if (valueStart == -1)
+			{
+				// In case like <html xmlns:wicket> there is no value
+				value = "";
+			}
+			else
+			{
+				int start = valueStart;
+				int end = valueEnd;
+
+				// Chop off double quotes or single quotes
+				if ((input[start] == '"') || (input[start] == '\''))
+				{
+					start++;
+					end--;
+				}
+
+				// Trim whitespace like String.trim() does
+				while ((start < end) && (input[start] <= ' '))
+				{
+					start++;
+				}
+				while ((end > start) && (input[end - 1] <= ' '))
+				{
+					end--;
+				}
+
+				value = getInput(start, end).toString();
+				if (value.indexOf('&') != -1)
+				{
+					value = Strings.unescapeMarkup(value).toString();
+				}
+			}
+
+			final String key = getInput(keyStart, keyEnd).toString();
+
+			// Put the attribute in the attributes hash
+			if (null != tag.getAttributes().put(key, value))
+			{
+				throw new ParseException("Same attribute found twice: " + key +
+					getLineAndColumnText(), position);
+			}
+
+			pos = attributeEnd;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Finds the next attribute at or after <code>from</code>, the equivalent of
+	 * <code>VariableAssignmentParser.matcher().find(from)</code>. Text which doesn't form an
+	 * attribute is skipped.
+	 * 
+	 * @param from
+	 * @param to
+	 * @return true if an attribute was found. Its offsets are stored in {@link #keyStart},
+	 *         {@link #keyEnd}, {@link #valueStart} (-1 if none), {@link #valueEnd} and
+	 *         {@link #attributeEnd}.
+	 */
+	private boolean findAttribute(int from, final int to)
+	{
+		while (from < to)
+		{
+			final int start = skipWhitespace(from, to);
+			final int end = scanKey(start, to);
+			if (end != -1)
+			{
+				keyStart = start;
+				keyEnd = end;
+				valueStart = -1;
+
+				int pos = skipWhitespace(end, to);
+				if ((pos < to) && (input[pos] == '='))
+				{
+					final int valuePos = skipWhitespace(pos + 1, to);
+					final int valuePosEnd = scanValue(valuePos, to);
+					if (valuePosEnd != -1)
+					{
+						valueStart = valuePos;
+						valueEnd = valuePosEnd;
+						pos = skipWhitespace(valuePosEnd, to);
+					}
+				}
+				attributeEnd = pos;
+				return true;
+			}
+
+			// every position up to 'start' skips to the same non-matching char
+			from = start + 1;
+		}
+		return false;
+	}
+
+	/**
+	 * Scans an attribute key like "name", "namespace:name" or "namespace:name:subname".
+	 * 
+	 * @param from
+	 * @param to
+	 * @return end of the key or -1 if there is no key at <code>from</code>
+	 */
+	private int scanKey(final int from, final int to)
+	{
+		final int namespaceEnd = scanVariableName(from, to);
+		if ((namespaceEnd > from) && (namespaceEnd < to) && (input[namespaceEnd] == ':'))
+		{
+			final int subStart = namespaceEnd + 1;
+			final int subEnd = scanVariableName(subStart, to);
+			if ((subEnd > subStart) && (subEnd < to) && (input[subEnd] == ':'))
+			{
+				final int end = scanXmlName(subEnd + 1, to);
+				if (end > subEnd + 1)
+				{
+					return end;
+				}
+			}
+
+			final int end = scanXmlName(subStart, to);
+			if (end > subStart)
+			{
+				return end;
+			}
+		}
+
+		final int end = scanXmlName(from, to);
+		return (end > from) ? end : -1;
+	}
+
+	/**
+	 * Scans an attribute value: a run of word chars, '-' and '.', or a single or double quoted
+	 * string.
+	 * 
+	 * @param from
+	 * @param to
+	 * @return end of the value (after the closing quote) or -1 if there is no value
+	 */
+	private int scanValue(final int from, final int to)
+	{
+		if (from >= to)
+		{
+			return -1;
+		}
+
+		final char ch = input[from];
+		if ((ch == '"') || (ch == '\''))
+		{
+			for (int i = from + 1; i < to; i++)
+			{
+				if (input[i] == ch)
+				{
+					return i + 1;
+				}
+			}
+			return -1;
+		}
+
+		int pos = from;
+		while ((pos < to) && (isWordChar(input[pos]) || (input[pos] == '-') || (input[pos] == '.')))
+		{
+			pos++;
+		}
+		return (pos > from) ? pos : -1;
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return end of <code>[A-Za-z_][A-Za-z0-9_]*</code> starting at <code>from</code>, or
+	 *         <code>from</code> if there is none
+	 */
+	private int scanVariableName(final int from, final int to)
+	{
+		if ((from >= to) || !isNameStart(input[from]))
+		{
+			return from;
+		}
+
+		int pos = from + 1;
+		while ((pos < to) && isWordChar(input[pos]))
+		{
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return end of <code>[A-Za-z_][A-Za-z0-9_.-]*</code> starting at <code>from</code>, or
+	 *         <code>from</code> if there is none
+	 */
+	private int scanXmlName(final int from, final int to)
+	{
+		if ((from >= to) || !isNameStart(input[from]))
+		{
+			return from;
+		}
+
+		int pos = from + 1;
+		while (pos < to)
+		{
+			final char ch = input[pos];
+			if (!isWordChar(ch) && (ch != '.') && (ch != '-'))
+			{
+				break;
+			}
+			pos++;
+		}
+		return pos;
+	}
+
+	private int skipWhitespace(int pos, final int to)
+	{
+		while ((pos < to) && isWhitespace(input[pos]))
+		{
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * @param ch
+	 * @return true for <code>[A-Za-z_]</code>
+	 */
+	private static boolean isNameStart(final char ch)
+	{
+		return ((ch >= 'a') && (ch <= 'z')) || ((ch >= 'A') && (ch <= 'Z')) || (ch == '_');
+	}
+
+	/**
+	 * @param ch
+	 * @return true for <code>[A-Za-z0-9_]</code>, i.e. the regular expression <code>\w</code>
+	 */
+	private static boolean isWordChar(final char ch)
+	{
+		return isNameStart(ch) || ((ch >= '0') && (ch <= '9'));
+	}
+
+	/**
+	 * @param ch
+	 * @return true for the regular expression <code>\s</code>
+	 */
+	private static boolean isWhitespace(final char ch)
+	{
+		return (ch == ' ') || (ch == '\t') || (ch == '\n') || (ch == '\r') || (ch == '\f') ||
+			(ch == '\u000B');
+	}
+
+	/**
+	 * Find the char but ignore any text within ".." and '..'
+	 * 
+	 * @param ch
+	 *            The character to search
+	 * @param startIndex
+	 *            Start index
+	 * @return -1 if not found, else the index
+	 */
+	private int findChar(final char ch, int startIndex)
+	{
+		char quote = 0;
+
+		for (; startIndex < size; startIndex++)
+		{
+			final char charAt = input[startIndex];
+			if (quote != 0)
+			{
+				if (quote == charAt)
+				{
+					quote = 0;
+				}
+			}
+			else if ((charAt == '"') || (charAt == '\''))
+			{
+				quote = charAt;
+			}
+			else if (charAt == ch)
+			{
+				return startIndex;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Find a char starting at a position, but ignore the char if it is inside quotes. Behaves
+	 * like {@link org.apache.wicket.util.io.FullyBufferedReader#findOutOfQuotes(char, int)}, which
+	 * also determines the line and column reported for the tag.
+	 * 
+	 * @param ch
+	 * @param startPos
+	 * @return index of the char or -1
+	 * @throws ParseException
+	 */
+	private int findOutOfQuotes(final char ch, int startPos) throws ParseException
+	{
+		char quotationChar = 0;
+
+		outer : while (true)
+		{
+			final int closeBracketIndex = indexOf(ch, startPos + 1);
+			if (closeBracketIndex == -1)
+			{
+				if (quotationChar != 0)
+				{
+					// quotes not balanced!
+					throw new ParseException("Opening/closing quote not found for quote at " +
+						"(line " + lineNumber + ", column " + columnNumber + ")", startPos);
+				}
+				return -1;
+			}
+
+			for (int i = startPos; i <= closeBracketIndex; i++)
+			{
+				final char currentChar = input[i];
+				final char previousChar = input[i > startPos ? i - 1 : startPos];
+
+				if ((quotationChar == 0) && ((currentChar == '\'') || (currentChar == '\"')))
+				{
+					// entering a quoted string
+					quotationChar = currentChar;
+					countLinesTo(i);
+				}
+				else if ((currentChar == quotationChar) && (previousChar != '\\'))
+				{
+					// leaving the quoted string
+					quotationChar = 0;
+				}
+
+				// found the char but it is inside quotes
+				if ((currentChar == ch) && (quotationChar != 0))
+				{
+					startPos = closeBracketIndex + 1;
+					continue outer;
+				}
+			}
+
+			return closeBracketIndex;
+		}
+	}
+
+	/**
+	 * Counts lines between the previous call and <code>end</code>.
+	 * 
+	 * @param end
+	 */
+	private void countLinesTo(final int end)
+	{
+		for (int i = lastLineCountIndex; i < end; i++)
+		{
+			final char ch = input[i];
+			if (ch == '\n')
+			{
+				columnNumber = 1;
+				lineNumber++;
+			}
+			else if (ch != '\r')
+			{
+				columnNumber++;
+			}
+		}
+
+		lastLineCountIndex = end;
+	}
+
+	private int indexOf(final char ch, final int from)
+	{
+		for (int i = from; i < size; i++)
+		{
+			if (input[i] == ch)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param str
+	 * @param from
+	 * @param to
+	 * @return index of <code>str</code> in between <code>from</code> and <code>to</code>, or -1
+	 */
+	private int indexOf(final String str, final int from, final int to)
+	{
+		final char first = str.charAt(0);
+		final int max = to - str.length();
+		for (int i = from; i <= max; i++)
+		{
+			if ((input[i] == first) && regionMatches(i, to, str))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @param str
+	 * @return true if the text in between <code>from</code> and <code>to</code> starts with
+	 *         <code>str</code>
+	 */
+	private boolean regionMatches(final int from, final int to, final String str)
+	{
+		final int len = str.length();
+		if (to - from < len)
+		{
+			return false;
+		}
+		for (int i = 0; i < len; i++)
+		{
+			if (input[from + i] != str.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param from
+	 * @param str
+	 * @return true if the input at <code>from</code> starts with <code>str</code>, ignoring case
+	 */
+	private boolean regionMatchesIgnoreCase(final int from, final String str)
+	{
+		final int len = str.length();
+		if (size - from < len)
+		{
+			return false;
+		}
+		for (int i = 0; i < len; i++)
+		{
+			final char ch = input[from + i];
+			final char other = str.charAt(i);
+			if ((ch != other) && (Character.toUpperCase(ch) != Character.toUpperCase(other)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Remembers the offsets of a body text, the string is created on demand by
+	 * {@link #getString()}.
+	 * 
+	 * @param from
+	 * @param to
+	 */
+	private void setBodyText(final int from, final int to)
+	{
+		lastText = null;
+		lastTextStart = from;
+		lastTextEnd = Math.max(from, to);
+	}
+
+	/**
+	 * 
+	 * @return line and column number
+	 */
+	private String getLineAndColumnText()
+	{
+		return " (line " + lineNumber + ", column " + columnNumber + ")";
+	}
+
+	@Override
+	public final XmlTag getElement()
+	{
+		return lastTag;
+	}
+
+	@Override
+	public final CharSequence getString()
+	{
+		if ((lastText == null) && (lastType == HttpTagType.BODY))
+		{
+			lastText = getInput(lastTextStart, lastTextEnd);
+		}
+		return lastText;
+	}
+
+	/**
+	 * @return The next XML tag
+	 * @throws ParseException
+	 */
+	public final XmlTag nextTag() throws ParseException
+	{
+		while (next() != HttpTagType.NOT_INITIALIZED)
+		{
+			if (lastType == HttpTagType.TAG)
+			{
+				return lastTag;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Parse the given string.
+	 * <p>
+	 * Note: xml character encoding is NOT applied. It is assumed the input provided does have the
+	 * correct encoding already.
+	 * 
+	 * @param string
+	 *            The input string
+	 * @throws IOException
+	 *             Error while reading the resource
+	 */
+	@Override
+	public void parse(final CharSequence string) throws IOException
+	{
+		parse(new ByteArrayInputStream(string.toString().getBytes()), null);
+	}
+
+	/**
+	 * Reads and parses markup from an input stream, using UTF-8 encoding by default when not
+	 * specified in XML declaration.
+	 * 
+	 * @param in
+	 *            The input stream to read and parse
+	 * @throws IOException
+	 */
+	@Override
+	public void parse(final InputStream in) throws IOException
+	{
+		// When XML declaration does not specify encoding, it defaults to UTF-8
+		parse(in, "UTF-8");
+	}
+
+	/**
+	 * Reads and parses markup from an input stream
+	 * 
+	 * @param inputStream
+	 *            The input stream to read and parse
+	 * @param encoding
+	 *            The default character encoding of the input
+	 * @throws IOException
+	 */
+	@Override
+	public void parse(final InputStream inputStream, final String encoding) throws IOException
+	{
+		Args.notNull(inputStream, "inputStream");
+
+		try
+		{
+			xmlReader = new XmlReader(new BufferedInputStream(inputStream, 4000), encoding);
+			read(xmlReader);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(inputStream);
+			IOUtils.closeQuietly(xmlReader);
+		}
+	}
+
+	/**
+	 * Reads all chars into {@link #input}
+	 * 
+	 * @param reader
+	 * @throws IOException
+	 */
+	private void read(final Reader reader) throws IOException
+	{
+		char[] buffer = new char[4096];
+		int count = 0;
+		int read;
+		while ((read = reader.read(buffer, count, buffer.length - count)) != -1)
+		{
+			count += read;
+			if (count == buffer.length)
+			{
+				final char[] larger = new char[buffer.length * 2];
+				System.arraycopy(buffer, 0, larger, 0, count);
+				buffer = larger;
+			}
+		}
+
+		input = buffer;
+		size = count;
+		position = 0;
+		positionMarker = 0;
+		lineNumber = 1;
+		columnNumber = 1;
+		lastLineCountIndex = 0;
+	}
+
+	@Override
+	public final void setPositionMarker()
+	{
+		positionMarker = position;
+	}
+
+	@Override
+	public final void setPositionMarker(final int pos)
+	{
+		positionMarker = pos;
+	}
+
+	@Override
+	public String toString()
+	{
+		return new String(input, 0, size);
+	}
+}
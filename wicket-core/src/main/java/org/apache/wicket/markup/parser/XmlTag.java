@@ -20,6 +20,7 @@ import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.wicket.markup.parser.IXmlPullParser.HttpTagType;
+import org.apache.wicket.util.io.IClusterable;
 import org.apache.wicket.util.lang.Objects;
 import org.apache.wicket.util.string.AppendingStringBuffer;
 import org.apache.wicket.util.string.StringValue;
@@ -36,8 +37,10 @@ import org.slf4j.LoggerFactory;
  * 
  * @author Jonathan Locke
  */
-public class XmlTag
+public class XmlTag implements IClusterable
 {
+	private static final long serialVersionUID = 1L;
+
 	/** Log. */
 	private static final Logger log = LoggerFactory.getLogger(XmlTag.class);
 
@@ -622,8 +625,10 @@ public class XmlTag
 		return buffer;
 	}
 
-	static class TextSegment
+	static class TextSegment implements IClusterable
 	{
+		private static final long serialVersionUID = 1L;
+
 		/** Column number. */
 		final int columnNumber;
 
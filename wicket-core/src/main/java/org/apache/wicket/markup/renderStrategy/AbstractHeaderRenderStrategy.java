@@ -19,10 +19,13 @@ package org.apache.wicket.markup.renderStrategy;
 import org.apache.wicket.Application;
 import org.apache.wicket.Component;
 import org.apache.wicket.application.HeaderContributorListenerCollection;
+import org.apache.wicket.markup.head.HeaderItem;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.html.IHeaderContributor;
 import org.apache.wicket.markup.html.internal.HtmlHeaderContainer;
 import org.apache.wicket.markup.html.internal.HtmlHeaderContainer.HeaderStreamState;
+import org.apache.wicket.markup.outputcache.OutputCachingBehavior;
+import org.apache.wicket.markup.outputcache.RecordingHeaderResponse;
 import org.apache.wicket.util.lang.Args;
 
 /**
@@ -136,6 +139,66 @@ public abstract class AbstractHeaderRenderStrategy implements IHeaderRenderStrat
 	abstract protected void renderChildHeaders(final HtmlHeaderContainer headerContainer,
 		final Component rootComponent);
 
+	/**
+	 * Render the headers of a component and its child hierarchy, the component first.
+	 * 
+	 * @param headerContainer
+	 * @param component
+	 */
+	protected void renderComponentHeaders(final HtmlHeaderContainer headerContainer,
+		final Component component)
+	{
+		component.renderHead(headerContainer);
+		renderChildHeaders(headerContainer, component);
+	}
+
+	/**
+	 * Render the headers of a component whose output is cached by an
+	 * {@link OutputCachingBehavior}, together with the headers of its child hierarchy. If the
+	 * output has been found in the cache, the cached header items are rendered instead. Otherwise
+	 * the rendered header items are recorded for the cache.
+	 * 
+	 * @param headerContainer
+	 * @param component
+	 * @return {@code false} if the output of the component is not cached and its headers have yet
+	 *         to be rendered
+	 */
+	protected final boolean renderOutputCachingHeaders(final HtmlHeaderContainer headerContainer,
+		final Component component)
+	{
+		if ((component.isOutputCaching() == false) ||
+			(component.isVisibleInHierarchy() == false) || (component.isRenderAllowed() == false))
+		{
+			return false;
+		}
+
+		OutputCachingBehavior caching = component.getBehaviors(OutputCachingBehavior.class)
+			.get(0);
+		IHeaderResponse headerResponse = headerContainer.getHeaderResponse();
+		if (component.isOutputCached())
+		{
+			for (HeaderItem item : caching.getCachedHeaderItems())
+			{
+				headerResponse.render(item);
+			}
+		}
+		else
+		{
+			RecordingHeaderResponse recording = new RecordingHeaderResponse(headerResponse);
+			headerContainer.internalSetHeaderResponse(recording);
+			try
+			{
+				renderComponentHeaders(headerContainer, component);
+			}
+			finally
+			{
+				headerContainer.internalSetHeaderResponse(headerResponse);
+			}
+			caching.onHeadRendered(component, recording.getItems());
+		}
+		return true;
+	}
+
 	/**
 	 * Render the application level headers
 	 * 
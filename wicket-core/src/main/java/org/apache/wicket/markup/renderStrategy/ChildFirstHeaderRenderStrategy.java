@@ -80,7 +80,8 @@ public class ChildFirstHeaderRenderStrategy extends AbstractHeaderRenderStrategy
 				@Override
 				public void component(final Component component, final IVisit<Void> visit)
 				{
-					if (component != rootComponent)
+					if ((component != rootComponent) &&
+						(renderOutputCachingHeaders(headerContainer, component) == false))
 					{
 						component.renderHead(headerContainer);
 					}
@@ -89,9 +90,30 @@ public class ChildFirstHeaderRenderStrategy extends AbstractHeaderRenderStrategy
 				@Override
 				public boolean preCheck(Component component)
 				{
-					return component.isVisibleInHierarchy();
+					if (component.isVisibleInHierarchy() == false)
+					{
+						return false;
+					}
+
+					// a component with cached output renders the headers of its children itself
+					return (component == rootComponent) ||
+						(renderOutputCachingHeaders(headerContainer, component) == false);
 				}
 			}.visit(rootComponent);
 		}
 	}
+
+	/**
+	 * Render the headers of a component and its child hierarchy, the children first.
+	 * 
+	 * @param headerContainer
+	 * @param component
+	 */
+	@Override
+	protected void renderComponentHeaders(final HtmlHeaderContainer headerContainer,
+		final Component component)
+	{
+		renderChildHeaders(headerContainer, component);
+		component.renderHead(headerContainer);
+	}
 }
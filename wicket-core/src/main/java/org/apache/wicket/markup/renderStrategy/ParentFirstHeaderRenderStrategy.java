@@ -61,7 +61,16 @@ public class ParentFirstHeaderRenderStrategy extends AbstractHeaderRenderStrateg
 				{
 					if (component.isVisibleInHierarchy())
 					{
-						component.renderHead(headerContainer);
+						if (renderOutputCachingHeaders(headerContainer, component))
+						{
+							// a component with cached output renders the headers of its
+							// children itself
+							visit.dontGoDeeper();
+						}
+						else
+						{
+							component.renderHead(headerContainer);
+						}
 					}
 					else
 					{
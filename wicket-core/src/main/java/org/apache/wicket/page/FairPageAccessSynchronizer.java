@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.page;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.util.IProvider;
+import org.apache.wicket.util.LazyInitializer;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link PageAccessSynchronizer} which grants the lock to a page in the order in which the
+ * threads asked for it.
+ * <p>
+ * {@link PageAccessSynchronizer} lets all threads waiting for a page wake up when the lock is
+ * released and race for it again. With many concurrent Ajax requests for the same page this
+ * wakes up many threads for nothing and some requests may wait much longer than others. This
+ * synchronizer uses a fair {@link ReentrantReadWriteLock} per page: the waiting threads are
+ * queued and only the first one is woken up when the lock is released. The read lock is shared by
+ * the threads which {@link #lockPageForReading(int) only read} the page.
+ * </p>
+ * <p>
+ * The wait and hold times of the locks are recorded in the application's
+ * {@link PageLockStatistics}. Like with {@link PageAccessSynchronizer} a
+ * {@link CouldNotLockPageException} is thrown if the lock cannot be acquired within the timeout.
+ * </p>
+ * To use it override {@link org.apache.wicket.Session#newPageAccessSynchronizer(Duration)}.
+ */
+public class FairPageAccessSynchronizer extends PageAccessSynchronizer
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(FairPageAccessSynchronizer.class);
+
+	/** the locks of the pages which are locked or waited for */
+	private final IProvider<ConcurrentMap<Integer, FairPageLock>> fairLocks = new LazyInitializer<ConcurrentMap<Integer, FairPageLock>>()
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected ConcurrentMap<Integer, FairPageLock> createInstance()
+		{
+			return new ConcurrentHashMap<Integer, FairPageLock>();
+		}
+	};
+
+	private transient PageLockStatistics statistics;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param timeout
+	 *            timeout value for acquiring a page lock
+	 */
+	public FairPageAccessSynchronizer(Duration timeout)
+	{
+		super(timeout);
+	}
+
+	@Override
+	public void lockPage(int pageId) throws CouldNotLockPageException
+	{
+		internalLockPage(pageId, false);
+	}
+
+	@Override
+	public void lockPageForReading(int pageId) throws CouldNotLockPageException
+	{
+		internalLockPage(pageId, true);
+	}
+
+	private void internalLockPage(final int pageId, final boolean shared)
+	{
+		final Thread thread = Thread.currentThread();
+		FairPageLock lock = retain(pageId);
+		if (lock.isWriteLockedByCurrentThread() || (shared && lock.getReadHoldCount() > 0))
+		{
+			// the lock is already owned by this thread
+			release(pageId, lock);
+			return;
+		}
+		if (lock.getReadHoldCount() > 0)
+		{
+			// a read lock can't be upgraded, waiting would only run into the timeout
+			release(pageId, lock);
+			throw new IllegalStateException("Thread '" + thread.getName() +
+				"' can't lock page with id '" + pageId + "' which it only is allowed to read.");
+		}
+
+		final Time start = Time.now();
+		final long startNanos = System.nanoTime();
+		final Lock sideLock = shared ? lock.readLock() : lock.writeLock();
+		boolean locked = false;
+		try
+		{
+			locked = sideLock.tryLock(getTimeout().getMilliseconds(), TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		long now = System.nanoTime();
+		PageLockStatistics statistics = getStatistics();
+		statistics.getWaitTimes().record(now - startNanos);
+
+		if (locked)
+		{
+			if (shared == false)
+			{
+				lock.lockedAt = now;
+			}
+			else
+			{
+				synchronized (lock)
+				{
+					lock.readers++;
+				}
+			}
+			if (logger.isDebugEnabled())
+			{
+				logger.debug("{} acquired lock to page {}", thread.getName(), pageId);
+			}
+		}
+		else
+		{
+			Thread owner = lock.getOwner();
+			release(pageId, lock);
+			statistics.onTimeout();
+			logLockTimeout(pageId, start, owner);
+			throw new CouldNotLockPageException(pageId, thread.getName(), getTimeout());
+		}
+	}
+
+	@Override
+	public void unlockAllPages()
+	{
+		internalUnlockPages(null);
+	}
+
+	@Override
+	public void unlockPage(int pageId)
+	{
+		internalUnlockPages(pageId);
+	}
+
+	private void internalUnlockPages(final Integer pageId)
+	{
+		final Iterator<Map.Entry<Integer, FairPageLock>> entries = fairLocks.get()
+			.entrySet()
+			.iterator();
+		while (entries.hasNext())
+		{
+			Map.Entry<Integer, FairPageLock> entry = entries.next();
+			FairPageLock lock = entry.getValue();
+			if ((pageId == null || pageId.equals(entry.getKey())) &&
+				(lock.isWriteLockedByCurrentThread() || lock.getReadHoldCount() > 0))
+			{
+				if (lock.isWriteLockedByCurrentThread())
+				{
+					getStatistics().getHoldTimes().record(System.nanoTime() - lock.lockedAt);
+					synchronized (lock)
+					{
+						if (lock.page != null)
+						{
+							detach(lock.page);
+							lock.page = null;
+						}
+					}
+					lock.writeLock().unlock();
+				}
+				else
+				{
+					synchronized (lock)
+					{
+						if (--lock.readers == 0 && lock.page != null)
+						{
+							// the last thread which read the page, no one else uses it anymore
+							detach(lock.page);
+							lock.page = null;
+						}
+						lock.readLock().unlock();
+					}
+				}
+				release(entry.getKey(), lock);
+				if (logger.isDebugEnabled())
+				{
+					logger.debug("'{}' released lock to page with id '{}'", Thread.currentThread()
+						.getName(), entry.getKey());
+				}
+				if (pageId != null)
+				{
+					break;
+				}
+			}
+		}
+	}
+
+	@Override
+	void detachOnUnlock(IManageablePage page)
+	{
+		FairPageLock lock = fairLocks.get().get(page.getPageId());
+		if (lock != null && (lock.isWriteLockedByCurrentThread() || lock.getReadHoldCount() > 0))
+		{
+			synchronized (lock)
+			{
+				lock.page = page;
+			}
+		}
+	}
+
+	/**
+	 * Returns the lock of the page and counts the current thread as one of its users, so it is not
+	 * removed from the map until the thread releases it.
+	 */
+	private FairPageLock retain(final int pageId)
+	{
+		ConcurrentMap<Integer, FairPageLock> locks = fairLocks.get();
+		while (true)
+		{
+			FairPageLock lock = locks.get(pageId);
+			if (lock == null)
+			{
+				FairPageLock newLock = new FairPageLock();
+				lock = locks.putIfAbsent(pageId, newLock);
+				if (lock == null)
+				{
+					lock = newLock;
+				}
+			}
+			if (lock.retain())
+			{
+				return lock;
+			}
+			// the lock is being removed by its last user
+			locks.remove(pageId, lock);
+		}
+	}
+
+	private void release(final int pageId, final FairPageLock lock)
+	{
+		if (lock.release())
+		{
+			fairLocks.get().remove(pageId, lock);
+		}
+	}
+
+	/*
+	 * used by tests
+	 */
+	int getLockCount()
+	{
+		return fairLocks.get().size();
+	}
+
+	/**
+	 * @return the statistics of the application or of this synchronizer if there is no
+	 *         application
+	 */
+	PageLockStatistics getStatistics()
+	{
+		if (statistics == null)
+		{
+			statistics = Application.exists() ? PageLockStatistics.get(Application.get())
+				: new PageLockStatistics();
+		}
+		return statistics;
+	}
+
+	/**
+	 * A fair read/write lock which counts the threads using it
+	 */
+	private static class FairPageLock extends ReentrantReadWriteLock
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The number of threads which own or wait for this lock, -1 when it is removed
+		 */
+		private final AtomicInteger users = new AtomicInteger();
+
+		/**
+		 * When the owner acquired the write lock, in nanoseconds. Accessed by the owner only.
+		 */
+		private long lockedAt;
+
+		/**
+		 * The number of threads which hold the read lock, guarded by this lock's monitor
+		 */
+		private int readers;
+
+		/**
+		 * The page to detach when the write lock or the last read lock is released, guarded by this
+		 * lock's monitor
+		 */
+		private IManageablePage page;
+
+		private FairPageLock()
+		{
+			super(true);
+		}
+
+		private boolean retain()
+		{
+			int count;
+			do
+			{
+				count = users.get();
+				if (count < 0)
+				{
+					return false;
+				}
+			}
+			while (users.compareAndSet(count, count + 1) == false);
+			return true;
+		}
+
+		/**
+		 * @return {@code true} if the lock has no users anymore and has to be removed
+		 */
+		private boolean release()
+		{
+			return users.decrementAndGet() == 0 && users.compareAndSet(0, -1);
+		}
+
+		@Override
+		protected Thread getOwner()
+		{
+			return super.getOwner();
+		}
+	}
+}
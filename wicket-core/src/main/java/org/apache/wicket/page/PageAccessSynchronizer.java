@@ -17,7 +17,9 @@
 package org.apache.wicket.page;
 
 import java.io.Serializable;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -33,6 +35,11 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Synchronizes access to page instances from multiple threads
+ * <p>
+ * A page is either locked by a single thread, or shared by the threads which only read it, see
+ * {@link #lockPageForReading(int)}. Threads which want to lock a shared page have to wait until
+ * all readers are done, new readers are not admitted while they are waiting.
+ * </p>
  * 
  * @author Igor Vaynberg (ivaynberg)
  */
@@ -82,9 +89,34 @@ public class PageAccessSynchronizer implements Serializable
 	 *             if lock could not be acquired
 	 */
 	public void lockPage(int pageId) throws CouldNotLockPageException
+	{
+		internalLockPage(pageId, false);
+	}
+
+	/**
+	 * Acquire a shared lock to a page. Several threads may hold the shared lock at the same time,
+	 * as long as no thread holds the lock acquired by {@link #lockPage(int)}. The threads must not
+	 * modify the page.
+	 * 
+	 * @param pageId
+	 *            page id
+	 * @throws CouldNotLockPageException
+	 *             if lock could not be acquired
+	 */
+	public void lockPageForReading(int pageId) throws CouldNotLockPageException
+	{
+		internalLockPage(pageId, true);
+	}
+
+	private void internalLockPage(int pageId, boolean shared) throws CouldNotLockPageException
 	{
 		final Thread thread = Thread.currentThread();
-		final PageLock lock = new PageLock(pageId, thread);
+		final PageLock lock = new PageLock(pageId, shared ? null : thread);
+		if (shared)
+		{
+			lock.readers = new HashSet<Thread>();
+			lock.readers.add(thread);
+		}
 		final Time start = Time.now();
 
 		boolean locked = false;
@@ -110,17 +142,46 @@ public class PageAccessSynchronizer implements Serializable
 			}
 			else
 			{
-				// wait for a lock to become available
-				long remaining = remaining(start, timeout);
-				if (remaining > 0)
+				synchronized (previous)
 				{
-					synchronized (previous)
+					if (previous.released)
+					{
+						// removed in the meantime, try again
+						continue;
+					}
+					if (previous.readers != null && previous.readers.contains(thread))
+					{
+						if (shared)
+						{
+							// already shared by this thread
+							locked = true;
+							continue;
+						}
+						throw new IllegalStateException("Thread '" + thread.getName() +
+							"' can't lock page with id '" + pageId +
+							"' which it only is allowed to read.");
+					}
+					if (shared && previous.readers != null && previous.writers == 0)
+					{
+						// share the page with the other readers
+						previous.readers.add(thread);
+						locked = true;
+						continue;
+					}
+
+					// wait for a lock to become available
+					long remaining = remaining(start, timeout);
+					if (remaining > 0)
 					{
 						if (isDebugEnabled)
 						{
 							logger.debug("{} waiting for lock to page {} for {}", new Object[] {
 									thread.getName(), pageId, Duration.milliseconds(remaining) });
 						}
+						if (shared == false)
+						{
+							previous.writers++;
+						}
 						try
 						{
 							previous.wait(remaining);
@@ -130,6 +191,13 @@ public class PageAccessSynchronizer implements Serializable
 							// TODO better exception
 							throw new RuntimeException(e);
 						}
+						finally
+						{
+							if (shared == false)
+							{
+								previous.writers--;
+							}
+						}
 					}
 				}
 			}
@@ -143,35 +211,62 @@ public class PageAccessSynchronizer implements Serializable
 		}
 		else
 		{
-			if (logger.isWarnEnabled())
+			logLockTimeout(pageId, start, previous.getOwner());
+			throw new CouldNotLockPageException(pageId, thread.getName(), timeout);
+		}
+	}
+
+	/**
+	 * Logs that the current thread failed to acquire the lock to a page in time and dumps the
+	 * threads according to the application's {@link ThreadDumpStrategy}
+	 * 
+	 * @param pageId
+	 *            page id
+	 * @param start
+	 *            the time when the current thread started to wait for the lock
+	 * @param owner
+	 *            the thread that holds the lock
+	 */
+	void logLockTimeout(int pageId, Time start, Thread owner)
+	{
+		if (logger.isWarnEnabled())
+		{
+			logger.warn(
+				"Thread '{}' failed to acquire lock to page with id '{}', attempted for {} out of allowed {}. The thread that holds the lock has name '{}'.",
+				new Object[] { Thread.currentThread().getName(), pageId, start.elapsedSince(),
+						timeout, owner != null ? owner.getName() : null });
+			if (Application.exists())
 			{
-				logger.warn(
-					"Thread '{}' failed to acquire lock to page with id '{}', attempted for {} out of allowed {}. The thread that holds the lock has name '{}'.",
-					new Object[] { thread.getName(), pageId, start.elapsedSince(), timeout,
-							previous.thread.getName() });
-				if (Application.exists())
+				ThreadDumpStrategy strategy = Application.get()
+					.getExceptionSettings()
+					.getThreadDumpStrategy();
+				switch (strategy)
 				{
-					ThreadDumpStrategy strategy = Application.get()
-						.getExceptionSettings()
-						.getThreadDumpStrategy();
-					switch (strategy)
-					{
-						case ALL_THREADS :
-							Threads.dumpAllThreads(logger);
-							break;
-						case THREAD_HOLDING_LOCK :
-							Threads.dumpSingleThread(logger, previous.thread);
-							break;
-						case NO_THREADS :
-						default :
-							// do nothing
-					}
+					case ALL_THREADS :
+						Threads.dumpAllThreads(logger);
+						break;
+					case THREAD_HOLDING_LOCK :
+						if (owner != null)
+						{
+							Threads.dumpSingleThread(logger, owner);
+						}
+						break;
+					case NO_THREADS :
+					default :
+						// do nothing
 				}
 			}
-			throw new CouldNotLockPageException(pageId, thread.getName(), timeout);
 		}
 	}
 
+	/**
+	 * @return timeout value for acquiring a page lock
+	 */
+	protected final Duration getTimeout()
+	{
+		return timeout;
+	}
+
 	/**
 	 * Unlocks all pages locked by this thread
 	 */
@@ -203,22 +298,37 @@ public class PageAccessSynchronizer implements Serializable
 			// remove all locks held by this thread if 'pageId' is not specified
 			// otherwise just the lock for this 'pageId'
 			final PageLock lock = locks.next();
-			if ((pageId == null || pageId == lock.pageId) && lock.thread == thread)
+			if ((pageId == null || pageId == lock.pageId) && lock.isOwnedBy(thread))
 			{
-				locks.remove();
-				if (isDebugEnabled)
-				{
-					logger.debug("'{}' released lock to page with id '{}'", thread.getName(),
-						lock.pageId);
-				}
-				// if any locks were removed notify threads waiting for a lock
 				synchronized (lock)
 				{
-					if (isDebugEnabled)
+					if (lock.readers != null)
+					{
+						lock.readers.remove(thread);
+					}
+					if (lock.readers == null || lock.readers.isEmpty())
 					{
-						logger.debug("'{}' notifying blocked threads", thread.getName());
+						if (lock.page != null)
+						{
+							// the last thread which read the page, no one else uses it anymore
+							detach(lock.page);
+							lock.page = null;
+						}
+						this.locks.get().remove(lock.pageId, lock);
+						lock.released = true;
+
+						// if any locks were removed notify threads waiting for a lock
+						if (isDebugEnabled)
+						{
+							logger.debug("'{}' notifying blocked threads", thread.getName());
+						}
+						lock.notifyAll();
 					}
-					lock.notifyAll();
+				}
+				if (isDebugEnabled)
+				{
+					logger.debug("'{}' released lock to page with id '{}'", thread.getName(),
+						lock.pageId);
 				}
 				if (pageId != null)
 				{
@@ -229,6 +339,41 @@ public class PageAccessSynchronizer implements Serializable
 		}
 	}
 
+	/**
+	 * Detaches the page when the current thread releases its lock to it. A page which is locked
+	 * {@link #lockPageForReading(int) for reading} is detached by the last of its readers, so it is
+	 * not detached while other threads still read it.
+	 * 
+	 * @param page
+	 *            the page which is locked by the current thread
+	 */
+	void detachOnUnlock(IManageablePage page)
+	{
+		PageLock lock = locks.get().get(page.getPageId());
+		if (lock != null)
+		{
+			synchronized (lock)
+			{
+				if (lock.isOwnedBy(Thread.currentThread()))
+				{
+					lock.page = page;
+				}
+			}
+		}
+	}
+
+	static void detach(IManageablePage page)
+	{
+		try
+		{
+			page.detach();
+		}
+		catch (RuntimeException e)
+		{
+			logger.error("Error detaching page", e);
+		}
+	}
+
 	/*
 	 * used by tests
 	 */
@@ -253,8 +398,20 @@ public class PageAccessSynchronizer implements Serializable
 				IManageablePage page = null;
 				try
 				{
-					lockPage(pageId);
+					if (ReadOnlyPageAccess.isActive())
+					{
+						lockPageForReading(pageId);
+					}
+					else
+					{
+						lockPage(pageId);
+					}
 					page = super.getPage(pageId);
+					if (page != null && ReadOnlyPageAccess.isActive())
+					{
+						// other requests may still read the page
+						detachOnUnlock(page);
+					}
 				}
 				finally
 				{
@@ -298,9 +455,21 @@ public class PageAccessSynchronizer implements Serializable
 		/** page id */
 		private final int pageId;
 
-		/** thread that owns the lock */
+		/** thread that owns the lock, {@code null} if the page is shared by {@link #readers} */
 		private final Thread thread;
 
+		/** threads that share the lock, guarded by this lock */
+		private Set<Thread> readers;
+
+		/** number of threads waiting to own the lock, guarded by this lock */
+		private int writers;
+
+		/** whether the lock has been removed, guarded by this lock */
+		private boolean released;
+
+		/** the page to detach when the lock is released, guarded by this lock */
+		private IManageablePage page;
+
 		/**
 		 * Constructor
 		 * 
@@ -322,11 +491,36 @@ public class PageAccessSynchronizer implements Serializable
 		}
 
 		/**
-		 * @return thread that owns the lock
+		 * @return thread that owns the lock, {@code null} if the lock is shared by readers
 		 */
 		public Thread getThread()
 		{
 			return thread;
 		}
+
+		/**
+		 * @return whether the lock is shared by threads which only read the page
+		 */
+		public synchronized boolean isShared()
+		{
+			return readers != null;
+		}
+
+		private synchronized boolean isOwnedBy(Thread thread)
+		{
+			return this.thread == thread || (readers != null && readers.contains(thread));
+		}
+
+		/**
+		 * @return the owner or one of the readers
+		 */
+		private synchronized Thread getOwner()
+		{
+			if (thread == null && readers != null && readers.isEmpty() == false)
+			{
+				return readers.iterator().next();
+			}
+			return thread;
+		}
 	}
 }
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.page;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.util.time.DurationHistogram;
+
+/**
+ * Application wide statistics of the page locks acquired by {@link FairPageAccessSynchronizer}s:
+ * how long the threads waited for the locks and how long they held them.
+ */
+public class PageLockStatistics
+{
+	private static final MetaDataKey<PageLockStatistics> KEY = new MetaDataKey<PageLockStatistics>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	private final DurationHistogram waitTimes = new DurationHistogram();
+
+	private final DurationHistogram holdTimes = new DurationHistogram();
+
+	private final AtomicLong timeouts = new AtomicLong();
+
+	/**
+	 * @return the times the threads waited for a page lock, including the failed attempts
+	 */
+	public DurationHistogram getWaitTimes()
+	{
+		return waitTimes;
+	}
+
+	/**
+	 * @return the times the threads held a page lock
+	 */
+	public DurationHistogram getHoldTimes()
+	{
+		return holdTimes;
+	}
+
+	/**
+	 * @return the number of threads which failed to acquire a page lock in time
+	 */
+	public long getTimeoutCount()
+	{
+		return timeouts.get();
+	}
+
+	void onTimeout()
+	{
+		timeouts.incrementAndGet();
+	}
+
+	/**
+	 * Forgets the recorded times
+	 */
+	public void reset()
+	{
+		waitTimes.reset();
+		holdTimes.reset();
+		timeouts.set(0);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "wait: [" + waitTimes + "], hold: [" + holdTimes + "], timeouts: " + timeouts;
+	}
+
+	/**
+	 * @param application
+	 * @return the statistics of the application
+	 */
+	public static PageLockStatistics get(final Application application)
+	{
+		PageLockStatistics statistics = application.getMetaData(KEY);
+		if (statistics == null)
+		{
+			synchronized (application)
+			{
+				statistics = application.getMetaData(KEY);
+				if (statistics == null)
+				{
+					statistics = new PageLockStatistics();
+					application.setMetaData(KEY, statistics);
+				}
+			}
+		}
+		return statistics;
+	}
+}
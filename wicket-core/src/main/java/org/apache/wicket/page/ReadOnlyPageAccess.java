@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.page;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.cycle.RequestCycle;
+
+/**
+ * Read-only access to the pages in the current request.
+ * <p>
+ * While it is active the pages are locked {@link PageAccessSynchronizer#lockPageForReading(int)
+ * for reading only}, they are not marked dirty and they are not touched, i.e. not stored when the
+ * request is committed. This allows several requests to use the same page instance concurrently,
+ * as long as none of them modifies it. Requests which modify the page wait until the readers are
+ * done.
+ * </p>
+ * 
+ * @see org.apache.wicket.settings.def.RequestCycleSettings#addReadOnlyListenerInterface(org.apache.wicket.RequestListenerInterface)
+ */
+public final class ReadOnlyPageAccess
+{
+	private static final MetaDataKey<Boolean> ACTIVE_KEY = new MetaDataKey<Boolean>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	/**
+	 * Construct.
+	 */
+	private ReadOnlyPageAccess()
+	{
+	}
+
+	/**
+	 * @return {@code true} if the pages are accessed read-only in the current request
+	 */
+	public static boolean isActive()
+	{
+		RequestCycle requestCycle = RequestCycle.get();
+		return requestCycle != null && Boolean.TRUE.equals(requestCycle.getMetaData(ACTIVE_KEY));
+	}
+
+	/**
+	 * Activates or deactivates the read-only access for the current request.
+	 * 
+	 * @param active
+	 * @return whether the read-only access was active before
+	 */
+	public static boolean setActive(final boolean active)
+	{
+		RequestCycle requestCycle = RequestCycle.get();
+		if (requestCycle == null)
+		{
+			return false;
+		}
+		boolean wasActive = Boolean.TRUE.equals(requestCycle.getMetaData(ACTIVE_KEY));
+		requestCycle.setMetaData(ACTIVE_KEY, active ? Boolean.TRUE : null);
+		return wasActive;
+	}
+}
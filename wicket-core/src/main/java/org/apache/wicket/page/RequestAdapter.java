@@ -133,6 +133,11 @@ public abstract class RequestAdapter
 	 */
 	protected void touch(final IManageablePage page)
 	{
+		if (ReadOnlyPageAccess.isActive())
+		{
+			// the page is only read, there is nothing to store
+			return;
+		}
 		if (findPage(page.getPageId()) == null)
 		{
 			touchedPages.add(page);
@@ -16,14 +16,18 @@
  */
 package org.apache.wicket.pageStore;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,9 +39,16 @@ import org.slf4j.LoggerFactory;
  * Later {@link PageSavingRunnable} reads in blocking manner from {@link #entries} and saves each
  * entry. Acts as consumer.
  * </p>
- * It starts only one instance of {@link PageSavingRunnable} because all we need is to make the page
- * storing asynchronous. We don't want to write concurrently in the wrapped {@link IDataStore},
- * though it may happen in the extreme case when the queue is full. These cases should be avoided.
+ * By default it starts only one instance of {@link PageSavingRunnable} because all we need is to
+ * make the page storing asynchronous. We don't want to write concurrently in the wrapped
+ * {@link IDataStore}, though it may happen in the extreme case when the queue is full. These cases
+ * should be avoided.
+ * <p>
+ * If the wrapped {@link IDataStore} can handle concurrent writes for different sessions (e.g. when
+ * the disk is slow) several writer threads can be started. Each writer has its own queue and the
+ * entries are distributed by their session id, so the pages of a session are still written in the
+ * order they were stored while the pages of different sessions are written in parallel.
+ * </p>
  * 
  * @author Matej Knopp
  */
@@ -57,9 +68,9 @@ public class AsynchronousDataStore implements IDataStore
 	private static final long POLL_WAIT = 1000L;
 
 	/**
-	 * The page saving thread.
+	 * The page saving threads. One per queue.
 	 */
-	private final Thread pageSavingThread;
+	private final List<Thread> pageSavingThreads;
 
 	/**
 	 * The wrapped {@link IDataStore} that actually stores that pages
@@ -67,9 +78,10 @@ public class AsynchronousDataStore implements IDataStore
 	private final IDataStore dataStore;
 
 	/**
-	 * The queue where the entries which have to be saved are temporary stored
+	 * The queues where the entries which have to be saved are temporary stored. The entries of a
+	 * session always go to the same queue.
 	 */
-	private final BlockingQueue<Entry> entries;
+	private final List<BlockingQueue<Entry>> queues;
 
 	/**
 	 * A map 'sessionId:::pageId' -> {@link Entry}. Used for fast retrieval of {@link Entry}s which
@@ -77,6 +89,11 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	private final ConcurrentMap<String, Entry> entryMap;
 
+	/**
+	 * The counters exposed by the getters of this store
+	 */
+	private final Statistics statistics;
+
 	/**
 	 * Construct.
 	 * 
@@ -87,14 +104,47 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	public AsynchronousDataStore(final IDataStore dataStore, final int capacity)
 	{
+		this(dataStore, capacity, 1);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually saved the data. Must be able to
+	 *            store the data of different sessions concurrently if {@code writerCount} is
+	 *            greater than one
+	 * @param capacity
+	 *            the total capacity of the queues that delay the saving
+	 * @param writerCount
+	 *            the number of threads which save the entries
+	 */
+	public AsynchronousDataStore(final IDataStore dataStore, final int capacity,
+		final int writerCount)
+	{
+		Args.withinRange(1, Integer.MAX_VALUE, writerCount, "writerCount");
+
 		this.dataStore = dataStore;
-		entries = new LinkedBlockingQueue<Entry>(capacity);
 		entryMap = new ConcurrentHashMap<String, Entry>();
+		statistics = new Statistics();
 
-		PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, entries, entryMap);
-		pageSavingThread = new Thread(savingRunnable, "Wicket-PageSavingThread");
-		pageSavingThread.setDaemon(true);
-		pageSavingThread.start();
+		int queueCapacity = Math.max(1, capacity / writerCount);
+		queues = new ArrayList<BlockingQueue<Entry>>(writerCount);
+		pageSavingThreads = new ArrayList<Thread>(writerCount);
+		for (int i = 0; i < writerCount; i++)
+		{
+			BlockingQueue<Entry> entries = new LinkedBlockingQueue<Entry>(queueCapacity);
+			queues.add(entries);
+
+			PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, entries,
+				entryMap, statistics);
+			String threadName = writerCount == 1 ? "Wicket-PageSavingThread"
+				: "Wicket-PageSavingThread-" + i;
+			Thread pageSavingThread = new Thread(savingRunnable, threadName);
+			pageSavingThread.setDaemon(true);
+			pageSavingThread.start();
+			pageSavingThreads.add(pageSavingThread);
+		}
 	}
 
 	/**
@@ -103,15 +153,18 @@ public class AsynchronousDataStore implements IDataStore
 	@Override
 	public void destroy()
 	{
-		if (pageSavingThread.isAlive())
+		for (Thread pageSavingThread : pageSavingThreads)
 		{
-			pageSavingThread.interrupt();
-			try
-			{
-				pageSavingThread.join();
-			} catch (InterruptedException e)
+			if (pageSavingThread.isAlive())
 			{
-				log.error(e.getMessage(), e);
+				pageSavingThread.interrupt();
+				try
+				{
+					pageSavingThread.join();
+				} catch (InterruptedException e)
+				{
+					log.error(e.getMessage(), e);
+				}
 			}
 		}
 
@@ -130,6 +183,23 @@ public class AsynchronousDataStore implements IDataStore
 		return entryMap.get(getKey(sessionId, id));
 	}
 
+	/**
+	 * @param sessionId
+	 * @return the queue which holds the entries of the given session
+	 */
+	private BlockingQueue<Entry> getQueue(final String sessionId)
+	{
+		int size = queues.size();
+		if (size == 1)
+		{
+			return queues.get(0);
+		}
+		int hash = sessionId.hashCode();
+		// spread the higher bits, session ids often differ only at the end
+		hash ^= (hash >>> 16);
+		return queues.get((hash & 0x7fffffff) % size);
+	}
+
 	/**
 	 * @see org.apache.wicket.pageStore.IDataStore#getData(java.lang.String, int)
 	 */
@@ -171,9 +241,9 @@ public class AsynchronousDataStore implements IDataStore
 		if (key != null)
 		{
 			Entry entry = entryMap.remove(key);
-			if (entry != null)
+			if (entry != null && getQueue(sessionId).remove(entry))
 			{
-				entries.remove(entry);
+				statistics.dropped.incrementAndGet();
 			}
 		}
 
@@ -186,7 +256,7 @@ public class AsynchronousDataStore implements IDataStore
 	@Override
 	public void removeData(final String sessionId)
 	{
-		for (Iterator<Entry> itor = entries.iterator(); itor.hasNext();)
+		for (Iterator<Entry> itor = getQueue(sessionId).iterator(); itor.hasNext();)
 		{
 			Entry entry = itor.next();
 			if (entry != null) // this check is not needed in JDK6
@@ -197,6 +267,7 @@ public class AsynchronousDataStore implements IDataStore
 				{
 					entryMap.remove(getKey(entry));
 					itor.remove();
+					statistics.dropped.incrementAndGet();
 				}
 			}
 		}
@@ -205,7 +276,7 @@ public class AsynchronousDataStore implements IDataStore
 	}
 
 	/**
-	 * Save the entry in the queue if there is a room or directly pass it to the wrapped
+	 * Save the entry in the session's queue if there is a room or directly pass it to the wrapped
 	 * {@link IDataStore} if there is no such
 	 * 
 	 * @see org.apache.wicket.pageStore.IDataStore#storeData(java.lang.String, int, byte[])
@@ -219,23 +290,93 @@ public class AsynchronousDataStore implements IDataStore
 
 		try
 		{
-			boolean added = entries.offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS);
+			boolean added = getQueue(sessionId).offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS);
 
 			if (added == false)
 			{
 				log.debug("Storing synchronously page with id '{}' in session '{}'", id, sessionId);
 				entryMap.remove(key);
-				dataStore.storeData(sessionId, id, data);
+				storeSynchronously(sessionId, id, data);
 			}
 		}
 		catch (InterruptedException e)
 		{
 			log.error(e.getMessage(), e);
 			entryMap.remove(key);
-			dataStore.storeData(sessionId, id, data);
+			storeSynchronously(sessionId, id, data);
 		}
 	}
 
+	private void storeSynchronously(final String sessionId, final int id, final byte[] data)
+	{
+		statistics.synchronousStores.incrementAndGet();
+		long start = System.nanoTime();
+		dataStore.storeData(sessionId, id, data);
+		statistics.recordWrite(System.nanoTime() - start);
+	}
+
+	/**
+	 * @return the number of entries which wait to be saved
+	 */
+	public int getQueueSize()
+	{
+		int size = 0;
+		for (BlockingQueue<Entry> entries : queues)
+		{
+			size += entries.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of writer threads
+	 */
+	public int getWriterCount()
+	{
+		return queues.size();
+	}
+
+	/**
+	 * @return the number of entries which were saved by the writer threads
+	 */
+	public long getAsynchronousStoreCount()
+	{
+		return statistics.asynchronousStores.get();
+	}
+
+	/**
+	 * @return the number of entries which were saved by the request thread because the queue was
+	 *         full
+	 */
+	public long getSynchronousStoreCount()
+	{
+		return statistics.synchronousStores.get();
+	}
+
+	/**
+	 * @return the number of entries which were removed from the queue before being saved
+	 */
+	public long getDroppedCount()
+	{
+		return statistics.dropped.get();
+	}
+
+	/**
+	 * @return the average time the wrapped {@link IDataStore} needed to save an entry
+	 */
+	public Duration getAverageWriteTime()
+	{
+		return statistics.getAverageWriteTime();
+	}
+
+	/**
+	 * @return the longest time the wrapped {@link IDataStore} needed to save an entry
+	 */
+	public Duration getMaxWriteTime()
+	{
+		return Duration.milliseconds(statistics.maxWriteNanos.get() / 1000000L);
+	}
+
 	/**
 	 * 
 	 * @param pageId
@@ -313,6 +454,49 @@ public class AsynchronousDataStore implements IDataStore
 
 	}
 
+	/**
+	 * The counters shared by the writer threads and the request threads
+	 */
+	private static class Statistics
+	{
+		private final AtomicLong asynchronousStores = new AtomicLong();
+
+		private final AtomicLong synchronousStores = new AtomicLong();
+
+		private final AtomicLong dropped = new AtomicLong();
+
+		private final AtomicLong writes = new AtomicLong();
+
+		private final AtomicLong writeNanos = new AtomicLong();
+
+		private final AtomicLong maxWriteNanos = new AtomicLong();
+
+		private void recordWrite(final long nanos)
+		{
+			writes.incrementAndGet();
+			writeNanos.addAndGet(nanos);
+
+			long max;
+			while ((max = maxWriteNanos.get()) < nanos)
+			{
+				if (maxWriteNanos.compareAndSet(max, nanos))
+				{
+					break;
+				}
+			}
+		}
+
+		private Duration getAverageWriteTime()
+		{
+			long count = writes.get();
+			if (count == 0)
+			{
+				return Duration.NONE;
+			}
+			return Duration.milliseconds(writeNanos.get() / count / 1000000d);
+		}
+	}
+
 	/**
 	 * The thread that acts as consumer of {@link Entry}ies
 	 */
@@ -326,12 +510,15 @@ public class AsynchronousDataStore implements IDataStore
 
 		private final IDataStore dataStore;
 
+		private final Statistics statistics;
+
 		private PageSavingRunnable(IDataStore dataStore, BlockingQueue<Entry> entries,
-			ConcurrentMap<String, Entry> entryMap)
+			ConcurrentMap<String, Entry> entryMap, Statistics statistics)
 		{
 			this.dataStore = dataStore;
 			this.entries = entries;
 			this.entryMap = entryMap;
+			this.statistics = statistics;
 		}
 
 		@Override
@@ -352,7 +539,10 @@ public class AsynchronousDataStore implements IDataStore
 				if (entry != null)
 				{
 					log.debug("Saving asynchronously: {}...", entry);
+					long start = System.nanoTime();
 					dataStore.storeData(entry.sessionId, entry.pageId, entry.data);
+					statistics.recordWrite(System.nanoTime() - start);
+					statistics.asynchronousStores.incrementAndGet();
 					entryMap.remove(getKey(entry));
 				}
 			}
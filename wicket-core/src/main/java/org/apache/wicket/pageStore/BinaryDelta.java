@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.apache.wicket.util.io.ByteArrayOutputStream;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * Computes and applies compact binary deltas between two byte arrays.
+ * <p>
+ * The base is split into blocks of {@link #BLOCK_SIZE} bytes which are indexed by their hash. The
+ * target is scanned with a rolling hash and every block found in the base is extended as far as
+ * possible and encoded as a copy instruction. Everything else is encoded as literal bytes. This
+ * works well for serialized pages where a request usually changes a few fields only.
+ * </p>
+ * <p>
+ * A delta carries the checksum of the base it was computed against so it is never applied to
+ * another base.
+ * </p>
+ *
+ * @see DeltaDataStore
+ */
+public final class BinaryDelta
+{
+	/**
+	 * The size of the blocks which are looked up in the base
+	 */
+	static final int BLOCK_SIZE = 16;
+
+	private static final byte FORMAT_VERSION = 1;
+
+	private static final int HASH_MULTIPLIER = 31;
+
+	/** HASH_MULTIPLIER ^ (BLOCK_SIZE - 1), used to remove the leaving byte from the rolling hash */
+	private static final int HASH_POWER;
+
+	static
+	{
+		int power = 1;
+		for (int i = 1; i < BLOCK_SIZE; i++)
+		{
+			power *= HASH_MULTIPLIER;
+		}
+		HASH_POWER = power;
+	}
+
+	private static final int OP_ADD = 0;
+
+	private static final int OP_COPY = 1;
+
+	/**
+	 * Construct.
+	 */
+	private BinaryDelta()
+	{
+	}
+
+	/**
+	 * Computes the delta which turns {@code base} into {@code target}.
+	 *
+	 * @param base
+	 *            the previous data
+	 * @param target
+	 *            the new data
+	 * @return the delta
+	 */
+	public static byte[] create(final byte[] base, final byte[] target)
+	{
+		Args.notNull(base, "base");
+		Args.notNull(target, "target");
+
+		DeltaOutput out = new DeltaOutput(target.length / 8 + 16);
+		out.write(FORMAT_VERSION);
+		out.writeInt(checksum(base));
+		out.writeVarInt(target.length);
+
+		int literalStart = 0;
+		if (base.length >= BLOCK_SIZE && target.length >= BLOCK_SIZE)
+		{
+			int blocks = base.length / BLOCK_SIZE;
+			int tableSize = Integer.highestOneBit(blocks * 2 - 1) << 1;
+			int mask = tableSize - 1;
+			int[] table = new int[tableSize];
+			Arrays.fill(table, -1);
+			for (int offset = 0; offset + BLOCK_SIZE <= base.length; offset += BLOCK_SIZE)
+			{
+				table[index(hash(base, offset), mask)] = offset;
+			}
+
+			int position = 0;
+			int hash = hash(target, 0);
+			while (position + BLOCK_SIZE <= target.length)
+			{
+				int candidate = table[index(hash, mask)];
+				if (candidate > -1 && regionMatches(base, candidate, target, position))
+				{
+					int length = BLOCK_SIZE;
+					while (candidate + length < base.length && position + length < target.length &&
+						base[candidate + length] == target[position + length])
+					{
+						length++;
+					}
+
+					// the pending literal may end with bytes which match too
+					int back = 0;
+					while (candidate - back > 0 && position - back > literalStart &&
+						base[candidate - back - 1] == target[position - back - 1])
+					{
+						back++;
+					}
+
+					out.writeAdd(target, literalStart, position - back - literalStart);
+					out.writeCopy(candidate - back, length + back);
+
+					position += length;
+					literalStart = position;
+					if (position + BLOCK_SIZE <= target.length)
+					{
+						hash = hash(target, position);
+					}
+				}
+				else
+				{
+					if (position + BLOCK_SIZE < target.length)
+					{
+						hash = (hash - (target[position] & 0xFF) * HASH_POWER) * HASH_MULTIPLIER +
+							(target[position + BLOCK_SIZE] & 0xFF);
+					}
+					position++;
+				}
+			}
+		}
+		out.writeAdd(target, literalStart, target.length - literalStart);
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Applies the delta created by {@link #create(byte[], byte[])} to the base.
+	 *
+	 * @param base
+	 *            the data the delta has been computed against
+	 * @param delta
+	 *            the delta
+	 * @return the target data or {@code null} if the delta has been computed against another base
+	 */
+	public static byte[] apply(final byte[] base, final byte[] delta)
+	{
+		Args.notNull(base, "base");
+		Args.notNull(delta, "delta");
+
+		DeltaInput in = new DeltaInput(delta);
+		if (in.read() != FORMAT_VERSION)
+		{
+			throw new IllegalArgumentException("Unsupported delta format");
+		}
+		if (in.readInt() != checksum(base))
+		{
+			return null;
+		}
+
+		byte[] target = new byte[in.readVarInt()];
+		int position = 0;
+		while (in.hasMore())
+		{
+			int instruction = in.readVarInt();
+			int length = instruction >>> 1;
+			if ((instruction & 1) == OP_COPY)
+			{
+				System.arraycopy(base, in.readVarInt(), target, position, length);
+			}
+			else
+			{
+				in.read(target, position, length);
+			}
+			position += length;
+		}
+
+		if (position != target.length)
+		{
+			throw new IllegalArgumentException("Corrupted delta");
+		}
+		return target;
+	}
+
+	/**
+	 * @param data
+	 * @return the CRC32 checksum of the data
+	 */
+	static int checksum(final byte[] data)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return (int)crc.getValue();
+	}
+
+	private static int hash(final byte[] data, final int offset)
+	{
+		int hash = 0;
+		for (int i = 0; i < BLOCK_SIZE; i++)
+		{
+			hash = hash * HASH_MULTIPLIER + (data[offset + i] & 0xFF);
+		}
+		return hash;
+	}
+
+	private static int index(final int hash, final int mask)
+	{
+		// spread the bits, the polynomial hash is weak in the lower ones
+		return (hash * 0x9E3779B9 >>> 16 ^ hash) & mask;
+	}
+
+	private static boolean regionMatches(final byte[] base, final int baseOffset,
+		final byte[] target, final int targetOffset)
+	{
+		for (int i = 0; i < BLOCK_SIZE; i++)
+		{
+			if (base[baseOffset + i] != target[targetOffset + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the instructions of a delta
+	 */
+	private static class DeltaOutput extends ByteArrayOutputStream
+	{
+		private DeltaOutput(final int size)
+		{
+			super(size);
+		}
+
+		private void writeInt(final int value)
+		{
+			write(value >>> 24);
+			write(value >>> 16);
+			write(value >>> 8);
+			write(value);
+		}
+
+		private void writeVarInt(int value)
+		{
+			while ((value & ~0x7F) != 0)
+			{
+				write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			write(value);
+		}
+
+		private void writeAdd(final byte[] data, final int offset, final int length)
+		{
+			if (length > 0)
+			{
+				writeVarInt(length << 1 | OP_ADD);
+				write(data, offset, length);
+			}
+		}
+
+		private void writeCopy(final int offset, final int length)
+		{
+			writeVarInt(length << 1 | OP_COPY);
+			writeVarInt(offset);
+		}
+	}
+
+	/**
+	 * Reads the instructions of a delta
+	 */
+	private static class DeltaInput
+	{
+		private final byte[] data;
+
+		private int position = 0;
+
+		private DeltaInput(final byte[] data)
+		{
+			this.data = data;
+		}
+
+		private boolean hasMore()
+		{
+			return position < data.length;
+		}
+
+		private int read()
+		{
+			return data[position++] & 0xFF;
+		}
+
+		private void read(final byte[] target, final int offset, final int length)
+		{
+			System.arraycopy(data, position, target, offset, length);
+			position += length;
+		}
+
+		private int readInt()
+		{
+			return read() << 24 | read() << 16 | read() << 8 | read();
+		}
+
+		private int readVarInt()
+		{
+			int value = 0;
+			int shift = 0;
+			int b;
+			do
+			{
+				b = read();
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			}
+			while ((b & 0x80) != 0);
+			return value;
+		}
+	}
+}
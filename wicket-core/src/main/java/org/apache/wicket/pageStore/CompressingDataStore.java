@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.pageStore.codec.DeflateCodec;
+import org.apache.wicket.pageStore.codec.FastBlockCodec;
+import org.apache.wicket.pageStore.codec.ICompressionCodec;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Facade for {@link IDataStore} that compresses the data of the pages with an
+ * {@link ICompressionCodec}.
+ * <p>
+ * The first byte of the stored data is the id of the codec which compressed it. Data can be read
+ * with any of the codecs passed to the constructor, so the codec can be changed without losing
+ * the stored pages, e.g. during a rolling upgrade of a cluster. Data which doesn't get smaller is
+ * stored uncompressed. Data written without this store (plain Java serialization) is still
+ * readable.
+ * </p>
+ * Unlike {@link org.apache.wicket.serialize.java.DeflatedJavaSerializer} the compression runs in
+ * the thread of the {@link AsynchronousDataStore} and not in the request thread:
+ * 
+ * <pre>
+ * <code>
+ * setPageManagerProvider(new DefaultPageManagerProvider(this)
+ * {
+ * 	protected IDataStore newDataStore()
+ * 	{
+ * 		return new CompressingDataStore(super.newDataStore(), new FastBlockCodec());
+ * 	}
+ * });
+ * </code>
+ * </pre>
+ */
+public class CompressingDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(CompressingDataStore.class);
+
+	/**
+	 * The id of data stored without compression
+	 */
+	public static final byte UNCOMPRESSED = 0;
+
+	/**
+	 * The first byte of data written by Java Serialization (the stream magic)
+	 */
+	private static final byte JAVA_SERIALIZATION = (byte)0xAC;
+
+	/**
+	 * The wrapped {@link IDataStore} that actually stores the compressed data
+	 */
+	private final IDataStore dataStore;
+
+	/**
+	 * The codec used for the new data
+	 */
+	private final ICompressionCodec codec;
+
+	/**
+	 * codec id => codec
+	 */
+	private final ICompressionCodec[] codecs = new ICompressionCodec[128];
+
+	private final AtomicLong uncompressedBytes = new AtomicLong();
+
+	private final AtomicLong compressedBytes = new AtomicLong();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore}
+	 * @param codec
+	 *            the codec used to compress the data
+	 * @param readableCodecs
+	 *            additional codecs which may have compressed the stored data.
+	 *            {@link FastBlockCodec} and {@link DeflateCodec} without dictionary are readable
+	 *            unless another codec with the same id is passed.
+	 */
+	public CompressingDataStore(final IDataStore dataStore, final ICompressionCodec codec,
+		final ICompressionCodec... readableCodecs)
+	{
+		this.dataStore = Args.notNull(dataStore, "dataStore");
+		this.codec = Args.notNull(codec, "codec");
+
+		register(new FastBlockCodec());
+		register(new DeflateCodec());
+		for (ICompressionCodec readableCodec : readableCodecs)
+		{
+			register(readableCodec);
+		}
+		register(codec);
+	}
+
+	private void register(final ICompressionCodec codec)
+	{
+		byte id = codec.getId();
+		if (id <= UNCOMPRESSED)
+		{
+			throw new IllegalArgumentException("The id of a codec must be between 1 and 127: " +
+				id);
+		}
+		codecs[id] = codec;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#getData(java.lang.String, int)
+	 */
+	@Override
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] data = dataStore.getData(sessionId, id);
+		if (data == null || data.length == 0)
+		{
+			return data;
+		}
+
+		byte codecId = data[0];
+		if (codecId == UNCOMPRESSED)
+		{
+			byte[] uncompressed = new byte[data.length - 1];
+			System.arraycopy(data, 1, uncompressed, 0, uncompressed.length);
+			return uncompressed;
+		}
+		else if (codecId == JAVA_SERIALIZATION)
+		{
+			return data;
+		}
+		else if (codecId < 0 || codecs[codecId] == null)
+		{
+			log.warn("Unknown codec '{}' for page with id '{}' in session '{}'", new Object[] {
+					codecId, id, sessionId });
+			return null;
+		}
+
+		byte[] decompressed = codecs[codecId].decompress(data, 1);
+		if (decompressed == null)
+		{
+			log.warn(
+				"The page with id '{}' in session '{}' has been compressed with another dictionary",
+				id, sessionId);
+		}
+		return decompressed;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#storeData(java.lang.String, int, byte[])
+	 */
+	@Override
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		byte[] compressed = codec.compress(data);
+		byte[] stored;
+		if (compressed.length < data.length)
+		{
+			stored = new byte[compressed.length + 1];
+			stored[0] = codec.getId();
+			System.arraycopy(compressed, 0, stored, 1, compressed.length);
+		}
+		else
+		{
+			stored = new byte[data.length + 1];
+			stored[0] = UNCOMPRESSED;
+			System.arraycopy(data, 0, stored, 1, data.length);
+		}
+
+		uncompressedBytes.addAndGet(data.length);
+		compressedBytes.addAndGet(stored.length);
+		dataStore.storeData(sessionId, id, stored);
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String, int)
+	 */
+	@Override
+	public void removeData(final String sessionId, final int id)
+	{
+		dataStore.removeData(sessionId, id);
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String)
+	 */
+	@Override
+	public void removeData(final String sessionId)
+	{
+		dataStore.removeData(sessionId);
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#destroy()
+	 */
+	@Override
+	public void destroy()
+	{
+		dataStore.destroy();
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#isReplicated()
+	 */
+	@Override
+	public boolean isReplicated()
+	{
+		return dataStore.isReplicated();
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#canBeAsynchronous()
+	 */
+	@Override
+	public boolean canBeAsynchronous()
+	{
+		return dataStore.canBeAsynchronous();
+	}
+
+	/**
+	 * @return the total size of the data before the compression
+	 */
+	public Bytes getUncompressedBytes()
+	{
+		return Bytes.bytes(uncompressedBytes.get());
+	}
+
+	/**
+	 * @return the total size of the data passed to the wrapped store
+	 */
+	public Bytes getCompressedBytes()
+	{
+		return Bytes.bytes(compressedBytes.get());
+	}
+}
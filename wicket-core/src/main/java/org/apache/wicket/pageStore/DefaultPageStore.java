@@ -18,13 +18,16 @@ package org.apache.wicket.pageStore;
 
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.page.IManageablePage;
 import org.apache.wicket.serialize.ISerializer;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,13 +64,36 @@ public class DefaultPageStore implements IPageStore
 	 */
 	public DefaultPageStore(final ISerializer pageSerializer, final IDataStore dataStore,
 		final int cacheSize)
+	{
+		this(pageSerializer, dataStore, cacheSize, Bytes.bytes(Long.MAX_VALUE), true);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param pageSerializer
+	 *            the {@link ISerializer} that will be used to convert pages from/to byte arrays
+	 * @param dataStore
+	 *            the {@link IDataStore} that actually stores the pages
+	 * @param cacheSize
+	 *            the number of pages to cache in memory before passing them to
+	 *            {@link IDataStore#storeData(String, int, byte[])}
+	 * @param cacheMaxSize
+	 *            the maximum size of the data of all pages in the cache
+	 * @param softReferences
+	 *            whether the garbage collector may drop the cached pages when the memory gets low
+	 */
+	public DefaultPageStore(final ISerializer pageSerializer, final IDataStore dataStore,
+		final int cacheSize, final Bytes cacheMaxSize, final boolean softReferences)
 	{
 		Args.notNull(pageSerializer, "pageSerializer");
 		Args.notNull(dataStore, "DataStore");
+		Args.notNull(cacheMaxSize, "cacheMaxSize");
 
 		this.pageSerializer = pageSerializer;
 		pageDataStore = dataStore;
-		serializedPagesCache = new SerializedPagesCache(cacheSize);
+		serializedPagesCache = new SerializedPagesCache(cacheSize, cacheMaxSize.bytes(),
+			softReferences);
 	}
 
 	/**
@@ -79,6 +105,30 @@ public class DefaultPageStore implements IPageStore
 		pageDataStore.destroy();
 	}
 
+	/**
+	 * @return the number of lookups which found the serialized page in the in-memory cache
+	 */
+	public long getCacheHitCount()
+	{
+		return serializedPagesCache.getHitCount();
+	}
+
+	/**
+	 * @return the number of lookups which didn't find the serialized page in the in-memory cache
+	 */
+	public long getCacheMissCount()
+	{
+		return serializedPagesCache.getMissCount();
+	}
+
+	/**
+	 * @return the size of the data of all pages in the in-memory cache
+	 */
+	public Bytes getCacheSize()
+	{
+		return Bytes.bytes(serializedPagesCache.getByteSize());
+	}
+
 	/**
 	 * @param sessionId
 	 * @param pageId
@@ -404,14 +454,52 @@ public class DefaultPageStore implements IPageStore
 	 * For example a page is serialized during request, but it might be also later serialized on
 	 * session replication. The purpose of this cache is to make sure that the data obtained from
 	 * first serialization is reused on second serialization.
+	 * <p>
+	 * The pages are hashed by session id and page id into a number of segments, each with its own
+	 * lock, so request threads working with different pages rarely wait for each other. The bounds
+	 * (number of pages and bytes) apply to the whole cache: when one is exceeded the least recently
+	 * used page of all segments is removed.
 	 * 
 	 * @author Matej Knopp
 	 */
 	static class SerializedPagesCache
 	{
-		private final int size;
+		/**
+		 * The maximum number of segments
+		 */
+		private static final int MAX_SEGMENTS = 16;
+
+		/**
+		 * A new segment is added only if each segment can keep at least this number of pages
+		 */
+		private static final int MIN_SEGMENT_SIZE = 4;
+
+		private final Segment[] segments;
+
+		private final int maxSize;
+
+		private final long maxBytes;
+
+		private final boolean softReferences;
+
+		/**
+		 * The number of cached pages, updated while holding the lock of the segment
+		 */
+		private final AtomicInteger size = new AtomicInteger();
 
-		private final List<SoftReference<SerializedPage>> cache;
+		/**
+		 * The size of the data of all cached pages, updated while holding the lock of the segment
+		 */
+		private final AtomicLong bytes = new AtomicLong();
+
+		/**
+		 * Orders the accesses of all segments
+		 */
+		private final AtomicLong clock = new AtomicLong();
+
+		private final AtomicLong hits = new AtomicLong();
+
+		private final AtomicLong misses = new AtomicLong();
 
 		/**
 		 * Construct.
@@ -420,8 +508,45 @@ public class DefaultPageStore implements IPageStore
 		 */
 		public SerializedPagesCache(final int size)
 		{
-			this.size = size;
-			cache = new ArrayList<SoftReference<SerializedPage>>(size);
+			this(size, Long.MAX_VALUE, true);
+		}
+
+		/**
+		 * Construct.
+		 * 
+		 * @param size
+		 *            the maximum number of pages in the cache
+		 * @param maxBytes
+		 *            the maximum size of the data of all cached pages
+		 * @param softReferences
+		 *            whether to keep the pages with {@link SoftReference}s so the garbage collector
+		 *            may drop them when the memory gets low
+		 */
+		public SerializedPagesCache(final int size, final long maxBytes,
+			final boolean softReferences)
+		{
+			this.softReferences = softReferences;
+			maxSize = size;
+			this.maxBytes = maxBytes;
+
+			if (size > 0 && maxBytes > 0)
+			{
+				int count = 1;
+				while (count < MAX_SEGMENTS && count * 2 * MIN_SEGMENT_SIZE <= size)
+				{
+					count *= 2;
+				}
+
+				segments = new Segment[count];
+				for (int i = 0; i < count; i++)
+				{
+					segments[i] = new Segment();
+				}
+			}
+			else
+			{
+				segments = new Segment[0];
+			}
 		}
 
 		/**
@@ -434,20 +559,17 @@ public class DefaultPageStore implements IPageStore
 		{
 			Args.notNull(sessionId, "sessionId");
 
-			if (size > 0)
+			if (segments.length > 0)
 			{
-				synchronized (cache)
+				PageKey key = new PageKey(sessionId, id);
+				Segment segment = getSegment(key);
+				synchronized (segment)
 				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
+					CacheEntry entry = segment.remove(key);
+					if (entry != null)
 					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getPageId() == id &&
-							entry.getSessionId().equals(sessionId))
-						{
-							i.remove();
-							return entry;
-						}
+						removed(entry);
+						return entry.getPage();
 					}
 				}
 			}
@@ -464,16 +586,16 @@ public class DefaultPageStore implements IPageStore
 		{
 			Args.notNull(sessionId, "sessionId");
 
-			if (size > 0)
+			for (Segment segment : segments)
 			{
-				synchronized (cache)
+				synchronized (segment)
 				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
+					for (Iterator<Map.Entry<PageKey, CacheEntry>> i = segment.entrySet().iterator(); i.hasNext();)
 					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getSessionId().equals(sessionId))
+						Map.Entry<PageKey, CacheEntry> entry = i.next();
+						if (entry.getKey().sessionId.equals(sessionId))
 						{
+							removed(entry.getValue());
 							i.remove();
 						}
 					}
@@ -495,28 +617,37 @@ public class DefaultPageStore implements IPageStore
 			Args.notNull(sessionId, "sessionId");
 
 			SerializedPage result = null;
-			if (size > 0)
+			if (segments.length > 0)
 			{
-				synchronized (cache)
+				PageKey key = new PageKey(sessionId, pageId);
+				Segment segment = getSegment(key);
+				synchronized (segment)
 				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
+					// the access ordered map moves the entry at the top
+					CacheEntry entry = segment.get(key);
+					if (entry != null)
 					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getPageId() == pageId &&
-							entry.getSessionId().equals(sessionId))
+						result = entry.getPage();
+						if (result == null)
 						{
-							i.remove();
-							result = entry;
-							break;
+							// collected by the garbage collector
+							segment.remove(key);
+							removed(entry);
+						}
+						else
+						{
+							entry.lastAccess = clock.incrementAndGet();
 						}
 					}
+				}
 
-					if (result != null)
-					{
-						// move to top
-						storePage(result);
-					}
+				if (result != null)
+				{
+					hits.incrementAndGet();
+				}
+				else
+				{
+					misses.incrementAndGet();
 				}
 			}
 			return result;
@@ -530,30 +661,208 @@ public class DefaultPageStore implements IPageStore
 		 */
 		void storePage(SerializedPage page)
 		{
-			SoftReference<SerializedPage> ref = new SoftReference<SerializedPage>(page);
+			if (segments.length > 0)
+			{
+				PageKey key = new PageKey(page.getSessionId(), page.getPageId());
+				CacheEntry entry = new CacheEntry(page, softReferences);
+				Segment segment = getSegment(key);
+				synchronized (segment)
+				{
+					CacheEntry previous = segment.remove(key);
+					if (previous != null)
+					{
+						removed(previous);
+					}
 
-			if (size > 0)
+					if (entry.size <= maxBytes)
+					{
+						entry.lastAccess = clock.incrementAndGet();
+						segment.put(key, entry);
+						size.incrementAndGet();
+						bytes.addAndGet(entry.size);
+					}
+				}
+				evict();
+			}
+		}
+
+		/**
+		 * Removes the least recently used pages of all segments until the cache is within its
+		 * bounds again
+		 */
+		private void evict()
+		{
+			while (size.get() > maxSize || bytes.get() > maxBytes)
 			{
-				synchronized (cache)
+				// the first entry of each segment is its least recently used one
+				Segment oldest = null;
+				long oldestAccess = Long.MAX_VALUE;
+				for (Segment segment : segments)
 				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
+					synchronized (segment)
 					{
-						SoftReference<SerializedPage> r = i.next();
-						SerializedPage entry = r.get();
-						if (entry != null && entry.equals(page))
+						if (segment.isEmpty() == false)
 						{
-							i.remove();
-							break;
+							long lastAccess = segment.values().iterator().next().lastAccess;
+							if (lastAccess < oldestAccess)
+							{
+								oldest = segment;
+								oldestAccess = lastAccess;
+							}
 						}
 					}
+				}
+				if (oldest == null)
+				{
+					return;
+				}
 
-					cache.add(ref);
-					if (cache.size() > size)
+				synchronized (oldest)
+				{
+					Iterator<CacheEntry> iterator = oldest.values().iterator();
+					if (iterator.hasNext())
 					{
-						cache.remove(0);
+						CacheEntry entry = iterator.next();
+						// unless it has been accessed or removed in the meantime
+						if (entry.lastAccess == oldestAccess)
+						{
+							iterator.remove();
+							removed(entry);
+						}
 					}
 				}
 			}
 		}
+
+		/**
+		 * Must be called with the lock of the segment the entry has been removed from
+		 */
+		private void removed(final CacheEntry entry)
+		{
+			size.decrementAndGet();
+			bytes.addAndGet(-entry.size);
+		}
+
+		/**
+		 * @return the number of lookups which found the page
+		 */
+		long getHitCount()
+		{
+			return hits.get();
+		}
+
+		/**
+		 * @return the number of lookups which didn't find the page
+		 */
+		long getMissCount()
+		{
+			return misses.get();
+		}
+
+		/**
+		 * @return the number of cached pages
+		 */
+		int getSize()
+		{
+			return size.get();
+		}
+
+		/**
+		 * @return the size of the data of all cached pages
+		 */
+		long getByteSize()
+		{
+			return bytes.get();
+		}
+
+		private Segment getSegment(final PageKey key)
+		{
+			int hash = key.hashCode();
+			hash ^= (hash >>> 16);
+			return segments[hash & (segments.length - 1)];
+		}
+
+		/**
+		 * A part of the cache with its own lock. The map is in access order so its first entry is
+		 * the least recently used one.
+		 */
+		private static class Segment extends LinkedHashMap<PageKey, CacheEntry>
+		{
+			private static final long serialVersionUID = 1L;
+
+			private Segment()
+			{
+				super(16, 0.75f, true);
+			}
+		}
+
+		/**
+		 * Holds the cached page either directly or with a {@link SoftReference}
+		 */
+		private static class CacheEntry
+		{
+			private final Object page;
+
+			private final int size;
+
+			/**
+			 * The value of the clock of the cache when the entry was accessed last, guarded by the
+			 * lock of the segment
+			 */
+			private long lastAccess;
+
+			private CacheEntry(final SerializedPage page, final boolean softReference)
+			{
+				this.page = softReference ? new SoftReference<SerializedPage>(page) : page;
+				size = page.getData() != null ? page.getData().length : 0;
+			}
+
+			@SuppressWarnings("unchecked")
+			private SerializedPage getPage()
+			{
+				if (page instanceof SoftReference)
+				{
+					return ((SoftReference<SerializedPage>)page).get();
+				}
+				return (SerializedPage)page;
+			}
+		}
+
+		/**
+		 * The key of a cached page
+		 */
+		private static class PageKey
+		{
+			private final String sessionId;
+
+			private final int pageId;
+
+			private PageKey(final String sessionId, final int pageId)
+			{
+				this.sessionId = sessionId;
+				this.pageId = pageId;
+			}
+
+			@Override
+			public boolean equals(final Object obj)
+			{
+				if (this == obj)
+				{
+					return true;
+				}
+				if ((obj instanceof PageKey) == false)
+				{
+					return false;
+				}
+				PageKey rhs = (PageKey)obj;
+				return pageId == rhs.pageId && sessionId.equals(rhs.sessionId);
+			}
+
+			@Override
+			public int hashCode()
+			{
+				return 31 * sessionId.hashCode() + pageId;
+			}
+		}
 	}
 }
@@ -0,0 +1,412 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Facade for {@link IDataStore} that stores the new versions of a page as deltas against a full
+ * snapshot of the page.
+ * <p>
+ * Ajax requests usually store the same page id again and again with just a few changed bytes.
+ * Instead of writing the whole serialized page each time this store writes a full snapshot once
+ * and after that only a {@link BinaryDelta delta} between the snapshot and the current version.
+ * A new full snapshot is written after {@code maxDeltas} versions or when the delta is not much
+ * smaller than the page itself.
+ * </p>
+ * <p>
+ * The snapshot is stored in the wrapped {@link IDataStore} with the page id, the delta with the
+ * id {@code -2 - pageId}, so both end up in the same session storage. Since
+ * the snapshot is stored unchanged the pages stay readable by the wrapped store alone as long as
+ * there is no delta for them.
+ * </p>
+ * <p>
+ * The snapshot is written once, the delta on every store. A wrapped store which overwrites its
+ * oldest entries, like the cyclic file of {@link DiskDataStore}, would drop the snapshot long
+ * before the delta. So the snapshot is stored again as soon as more than {@code maxSnapshotAge}
+ * bytes have been written to the session since, or when it is neither in memory nor in the
+ * wrapped store anymore.
+ * </p>
+ * To use it override {@link org.apache.wicket.DefaultPageManagerProvider#newDataStore()}. The
+ * deltas are then computed by the {@link AsynchronousDataStore} thread:
+ *
+ * <pre>
+ * <code>
+ * setPageManagerProvider(new DefaultPageManagerProvider(this)
+ * {
+ * 	protected IDataStore newDataStore()
+ * 	{
+ * 		return new DeltaDataStore(super.newDataStore(), 10);
+ * 	}
+ * });
+ * </code>
+ * </pre>
+ */
+public class DeltaDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(DeltaDataStore.class);
+
+	/**
+	 * A delta is stored only if it is smaller than the page divided by this value
+	 */
+	private static final int MIN_COMPRESSION_RATIO = 2;
+
+	/**
+	 * The wrapped {@link IDataStore} that actually stores the snapshots and the deltas
+	 */
+	private final IDataStore dataStore;
+
+	/**
+	 * The number of deltas after which a new snapshot is stored
+	 */
+	private final int maxDeltas;
+
+	/**
+	 * The number of bytes written to a session after which the snapshot of a page is stored again
+	 */
+	private final long maxSnapshotAge;
+
+	/**
+	 * sessionId -> state
+	 */
+	private final ConcurrentMap<String, SessionState> states;
+
+	private final AtomicLong snapshotBytes = new AtomicLong();
+
+	private final AtomicLong deltaBytes = new AtomicLong();
+
+	/**
+	 * Construct. If the wrapped store is a {@link DiskDataStore} the snapshots are stored again
+	 * after half of its {@link DiskDataStore#getMaxSizePerSession() maximum size per session} has
+	 * been written since.
+	 *
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore}
+	 * @param maxDeltas
+	 *            the number of versions of a page which are stored as deltas before a new full
+	 *            snapshot is stored
+	 */
+	public DeltaDataStore(final IDataStore dataStore, final int maxDeltas)
+	{
+		this(dataStore, maxDeltas, getDefaultMaxSnapshotAge(dataStore));
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore}
+	 * @param maxDeltas
+	 *            the number of versions of a page which are stored as deltas before a new full
+	 *            snapshot is stored
+	 * @param maxSnapshotAge
+	 *            the number of bytes written to a session after which the snapshot of a page is
+	 *            stored again, must be well below the size the wrapped store keeps per session
+	 */
+	public DeltaDataStore(final IDataStore dataStore, final int maxDeltas,
+		final Bytes maxSnapshotAge)
+	{
+		this.dataStore = Args.notNull(dataStore, "dataStore");
+		this.maxDeltas = Args.withinRange(1, Integer.MAX_VALUE, maxDeltas, "maxDeltas");
+		this.maxSnapshotAge = Args.notNull(maxSnapshotAge, "maxSnapshotAge").bytes();
+		states = new ConcurrentHashMap<String, SessionState>();
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#getData(java.lang.String, int)
+	 */
+	@Override
+	public byte[] getData(final String sessionId, final int id)
+	{
+		PageState state = getPageState(getSessionState(sessionId, false), id, false);
+		if (state != null)
+		{
+			synchronized (state)
+			{
+				return loadData(sessionId, id, state);
+			}
+		}
+		return loadData(sessionId, id, null);
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#storeData(java.lang.String, int, byte[])
+	 */
+	@Override
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		SessionState session = getSessionState(sessionId, true);
+		PageState state = getPageState(session, id, true);
+		synchronized (state)
+		{
+			if (state.deltas < maxDeltas)
+			{
+				// null if the wrapped store has dropped it already
+				byte[] snapshot = getSnapshot(sessionId, id, state);
+				if (snapshot != null)
+				{
+					byte[] delta = BinaryDelta.create(snapshot, data);
+					if (delta.length * MIN_COMPRESSION_RATIO < data.length &&
+						session.written.get() - state.snapshotWritten + delta.length <= maxSnapshotAge)
+					{
+						log.debug("Storing delta of page with id '{}' in session '{}'", id,
+							sessionId);
+						dataStore.storeData(sessionId, getDeltaId(id), delta);
+						session.written.addAndGet(delta.length);
+						state.deltas++;
+						deltaBytes.addAndGet(delta.length);
+						return;
+					}
+				}
+			}
+
+			log.debug("Storing snapshot of page with id '{}' in session '{}'", id, sessionId);
+			dataStore.storeData(sessionId, id, data);
+			dataStore.removeData(sessionId, getDeltaId(id));
+			state.setSnapshot(data, session.written.addAndGet(data.length));
+			snapshotBytes.addAndGet(data.length);
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String, int)
+	 */
+	@Override
+	public void removeData(final String sessionId, final int id)
+	{
+		SessionState session = states.get(sessionId);
+		if (session != null)
+		{
+			session.pages.remove(id);
+		}
+		dataStore.removeData(sessionId, getDeltaId(id));
+		dataStore.removeData(sessionId, id);
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String)
+	 */
+	@Override
+	public void removeData(final String sessionId)
+	{
+		states.remove(sessionId);
+		dataStore.removeData(sessionId);
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#destroy()
+	 */
+	@Override
+	public void destroy()
+	{
+		states.clear();
+		dataStore.destroy();
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#isReplicated()
+	 */
+	@Override
+	public boolean isReplicated()
+	{
+		return dataStore.isReplicated();
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#canBeAsynchronous()
+	 */
+	@Override
+	public boolean canBeAsynchronous()
+	{
+		return dataStore.canBeAsynchronous();
+	}
+
+	/**
+	 * @return the total size of the full snapshots passed to the wrapped store
+	 */
+	public Bytes getSnapshotBytes()
+	{
+		return Bytes.bytes(snapshotBytes.get());
+	}
+
+	/**
+	 * @return the total size of the deltas passed to the wrapped store
+	 */
+	public Bytes getDeltaBytes()
+	{
+		return Bytes.bytes(deltaBytes.get());
+	}
+
+	/**
+	 * @param id
+	 *            the page id
+	 * @return the id under which the delta of the page is stored
+	 */
+	protected int getDeltaId(final int id)
+	{
+		// never -1, which marks an empty window in older PageWindowManagers
+		return -2 - id;
+	}
+
+	private byte[] loadData(final String sessionId, final int id, final PageState state)
+	{
+		byte[] delta = dataStore.getData(sessionId, getDeltaId(id));
+		byte[] snapshot = state != null ? getSnapshot(sessionId, id, state) : dataStore.getData(
+			sessionId, id);
+		if (delta == null && state != null && state.hasDeltas())
+		{
+			// the wrapped store dropped the delta, the snapshot alone is an outdated version
+			return null;
+		}
+		if (delta == null || snapshot == null)
+		{
+			return snapshot;
+		}
+
+		byte[] data = BinaryDelta.apply(snapshot, delta);
+		if (data == null)
+		{
+			log.warn(
+				"The delta of page with id '{}' in session '{}' doesn't match its snapshot. The page is lost.",
+				id, sessionId);
+		}
+		return data;
+	}
+
+	/**
+	 * @return the snapshot, either from the memory or from the wrapped store
+	 */
+	private byte[] getSnapshot(final String sessionId, final int id, final PageState state)
+	{
+		byte[] snapshot = state.getSnapshot();
+		if (snapshot == null)
+		{
+			snapshot = dataStore.getData(sessionId, id);
+			if (snapshot != null)
+			{
+				state.snapshot = new SoftReference<byte[]>(snapshot);
+			}
+		}
+		return snapshot;
+	}
+
+	private static Bytes getDefaultMaxSnapshotAge(final IDataStore dataStore)
+	{
+		if (dataStore instanceof DiskDataStore)
+		{
+			return Bytes.bytes(((DiskDataStore)dataStore).getMaxSizePerSession().bytes() / 2);
+		}
+		return Bytes.bytes(Long.MAX_VALUE);
+	}
+
+	private SessionState getSessionState(final String sessionId, final boolean create)
+	{
+		SessionState session = states.get(sessionId);
+		if (session == null && create)
+		{
+			SessionState newSession = new SessionState();
+			session = states.putIfAbsent(sessionId, newSession);
+			if (session == null)
+			{
+				session = newSession;
+			}
+		}
+		return session;
+	}
+
+	private PageState getPageState(final SessionState session, final int id, final boolean create)
+	{
+		if (session == null)
+		{
+			return null;
+		}
+
+		PageState state = session.pages.get(id);
+		if (state == null && create)
+		{
+			PageState newState = new PageState();
+			state = session.pages.putIfAbsent(id, newState);
+			if (state == null)
+			{
+				state = newState;
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * The pages of a session and the number of bytes written to the wrapped store for it
+	 */
+	private static class SessionState
+	{
+		private final ConcurrentMap<Integer, PageState> pages;
+
+		private final AtomicLong written = new AtomicLong();
+
+		private SessionState()
+		{
+			pages = new ConcurrentHashMap<Integer, PageState>();
+		}
+	}
+
+	/**
+	 * The snapshot of a page and the number of deltas stored since then
+	 */
+	private static class PageState
+	{
+		/**
+		 * The number of deltas stored since the last snapshot. Starts with the maximum so that
+		 * the first store of a page is always a snapshot.
+		 */
+		private int deltas = Integer.MAX_VALUE;
+
+		/**
+		 * The last snapshot, kept in memory as long as there is enough of it
+		 */
+		private SoftReference<byte[]> snapshot;
+
+		/**
+		 * The number of bytes written to the session when the snapshot was stored
+		 */
+		private long snapshotWritten;
+
+		private boolean hasDeltas()
+		{
+			return deltas > 0 && deltas != Integer.MAX_VALUE;
+		}
+
+		private byte[] getSnapshot()
+		{
+			return snapshot != null ? snapshot.get() : null;
+		}
+
+		private void setSnapshot(final byte[] data, final long written)
+		{
+			snapshot = new SoftReference<byte[]>(data);
+			snapshotWritten = written;
+			deltas = 0;
+		}
+	}
+}
@@ -578,4 +578,13 @@ public class DiskDataStore implements IDataStore
 	{
 		return true;
 	}
+
+	/**
+	 * @return the maximum size of the file of a session, when it is exceeded the oldest pages are
+	 *         overwritten
+	 */
+	public Bytes getMaxSizePerSession()
+	{
+		return maxSizePerPageSession;
+	}
 }
@@ -0,0 +1,1006 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A data store implementation which packs the pages of all sessions into a few large, memory
+ * mapped segment files.
+ * <p>
+ * Unlike {@link DiskDataStore} which keeps one file per session, this store appends every page to
+ * the current segment and keeps an in-memory index of (sessionId, pageId) -> (segment, offset,
+ * length). Page reads are plain copies out of the mapped segment (or zero-copy slices via
+ * {@link #getDataBuffer(String, int)}) and writes are appends, so the number of open file
+ * descriptors does not depend on the number of live sessions.
+ * </p>
+ * <p>
+ * Segments are never rewritten in place. Replaced and removed pages only decrease the amount of
+ * live bytes of their segment; a background thread periodically relocates the live pages of
+ * sparsely used segments into the current one and deletes the segments which are no longer
+ * referenced.
+ * </p>
+ * To use it instead of {@link DiskDataStore} override
+ * {@link org.apache.wicket.DefaultPageManagerProvider#newDataStore()}:
+ *
+ * <pre>
+ * <code>
+ * setPageManagerProvider(new DefaultPageManagerProvider(this)
+ * {
+ * 	protected IDataStore newDataStore()
+ * 	{
+ * 		IStoreSettings settings = getStoreSettings();
+ * 		return new MappedSegmentDataStore(getName(), settings.getFileStoreFolder(),
+ * 			settings.getMaxSizePerSession());
+ * 	}
+ * });
+ * </code>
+ * </pre>
+ */
+public class MappedSegmentDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(MappedSegmentDataStore.class);
+
+	private static final String INDEX_FILE_NAME = "MappedSegmentDataStoreIndex";
+
+	private static final String SEGMENT_FILE_PREFIX = "segment-";
+
+	/**
+	 * The default size of a segment file
+	 */
+	public static final Bytes DEFAULT_SEGMENT_SIZE = Bytes.megabytes(32);
+
+	/**
+	 * The default period between two compaction runs
+	 */
+	public static final Duration DEFAULT_COMPACTION_INTERVAL = Duration.seconds(30);
+
+	/**
+	 * Segments with less than this ratio of live bytes are compacted
+	 */
+	private static final double COMPACTION_THRESHOLD = 0.5d;
+
+	private final String applicationName;
+
+	private final File fileStoreFolder;
+
+	private final Bytes maxSizePerSession;
+
+	private final int segmentSize;
+
+	private final ConcurrentMap<String, SessionIndex> sessionIndexMap;
+
+	private final ConcurrentMap<Integer, Segment> segments;
+
+	private final AtomicInteger segmentIdCounter;
+
+	/**
+	 * The segment where new pages are appended to
+	 */
+	private volatile Segment currentSegment;
+
+	private final Object compactionLock = new Object();
+
+	private final Thread compactionThread;
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 */
+	public MappedSegmentDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession)
+	{
+		this(applicationName, fileStoreFolder, maxSizePerSession, DEFAULT_SEGMENT_SIZE,
+			DEFAULT_COMPACTION_INTERVAL);
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 *            the maximum size of the pages of a single session. The oldest pages of a session
+	 *            are removed when it is exceeded
+	 * @param segmentSize
+	 *            the size of a single segment file
+	 * @param compactionInterval
+	 *            the period between two compaction runs. {@link Duration#NONE} disables the
+	 *            background compaction
+	 */
+	public MappedSegmentDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final Bytes segmentSize, final Duration compactionInterval)
+	{
+		this.applicationName = Args.notNull(applicationName, "applicationName");
+		this.fileStoreFolder = Args.notNull(fileStoreFolder, "fileStoreFolder");
+		this.maxSizePerSession = Args.notNull(maxSizePerSession, "maxSizePerSession");
+		Args.notNull(segmentSize, "segmentSize");
+		Args.notNull(compactionInterval, "compactionInterval");
+		Args.withinRange(1L, (long)Integer.MAX_VALUE, segmentSize.bytes(), "segmentSize");
+		this.segmentSize = (int)segmentSize.bytes();
+
+		sessionIndexMap = new ConcurrentHashMap<String, SessionIndex>();
+		segments = new ConcurrentHashMap<Integer, Segment>();
+		segmentIdCounter = new AtomicInteger();
+
+		File storeFolder = getStoreFolder();
+		try
+		{
+			if (storeFolder.exists() || storeFolder.mkdirs())
+			{
+				loadIndex();
+			}
+			else
+			{
+				throw new WicketRuntimeException("Cannot create the segment store folder " +
+					storeFolder);
+			}
+		}
+		catch (SecurityException e)
+		{
+			throw new WicketRuntimeException(
+				"SecurityException occurred while creating MappedSegmentDataStore. Consider using a non-disk based IDataStore implementation. "
+					+ "See org.apache.wicket.Application.setPageManagerProvider(IPageManagerProvider)",
+				e);
+		}
+
+		currentSegment = newSegment(this.segmentSize);
+
+		if (compactionInterval.getMilliseconds() > 0)
+		{
+			compactionThread = new Thread(new CompactionRunnable(this, compactionInterval),
+				"Wicket-SegmentCompactionThread");
+			compactionThread.setDaemon(true);
+			compactionThread.start();
+		}
+		else
+		{
+			compactionThread = null;
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#getData(java.lang.String, int)
+	 */
+	@Override
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] pageData = null;
+		ByteBuffer buffer = getDataBuffer(sessionId, id);
+		if (buffer != null)
+		{
+			pageData = new byte[buffer.remaining()];
+			buffer.get(pageData);
+		}
+
+		log.debug("Returning data{} for page with id '{}' in session with id '{}'", new Object[] {
+				pageData != null ? "" : "(null)", id, sessionId });
+		return pageData;
+	}
+
+	/**
+	 * Returns a read-only view of the stored page data without copying it out of the mapped
+	 * segment.
+	 * <p>
+	 * Segments are append-only so the returned buffer keeps its content even if the page is
+	 * replaced, removed or relocated in the meantime.
+	 * </p>
+	 *
+	 * @param sessionId
+	 *            Session ID
+	 * @param id
+	 *            Page ID
+	 * @return a read-only buffer positioned at the page data or {@code null} if there is no such
+	 *         page
+	 */
+	public ByteBuffer getDataBuffer(final String sessionId, final int id)
+	{
+		ByteBuffer result = null;
+		SessionIndex sessionIndex = sessionIndexMap.get(sessionId);
+		if (sessionIndex != null)
+		{
+			Segment segment = null;
+			Location location;
+			synchronized (sessionIndex)
+			{
+				location = sessionIndex.get(id);
+				if (location != null)
+				{
+					// resolve the segment while holding the lock so that a concurrent compaction
+					// cannot release it before we have a reference to its mapping
+					segment = segments.get(location.segmentId);
+				}
+			}
+
+			if (segment != null)
+			{
+				result = segment.slice(location.offset, location.length);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#storeData(java.lang.String, int, byte[])
+	 */
+	@Override
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		// only save page that has some data
+		if (data != null)
+		{
+			log.debug("Storing data for page with id '{}' in session with id '{}'", new Object[] {
+					id, sessionId });
+
+			Location location = append(data);
+
+			SessionIndex sessionIndex = getSessionIndex(sessionId);
+			List<Location> discarded = sessionIndex.put(id, location, maxSizePerSession.bytes());
+			release(discarded);
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String, int)
+	 */
+	@Override
+	public void removeData(final String sessionId, final int id)
+	{
+		SessionIndex sessionIndex = sessionIndexMap.get(sessionId);
+		if (sessionIndex != null)
+		{
+			log.debug("Removing data for page with id '{}' in session with id '{}'", new Object[] {
+					id, sessionId });
+			Location location = sessionIndex.remove(id);
+			if (location != null)
+			{
+				release(location);
+			}
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String)
+	 */
+	@Override
+	public void removeData(final String sessionId)
+	{
+		SessionIndex sessionIndex = sessionIndexMap.remove(sessionId);
+		if (sessionIndex != null)
+		{
+			log.debug("Removing data for pages in session with id '{}'", sessionId);
+			release(sessionIndex.unbind());
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#destroy()
+	 */
+	@Override
+	public void destroy()
+	{
+		log.debug("Destroying...");
+		if (compactionThread != null && compactionThread.isAlive())
+		{
+			compactionThread.interrupt();
+			try
+			{
+				compactionThread.join();
+			}
+			catch (InterruptedException e)
+			{
+				log.error(e.getMessage(), e);
+			}
+		}
+
+		synchronized (compactionLock)
+		{
+			saveIndex();
+			for (Segment segment : segments.values())
+			{
+				segment.close();
+			}
+			segments.clear();
+		}
+		log.debug("Destroyed.");
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#isReplicated()
+	 */
+	@Override
+	public boolean isReplicated()
+	{
+		return false;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#canBeAsynchronous()
+	 */
+	@Override
+	public boolean canBeAsynchronous()
+	{
+		return true;
+	}
+
+	/**
+	 * @return the number of segment files currently in use
+	 */
+	public int getSegmentCount()
+	{
+		return segments.size();
+	}
+
+	/**
+	 * @return the total size of the pages which are still referenced by the index
+	 */
+	public Bytes getLiveSize()
+	{
+		long live = 0;
+		for (Segment segment : segments.values())
+		{
+			live += segment.liveBytes.get();
+		}
+		return Bytes.bytes(live);
+	}
+
+	/**
+	 * @return the total size of the segment files
+	 */
+	public Bytes getAllocatedSize()
+	{
+		long allocated = 0;
+		for (Segment segment : segments.values())
+		{
+			allocated += segment.capacity;
+		}
+		return Bytes.bytes(allocated);
+	}
+
+	/**
+	 * Relocates the live pages of the sparsely used segments into the current segment and deletes
+	 * the segments which are no longer referenced.
+	 * <p>
+	 * Called periodically by the compaction thread.
+	 * </p>
+	 */
+	public void compact()
+	{
+		synchronized (compactionLock)
+		{
+			for (Segment segment : new ArrayList<Segment>(segments.values()))
+			{
+				if (segment == currentSegment || segment.writers.get() > 0)
+				{
+					// still being appended to
+					continue;
+				}
+
+				if (segment.liveBytes.get() > 0 &&
+					segment.liveBytes.get() < segment.capacity * COMPACTION_THRESHOLD)
+				{
+					log.debug("Compacting segment {}", segment);
+					for (SessionIndex sessionIndex : sessionIndexMap.values())
+					{
+						release(sessionIndex.relocate(segment.id, this));
+					}
+				}
+
+				if (segment.liveBytes.get() <= 0)
+				{
+					log.debug("Deleting unused segment {}", segment);
+					segments.remove(segment.id);
+					segment.close();
+					if (segment.file.delete() == false)
+					{
+						// mapped files cannot be deleted on some platforms until the mapping is
+						// garbage collected
+						segment.file.deleteOnExit();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * This folder contains the segment files and the index.
+	 *
+	 * @return the folder where the pages are stored
+	 */
+	protected File getStoreFolder()
+	{
+		return new File(fileStoreFolder, applicationName + "-segmentstore");
+	}
+
+	/**
+	 * Appends the data to the current segment, rolling over to a new segment if there is no room
+	 * left.
+	 *
+	 * @param data
+	 * @return the location of the appended data
+	 */
+	private Location append(final byte[] data)
+	{
+		while (true)
+		{
+			Segment segment = currentSegment;
+			segment.writers.incrementAndGet();
+			try
+			{
+				int offset = segment.reserve(data.length);
+				if (offset > -1)
+				{
+					segment.write(offset, data);
+					segment.liveBytes.addAndGet(data.length);
+					return new Location(segment.id, offset, data.length);
+				}
+			}
+			finally
+			{
+				segment.writers.decrementAndGet();
+			}
+			rollSegment(segment, data.length);
+		}
+	}
+
+	/**
+	 * Replaces the full segment with a new one unless another thread already did so.
+	 *
+	 * @param full
+	 *            the segment which had not enough room
+	 * @param length
+	 *            the size of the data which has to be appended
+	 */
+	private synchronized void rollSegment(final Segment full, final int length)
+	{
+		if (currentSegment == full)
+		{
+			// seal it before it is replaced so that nothing is appended once the compaction
+			// can see it
+			full.seal();
+
+			// pages bigger than a segment get a segment on their own
+			currentSegment = newSegment(Math.max(segmentSize, length));
+		}
+	}
+
+	private Segment newSegment(final int capacity)
+	{
+		int id = segmentIdCounter.getAndIncrement();
+		File file = new File(getStoreFolder(), SEGMENT_FILE_PREFIX + id);
+		Files.remove(file);
+		try
+		{
+			Segment segment = new Segment(id, file, capacity, 0);
+			segments.put(id, segment);
+			return segment;
+		}
+		catch (IOException e)
+		{
+			throw new WicketRuntimeException("Cannot create segment file " + file, e);
+		}
+	}
+
+	private SessionIndex getSessionIndex(final String sessionId)
+	{
+		SessionIndex sessionIndex = sessionIndexMap.get(sessionId);
+		if (sessionIndex == null)
+		{
+			SessionIndex newIndex = new SessionIndex();
+			sessionIndex = sessionIndexMap.putIfAbsent(sessionId, newIndex);
+			if (sessionIndex == null)
+			{
+				sessionIndex = newIndex;
+			}
+		}
+		return sessionIndex;
+	}
+
+	private void release(final List<Location> locations)
+	{
+		for (Location location : locations)
+		{
+			release(location);
+		}
+	}
+
+	private void release(final Location location)
+	{
+		Segment segment = segments.get(location.segmentId);
+		if (segment != null)
+		{
+			segment.liveBytes.addAndGet(-location.length);
+		}
+	}
+
+	/**
+	 * Reads the index written by {@link #saveIndex()} and re-maps the segments it references.
+	 * Segment files which are not referenced are deleted.
+	 */
+	@SuppressWarnings("unchecked")
+	private void loadIndex()
+	{
+		File storeFolder = getStoreFolder();
+		File index = new File(storeFolder, INDEX_FILE_NAME);
+		if (index.exists() && index.length() > 0)
+		{
+			try
+			{
+				InputStream stream = new FileInputStream(index);
+				ObjectInputStream ois = new ObjectInputStream(stream);
+				try
+				{
+					Map<String, SessionIndex> map = (Map<String, SessionIndex>)ois.readObject();
+					Map<Integer, Long> capacities = new HashMap<Integer, Long>();
+					Map<Integer, Long> liveBytes = new HashMap<Integer, Long>();
+					for (SessionIndex sessionIndex : map.values())
+					{
+						Iterator<Location> locations = sessionIndex.pages.values().iterator();
+						while (locations.hasNext())
+						{
+							Location location = locations.next();
+							Long capacity = capacities.get(location.segmentId);
+							if (capacity == null)
+							{
+								// the length of a missing file is 0
+								capacity = new File(storeFolder, SEGMENT_FILE_PREFIX +
+									location.segmentId).length();
+								capacities.put(location.segmentId, capacity);
+							}
+
+							// forget the pages of missing or truncated segment files
+							if ((long)location.offset + location.length > capacity)
+							{
+								locations.remove();
+								sessionIndex.size -= location.length;
+								continue;
+							}
+
+							Long live = liveBytes.get(location.segmentId);
+							liveBytes.put(location.segmentId, (live != null ? live : 0L) +
+								location.length);
+						}
+					}
+
+					for (Map.Entry<Integer, Long> entry : liveBytes.entrySet())
+					{
+						int id = entry.getKey();
+						File file = new File(storeFolder, SEGMENT_FILE_PREFIX + id);
+						// reopened segments are sealed, new pages go to a fresh segment
+						Segment segment = new Segment(id, file, capacities.get(id).intValue(),
+							entry.getValue());
+						segments.put(id, segment);
+						if (id >= segmentIdCounter.get())
+						{
+							segmentIdCounter.set(id + 1);
+						}
+					}
+					sessionIndexMap.putAll(map);
+				}
+				finally
+				{
+					stream.close();
+					ois.close();
+				}
+			}
+			catch (Exception e)
+			{
+				log.error("Couldn't load MappedSegmentDataStore index from file " + index + ".", e);
+				for (Segment segment : segments.values())
+				{
+					segment.close();
+				}
+				segments.clear();
+				sessionIndexMap.clear();
+			}
+		}
+		Files.remove(index);
+
+		File[] files = storeFolder.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				String name = file.getName();
+				if (name.startsWith(SEGMENT_FILE_PREFIX) && isReferenced(name) == false)
+				{
+					Files.remove(file);
+				}
+			}
+		}
+	}
+
+	private boolean isReferenced(final String segmentFileName)
+	{
+		for (Segment segment : segments.values())
+		{
+			if (segment.file.getName().equals(segmentFileName))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the index so that the pages survive a restart of the application.
+	 */
+	private void saveIndex()
+	{
+		File storeFolder = getStoreFolder();
+		if (storeFolder.exists())
+		{
+			File index = new File(storeFolder, INDEX_FILE_NAME);
+			Files.remove(index);
+			try
+			{
+				OutputStream stream = new FileOutputStream(index);
+				ObjectOutputStream oos = new ObjectOutputStream(stream);
+				try
+				{
+					Map<String, SessionIndex> map = new HashMap<String, SessionIndex>(
+						sessionIndexMap.size());
+					for (Map.Entry<String, SessionIndex> e : sessionIndexMap.entrySet())
+					{
+						SessionIndex sessionIndex = e.getValue();
+						synchronized (sessionIndex)
+						{
+							if (sessionIndex.unbound == false)
+							{
+								map.put(e.getKey(), sessionIndex);
+							}
+						}
+					}
+					oos.writeObject(map);
+				}
+				finally
+				{
+					stream.close();
+					oos.close();
+				}
+			}
+			catch (Exception e)
+			{
+				log.error("Couldn't write MappedSegmentDataStore index to file " + index + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * The position of a page in a segment
+	 */
+	private static final class Location implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int segmentId;
+		private final int offset;
+		private final int length;
+
+		private Location(final int segmentId, final int offset, final int length)
+		{
+			this.segmentId = segmentId;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * The pages of a single session in the order they were stored
+	 */
+	private static final class SessionIndex implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final LinkedHashMap<Integer, Location> pages = new LinkedHashMap<Integer, Location>();
+
+		private long size = 0;
+
+		private boolean unbound = false;
+
+		private synchronized Location get(final int pageId)
+		{
+			return pages.get(pageId);
+		}
+
+		/**
+		 * Puts the location of a page and removes the oldest pages if the session exceeds the
+		 * maximum size.
+		 *
+		 * @return the locations which are no longer referenced
+		 */
+		private synchronized List<Location> put(final int pageId, final Location location,
+			final long maxSize)
+		{
+			List<Location> discarded = new ArrayList<Location>(1);
+			if (unbound)
+			{
+				discarded.add(location);
+				return discarded;
+			}
+
+			// remove first so that the page becomes the youngest one
+			Location previous = pages.remove(pageId);
+			if (previous != null)
+			{
+				size -= previous.length;
+				discarded.add(previous);
+			}
+			pages.put(pageId, location);
+			size += location.length;
+
+			Iterator<Location> iterator = pages.values().iterator();
+			while (size > maxSize && pages.size() > 1)
+			{
+				Location eldest = iterator.next();
+				iterator.remove();
+				size -= eldest.length;
+				discarded.add(eldest);
+			}
+			return discarded;
+		}
+
+		private synchronized Location remove(final int pageId)
+		{
+			Location location = pages.remove(pageId);
+			if (location != null)
+			{
+				size -= location.length;
+			}
+			return location;
+		}
+
+		/**
+		 * @return all locations of the session
+		 */
+		private synchronized List<Location> unbind()
+		{
+			unbound = true;
+			List<Location> locations = new ArrayList<Location>(pages.values());
+			pages.clear();
+			size = 0;
+			return locations;
+		}
+
+		/**
+		 * Copies the pages stored in the given segment to the current segment of the store.
+		 *
+		 * @return the old locations of the relocated pages
+		 */
+		private synchronized List<Location> relocate(final int segmentId,
+			final MappedSegmentDataStore store)
+		{
+			List<Location> relocated = new ArrayList<Location>();
+			for (Map.Entry<Integer, Location> entry : pages.entrySet())
+			{
+				Location location = entry.getValue();
+				if (location.segmentId == segmentId)
+				{
+					Segment segment = store.segments.get(segmentId);
+					byte[] data = new byte[location.length];
+					segment.slice(location.offset, location.length).get(data);
+
+					// setValue() keeps the insertion order
+					entry.setValue(store.append(data));
+					relocated.add(location);
+				}
+			}
+			return relocated;
+		}
+	}
+
+	/**
+	 * A memory mapped segment file. Data is only appended, never overwritten.
+	 */
+	private static final class Segment
+	{
+		private final int id;
+
+		private final File file;
+
+		private final int capacity;
+
+		private final RandomAccessFile randomAccessFile;
+
+		private final MappedByteBuffer buffer;
+
+		/**
+		 * The next free position
+		 */
+		private final AtomicInteger position;
+
+		/**
+		 * The number of bytes still referenced by the index
+		 */
+		private final AtomicLong liveBytes;
+
+		/**
+		 * The number of threads currently appending to this segment
+		 */
+		private final AtomicInteger writers = new AtomicInteger();
+
+		private Segment(final int id, final File file, final int capacity, final long liveBytes)
+			throws IOException
+		{
+			this.id = id;
+			this.file = file;
+			this.capacity = capacity;
+			this.liveBytes = new AtomicLong(liveBytes);
+
+			// an existing segment is sealed, i.e. nothing can be appended to it anymore
+			position = new AtomicInteger(file.exists() ? capacity : 0);
+
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			try
+			{
+				buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+					capacity);
+			}
+			catch (IOException e)
+			{
+				IOUtils.closeQuietly(randomAccessFile);
+				throw e;
+			}
+		}
+
+		/**
+		 * Reserves room for the given number of bytes.
+		 *
+		 * @param length
+		 * @return the offset of the reserved room or -1 if the segment is full
+		 */
+		private int reserve(final int length)
+		{
+			while (true)
+			{
+				int offset = position.get();
+				if (capacity - offset < length)
+				{
+					return -1;
+				}
+				if (position.compareAndSet(offset, offset + length))
+				{
+					return offset;
+				}
+			}
+		}
+
+		/**
+		 * Prevents any further reservations.
+		 */
+		private void seal()
+		{
+			position.set(capacity);
+		}
+
+		private void write(final int offset, final byte[] data)
+		{
+			// a duplicate has its own position so concurrent writers don't interfere
+			ByteBuffer target = buffer.duplicate();
+			target.position(offset);
+			target.put(data);
+		}
+
+		private ByteBuffer slice(final int offset, final int length)
+		{
+			ByteBuffer view = buffer.asReadOnlyBuffer();
+			view.limit(offset + length);
+			view.position(offset);
+			return view.slice();
+		}
+
+		/**
+		 * Flushes the mapping and closes the file. The mapping itself stays valid until it is
+		 * garbage collected.
+		 */
+		private void close()
+		{
+			try
+			{
+				buffer.force();
+			}
+			catch (RuntimeException e)
+			{
+				log.debug("Couldn't flush segment " + file, e);
+			}
+			IOUtils.closeQuietly(randomAccessFile);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Segment [id=" + id + ", capacity=" + capacity + ", live=" + liveBytes.get() +
+				"]";
+		}
+	}
+
+	/**
+	 * Periodically compacts the segments of the store
+	 */
+	private static class CompactionRunnable implements Runnable
+	{
+		private final MappedSegmentDataStore store;
+
+		private final Duration interval;
+
+		private CompactionRunnable(final MappedSegmentDataStore store, final Duration interval)
+		{
+			this.store = store;
+			this.interval = interval;
+		}
+
+		@Override
+		public void run()
+		{
+			while (!Thread.interrupted())
+			{
+				try
+				{
+					Thread.sleep(interval.getMilliseconds());
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					break;
+				}
+
+				try
+				{
+					store.compact();
+				}
+				catch (RuntimeException e)
+				{
+					log.error("Error while compacting the segments", e);
+				}
+			}
+		}
+	}
+}
@@ -18,59 +18,69 @@ package org.apache.wicket.pageStore;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import org.apache.wicket.util.collections.IntHashMap;
-
 /**
  * Manages positions and size of serialized pages in the pagemap file.
  * <p>
  * The pages are stored inside the file in a cyclic way. Newer pages are placed after older ones,
  * until the maximum file size is reached. After that, the next page is stored in the beginning of
  * the file.
+ * <p>
+ * The windows are kept in primitive arrays as a doubly linked list in file order and are found by
+ * page id with a primitive hash index, so creating, looking up and removing a window doesn't
+ * depend on the number of windows and doesn't box any values.
  * 
  * @author Matej Knopp
  */
 public class PageWindowManager implements Serializable
 {
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 2L;
 
-	/**
-	 * Contains information about a page inside the file.
-	 * 
-	 * @author Matej Knopp
-	 */
-	private static class PageWindowInternal implements Serializable
-	{
-		private static final long serialVersionUID = 1L;
+	/** marks the absence of a window */
+	private static final int NONE = -1;
 
-		/** id of page or -1 if the window is empty */
-		private int pageId;
+	/** page id of an empty window as returned by {@link PageWindow#getPageId()} */
+	private static final int EMPTY = -1;
 
-		/** offset in the file where the serialized page data begins */
-		private int filePartOffset;
+	private static final int INITIAL_CAPACITY = 16;
 
-		/** size of serialized page data */
-		private int filePartSize;
-	}
+	/** id of the page in each window */
+	private int[] pageIds = new int[INITIAL_CAPACITY];
 
-	/** list of PageWindowInternal objects */
-	private final List<PageWindowInternal> windows = new ArrayList<PageWindowInternal>();
+	/** whether the window holds a page, page ids can have any value */
+	private boolean[] used = new boolean[INITIAL_CAPACITY];
 
-	/**
-	 * map from page id to list of pagewindow indices (referring to the windows list) - to improve
-	 * searching speed the index must be cleaned when the instances in the windows list change their
-	 * indexes (e.g. items are shifted on page window removal)
-	 */
-	private IntHashMap<Integer> idToWindowIndex = null;
+	/** offset in the file where the serialized page data begins */
+	private int[] offsets = new int[INITIAL_CAPACITY];
 
-	/**
-	 * Inversed index of #idToWindowIndex
-	 */
-	private IntHashMap<Integer> windowIndexToPageId = null;
+	/** size of serialized page data */
+	private int[] sizes = new int[INITIAL_CAPACITY];
+
+	/** next window in the file, or the next unused slot for slots in {@link #freeSlot} list */
+	private int[] next = new int[INITIAL_CAPACITY];
+
+	/** previous window in the file */
+	private int[] previous = new int[INITIAL_CAPACITY];
+
+	/** number of slots ever taken in the arrays */
+	private int slotCount = 0;
+
+	/** head of the list of released slots */
+	private int freeSlot = NONE;
 
-	/** index of last added page */
-	private int indexPointer = -1;
+	/** window at the beginning of the file */
+	private int first = NONE;
+
+	/** window at the end of the file */
+	private int last = NONE;
+
+	/** map from page id to its window */
+	private final WindowIndex index = new WindowIndex();
+
+	/** window of the last added page */
+	private int indexPointer = NONE;
 
 	private int totalSize = 0;
 
@@ -81,242 +91,229 @@ public class PageWindowManager implements Serializable
 	private final long maxSize;
 
 	/**
+	 * Returns the window after the {@link #indexPointer}. If the maximum file size has been
+	 * reached, the window at the beginning of the file is returned.
 	 * 
-	 * @param pageId
-	 * @param windowIndex
+	 * @return the next window or {@link #NONE} if a new window has to be appended
 	 */
-	private void putWindowIndex(int pageId, int windowIndex)
+	private int nextWindow()
 	{
-		if (idToWindowIndex != null && pageId != -1 && windowIndex != -1)
+		if ((maxSize > 0) && (totalSize >= maxSize) && (indexPointer == last))
 		{
-			Integer oldPageId = windowIndexToPageId.remove(windowIndex);
-			if (oldPageId != null)
-			{
-				idToWindowIndex.remove(oldPageId);
-			}
-			idToWindowIndex.put(pageId, windowIndex);
-			windowIndexToPageId.put(windowIndex, pageId);
+			return first;
 		}
+		return indexPointer == NONE ? first : next[indexPointer];
 	}
 
 	/**
+	 * Takes a slot for a new window
 	 * 
-	 * @param pageId
+	 * @return slot
 	 */
-	private void removeWindowIndex(int pageId)
+	private int newSlot()
 	{
-		Integer windowIndex = idToWindowIndex.remove(pageId);
-		if (windowIndex != null)
+		int slot = freeSlot;
+		if (slot != NONE)
+		{
+			freeSlot = next[slot];
+		}
+		else
 		{
-			windowIndexToPageId.remove(windowIndex);
+			if (slotCount == pageIds.length)
+			{
+				int capacity = slotCount * 2;
+				pageIds = Arrays.copyOf(pageIds, capacity);
+				used = Arrays.copyOf(used, capacity);
+				offsets = Arrays.copyOf(offsets, capacity);
+				sizes = Arrays.copyOf(sizes, capacity);
+				next = Arrays.copyOf(next, capacity);
+				previous = Arrays.copyOf(previous, capacity);
+			}
+			slot = slotCount++;
 		}
+		pageIds[slot] = EMPTY;
+		used[slot] = false;
+		return slot;
 	}
 
 	/**
+	 * Removes the window from the file list and releases its slot
 	 * 
+	 * @param window
 	 */
-	private void rebuildIndices()
+	private void unlink(int window)
 	{
-		idToWindowIndex = null;
-		idToWindowIndex = new IntHashMap<Integer>();
-		windowIndexToPageId = null;
-		windowIndexToPageId = new IntHashMap<Integer>();
-		for (int i = 0; i < windows.size(); ++i)
+		clearWindow(window);
+
+		int before = previous[window];
+		int after = next[window];
+		if (before != NONE)
+		{
+			next[before] = after;
+		}
+		else
 		{
-			PageWindowInternal window = windows.get(i);
-			putWindowIndex(window.pageId, i);
+			first = after;
 		}
+		if (after != NONE)
+		{
+			previous[after] = before;
+		}
+		else
+		{
+			last = before;
+		}
+
+		next[window] = freeSlot;
+		freeSlot = window;
 	}
 
 	/**
-	 * Returns the index of the given page in the {@link #windows} list.
+	 * Inserts a new empty window after the given one
 	 * 
-	 * @param pageId
-	 * @return window index
+	 * @param window
+	 * @param size
 	 */
-	private int getWindowIndex(int pageId)
+	private void insertAfter(int window, int size)
 	{
-		if (idToWindowIndex == null)
+		int newWindow = newSlot();
+		offsets[newWindow] = offsets[window] + sizes[window];
+		sizes[newWindow] = size;
+
+		int after = next[window];
+		previous[newWindow] = window;
+		next[newWindow] = after;
+		next[window] = newWindow;
+		if (after != NONE)
 		{
-			rebuildIndices();
+			previous[after] = newWindow;
+		}
+		else
+		{
+			last = newWindow;
 		}
-
-		Integer result = idToWindowIndex.get(pageId);
-		return result != null ? result : -1;
 	}
 
 	/**
-	 * Increments the {@link #indexPointer}. If the maximum file size has been reached, the
-	 * {@link #indexPointer} is set to 0.
+	 * Appends a new window at the end of the file
 	 * 
-	 * @return new index pointer
+	 * @param size
+	 * @return the new window
 	 */
-	private int incrementIndexPointer()
+	private int append(int size)
 	{
-		if ((maxSize > 0) && (totalSize >= maxSize) && (indexPointer == windows.size() - 1))
+		int window = newSlot();
+		offsets[window] = last != NONE ? offsets[last] + sizes[last] : 0;
+		sizes[window] = size;
+		totalSize += size;
+
+		previous[window] = last;
+		next[window] = NONE;
+		if (last != NONE)
 		{
-			indexPointer = 0;
+			next[last] = window;
 		}
 		else
 		{
-			++indexPointer;
+			first = window;
 		}
-		return indexPointer;
+		last = window;
+		return window;
 	}
 
 	/**
-	 * Returns the offset in file of the window on given index. The offset is counted by getting the
-	 * previous page offset and adding the previous page size to it.
+	 * Marks the window as empty and removes its page from the index
 	 * 
-	 * @param index
-	 * @return window file offset
+	 * @param window
 	 */
-	private int getWindowFileOffset(int index)
+	private void clearWindow(int window)
 	{
-		if (index > 0)
+		if (used[window])
 		{
-			PageWindowInternal window = windows.get(index - 1);
-			return window.filePartOffset + window.filePartSize;
+			index.remove(pageIds[window]);
+			used[window] = false;
+			pageIds[window] = EMPTY;
 		}
-		return 0;
 	}
 
 	/**
-	 * Splits the window with given index to two windows. First of those will have size specified by
-	 * the argument, the other one will fill up the rest of the original window.
+	 * Splits the window to two windows. First of those will have size specified by the argument,
+	 * the other one will fill up the rest of the original window.
 	 * 
-	 * @param index
+	 * @param window
 	 * @param size
 	 */
-	private void splitWindow(int index, int size)
+	private void splitWindow(int window, int size)
 	{
-		PageWindowInternal window = windows.get(index);
-		int delta = window.filePartSize - size;
+		int delta = sizes[window] - size;
 
-		if (index == windows.size() - 1)
+		if (window == last)
 		{
 			// if this is last window
 			totalSize -= delta;
-			window.filePartSize = size;
+			sizes[window] = size;
 		}
-		else if (window.filePartSize != size)
+		else if (delta != 0)
 		{
-			PageWindowInternal newWindow = new PageWindowInternal();
-			newWindow.pageId = -1;
-			window.filePartSize = size;
-
-			windows.add(index + 1, newWindow);
-
-			newWindow.filePartOffset = getWindowFileOffset(index + 1);
-			newWindow.filePartSize = delta;
+			sizes[window] = size;
+			insertAfter(window, delta);
 		}
-
-		idToWindowIndex = null;
-		windowIndexToPageId = null;
 	}
 
 	/**
-	 * Merges the window with given index with the next window. The resulting window will have size
-	 * of the two windows summed together.
+	 * Adjusts the window to the specified size. If the new size is smaller than the window size,
+	 * the window will be split. Otherwise the window will be merged with as many subsequent window
+	 * as necessary. In case the window is last window in the file, the size will be adjusted
+	 * without splitting or merging.
 	 * 
-	 * @param index
+	 * @param window
+	 * @param size
 	 */
-	private void mergeWindowWithNext(int index)
+	private void adjustWindowSize(int window, int size)
 	{
-		if (index < windows.size() - 1)
+		// merge as many times as necessary
+		while (sizes[window] < size && window != last)
 		{
-			PageWindowInternal window = windows.get(index);
-			PageWindowInternal next = windows.get(index + 1);
-			window.filePartSize += next.filePartSize;
-
-			windows.remove(index + 1);
-			idToWindowIndex = null; // reset index
-			windowIndexToPageId = null;
+			int merged = next[window];
+			sizes[window] += sizes[merged];
+			unlink(merged);
 		}
-	}
-
-	/**
-	 * Adjusts the window on given index to the specified size. If the new size is smaller than the
-	 * window size, the window will be split. Otherwise the window will be merged with as many
-	 * subsequent window as necessary. In case the window is last window in the file, the size will
-	 * be adjusted without splitting or merging.
-	 * 
-	 * @param index
-	 * @param size
-	 */
-	private void adjustWindowSize(int index, int size)
-	{
-		PageWindowInternal window = windows.get(index);
 
-		// last window, just adjust size
-		if (index == windows.size() - 1)
+		if (sizes[window] < size)
 		{
-			int delta = size - window.filePartSize;
-			totalSize += delta;
-			window.filePartSize = size;
+			// no, this is the last window
+			totalSize += size - sizes[window];
+			sizes[window] = size;
 		}
 		else
 		{
-			// merge as many times as necessary
-			while (window.filePartSize < size && index < windows.size() - 1)
-			{
-				mergeWindowWithNext(index);
-			}
-
-			// done merging - do we have enough room ?
-			if (window.filePartSize < size)
-			{
-				// no, this is the last window
-				int delta = size - window.filePartSize;
-				totalSize += delta;
-				window.filePartSize = size;
-			}
-			else
-			{
-				// yes, we might want to split the window, so that we don't lose
-				// space when the created window was too big
-				splitWindow(index, size);
-			}
+			// yes, we might want to split the window, so that we don't lose
+			// space when the created window was too big
+			splitWindow(window, size);
 		}
-
-		window.pageId = -1;
 	}
 
 	/**
-	 * Allocates window on given index with to size. If the index is pointing to existing window,
-	 * the window size will be adjusted. Otherwise a new window with appropriated size will be
-	 * created.
+	 * Allocates the given window with to size. If the window exists its size will be adjusted.
+	 * Otherwise a new window with appropriated size will be created.
 	 * 
-	 * @param index
+	 * @param window
+	 *            the window or {@link #NONE}
 	 * @param size
-	 * @return page window
+	 * @return the allocated empty window
 	 */
-	private PageWindowInternal allocatePageWindow(int index, int size)
+	private int allocatePageWindow(int window, int size)
 	{
-		final PageWindowInternal window;
-
-		// new window
-		if (index == windows.size())
+		if (window == NONE)
 		{
-			// new page window
-			window = new PageWindowInternal();
-			window.filePartOffset = getWindowFileOffset(index);
-			totalSize += size;
-			window.filePartSize = size;
-			windows.add(window);
+			return append(size);
 		}
-		else
-		{
-			// get the window
-			window = windows.get(index);
 
-			// adjust if necessary
-			if (window.filePartSize != size)
-			{
-				adjustWindowSize(index, size);
-			}
+		clearWindow(window);
+		if (sizes[window] != size)
+		{
+			adjustWindowSize(window, size);
 		}
-
 		return window;
 	}
 
@@ -327,16 +324,24 @@ public class PageWindowManager implements Serializable
 	 */
 	public static class PageWindow
 	{
-		private final PageWindowInternal pageWindowInternal;
+		private final int pageId;
+
+		private final int filePartOffset;
+
+		private final int filePartSize;
 
 		/**
 		 * Construct.
 		 * 
-		 * @param pageWindowInternal
+		 * @param pageId
+		 * @param filePartOffset
+		 * @param filePartSize
 		 */
-		private PageWindow(PageWindowInternal pageWindowInternal)
+		private PageWindow(int pageId, int filePartOffset, int filePartSize)
 		{
-			this.pageWindowInternal = pageWindowInternal;
+			this.pageId = pageId;
+			this.filePartOffset = filePartOffset;
+			this.filePartSize = filePartSize;
 		}
 
 		/**
@@ -344,7 +349,7 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getPageId()
 		{
-			return pageWindowInternal.pageId;
+			return pageId;
 		}
 
 		/**
@@ -352,7 +357,7 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getFilePartOffset()
 		{
-			return pageWindowInternal.filePartOffset;
+			return filePartOffset;
 		}
 
 		/**
@@ -360,10 +365,15 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getFilePartSize()
 		{
-			return pageWindowInternal.filePartSize;
+			return filePartSize;
 		}
 	}
 
+	private PageWindow newPageWindow(int window)
+	{
+		return new PageWindow(pageIds[window], offsets[window], sizes[window]);
+	}
+
 	/**
 	 * Creates and returns a new page window for given page.
 	 * 
@@ -373,28 +383,28 @@ public class PageWindowManager implements Serializable
 	 */
 	public synchronized PageWindow createPageWindow(int pageId, int size)
 	{
-		int index = getWindowIndex(pageId);
+		int window = index.get(pageId);
 
 		// if we found the page window, mark it as invalid
-		if (index != -1)
+		if (window != NONE)
 		{
-			removeWindowIndex(pageId);
-			(windows.get(index)).pageId = -1;
+			clearWindow(window);
 		}
 
 		// if we are not going to reuse a page window (because it's not on
-		// indexPointer position or because we didn't find it), increment the
-		// indexPointer
-		if (index == -1 || index != indexPointer)
+		// indexPointer position or because we didn't find it), move on to the next one
+		if (window == NONE || window != indexPointer)
 		{
-			index = incrementIndexPointer();
+			window = nextWindow();
 		}
 
-		PageWindowInternal window = allocatePageWindow(index, size);
-		window.pageId = pageId;
+		window = allocatePageWindow(window, size);
+		indexPointer = window;
 
-		putWindowIndex(pageId, index);
-		return new PageWindow(window);
+		pageIds[window] = pageId;
+		used[window] = true;
+		index.put(pageId, window);
+		return newPageWindow(window);
 	}
 
 	/**
@@ -405,10 +415,10 @@ public class PageWindowManager implements Serializable
 	 */
 	public synchronized PageWindow getPageWindow(int pageId)
 	{
-		int index = getWindowIndex(pageId);
-		if (index != -1)
+		int window = index.get(pageId);
+		if (window != NONE)
 		{
-			return new PageWindow(windows.get(index));
+			return newPageWindow(window);
 		}
 		return null;
 	}
@@ -420,23 +430,21 @@ public class PageWindowManager implements Serializable
 	 */
 	public synchronized void removePage(int pageId)
 	{
-		int index = getWindowIndex(pageId);
-		if (index != -1)
+		int window = index.get(pageId);
+		if (window != NONE)
 		{
-			PageWindowInternal window = windows.get(index);
-			removeWindowIndex(pageId);
-			if (index == windows.size() - 1)
+			if (window == last)
 			{
-				windows.remove(index);
-				totalSize -= window.filePartSize;
-				if (indexPointer == index)
+				totalSize -= sizes[window];
+				if (indexPointer == window)
 				{
-					--indexPointer;
+					indexPointer = previous[window];
 				}
+				unlink(window);
 			}
 			else
 			{
-				window.pageId = -1;
+				clearWindow(window);
 			}
 		}
 	}
@@ -451,33 +459,29 @@ public class PageWindowManager implements Serializable
 	{
 		List<PageWindow> result = new ArrayList<PageWindow>();
 
-		// start from current index to 0
-		int currentIndex = indexPointer;
+		// start from current window to the first one
+		int current = indexPointer;
 
 		do
 		{
-			if (currentIndex == -1)
+			if (current == NONE)
 			{
 				break;
 			}
 
-			if (currentIndex < windows.size())
+			if (used[current])
 			{
-				PageWindowInternal window = windows.get(currentIndex);
-				if (window.pageId != -1)
-				{
-					result.add(new PageWindow(window));
-				}
+				result.add(newPageWindow(current));
 			}
 
-			--currentIndex;
-			if (currentIndex == -1)
+			current = previous[current];
+			if (current == NONE)
 			{
-				// rewind to the last entry and collect all entries until current index
-				currentIndex = windows.size() - 1;
+				// rewind to the last window and collect all windows until current one
+				current = last;
 			}
 		}
-		while (result.size() < count && currentIndex != indexPointer);
+		while (result.size() < count && current != indexPointer);
 
 		return result;
 	}
@@ -503,4 +507,114 @@ public class PageWindowManager implements Serializable
 	{
 		return totalSize;
 	}
+
+	/**
+	 * Open addressing hash map from page id to window, without boxing
+	 */
+	private static class WindowIndex implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int[] keys = new int[INITIAL_CAPACITY];
+
+		/** window + 1, so that 0 marks a free bucket */
+		private int[] values = new int[INITIAL_CAPACITY];
+
+		private int size = 0;
+
+		private int get(int pageId)
+		{
+			int mask = keys.length - 1;
+			for (int i = hash(pageId) & mask; values[i] != 0; i = (i + 1) & mask)
+			{
+				if (keys[i] == pageId)
+				{
+					return values[i] - 1;
+				}
+			}
+			return NONE;
+		}
+
+		private void put(int pageId, int window)
+		{
+			int mask = keys.length - 1;
+			int i = hash(pageId) & mask;
+			while (values[i] != 0)
+			{
+				if (keys[i] == pageId)
+				{
+					values[i] = window + 1;
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[i] = pageId;
+			values[i] = window + 1;
+
+			// keep at least half of the buckets free
+			if (++size * 2 > keys.length)
+			{
+				resize(keys.length * 2);
+			}
+		}
+
+		private void remove(int pageId)
+		{
+			int mask = keys.length - 1;
+			int i = hash(pageId) & mask;
+			while (values[i] != 0 && keys[i] != pageId)
+			{
+				i = (i + 1) & mask;
+			}
+			if (values[i] == 0)
+			{
+				return;
+			}
+			size--;
+
+			// shift back the following entries of the cluster so that no tombstones are needed
+			int free = i;
+			for (int j = (i + 1) & mask; values[j] != 0; j = (j + 1) & mask)
+			{
+				int home = hash(keys[j]) & mask;
+				// move the entry if its home bucket is not between the free bucket and j
+				if (free <= j ? (home <= free || home > j) : (home <= free && home > j))
+				{
+					keys[free] = keys[j];
+					values[free] = values[j];
+					free = j;
+				}
+			}
+			values[free] = 0;
+		}
+
+		private void resize(int capacity)
+		{
+			int[] oldKeys = keys;
+			int[] oldValues = values;
+			keys = new int[capacity];
+			values = new int[capacity];
+			int mask = capacity - 1;
+			for (int i = 0; i < oldKeys.length; i++)
+			{
+				if (oldValues[i] != 0)
+				{
+					int j = hash(oldKeys[i]) & mask;
+					while (values[j] != 0)
+					{
+						j = (j + 1) & mask;
+					}
+					keys[j] = oldKeys[i];
+					values[j] = oldValues[i];
+				}
+			}
+		}
+
+		private static int hash(int pageId)
+		{
+			// page ids are mostly sequential, spread them over the buckets
+			int h = pageId * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
 }
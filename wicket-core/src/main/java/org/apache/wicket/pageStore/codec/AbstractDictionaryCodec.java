@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.codec;
+
+/**
+ * Base class for {@link ICompressionCodec}s which can use a shared dictionary. The checksum of
+ * the dictionary is written before the compressed data, so data compressed with another
+ * dictionary is recognized.
+ * 
+ * @see CompressionDictionary
+ */
+public abstract class AbstractDictionaryCodec implements ICompressionCodec
+{
+	/**
+	 * The length of the checksum of the dictionary
+	 */
+	protected static final int CHECKSUM_LENGTH = 4;
+
+	private final byte[] dictionary;
+
+	private final int checksum;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dictionary
+	 *            the shared dictionary or {@code null}
+	 */
+	protected AbstractDictionaryCodec(final byte[] dictionary)
+	{
+		this.dictionary = dictionary != null ? dictionary.clone() : new byte[0];
+		checksum = CompressionDictionary.checksum(this.dictionary);
+	}
+
+	/**
+	 * @return the dictionary, empty if there is none. Must not be modified.
+	 */
+	protected final byte[] getDictionary()
+	{
+		return dictionary;
+	}
+
+	/**
+	 * Writes the checksum of the dictionary
+	 * 
+	 * @param target
+	 * @param offset
+	 */
+	protected final void writeChecksum(final byte[] target, final int offset)
+	{
+		target[offset] = (byte)(checksum >>> 24);
+		target[offset + 1] = (byte)(checksum >>> 16);
+		target[offset + 2] = (byte)(checksum >>> 8);
+		target[offset + 3] = (byte)checksum;
+	}
+
+	/**
+	 * @param data
+	 * @param offset
+	 * @return {@code true} if the checksum at the offset is the checksum of the dictionary
+	 */
+	protected final boolean matchesChecksum(final byte[] data, final int offset)
+	{
+		int value = (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 |
+			(data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+		return value == checksum;
+	}
+}
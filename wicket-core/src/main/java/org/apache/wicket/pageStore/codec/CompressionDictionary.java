@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.codec;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * Builds shared dictionaries for the {@link ICompressionCodec}s.
+ * <p>
+ * The serialized pages of an application contain the same class names, field names and markup
+ * ids again and again, but a single page is too short for the compressor to learn them. A
+ * dictionary trained on typical page bytes is used as if it preceded each page, so these
+ * repetitions are compressed from the first occurrence on.
+ * </p>
+ * <p>
+ * The same dictionary has to be used for compression and decompression, so it should be trained
+ * once (e.g. during development, from the data of a {@link org.apache.wicket.pageStore.IDataStore})
+ * and then loaded from a resource at startup.
+ * </p>
+ */
+public final class CompressionDictionary
+{
+	/**
+	 * The length of the byte sequences which are counted
+	 */
+	private static final int GRAM_LENGTH = 8;
+
+	/**
+	 * The length of the segments the dictionary is composed of
+	 */
+	private static final int SEGMENT_LENGTH = 64;
+
+	/**
+	 * Construct.
+	 */
+	private CompressionDictionary()
+	{
+	}
+
+	/**
+	 * Builds a dictionary from the segments of the samples which share the most byte sequences
+	 * with the other samples. The most valuable segments are placed at the end of the dictionary,
+	 * closest to the compressed data.
+	 * 
+	 * @param samples
+	 *            typical data, e.g. serialized pages
+	 * @param size
+	 *            the maximum size of the dictionary
+	 * @return the dictionary
+	 */
+	public static byte[] train(final Collection<byte[]> samples, final int size)
+	{
+		Args.notNull(samples, "samples");
+		Args.withinRange(0, Integer.MAX_VALUE, size, "size");
+
+		// the number of samples in which each sequence occurs
+		Map<Long, Integer> counts = new HashMap<Long, Integer>();
+		for (byte[] sample : samples)
+		{
+			Set<Long> grams = new HashSet<Long>();
+			for (int i = 0; i + GRAM_LENGTH <= sample.length; i++)
+			{
+				grams.add(gram(sample, i));
+			}
+			for (Long gram : grams)
+			{
+				Integer count = counts.get(gram);
+				counts.put(gram, count == null ? 1 : count + 1);
+			}
+		}
+
+		PriorityQueue<Segment> queue = new PriorityQueue<Segment>();
+		for (byte[] sample : samples)
+		{
+			for (int offset = 0; offset < sample.length; offset += SEGMENT_LENGTH)
+			{
+				Segment segment = new Segment(sample, offset, Math.min(SEGMENT_LENGTH,
+					sample.length - offset));
+				segment.score = score(segment, counts);
+				if (segment.score > 0)
+				{
+					queue.add(segment);
+				}
+			}
+		}
+
+		byte[] dictionary = new byte[size];
+		int position = size;
+		while (position > 0 && queue.isEmpty() == false)
+		{
+			Segment segment = queue.poll();
+
+			// the score is stale if sequences of the segment have been taken already
+			int score = score(segment, counts);
+			if (score < segment.score)
+			{
+				segment.score = score;
+				if (score > 0)
+				{
+					queue.add(segment);
+				}
+				continue;
+			}
+
+			int length = Math.min(segment.length, position);
+			position -= length;
+			System.arraycopy(segment.data, segment.offset + segment.length - length, dictionary,
+				position, length);
+			for (int i = segment.offset; i + GRAM_LENGTH <= segment.offset + segment.length; i++)
+			{
+				counts.remove(gram(segment.data, i));
+			}
+		}
+
+		if (position > 0)
+		{
+			byte[] shorter = new byte[size - position];
+			System.arraycopy(dictionary, position, shorter, 0, shorter.length);
+			dictionary = shorter;
+		}
+		return dictionary;
+	}
+
+	/**
+	 * @param dictionary
+	 *            the dictionary or {@code null}
+	 * @return the checksum which is stored with the data compressed with the dictionary, {@code 0}
+	 *         for no dictionary
+	 */
+	public static int checksum(final byte[] dictionary)
+	{
+		if (dictionary == null || dictionary.length == 0)
+		{
+			return 0;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(dictionary, 0, dictionary.length);
+		int checksum = (int)crc.getValue();
+		return checksum != 0 ? checksum : 1;
+	}
+
+	private static int score(final Segment segment, final Map<Long, Integer> counts)
+	{
+		Set<Long> grams = new HashSet<Long>();
+		int score = 0;
+		for (int i = segment.offset; i + GRAM_LENGTH <= segment.offset + segment.length; i++)
+		{
+			Long gram = gram(segment.data, i);
+			Integer count = counts.get(gram);
+			// a sequence found in a single sample is no better than no dictionary
+			if (count != null && count > 1 && grams.add(gram))
+			{
+				score += count;
+			}
+		}
+		return score;
+	}
+
+	private static long gram(final byte[] data, final int offset)
+	{
+		long gram = 0;
+		for (int i = 0; i < GRAM_LENGTH; i++)
+		{
+			gram = gram << 8 | (data[offset + i] & 0xFF);
+		}
+		return gram;
+	}
+
+	/**
+	 * A part of a sample, candidate for the dictionary
+	 */
+	private static class Segment implements Comparable<Segment>
+	{
+		private final byte[] data;
+
+		private final int offset;
+
+		private final int length;
+
+		private int score;
+
+		private Segment(final byte[] data, final int offset, final int length)
+		{
+			this.data = data;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public int compareTo(final Segment other)
+		{
+			// the highest score first
+			return other.score < score ? -1 : (other.score == score ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.codec;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.io.ByteArrayOutputStream;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * An {@link ICompressionCodec} using {@link Deflater} with a configurable level and an optional
+ * shared dictionary. Compresses better than {@link FastBlockCodec} but needs several times more
+ * CPU.
+ */
+public class DeflateCodec extends AbstractDictionaryCodec
+{
+	/**
+	 * The id of this codec
+	 */
+	public static final byte ID = 1;
+
+	private static final int BUFFER_SIZE = 4 * 1024;
+
+	private final int level;
+
+	/**
+	 * Construct with {@link Deflater#BEST_SPEED} and no dictionary.
+	 */
+	public DeflateCodec()
+	{
+		this(Deflater.BEST_SPEED, null);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param level
+	 *            the compression level, 0-9
+	 * @param dictionary
+	 *            the shared dictionary or {@code null}
+	 */
+	public DeflateCodec(final int level, final byte[] dictionary)
+	{
+		super(dictionary);
+		this.level = Args.withinRange(Deflater.NO_COMPRESSION, Deflater.BEST_COMPRESSION, level,
+			"level");
+	}
+
+	@Override
+	public byte getId()
+	{
+		return ID;
+	}
+
+	@Override
+	public byte[] compress(final byte[] data)
+	{
+		Deflater deflater = new Deflater(level);
+		try
+		{
+			if (getDictionary().length > 0)
+			{
+				deflater.setDictionary(getDictionary());
+			}
+			deflater.setInput(data);
+			deflater.finish();
+
+			byte[] checksum = new byte[CHECKSUM_LENGTH];
+			writeChecksum(checksum, 0);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 16);
+			out.write(checksum, 0, CHECKSUM_LENGTH);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while (deflater.finished() == false)
+			{
+				int length = deflater.deflate(buffer);
+				out.write(buffer, 0, length);
+			}
+			return out.toByteArray();
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	@Override
+	public byte[] decompress(final byte[] data, final int offset)
+	{
+		if (matchesChecksum(data, offset) == false)
+		{
+			return null;
+		}
+
+		Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput(data, offset + CHECKSUM_LENGTH, data.length - offset -
+				CHECKSUM_LENGTH);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while (inflater.finished() == false)
+			{
+				int length = inflater.inflate(buffer);
+				out.write(buffer, 0, length);
+				if (length == 0 && inflater.finished() == false)
+				{
+					if (inflater.needsDictionary())
+					{
+						inflater.setDictionary(getDictionary());
+					}
+					else if (inflater.needsInput())
+					{
+						throw new WicketRuntimeException("Truncated deflated data");
+					}
+				}
+			}
+			return out.toByteArray();
+		}
+		catch (DataFormatException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,345 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.codec;
+
+import org.apache.wicket.WicketRuntimeException;
+
+/**
+ * A fast {@link ICompressionCodec} in the style of LZ4. It compresses worse than
+ * {@link DeflateCodec} but many times faster, so it can be used on the request thread even for
+ * Ajax heavy applications.
+ * <p>
+ * The data is encoded as sequences of literal bytes followed by a match, i.e. a copy of
+ * previously seen bytes given by an offset of up to 64KB and a length. Matches are found with a
+ * hash table of the last positions of 4 byte sequences. With a shared dictionary the matches may
+ * refer to the dictionary too, only its last 64KB are used.
+ * </p>
+ */
+public class FastBlockCodec extends AbstractDictionaryCodec
+{
+	/**
+	 * The id of this codec
+	 */
+	public static final byte ID = 2;
+
+	private static final int MIN_MATCH = 4;
+
+	private static final int MAX_OFFSET = 0xFFFF;
+
+	private static final int HASH_BITS = 14;
+
+	/**
+	 * After this many positions without a match the step is increased, so incompressible data
+	 * is skipped quickly
+	 */
+	private static final int SKIP_TRIGGER = 6;
+
+	/**
+	 * Construct without a dictionary.
+	 */
+	public FastBlockCodec()
+	{
+		this(null);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dictionary
+	 *            the shared dictionary or {@code null}
+	 */
+	public FastBlockCodec(final byte[] dictionary)
+	{
+		super(dictionary);
+	}
+
+	@Override
+	public byte getId()
+	{
+		return ID;
+	}
+
+	@Override
+	public byte[] compress(final byte[] data)
+	{
+		byte[] dictionary = getDictionary();
+		int base = Math.min(dictionary.length, MAX_OFFSET);
+		byte[] in = data;
+		if (base > 0)
+		{
+			in = new byte[base + data.length];
+			System.arraycopy(dictionary, dictionary.length - base, in, 0, base);
+			System.arraycopy(data, 0, in, base, data.length);
+		}
+
+		Output out = new Output(data.length + data.length / 255 + 16);
+		out.writeVarInt(data.length);
+		out.ensureCapacity(CHECKSUM_LENGTH);
+		writeChecksum(out.buffer, out.position);
+		out.position += CHECKSUM_LENGTH;
+
+		int[] table = new int[1 << HASH_BITS];
+		for (int position = 0; position + MIN_MATCH <= base; position++)
+		{
+			table[hash(in, position)] = position + 1;
+		}
+
+		int end = in.length;
+		int anchor = base;
+		int position = base;
+		int misses = 0;
+		while (position + MIN_MATCH <= end)
+		{
+			int hash = hash(in, position);
+			int candidate = table[hash] - 1;
+			table[hash] = position + 1;
+
+			if (candidate >= 0 && position - candidate <= MAX_OFFSET &&
+				readInt(in, candidate) == readInt(in, position))
+			{
+				int length = MIN_MATCH;
+				while (position + length < end && in[candidate + length] == in[position + length])
+				{
+					length++;
+				}
+				out.writeSequence(in, anchor, position - anchor, position - candidate, length);
+
+				position += length;
+				anchor = position;
+				misses = 0;
+
+				// the bytes just before the match end often start the next match
+				if (position + MIN_MATCH <= end)
+				{
+					table[hash(in, position - 2)] = position - 1;
+				}
+			}
+			else
+			{
+				position += 1 + (misses++ >>> SKIP_TRIGGER);
+			}
+		}
+
+		if (anchor < end)
+		{
+			out.writeLiterals(in, anchor, end - anchor);
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public byte[] decompress(final byte[] data, final int offset)
+	{
+		int position = offset;
+		int length = 0;
+		int shift = 0;
+		int b;
+		do
+		{
+			b = data[position++] & 0xFF;
+			length |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+
+		if (matchesChecksum(data, position) == false)
+		{
+			return null;
+		}
+		position += CHECKSUM_LENGTH;
+
+		byte[] dictionary = getDictionary();
+		int base = Math.min(dictionary.length, MAX_OFFSET);
+		byte[] out = new byte[base + length];
+		System.arraycopy(dictionary, dictionary.length - base, out, 0, base);
+
+		int end = out.length;
+		int target = base;
+		try
+		{
+			while (target < end)
+			{
+				int token = data[position++] & 0xFF;
+
+				int literals = token >>> 4;
+				if (literals == 15)
+				{
+					do
+					{
+						b = data[position++] & 0xFF;
+						literals += b;
+					}
+					while (b == 255);
+				}
+				System.arraycopy(data, position, out, target, literals);
+				position += literals;
+				target += literals;
+				if (target == end)
+				{
+					break;
+				}
+
+				int distance = (data[position] & 0xFF) | (data[position + 1] & 0xFF) << 8;
+				position += 2;
+				int matchLength = token & 0x0F;
+				if (matchLength == 15)
+				{
+					do
+					{
+						b = data[position++] & 0xFF;
+						matchLength += b;
+					}
+					while (b == 255);
+				}
+				matchLength += MIN_MATCH;
+
+				int source = target - distance;
+				if (distance == 0 || source < 0)
+				{
+					throw new WicketRuntimeException("Corrupted compressed data");
+				}
+				if (distance >= matchLength)
+				{
+					System.arraycopy(out, source, out, target, matchLength);
+					target += matchLength;
+				}
+				else
+				{
+					// byte by byte because the match overlaps the bytes being written
+					for (int i = 0; i < matchLength; i++)
+					{
+						out[target++] = out[source++];
+					}
+				}
+			}
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw new WicketRuntimeException("Corrupted compressed data", e);
+		}
+
+		if (base == 0)
+		{
+			return out;
+		}
+		byte[] result = new byte[length];
+		System.arraycopy(out, base, result, 0, length);
+		return result;
+	}
+
+	private static int hash(final byte[] data, final int position)
+	{
+		return readInt(data, position) * -1640531535 >>> (32 - HASH_BITS);
+	}
+
+	private static int readInt(final byte[] data, final int position)
+	{
+		return (data[position] & 0xFF) | (data[position + 1] & 0xFF) << 8 |
+			(data[position + 2] & 0xFF) << 16 | (data[position + 3] & 0xFF) << 24;
+	}
+
+	/**
+	 * A growing buffer for the compressed data
+	 */
+	private static class Output
+	{
+		private byte[] buffer;
+
+		private int position;
+
+		private Output(final int capacity)
+		{
+			buffer = new byte[capacity];
+		}
+
+		private void ensureCapacity(final int length)
+		{
+			if (position + length > buffer.length)
+			{
+				byte[] newBuffer = new byte[Math.max(buffer.length * 2, position + length)];
+				System.arraycopy(buffer, 0, newBuffer, 0, position);
+				buffer = newBuffer;
+			}
+		}
+
+		private void write(final int b)
+		{
+			ensureCapacity(1);
+			buffer[position++] = (byte)b;
+		}
+
+		private void writeVarInt(int value)
+		{
+			while ((value & ~0x7F) != 0)
+			{
+				write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			write(value);
+		}
+
+		private void writeLength(int length)
+		{
+			while (length >= 255)
+			{
+				write(255);
+				length -= 255;
+			}
+			write(length);
+		}
+
+		private void writeSequence(final byte[] data, final int literalStart,
+			final int literalLength, final int distance, final int matchLength)
+		{
+			int match = matchLength - MIN_MATCH;
+			write(Math.min(literalLength, 15) << 4 | Math.min(match, 15));
+			if (literalLength >= 15)
+			{
+				writeLength(literalLength - 15);
+			}
+			ensureCapacity(literalLength + 2);
+			System.arraycopy(data, literalStart, buffer, position, literalLength);
+			position += literalLength;
+			buffer[position++] = (byte)distance;
+			buffer[position++] = (byte)(distance >>> 8);
+			if (match >= 15)
+			{
+				writeLength(match - 15);
+			}
+		}
+
+		private void writeLiterals(final byte[] data, final int literalStart,
+			final int literalLength)
+		{
+			write(Math.min(literalLength, 15) << 4);
+			if (literalLength >= 15)
+			{
+				writeLength(literalLength - 15);
+			}
+			ensureCapacity(literalLength);
+			System.arraycopy(data, literalStart, buffer, position, literalLength);
+			position += literalLength;
+		}
+
+		private byte[] toByteArray()
+		{
+			byte[] result = new byte[position];
+			System.arraycopy(buffer, 0, result, 0, position);
+			return result;
+		}
+	}
+}
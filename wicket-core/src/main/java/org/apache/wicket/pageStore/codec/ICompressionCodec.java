@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.codec;
+
+/**
+ * Compresses the data of the pages before it is passed to the actual
+ * {@link org.apache.wicket.pageStore.IDataStore}.
+ * <p>
+ * Each codec has an id which is stored with the compressed data, so data written by different
+ * codecs can be read as long as all of them are known to the
+ * {@link org.apache.wicket.pageStore.CompressingDataStore}. The ids {@code 0} to {@code 15} are
+ * reserved for the codecs of Wicket.
+ * </p>
+ * Implementations must be thread safe.
+ * 
+ * @see org.apache.wicket.pageStore.CompressingDataStore
+ */
+public interface ICompressionCodec
+{
+	/**
+	 * @return the id stored in the first byte of the compressed data
+	 */
+	byte getId();
+
+	/**
+	 * Compresses the data
+	 * 
+	 * @param data
+	 *            the data to compress
+	 * @return the compressed data
+	 */
+	byte[] compress(byte[] data);
+
+	/**
+	 * Decompresses the data written by {@link #compress(byte[])}
+	 * 
+	 * @param data
+	 *            the compressed data
+	 * @param offset
+	 *            the position in {@code data} where the compressed data starts
+	 * @return the decompressed data or {@code null} if the data has been compressed with another
+	 *         dictionary
+	 */
+	byte[] decompress(byte[] data, int offset);
+}
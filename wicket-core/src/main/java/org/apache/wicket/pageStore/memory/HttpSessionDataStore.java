@@ -138,7 +138,7 @@ public class HttpSessionDataStore implements IDataStore
 		return true;
 	}
 
-	private PageTable getPageTable(boolean create)
+	PageTable getPageTable(boolean create)
 	{
 		PageTable pageTable = null;
 		if (Session.exists())
@@ -146,13 +146,21 @@ public class HttpSessionDataStore implements IDataStore
 			pageTable = (PageTable)pageManagerContext.getSessionAttribute(PAGE_TABLE_KEY);
 			if (pageTable == null && create)
 			{
-				pageTable = new PageTable();
+				pageTable = newPageTable();
 				pageManagerContext.setSessionAttribute(PAGE_TABLE_KEY, pageTable);
 			}
 		}
 		return pageTable;
 	}
 
+	/**
+	 * @return a new {@link PageTable} for the current http session
+	 */
+	PageTable newPageTable()
+	{
+		return new PageTable();
+	}
+
 	@Override
 	public final boolean canBeAsynchronous()
 	{
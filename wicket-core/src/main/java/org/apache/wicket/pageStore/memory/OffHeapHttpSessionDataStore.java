@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.memory;
+
+import org.apache.wicket.page.IPageManagerContext;
+import org.apache.wicket.util.lang.Bytes;
+
+/**
+ * A {@link HttpSessionDataStore} which keeps the data of the pages outside of the Java heap, in
+ * direct memory allocated by a {@link SlabAllocator} which is shared by all sessions. Only the
+ * ids of the memory blocks are kept in the http session, so the pages don't fill the old
+ * generation of the heap and don't prolong the garbage collection.
+ * <p>
+ * The {@link IDataStoreEvictionStrategy} limits the pages per session like with
+ * {@link HttpSessionDataStore}. {@link MemorySizeEvictionStrategy} uses the size of the memory
+ * blocks used by the session's pages. The maximum size passed to the constructor limits the
+ * memory of all sessions. When it is exhausted the pages are kept in the heap.
+ * </p>
+ * <p>
+ * The memory is released when the http session is invalidated or passivated. When the http
+ * session is serialized (e.g. for replication) the data of the pages is written with it.
+ * </p>
+ * Usage:
+ * 
+ * <pre>
+ * <!--@formatter:off-->
+ * MyApp#init()
+ * {
+ * 
+ * 	setPageManagerProvider(new DefaultPageManagerProvider() 
+ * 	{
+ * 		protected IDataStore newDataStore() 
+ * 		{ 
+ * 			return new OffHeapHttpSessionDataStore(pageManagerContext,
+ * 				new MemorySizeEvictionStrategy(Bytes.megabytes(2)), Bytes.megabytes(512));
+ * 		}
+ * 	}
+ * }
+ * <!--@formatter:on-->
+ * </pre>
+ */
+public class OffHeapHttpSessionDataStore extends HttpSessionDataStore
+{
+	private static final Bytes DEFAULT_SLAB_SIZE = Bytes.megabytes(4);
+
+	private static final Bytes DEFAULT_BLOCK_SIZE = Bytes.kilobytes(2);
+
+	private final SlabAllocator allocator;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param pageManagerContext
+	 * @param evictionStrategy
+	 * @param maxSize
+	 *            the maximum size of the off-heap memory for the pages of all sessions
+	 */
+	public OffHeapHttpSessionDataStore(IPageManagerContext pageManagerContext,
+		IDataStoreEvictionStrategy evictionStrategy, Bytes maxSize)
+	{
+		this(pageManagerContext, evictionStrategy, maxSize, DEFAULT_SLAB_SIZE, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param pageManagerContext
+	 * @param evictionStrategy
+	 * @param maxSize
+	 *            the maximum size of the off-heap memory for the pages of all sessions
+	 * @param slabSize
+	 *            the size of the chunks in which the off-heap memory is allocated
+	 * @param blockSize
+	 *            the size of the blocks in which the data of the pages is written. A page uses
+	 *            on average half a block more than its size.
+	 */
+	public OffHeapHttpSessionDataStore(IPageManagerContext pageManagerContext,
+		IDataStoreEvictionStrategy evictionStrategy, Bytes maxSize, Bytes slabSize, Bytes blockSize)
+	{
+		super(pageManagerContext, evictionStrategy);
+
+		allocator = new SlabAllocator(maxSize, slabSize, blockSize);
+	}
+
+	@Override
+	public void destroy()
+	{
+		super.destroy();
+
+		allocator.destroy();
+	}
+
+	/**
+	 * @return the size of the off-heap memory allocated so far
+	 */
+	public Bytes getCapacity()
+	{
+		return allocator.getCapacity();
+	}
+
+	/**
+	 * @return the size of the off-heap memory used by the pages
+	 */
+	public Bytes getUsedSize()
+	{
+		return allocator.getUsedSize();
+	}
+
+	/**
+	 * @return the maximum size of the off-heap memory
+	 */
+	public Bytes getMaxSize()
+	{
+		return allocator.getMaxSize();
+	}
+
+	@Override
+	PageTable getPageTable(boolean create)
+	{
+		PageTable pageTable = super.getPageTable(create);
+		if (pageTable instanceof OffHeapPageTable)
+		{
+			// moves the pages of a deserialized table to the off-heap memory
+			((OffHeapPageTable)pageTable).attach(allocator);
+		}
+		return pageTable;
+	}
+
+	@Override
+	PageTable newPageTable()
+	{
+		return new OffHeapPageTable(allocator);
+	}
+}
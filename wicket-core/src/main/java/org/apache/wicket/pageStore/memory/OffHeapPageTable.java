@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.memory;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpSessionActivationListener;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import javax.servlet.http.HttpSessionEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link PageTable} which keeps the data of the pages in the memory of a {@link SlabAllocator},
+ * i.e. outside of the Java heap. Only the ids of the blocks are kept in the heap.
+ * <p>
+ * The data is kept in the heap as long as the table is not attached to an allocator (after
+ * deserialization) or when the allocator has no free memory. When the http session is unbound or
+ * passivated the blocks are returned to the allocator.
+ * </p>
+ * 
+ * @see OffHeapHttpSessionDataStore
+ */
+class OffHeapPageTable extends PageTable
+	implements
+		HttpSessionBindingListener,
+		HttpSessionActivationListener
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger log = LoggerFactory.getLogger(OffHeapPageTable.class);
+
+	private transient SlabAllocator allocator;
+
+	/**
+	 * page id => page data, in access order so the first entry is the least recently used one
+	 */
+	private transient Map<Integer, Entry> entries;
+
+	/**
+	 * The bytes used by the pages, both in the blocks and in the heap
+	 */
+	private transient long size;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param allocator
+	 *            the allocator for the data of the pages
+	 */
+	OffHeapPageTable(final SlabAllocator allocator)
+	{
+		this.allocator = allocator;
+		entries = newEntries();
+	}
+
+	/**
+	 * Attaches the table to an allocator and moves the data of the pages kept in the heap to the
+	 * allocator's memory. Does nothing if the table is already attached.
+	 * 
+	 * @param allocator
+	 */
+	synchronized void attach(final SlabAllocator allocator)
+	{
+		if (this.allocator == null)
+		{
+			this.allocator = allocator;
+			for (Map.Entry<Integer, Entry> mapEntry : entries.entrySet())
+			{
+				Entry entry = mapEntry.getValue();
+				if (entry.data != null)
+				{
+					Entry offHeap = newEntry(entry.data);
+					size += offHeap.size - entry.size;
+					mapEntry.setValue(offHeap);
+				}
+			}
+		}
+	}
+
+	@Override
+	synchronized void storePage(final Integer pageId, final byte[] pageAsBytes)
+	{
+		removeEntry(pageId);
+		Entry entry = newEntry(pageAsBytes);
+		entries.put(pageId, entry);
+		size += entry.size;
+	}
+
+	@Override
+	synchronized byte[] getPage(final Integer pageId)
+	{
+		Entry entry = entries.get(pageId);
+		return entry != null ? read(entry) : null;
+	}
+
+	@Override
+	public synchronized byte[] removePage(final Integer pageId)
+	{
+		Entry entry = entries.get(pageId);
+		byte[] data = entry != null ? read(entry) : null;
+		removeEntry(pageId);
+		return data;
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		for (Entry entry : entries.values())
+		{
+			free(entry);
+		}
+		entries.clear();
+		size = 0;
+	}
+
+	@Override
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	@Override
+	synchronized Integer getOldest()
+	{
+		Iterator<Integer> iterator = entries.keySet().iterator();
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+
+	/**
+	 * @return the number of bytes used by the pages, including the unused rest of their last
+	 *         blocks
+	 */
+	@Override
+	synchronized long getSizeInBytes()
+	{
+		return size;
+	}
+
+	@Override
+	public void valueBound(final HttpSessionBindingEvent event)
+	{
+	}
+
+	@Override
+	public void valueUnbound(final HttpSessionBindingEvent event)
+	{
+		clear();
+	}
+
+	@Override
+	public synchronized void sessionWillPassivate(final HttpSessionEvent event)
+	{
+		// the session is going to be serialized and this instance to be thrown away, so move the
+		// data to the heap and release the blocks
+		for (Iterator<Map.Entry<Integer, Entry>> i = entries.entrySet().iterator(); i.hasNext();)
+		{
+			Map.Entry<Integer, Entry> mapEntry = i.next();
+			Entry entry = mapEntry.getValue();
+			if (entry.blocks != null)
+			{
+				byte[] data = read(entry);
+				free(entry);
+				size -= entry.size;
+				if (data != null)
+				{
+					mapEntry.setValue(new Entry(data, null, data.length, data.length));
+					size += data.length;
+				}
+				else
+				{
+					i.remove();
+				}
+			}
+		}
+		allocator = null;
+	}
+
+	@Override
+	public void sessionDidActivate(final HttpSessionEvent event)
+	{
+	}
+
+	private Entry newEntry(final byte[] data)
+	{
+		if (allocator != null)
+		{
+			int[] blocks = allocator.write(data);
+			if (blocks != null)
+			{
+				return new Entry(null, blocks, data.length, allocator.getAllocatedSize(data.length));
+			}
+			log.warn(
+				"There is no free off-heap memory for a page with size {} bytes, keeping it in the heap",
+				data.length);
+		}
+		return new Entry(data, null, data.length, data.length);
+	}
+
+	private void removeEntry(final Integer pageId)
+	{
+		Entry entry = entries.remove(pageId);
+		if (entry != null)
+		{
+			free(entry);
+			size -= entry.size;
+		}
+	}
+
+	private byte[] read(final Entry entry)
+	{
+		if (entry.blocks != null)
+		{
+			return allocator.read(entry.blocks, entry.length);
+		}
+		return entry.data;
+	}
+
+	private void free(final Entry entry)
+	{
+		if (entry.blocks != null)
+		{
+			allocator.free(entry.blocks);
+		}
+	}
+
+	private static Map<Integer, Entry> newEntries()
+	{
+		return new LinkedHashMap<Integer, Entry>(16, 0.75f, true);
+	}
+
+	private synchronized void writeObject(final ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+		out.writeInt(entries.size());
+		for (Map.Entry<Integer, Entry> mapEntry : entries.entrySet())
+		{
+			out.writeInt(mapEntry.getKey());
+			out.writeObject(read(mapEntry.getValue()));
+		}
+	}
+
+	private void readObject(final ObjectInputStream in) throws IOException,
+		ClassNotFoundException
+	{
+		in.defaultReadObject();
+		entries = newEntries();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++)
+		{
+			int pageId = in.readInt();
+			byte[] data = (byte[])in.readObject();
+			if (data != null)
+			{
+				entries.put(pageId, new Entry(data, null, data.length, data.length));
+				size += data.length;
+			}
+		}
+	}
+
+	/**
+	 * The data of a page, either in the heap or in blocks of the allocator
+	 */
+	private static class Entry
+	{
+		private final byte[] data;
+
+		private final int[] blocks;
+
+		private final int length;
+
+		/**
+		 * The bytes used by this entry
+		 */
+		private final long size;
+
+		private Entry(final byte[] data, final int[] blocks, final int length, final long size)
+		{
+			this.data = data;
+			this.blocks = blocks;
+			this.length = length;
+			this.size = size;
+		}
+	}
+}
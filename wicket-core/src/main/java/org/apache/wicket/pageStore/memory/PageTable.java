@@ -21,6 +21,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 
+import org.apache.wicket.core.util.lang.WicketObjects;
 import org.apache.wicket.util.io.IClusterable;
 
 /**
@@ -107,6 +108,15 @@ class PageTable implements IClusterable
 		return index.peek();
 	}
 
+	/**
+	 * @return the number of bytes used by this page table
+	 * @see MemorySizeEvictionStrategy
+	 */
+	long getSizeInBytes()
+	{
+		return WicketObjects.sizeof(this);
+	}
+
 	/**
 	 * Updates the index of last/least recently used pages by removing the page id from the index
 	 * (in case it is already in) and (re-)adding it at the head
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+
+/**
+ * Allocates memory outside of the Java heap for the data of pages.
+ * <p>
+ * The memory is requested from the operating system in slabs (direct {@link ByteBuffer}s) of equal
+ * size which are split in blocks of equal size. The free blocks are kept in a free list. The data
+ * of a page is written in as many blocks as needed, they don't have to be adjacent, so the memory
+ * never gets fragmented. New slabs are allocated lazily until the maximum size is reached.
+ * </p>
+ * 
+ * @see OffHeapHttpSessionDataStore
+ */
+class SlabAllocator
+{
+	private final int blockSize;
+
+	private final int blocksPerSlab;
+
+	private final int maxSlabs;
+
+	private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+
+	/**
+	 * The ids of the free blocks, used as a stack
+	 */
+	private int[] freeBlocks = new int[0];
+
+	private int freeCount = 0;
+
+	private boolean destroyed = false;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of all slabs
+	 * @param slabSize
+	 *            the size of a slab
+	 * @param blockSize
+	 *            the size of a block
+	 */
+	SlabAllocator(final Bytes maxSize, final Bytes slabSize, final Bytes blockSize)
+	{
+		Args.notNull(maxSize, "maxSize");
+		Args.notNull(slabSize, "slabSize");
+		Args.notNull(blockSize, "blockSize");
+
+		long slabBytes = Math.min(slabSize.bytes(), maxSize.bytes());
+		this.blockSize = (int)Args.withinRange(1L, Math.max(slabBytes, 1L), blockSize.bytes(),
+			"blockSize").longValue();
+		blocksPerSlab = (int)Math.min(slabBytes / this.blockSize, Integer.MAX_VALUE /
+			this.blockSize);
+		maxSlabs = (int)Math.min(maxSize.bytes() / ((long)blocksPerSlab * this.blockSize),
+			Integer.MAX_VALUE / blocksPerSlab);
+	}
+
+	/**
+	 * Writes the data in free blocks.
+	 * 
+	 * @param data
+	 *            the data to write
+	 * @return the ids of the blocks with the data or {@code null} if there is not enough free
+	 *         memory
+	 */
+	int[] write(final byte[] data)
+	{
+		int[] blocks = allocate((data.length + blockSize - 1) / blockSize);
+		if (blocks != null)
+		{
+			int offset = 0;
+			for (int block : blocks)
+			{
+				int length = Math.min(blockSize, data.length - offset);
+				ByteBuffer buffer = getBuffer(block);
+				if (buffer == null)
+				{
+					return null;
+				}
+				buffer.put(data, offset, length);
+				offset += length;
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * Reads the data written by {@link #write(byte[])}
+	 * 
+	 * @param blocks
+	 *            the ids of the blocks
+	 * @param length
+	 *            the length of the data
+	 * @return the data or {@code null} if the allocator has been destroyed
+	 */
+	byte[] read(final int[] blocks, final int length)
+	{
+		byte[] data = new byte[length];
+		int offset = 0;
+		for (int block : blocks)
+		{
+			int blockLength = Math.min(blockSize, length - offset);
+			ByteBuffer buffer = getBuffer(block);
+			if (buffer == null)
+			{
+				return null;
+			}
+			buffer.get(data, offset, blockLength);
+			offset += blockLength;
+		}
+		return data;
+	}
+
+	/**
+	 * Returns the blocks to the free list
+	 * 
+	 * @param blocks
+	 *            the ids of the blocks
+	 */
+	synchronized void free(final int[] blocks)
+	{
+		if (destroyed)
+		{
+			return;
+		}
+		System.arraycopy(blocks, 0, freeBlocks, freeCount, blocks.length);
+		freeCount += blocks.length;
+	}
+
+	/**
+	 * Releases all slabs. The blocks allocated so far become invalid.
+	 */
+	synchronized void destroy()
+	{
+		destroyed = true;
+		slabs.clear();
+		freeBlocks = new int[0];
+		freeCount = 0;
+	}
+
+	/**
+	 * @return the number of blocks needed for data with the given length
+	 */
+	long getAllocatedSize(final int length)
+	{
+		return (long)blockSize * ((length + blockSize - 1) / blockSize);
+	}
+
+	/**
+	 * @return the size of all slabs
+	 */
+	synchronized Bytes getCapacity()
+	{
+		return Bytes.bytes((long)slabs.size() * blocksPerSlab * blockSize);
+	}
+
+	/**
+	 * @return the size of all used blocks
+	 */
+	synchronized Bytes getUsedSize()
+	{
+		return Bytes.bytes(((long)slabs.size() * blocksPerSlab - freeCount) * blockSize);
+	}
+
+	/**
+	 * @return the maximum size of all slabs
+	 */
+	Bytes getMaxSize()
+	{
+		return Bytes.bytes((long)maxSlabs * blocksPerSlab * blockSize);
+	}
+
+	private synchronized int[] allocate(final int count)
+	{
+		while (destroyed == false && freeCount < count && slabs.size() < maxSlabs)
+		{
+			addSlab();
+		}
+		if (destroyed || freeCount < count)
+		{
+			return null;
+		}
+
+		int[] blocks = new int[count];
+		freeCount -= count;
+		System.arraycopy(freeBlocks, freeCount, blocks, 0, count);
+		return blocks;
+	}
+
+	private void addSlab()
+	{
+		int first = slabs.size() * blocksPerSlab;
+		slabs.add(ByteBuffer.allocateDirect(blocksPerSlab * blockSize));
+
+		int[] newFreeBlocks = new int[freeBlocks.length + blocksPerSlab];
+		System.arraycopy(freeBlocks, 0, newFreeBlocks, 0, freeCount);
+		// push in reverse order so that the blocks are taken in ascending order
+		for (int i = blocksPerSlab - 1; i >= 0; i--)
+		{
+			newFreeBlocks[freeCount++] = first + i;
+		}
+		freeBlocks = newFreeBlocks;
+	}
+
+	/**
+	 * @return a buffer with own position and limit, positioned at the start of the block or
+	 *         {@code null} if the allocator has been destroyed
+	 */
+	private ByteBuffer getBuffer(final int block)
+	{
+		ByteBuffer slab;
+		synchronized (this)
+		{
+			if (destroyed)
+			{
+				return null;
+			}
+			slab = slabs.get(block / blocksPerSlab);
+		}
+		ByteBuffer buffer = slab.duplicate();
+		buffer.position((block % blocksPerSlab) * blockSize);
+		return buffer;
+	}
+}
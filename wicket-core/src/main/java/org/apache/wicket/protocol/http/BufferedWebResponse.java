@@ -19,6 +19,7 @@ package org.apache.wicket.protocol.http;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -36,6 +37,11 @@ import org.apache.wicket.util.time.Time;
 
 /**
  * Subclass of {@link WebResponse} that buffers the actions and performs those on another response.
+ * <p>
+ * If constructed with a charset, characters are buffered encoded with it and bytes pre-encoded in
+ * this charset can be mixed with them, see {@link #getPreEncodedCharset()}. The buffer is then
+ * written to the other response as bytes.
+ * </p>
  * 
  * @see #writeTo(WebResponse)
  * 
@@ -45,6 +51,11 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 {
 	private final WebResponse originalResponse;
 
+	/**
+	 * The charset characters are buffered in, {@code null} if they are buffered as characters
+	 */
+	private final Charset charset;
+
 	/**
 	 * Construct.
 	 * 
@@ -52,6 +63,21 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 	 */
 	public BufferedWebResponse(WebResponse originalResponse)
 	{
+		this(originalResponse, null);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param originalResponse
+	 * @param charset
+	 *            the charset to encode characters with when they are written, {@code null} to
+	 *            buffer them as characters
+	 */
+	public BufferedWebResponse(WebResponse originalResponse, Charset charset)
+	{
+		this.charset = charset;
+
 		// if original response had some metadata set
 		// we should transfer it to the current response
 		if (originalResponse instanceof IMetaDataBufferingWebResponse)
@@ -144,6 +170,11 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 			builder.append(sequence);
 		}
 
+		public void append(CharSequence sequence, int start, int end)
+		{
+			builder.append(sequence, start, end);
+		}
+
 		@Override
 		protected void invoke(WebResponse response)
 		{
@@ -459,9 +490,21 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 		actions.add(new AddHeaderAction(name, value));
 	}
 
+	@Override
+	public Charset getPreEncodedCharset()
+	{
+		return charset;
+	}
+
 	@Override
 	public void write(CharSequence sequence)
 	{
+		if (charset != null)
+		{
+			write(sequence.toString().getBytes(charset));
+			return;
+		}
+
 		if (dataAction != null)
 		{
 			throw new IllegalStateException(
@@ -476,6 +519,29 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 		charSequenceAction.append(sequence);
 	}
 
+	@Override
+	public void write(CharSequence sequence, int start, int end)
+	{
+		if (charset != null)
+		{
+			super.write(sequence, start, end);
+			return;
+		}
+
+		if (dataAction != null)
+		{
+			throw new IllegalStateException(
+				"Can't call write(CharSequence) after write(byte[]) has been called.");
+		}
+
+		if (charSequenceAction == null)
+		{
+			charSequenceAction = new WriteCharSequenceAction();
+			actions.add(charSequenceAction);
+		}
+		charSequenceAction.append(sequence, start, end);
+	}
+
 	/**
 	 * Returns the text already written to this response.
 	 * 
@@ -483,6 +549,11 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 	 */
 	public CharSequence getText()
 	{
+		if (charset != null)
+		{
+			return dataAction != null ? new String(dataAction.stream.toByteArray(), charset)
+				: null;
+		}
 		if (dataAction != null)
 		{
 			throw new IllegalStateException("write(byte[]) has already been called.");
@@ -497,6 +568,23 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 		}
 	}
 
+	/**
+	 * @return the number of characters or, if buffering in a charset, bytes written to this
+	 *         response
+	 */
+	public int getBufferedLength()
+	{
+		if (dataAction != null)
+		{
+			return dataAction.stream.size();
+		}
+		if (charSequenceAction != null)
+		{
+			return charSequenceAction.builder.length();
+		}
+		return 0;
+	}
+
 	/**
 	 * Replaces the text in this response
 	 * 
@@ -504,6 +592,15 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 	 */
 	public void setText(CharSequence text)
 	{
+		if (charset != null)
+		{
+			if (dataAction != null)
+			{
+				dataAction.stream.reset();
+			}
+			write(text);
+			return;
+		}
 		if (dataAction != null)
 		{
 			throw new IllegalStateException("write(byte[]) has already been called.");
@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import javax.servlet.http.Cookie;
+
+import org.apache.wicket.protocol.http.servlet.ResponseIOException;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * Subclass of {@link WebResponse} which passes its output on to another response in chunks while
+ * it is still being written, instead of buffering all of it like {@link BufferedWebResponse}.
+ * <p>
+ * The output is collected until a chunk is full or {@link #flush()} is called, e.g. after the
+ * &lt;head&gt; of a page has been rendered, and is then written to the other response and flushed
+ * to the client. Meta data like headers and cookies is passed on immediately, so it has to be set
+ * before the first chunk is flushed. Once the first chunk has been flushed the response is
+ * committed and can no longer be {@link #reset()}.
+ * </p>
+ * <p>
+ * If constructed with a charset, characters are encoded with it and bytes pre-encoded in this
+ * charset can be mixed with them, see {@link #getPreEncodedCharset()}. The output is then written
+ * to the other response as bytes.
+ * </p>
+ * 
+ * @see org.apache.wicket.settings.IRequestCycleSettings.RenderStrategy#ONE_PASS_STREAMING
+ */
+public class StreamingWebResponse extends WebResponse
+{
+	/** The default size of a chunk */
+	public static final int DEFAULT_CHUNK_SIZE = 8 * 1024;
+
+	private final WebResponse originalResponse;
+
+	/**
+	 * The charset characters are encoded in, {@code null} if they are passed on as characters
+	 */
+	private final Charset charset;
+
+	private final int chunkSize;
+
+	private final StringBuilder chars;
+
+	private final ByteArrayOutputStream bytes;
+
+	private final long startNanos;
+
+	private long firstByteNanos = -1;
+
+	private int flushCount;
+
+	private int maxChunkSize;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param originalResponse
+	 *            the response to stream to
+	 * @param charset
+	 *            the charset to encode characters in or {@code null} to pass them on as
+	 *            characters
+	 * @param chunkSize
+	 *            the number of characters or, if a charset is given, bytes which are collected
+	 *            before they are flushed
+	 */
+	public StreamingWebResponse(final WebResponse originalResponse, final Charset charset,
+		final int chunkSize)
+	{
+		Args.notNull(originalResponse, "originalResponse");
+		Args.withinRange(1, Integer.MAX_VALUE, chunkSize, "chunkSize");
+
+		this.originalResponse = originalResponse;
+		this.charset = charset;
+		this.chunkSize = chunkSize;
+		if (charset == null)
+		{
+			chars = new StringBuilder(chunkSize);
+			bytes = null;
+		}
+		else
+		{
+			chars = null;
+			bytes = new ByteArrayOutputStream(chunkSize);
+		}
+		startNanos = System.nanoTime();
+	}
+
+	@Override
+	public Charset getPreEncodedCharset()
+	{
+		return charset;
+	}
+
+	@Override
+	public void write(final CharSequence sequence)
+	{
+		if (charset != null)
+		{
+			write(sequence.toString().getBytes(charset));
+			return;
+		}
+
+		chars.append(sequence);
+		if (chars.length() >= chunkSize)
+		{
+			flush();
+		}
+	}
+
+	@Override
+	public void write(final CharSequence sequence, final int start, final int end)
+	{
+		if (charset != null)
+		{
+			super.write(sequence, start, end);
+			return;
+		}
+
+		chars.append(sequence, start, end);
+		if (chars.length() >= chunkSize)
+		{
+			flush();
+		}
+	}
+
+	@Override
+	public void write(final byte[] array)
+	{
+		write(array, 0, array.length);
+	}
+
+	@Override
+	public void write(final byte[] array, final int offset, final int length)
+	{
+		if (charset == null)
+		{
+			throw new IllegalStateException(
+				"Can't call write(byte[]) on a response which streams characters.");
+		}
+
+		bytes.write(array, offset, length);
+		if (bytes.size() >= chunkSize)
+		{
+			flush();
+		}
+	}
+
+	/**
+	 * Writes the collected output to the original response and flushes it. Does nothing if no
+	 * output has been collected, so that the response isn't committed without need.
+	 */
+	@Override
+	public void flush()
+	{
+		int size = getBufferedLength();
+		if (size > 0)
+		{
+			if (charset == null)
+			{
+				originalResponse.write(chars);
+				chars.setLength(0);
+			}
+			else
+			{
+				try
+				{
+					bytes.writeTo(originalResponse.getOutputStream());
+				}
+				catch (IOException e)
+				{
+					throw new ResponseIOException(e);
+				}
+				bytes.reset();
+			}
+
+			if (firstByteNanos == -1)
+			{
+				firstByteNanos = System.nanoTime() - startNanos;
+			}
+			maxChunkSize = Math.max(maxChunkSize, size);
+
+			originalResponse.flush();
+			flushCount++;
+		}
+	}
+
+	/**
+	 * Discards the collected output and resets the original response.
+	 * 
+	 * @throws IllegalStateException
+	 *             if output has already been written to the original response
+	 */
+	@Override
+	public void reset()
+	{
+		if (isCommitted())
+		{
+			throw new IllegalStateException("Response has already been streamed!");
+		}
+		discard();
+		originalResponse.reset();
+	}
+
+	private void discard()
+	{
+		if (charset == null)
+		{
+			chars.setLength(0);
+		}
+		else
+		{
+			bytes.reset();
+		}
+	}
+
+	/**
+	 * @return {@code true} if output has already been written to the original response
+	 */
+	public boolean isCommitted()
+	{
+		return flushCount > 0;
+	}
+
+	/**
+	 * @return the number of characters or, if a charset is used, bytes collected but not yet
+	 *         written to the original response
+	 */
+	public int getBufferedLength()
+	{
+		return charset == null ? chars.length() : bytes.size();
+	}
+
+	/**
+	 * @return the nanoseconds from the construction of this response until the first output was
+	 *         written to the original response, {@code -1} if nothing has been written yet
+	 */
+	public long getTimeToFirstByte()
+	{
+		return firstByteNanos;
+	}
+
+	/**
+	 * @return how often output has been written to the original response
+	 */
+	public int getFlushCount()
+	{
+		return flushCount;
+	}
+
+	/**
+	 * @return the largest number of characters or bytes written to the original response at once
+	 */
+	public int getMaxChunkSize()
+	{
+		return maxChunkSize;
+	}
+
+	@Override
+	public void sendRedirect(final String url)
+	{
+		discard();
+		originalResponse.sendRedirect(url);
+	}
+
+	@Override
+	public void sendError(final int sc, final String msg)
+	{
+		discard();
+		originalResponse.sendError(sc, msg);
+	}
+
+	@Override
+	public boolean isRedirect()
+	{
+		return originalResponse.isRedirect();
+	}
+
+	@Override
+	public void addCookie(final Cookie cookie)
+	{
+		originalResponse.addCookie(cookie);
+	}
+
+	@Override
+	public void clearCookie(final Cookie cookie)
+	{
+		originalResponse.clearCookie(cookie);
+	}
+
+	@Override
+	public void setHeader(final String name, final String value)
+	{
+		originalResponse.setHeader(name, value);
+	}
+
+	@Override
+	public void addHeader(final String name, final String value)
+	{
+		originalResponse.addHeader(name, value);
+	}
+
+	@Override
+	public void setDateHeader(final String name, final Time date)
+	{
+		originalResponse.setDateHeader(name, date);
+	}
+
+	@Override
+	public void setContentLength(final long length)
+	{
+		originalResponse.setContentLength(length);
+	}
+
+	@Override
+	public void setContentType(final String mimeType)
+	{
+		originalResponse.setContentType(mimeType);
+	}
+
+	@Override
+	public void setStatus(final int sc)
+	{
+		originalResponse.setStatus(sc);
+	}
+
+	@Override
+	public String encodeURL(final CharSequence url)
+	{
+		return originalResponse.encodeURL(url);
+	}
+
+	@Override
+	public String encodeRedirectURL(final CharSequence url)
+	{
+		return originalResponse.encodeRedirectURL(url);
+	}
+
+	@Override
+	public Object getContainerResponse()
+	{
+		return originalResponse.getContainerResponse();
+	}
+}
@@ -20,6 +20,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.Charset;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -300,7 +301,8 @@ public class MockHttpServletResponse implements HttpServletResponse, IMetaDataBu
 	}
 
 	/**
-	 * Get the text document that was written as part of this response.
+	 * Get the text document that was written as part of this response. Binary content is decoded
+	 * with the character encoding of this response.
 	 * 
 	 * @return The document
 	 */
@@ -308,7 +310,11 @@ public class MockHttpServletResponse implements HttpServletResponse, IMetaDataBu
 	{
 		if (mode == MODE_BINARY)
 		{
-			return new String(byteStream.toByteArray());
+			if (characterEncoding == null)
+			{
+				return new String(byteStream.toByteArray());
+			}
+			return new String(byteStream.toByteArray(), Charset.forName(characterEncoding));
 		}
 		else
 		{
@@ -443,6 +449,12 @@ public class MockHttpServletResponse implements HttpServletResponse, IMetaDataBu
 			{
 				byteStream.write(b);
 			}
+
+			@Override
+			public void write(byte[] b, int off, int len)
+			{
+				byteStream.write(b, off, len);
+			}
 		};
 		stringWriter = new StringWriter();
 		printWriter = new PrintWriter(stringWriter)
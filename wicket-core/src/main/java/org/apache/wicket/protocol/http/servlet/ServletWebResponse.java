@@ -17,6 +17,7 @@
 package org.apache.wicket.protocol.http.servlet;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
@@ -114,6 +115,27 @@ public class ServletWebResponse extends WebResponse
 		}
 	}
 
+	@Override
+	public void write(CharSequence sequence, int start, int end)
+	{
+		try
+		{
+			PrintWriter writer = httpServletResponse.getWriter();
+			if (sequence instanceof String)
+			{
+				writer.write((String)sequence, start, end - start);
+			}
+			else
+			{
+				writer.append(sequence, start, end);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new ResponseIOException(e);
+		}
+	}
+
 	@Override
 	public void write(byte[] array)
 	{
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.handler.render;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.util.time.DurationHistogram;
+
+/**
+ * Application wide statistics of the pages rendered by {@link WebPageRenderer}s: how long it took
+ * until the first byte of a page could be sent and how much of it was held in memory.
+ * <p>
+ * Pages are either buffered completely before they are sent, so their first byte is available
+ * only after the whole page has been rendered, or streamed in chunks with
+ * {@link org.apache.wicket.settings.IRequestCycleSettings.RenderStrategy#ONE_PASS_STREAMING}.
+ * </p>
+ */
+public class PageRenderStatistics
+{
+	private static final MetaDataKey<PageRenderStatistics> KEY = new MetaDataKey<PageRenderStatistics>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	private final DurationHistogram bufferedTimesToFirstByte = new DurationHistogram();
+
+	private final DurationHistogram streamedTimesToFirstByte = new DurationHistogram();
+
+	private final AtomicLong bufferedSize = new AtomicLong();
+
+	private final AtomicLong maxBufferedSize = new AtomicLong();
+
+	private final AtomicLong maxChunkSize = new AtomicLong();
+
+	private final AtomicLong flushes = new AtomicLong();
+
+	/**
+	 * @return the times it took to render the buffered pages
+	 */
+	public DurationHistogram getBufferedTimesToFirstByte()
+	{
+		return bufferedTimesToFirstByte;
+	}
+
+	/**
+	 * @return the times it took until the first chunk of the streamed pages was flushed
+	 */
+	public DurationHistogram getStreamedTimesToFirstByte()
+	{
+		return streamedTimesToFirstByte;
+	}
+
+	/**
+	 * @return the number of buffered pages
+	 */
+	public long getBufferedCount()
+	{
+		return bufferedTimesToFirstByte.getCount();
+	}
+
+	/**
+	 * @return the number of streamed pages
+	 */
+	public long getStreamedCount()
+	{
+		return streamedTimesToFirstByte.getCount();
+	}
+
+	/**
+	 * @return the mean number of characters or bytes buffered per page
+	 */
+	public long getMeanBufferedSize()
+	{
+		long count = getBufferedCount();
+		return count == 0 ? 0 : bufferedSize.get() / count;
+	}
+
+	/**
+	 * @return the largest number of characters or bytes buffered for a page
+	 */
+	public long getMaxBufferedSize()
+	{
+		return maxBufferedSize.get();
+	}
+
+	/**
+	 * @return the largest number of characters or bytes held in memory for a streamed page
+	 */
+	public long getMaxChunkSize()
+	{
+		return maxChunkSize.get();
+	}
+
+	/**
+	 * @return the mean number of flushes per streamed page
+	 */
+	public long getMeanFlushCount()
+	{
+		long count = getStreamedCount();
+		return count == 0 ? 0 : flushes.get() / count;
+	}
+
+	void onBuffered(final long nanos, final int size)
+	{
+		bufferedSize.addAndGet(size);
+		updateMax(maxBufferedSize, size);
+		bufferedTimesToFirstByte.record(nanos);
+	}
+
+	void onStreamed(final long timeToFirstByte, final int chunkSize, final int flushCount)
+	{
+		flushes.addAndGet(flushCount);
+		updateMax(maxChunkSize, chunkSize);
+		streamedTimesToFirstByte.record(timeToFirstByte);
+	}
+
+	private static void updateMax(final AtomicLong max, final long value)
+	{
+		long current = max.get();
+		while (value > current && max.compareAndSet(current, value) == false)
+		{
+			current = max.get();
+		}
+	}
+
+	/**
+	 * Forgets the recorded times and sizes
+	 */
+	public void reset()
+	{
+		bufferedTimesToFirstByte.reset();
+		streamedTimesToFirstByte.reset();
+		bufferedSize.set(0);
+		maxBufferedSize.set(0);
+		maxChunkSize.set(0);
+		flushes.set(0);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "buffered: [" + bufferedTimesToFirstByte + "], max size: " + maxBufferedSize +
+			", streamed: [" + streamedTimesToFirstByte + "], max chunk: " + maxChunkSize;
+	}
+
+	/**
+	 * @param application
+	 * @return the statistics of the application
+	 */
+	public static PageRenderStatistics get(final Application application)
+	{
+		PageRenderStatistics statistics = application.getMetaData(KEY);
+		if (statistics == null)
+		{
+			synchronized (application)
+			{
+				statistics = application.getMetaData(KEY);
+				if (statistics == null)
+				{
+					statistics = new PageRenderStatistics();
+					application.setMetaData(KEY, statistics);
+				}
+			}
+		}
+		return statistics;
+	}
+}
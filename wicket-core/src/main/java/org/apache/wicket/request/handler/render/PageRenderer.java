@@ -80,7 +80,15 @@ public abstract class PageRenderer
 
 	protected boolean isOnePassRender()
 	{
-		return Application.get().getRequestCycleSettings().getRenderStrategy() == RenderStrategy.ONE_PASS_RENDER;
+		RenderStrategy strategy = Application.get().getRequestCycleSettings().getRenderStrategy();
+		return strategy == RenderStrategy.ONE_PASS_RENDER ||
+			strategy == RenderStrategy.ONE_PASS_STREAMING;
+	}
+
+	protected boolean isStreamingRender()
+	{
+		return Application.exists() &&
+			Application.get().getRequestCycleSettings().getRenderStrategy() == RenderStrategy.ONE_PASS_STREAMING;
 	}
 
 	protected boolean isRedirectToRender()
@@ -16,10 +16,14 @@
  */
 package org.apache.wicket.request.handler.render;
 
+import java.nio.charset.Charset;
+import java.util.List;
+
 import org.apache.wicket.Application;
 import org.apache.wicket.core.request.handler.RenderPageRequestHandler;
 import org.apache.wicket.core.request.handler.RenderPageRequestHandler.RedirectPolicy;
 import org.apache.wicket.protocol.http.BufferedWebResponse;
+import org.apache.wicket.protocol.http.StreamingWebResponse;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.Request;
@@ -28,6 +32,9 @@ import org.apache.wicket.request.component.IRequestablePage;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.response.filter.IResponseFilter;
+import org.apache.wicket.settings.IRequestCycleSettings;
+import org.apache.wicket.settings.def.RequestCycleSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -79,6 +86,51 @@ public class WebPageRenderer extends PageRenderer
 		return WebApplication.get().getAndRemoveBufferedResponse(getSessionId(), url);
 	}
 
+	/**
+	 * @return the charset to buffer the page in or {@code null} to buffer it as characters
+	 * @see RequestCycleSettings#setBufferPagesAsBytes(boolean)
+	 */
+	protected Charset getBufferCharset()
+	{
+		if (Application.exists() == false)
+		{
+			return null;
+		}
+
+		IRequestCycleSettings settings = Application.get().getRequestCycleSettings();
+		if ((settings instanceof RequestCycleSettings == false) ||
+			(((RequestCycleSettings)settings).getBufferPagesAsBytes() == false))
+		{
+			return null;
+		}
+
+		// the filters need the text of the page
+		if (hasResponseFilters())
+		{
+			return null;
+		}
+		return Charset.forName(settings.getResponseRequestEncoding());
+	}
+
+	private static boolean hasResponseFilters()
+	{
+		List<IResponseFilter> filters = Application.get()
+			.getRequestCycleSettings()
+			.getResponseFilters();
+		return filters != null && filters.isEmpty() == false;
+	}
+
+	/**
+	 * @param originalResponse
+	 * @return the response the page is streamed to
+	 * @see IRequestCycleSettings.RenderStrategy#ONE_PASS_STREAMING
+	 */
+	protected StreamingWebResponse newStreamingResponse(WebResponse originalResponse)
+	{
+		return new StreamingWebResponse(originalResponse, getBufferCharset(),
+			StreamingWebResponse.DEFAULT_CHUNK_SIZE);
+	}
+
 	/**
 	 * Renders page to a {@link BufferedWebResponse}. All URLs in page will be rendered relative to
 	 * <code>targetUrl</code>
@@ -105,16 +157,24 @@ public class WebPageRenderer extends PageRenderer
 		final WebResponse originalResponse = (WebResponse) requestCycle.getResponse();
 
 		// buffered web response for page
-		BufferedWebResponse response = new BufferedWebResponse(originalResponse);
+		BufferedWebResponse response = new BufferedWebResponse(originalResponse,
+			getBufferCharset());
 
 		// keep the original base URL
 		Url originalBaseUrl = requestCycle.getUrlRenderer().setBaseUrl(targetUrl);
 
+		long start = System.nanoTime();
 		try
 		{
 			requestCycle.setResponse(response);
 			requestablePage.renderPage();
 
+			if (Application.exists())
+			{
+				PageRenderStatistics.get(Application.get()).onBuffered(System.nanoTime() - start,
+					response.getBufferedLength());
+			}
+
 			if (scheduled == null && requestCycle.getRequestHandlerScheduledAfterCurrent() != null)
 			{
 				// This is a special case.
@@ -138,6 +198,85 @@ public class WebPageRenderer extends PageRenderer
 		}
 	}
 
+	/**
+	 * Renders page to a {@link StreamingWebResponse}, which passes it on to the response of the
+	 * request cycle while it is rendered. All URLs in page will be rendered relative to
+	 * <code>targetUrl</code>
+	 * <p>
+	 * An exception thrown after a part of the page has been sent can't be answered with an error
+	 * page anymore. It is logged and the rest of the page is dropped.
+	 * </p>
+	 * 
+	 * @param targetUrl
+	 * @param requestCycle
+	 * @see IRequestCycleSettings.RenderStrategy#ONE_PASS_STREAMING
+	 */
+	protected void streamPage(Url targetUrl, RequestCycle requestCycle)
+	{
+		// get the page before checking for a scheduled request handler because
+		// the page may call setResponsePage in its constructor
+		IRequestablePage requestablePage = getPage();
+
+		if (requestCycle.getRequestHandlerScheduledAfterCurrent() != null)
+		{
+			// no need to render
+			return;
+		}
+
+		// keep the original response
+		final WebResponse originalResponse = (WebResponse)requestCycle.getResponse();
+
+		StreamingWebResponse response = newStreamingResponse(originalResponse);
+
+		// keep the original base URL
+		Url originalBaseUrl = requestCycle.getUrlRenderer().setBaseUrl(targetUrl);
+
+		try
+		{
+			requestCycle.setResponse(response);
+			try
+			{
+				requestablePage.renderPage();
+			}
+			catch (RuntimeException e)
+			{
+				if (response.isCommitted() == false)
+				{
+					// nothing has been sent yet, the exception can still be handled as usual
+					throw e;
+				}
+				logger.error("Error while streaming page " + requestablePage.getClass().getName() +
+					", the page has already been partially sent.", e);
+				return;
+			}
+
+			if (requestCycle.getRequestHandlerScheduledAfterCurrent() != null)
+			{
+				// During page render another request handler got scheduled and will want to
+				// overwrite the response. Drop what is left of the page, the meta data has already
+				// been passed on to the original response.
+				if (response.isCommitted())
+				{
+					logger.warn(
+						"A request handler has been scheduled while page {} was streamed, the page has already been partially sent.",
+						requestablePage.getClass().getName());
+				}
+				return;
+			}
+
+			response.flush();
+
+			PageRenderStatistics.get(Application.get()).onStreamed(response.getTimeToFirstByte(),
+				response.getMaxChunkSize(), response.getFlushCount());
+		}
+		finally
+		{
+			// restore original response and base URL
+			requestCycle.setResponse(originalResponse);
+			requestCycle.getUrlRenderer().setBaseUrl(originalBaseUrl);
+		}
+	}
+
 	/**
 	 * 
 	 * @param url
@@ -193,10 +332,17 @@ public class WebPageRenderer extends PageRenderer
 			// or the targetUrl matches current url, page is stateless but it's redirect-to-render
 			// or the request determines that the current url should be preserved
 			// just render the page
-			BufferedWebResponse response = renderPage(currentUrl, requestCycle);
-			if (response != null)
+			if (isAjax == false && isStreamingRender() && hasResponseFilters() == false)
 			{
-				response.writeTo((WebResponse)requestCycle.getResponse());
+				streamPage(currentUrl, requestCycle);
+			}
+			else
+			{
+				BufferedWebResponse response = renderPage(currentUrl, requestCycle);
+				if (response != null)
+				{
+					response.writeTo((WebResponse)requestCycle.getResponse());
+				}
 			}
 		}
 		else if (getRedirectPolicy() == RedirectPolicy.ALWAYS_REDIRECT //
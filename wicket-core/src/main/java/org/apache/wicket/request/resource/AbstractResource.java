@@ -16,9 +16,16 @@
  */
 package org.apache.wicket.request.resource;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletResponse;
@@ -32,9 +39,11 @@ import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
 import org.apache.wicket.settings.IResourceSettings;
+import org.apache.wicket.settings.def.ResourceSettings;
 import org.apache.wicket.util.io.Streams;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Classes;
+import org.apache.wicket.util.string.Strings;
 import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.time.Time;
 
@@ -48,6 +57,14 @@ public abstract class AbstractResource implements IResource
 {
 	private static final long serialVersionUID = 1L;
 
+	/** the gzip content encoding */
+	public static final String GZIP = "gzip";
+
+	/** the deflate content encoding */
+	public static final String DEFLATE = "deflate";
+
+	private static final Random BOUNDARY_RANDOM = new Random();
+
 	/** header values that are managed internally and must not be set directly */
 	public static final Set<String> INTERNAL_HEADERS;
 
@@ -97,7 +114,13 @@ public abstract class AbstractResource implements IResource
 		private String contentType = null;
 		private String textEncoding;
 		private long contentLength = -1;
+		private String contentEncoding;
+		private boolean varyAcceptEncoding;
 		private Time lastModified = null;
+		private String eTag;
+		private boolean acceptRanges;
+		private List<ContentRange> contentRanges;
+		private String boundary;
 		private WriteCallback writeCallback;
 		private Duration cacheDuration;
 		private WebResponse.CacheScope cacheScope;
@@ -284,6 +307,28 @@ public abstract class AbstractResource implements IResource
 			return contentLength;
 		}
 
+		/**
+		 * Sets the content encoding of the data written by the {@link WriteCallback}, e.g.
+		 * {@link AbstractResource#GZIP} if the resource writes compressed data itself. Such data
+		 * is not compressed again.
+		 * 
+		 * @param contentEncoding
+		 *            the content encoding or {@code null} if the data is not encoded
+		 * @see AbstractResource#getAcceptedContentEncoding(IResource.Attributes)
+		 */
+		public void setContentEncoding(String contentEncoding)
+		{
+			this.contentEncoding = contentEncoding;
+		}
+
+		/**
+		 * @return the content encoding of the data or {@code null}
+		 */
+		public String getContentEncoding()
+		{
+			return contentEncoding;
+		}
+
 		/**
 		 * Sets the last modified data of the resource. Even though this method is optional it is
 		 * recommended to set the date. If the date is set properly Wicket can check the
@@ -306,10 +351,131 @@ public abstract class AbstractResource implements IResource
 			return lastModified;
 		}
 
+		/**
+		 * Sets the entity tag of the resource, sent in the <code>ETag</code> header. The tag has
+		 * to change whenever the data changes, i.e. it is a strong validator. If the tag is set
+		 * Wicket checks the <code>If-None-Match</code> and <code>If-Range</code> headers against
+		 * it.
+		 * 
+		 * @param eTag
+		 *            the entity tag without quotes or {@code null}
+		 * @see org.apache.wicket.request.resource.caching.version.IResourceVersion
+		 */
+		public void setETag(String eTag)
+		{
+			this.eTag = eTag;
+		}
+
+		/**
+		 * @return the entity tag without quotes or {@code null}
+		 */
+		public String getETag()
+		{
+			return eTag;
+		}
+
+		/**
+		 * Sets whether the data can be requested partially with the <code>Range</code> header.
+		 * Requires the content length to be set. The {@link WriteCallback} still writes the whole
+		 * data, the requested ranges are picked while it is written.
+		 * 
+		 * @param acceptRanges
+		 *            {@code true} to accept byte ranges
+		 * @see WriteCallback#writeStream(IResource.Attributes, InputStream)
+		 */
+		public void setAcceptRanges(boolean acceptRanges)
+		{
+			this.acceptRanges = acceptRanges;
+		}
+
+		/**
+		 * @return whether byte ranges are accepted
+		 */
+		public boolean getAcceptRanges()
+		{
+			return acceptRanges;
+		}
+
+		/**
+		 * @return the quoted entity tag of the written representation
+		 */
+		private String getEntityTag()
+		{
+			if (contentEncoding == null)
+			{
+				return '"' + eTag + '"';
+			}
+			return '"' + eTag + '-' + contentEncoding + '"';
+		}
+
+		/**
+		 * Checks the entity tags of an <code>If-None-Match</code> header. A tag matches if it is
+		 * the tag of any representation of the data, compressed or not.
+		 * 
+		 * @param ifNoneMatch
+		 *            header value
+		 * @return {@code true} if any tag matches
+		 */
+		private boolean matchesEntityTag(String ifNoneMatch)
+		{
+			for (String tag : Strings.split(ifNoneMatch, ','))
+			{
+				tag = tag.trim();
+				if ("*".equals(tag))
+				{
+					return true;
+				}
+				if (tag.startsWith("W/"))
+				{
+					tag = tag.substring(2);
+				}
+				if (tag.length() < 2 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"')
+				{
+					continue;
+				}
+				tag = tag.substring(1, tag.length() - 1);
+				if (tag.equals(eTag) || tag.equals(eTag + '-' + GZIP) ||
+					tag.equals(eTag + '-' + DEFLATE))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Checks the <code>If-Range</code> request header, which contains either a strong entity
+		 * tag or the last modification date.
+		 * 
+		 * @param request
+		 *            the request
+		 * @return {@code true} if the data has not been changed and the range can be sent
+		 */
+		private boolean matchesIfRange(WebRequest request)
+		{
+			String ifRange = request.getHeader("If-Range");
+			if (ifRange == null)
+			{
+				return true;
+			}
+
+			ifRange = ifRange.trim();
+			if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+			{
+				return eTag != null && ifRange.equals(getEntityTag());
+			}
+
+			Time date = request.getDateHeader("If-Range");
+			return date != null && lastModified != null &&
+				date.getMilliseconds() == lastModified.getMilliseconds() / 1000 * 1000;
+		}
+
 		/**
 		 * Check to determine if the resource data needs to be written. This method checks the
-		 * <code>If-Modified-Since</code> request header and compares it to lastModified property.
-		 * In order for this method to work {@link #setLastModified(Time)} has to be called first.
+		 * <code>If-None-Match</code> request header against the {@link #setETag(String) entity
+		 * tag} or if there is none the <code>If-Modified-Since</code> request header and compares
+		 * it to lastModified property. In order for this method to work
+		 * {@link #setLastModified(Time)} or {@link #setETag(String)} has to be called first.
 		 * 
 		 * @param attributes
 		 *            request attributes
@@ -319,6 +485,17 @@ public abstract class AbstractResource implements IResource
 		public boolean dataNeedsToBeWritten(Attributes attributes)
 		{
 			WebRequest request = (WebRequest)attributes.getRequest();
+
+			if (cacheDuration != Duration.NONE && eTag != null)
+			{
+				String ifNoneMatch = request.getHeader("If-None-Match");
+				if (ifNoneMatch != null)
+				{
+					// If-Modified-Since is ignored when entity tags are compared
+					return matchesEntityTag(ifNoneMatch) == false;
+				}
+			}
+
 			Time ifModifiedSince = request.getIfModifiedSinceHeader();
 
 			if (cacheDuration != Duration.NONE && ifModifiedSince != null && lastModified != null)
@@ -509,11 +686,17 @@ public abstract class AbstractResource implements IResource
 				getCachingStrategy().decorateResponse(data, cacheable);
 			}
 		}
+		// write only the requested ranges?
+		prepareRanges(data, attributes);
+
+		// compress the data while it is written?
+		final String contentEncoding = prepareCompression(data, attributes);
+
 		// set response header
 		setResponseHeaders(data, attributes);
 
 		if (!data.dataNeedsToBeWritten(attributes) || data.getErrorCode() != null
-				|| needsBody(data.getStatusCode()) == false)
+				|| needsBody(data.getStatusCode()) == false || isRangeNotSatisfiable(data))
 		{
 			return;
 		}
@@ -525,7 +708,30 @@ public abstract class AbstractResource implements IResource
 
 		try
 		{
-			data.getWriteCallback().writeData(attributes);
+			if (data.contentRanges != null)
+			{
+				ContentRangeWebResponse rangeResponse = new ContentRangeWebResponse(
+					(WebResponse)attributes.getResponse(), data.contentRanges,
+					data.getContentLength(), getContentTypeHeader(data), data.boundary,
+					getCharset(data));
+				data.getWriteCallback().writeData(
+					new Attributes(attributes.getRequest(), rangeResponse,
+						attributes.getParameters()));
+				rangeResponse.finish();
+			}
+			else if (contentEncoding == null)
+			{
+				data.getWriteCallback().writeData(attributes);
+			}
+			else
+			{
+				CompressingWebResponse compressingResponse = new CompressingWebResponse(
+					(WebResponse)attributes.getResponse(), contentEncoding, getCharset(data));
+				data.getWriteCallback().writeData(
+					new Attributes(attributes.getRequest(), compressingResponse,
+						attributes.getParameters()));
+				compressingResponse.finish();
+			}
 		}
 		catch (IOException iox)
 		{
@@ -533,6 +739,266 @@ public abstract class AbstractResource implements IResource
 		}
 	}
 
+	/**
+	 * @param data
+	 * @return the charset to encode characters written by the {@link WriteCallback} with
+	 */
+	private String getCharset(final ResourceResponse data)
+	{
+		String charset = data.getTextEncoding();
+		if (charset == null)
+		{
+			charset = Application.get().getRequestCycleSettings().getResponseRequestEncoding();
+		}
+		return charset;
+	}
+
+	/**
+	 * @param data
+	 * @return the value of the <code>Content-Type</code> header for the data or {@code null}
+	 */
+	private static String getContentTypeHeader(final ResourceResponse data)
+	{
+		final String mimeType = data.getContentType();
+		final String encoding = data.getTextEncoding();
+		if (mimeType == null || encoding == null)
+		{
+			return mimeType;
+		}
+		return mimeType + "; charset=" + encoding;
+	}
+
+	/**
+	 * Decides whether only ranges of the data are written. The ranges of the <code>Range</code>
+	 * request header are written if the resource
+	 * {@link ResourceResponse#setAcceptRanges(boolean) accepts ranges}, its content length is
+	 * known and the <code>If-Range</code> header, if present, matches.
+	 * 
+	 * @param data
+	 * @param attributes
+	 */
+	private void prepareRanges(final ResourceResponse data, final Attributes attributes)
+	{
+		if (!data.getAcceptRanges() || data.getContentLength() < 0 ||
+			data.getErrorCode() != null || data.getStatusCode() != null ||
+			!(attributes.getRequest() instanceof WebRequest) ||
+			!(attributes.getResponse() instanceof WebResponse) ||
+			!data.dataNeedsToBeWritten(attributes))
+		{
+			return;
+		}
+
+		final WebRequest request = (WebRequest)attributes.getRequest();
+		final String range = request.getHeader("Range");
+		if (range == null || !data.matchesIfRange(request))
+		{
+			return;
+		}
+
+		final List<ContentRange> ranges = ContentRange.parse(range, data.getContentLength());
+		if (ranges != null)
+		{
+			data.contentRanges = ranges;
+			if (ranges.size() > 1)
+			{
+				data.boundary = Long.toHexString(BOUNDARY_RANDOM.nextLong()) +
+					Long.toHexString(System.nanoTime());
+			}
+		}
+	}
+
+	/**
+	 * @param data
+	 * @return {@code true} if ranges were requested but none of them can be satisfied
+	 */
+	private static boolean isRangeNotSatisfiable(final ResourceResponse data)
+	{
+		return data.contentRanges != null && data.contentRanges.isEmpty();
+	}
+
+	/**
+	 * Decides whether the data is compressed while it is written. The data is compressed if
+	 * {@link ResourceSettings#getCompressResponses() enabled}, the data is
+	 * {@link #isCompressible(ResourceResponse) compressible}, not already encoded, at least
+	 * {@link ResourceSettings#getCompressionThreshold()} bytes long and the client accepts a
+	 * compressed response.
+	 * 
+	 * @param data
+	 * @param attributes
+	 * @return the content encoding to compress the data with or {@code null}
+	 */
+	private String prepareCompression(final ResourceResponse data, final Attributes attributes)
+	{
+		if (data.getErrorCode() != null || needsBody(data.getStatusCode()) == false ||
+			data.contentRanges != null || !(attributes.getResponse() instanceof WebResponse) ||
+			getCompressionSettings() == null ||
+			data.getHeaders().containsHeader("Content-Encoding") || !isCompressible(data))
+		{
+			return null;
+		}
+
+		// the response depends on the Accept-Encoding header, caches have to know
+		data.varyAcceptEncoding = true;
+
+		if (data.getContentEncoding() != null || !data.dataNeedsToBeWritten(attributes) ||
+			!exceedsCompressionThreshold(data.getContentLength()))
+		{
+			return null;
+		}
+
+		final String contentEncoding = getAcceptedContentEncoding(attributes);
+		if (contentEncoding != null)
+		{
+			data.setContentEncoding(contentEncoding);
+			data.setContentLength(-1);
+		}
+		return contentEncoding;
+	}
+
+	/**
+	 * Decides whether data of the response's content type can be compressed. By default textual
+	 * content types are compressible, i.e. <code>text/*</code>, JavaScript, JSON and XML.
+	 * 
+	 * @param data
+	 *            the resource response
+	 * @return {@code true} if the data should be compressed
+	 */
+	protected boolean isCompressible(final ResourceResponse data)
+	{
+		String contentType = data.getContentType();
+		if (contentType == null)
+		{
+			return false;
+		}
+		contentType = contentType.toLowerCase(Locale.ENGLISH);
+		return contentType.startsWith("text/") || contentType.contains("javascript") ||
+			contentType.contains("json") || contentType.contains("xml");
+	}
+
+	/**
+	 * Gets the content encoding which the client accepts, if responses are to be
+	 * {@link ResourceSettings#getCompressResponses() compressed}. Gzip is preferred over deflate.
+	 * 
+	 * @param attributes
+	 *            request attributes
+	 * @return {@link #GZIP}, {@link #DEFLATE} or {@code null} if the response should not be
+	 *         compressed
+	 */
+	protected final String getAcceptedContentEncoding(final Attributes attributes)
+	{
+		if (getCompressionSettings() == null || !(attributes.getRequest() instanceof WebRequest))
+		{
+			return null;
+		}
+
+		WebRequest request = (WebRequest)attributes.getRequest();
+		return negotiateContentEncoding(request.getHeader("Accept-Encoding"));
+	}
+
+	/**
+	 * @param contentLength
+	 *            the length of the data or -1 if unknown
+	 * @return {@code true} if data of this length should be compressed
+	 */
+	static boolean exceedsCompressionThreshold(final long contentLength)
+	{
+		ResourceSettings settings = getCompressionSettings();
+		return settings != null &&
+			(contentLength == -1 || contentLength >= settings.getCompressionThreshold().bytes());
+	}
+
+	/**
+	 * @return the resource settings of the application if they enable the compression of
+	 *         responses, {@code null} otherwise
+	 */
+	private static ResourceSettings getCompressionSettings()
+	{
+		if (Application.exists())
+		{
+			IResourceSettings settings = Application.get().getResourceSettings();
+			if (settings instanceof ResourceSettings &&
+				((ResourceSettings)settings).getCompressResponses())
+			{
+				return (ResourceSettings)settings;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Selects the content encoding from the value of an <tt>Accept-Encoding</tt> header, taking
+	 * quality values into account.
+	 * 
+	 * @param acceptEncoding
+	 *            the header value, may be {@code null}
+	 * @return {@link #GZIP}, {@link #DEFLATE} or {@code null} if neither is accepted
+	 */
+	static String negotiateContentEncoding(final String acceptEncoding)
+	{
+		if (Strings.isEmpty(acceptEncoding))
+		{
+			return null;
+		}
+
+		float gzip = -1;
+		float deflate = -1;
+		float any = -1;
+		for (String coding : Strings.split(acceptEncoding, ','))
+		{
+			float quality = 1;
+			int semicolon = coding.indexOf(';');
+			if (semicolon != -1)
+			{
+				String parameter = coding.substring(semicolon + 1).trim();
+				if (parameter.startsWith("q="))
+				{
+					try
+					{
+						quality = Float.parseFloat(parameter.substring(2).trim());
+					}
+					catch (NumberFormatException e)
+					{
+						quality = 0;
+					}
+				}
+				coding = coding.substring(0, semicolon);
+			}
+			coding = coding.trim();
+
+			if (GZIP.equalsIgnoreCase(coding))
+			{
+				gzip = quality;
+			}
+			else if (DEFLATE.equalsIgnoreCase(coding))
+			{
+				deflate = quality;
+			}
+			else if ("*".equals(coding))
+			{
+				any = quality;
+			}
+		}
+
+		if (gzip == -1)
+		{
+			gzip = Math.max(any, 0);
+		}
+		if (deflate == -1)
+		{
+			deflate = Math.max(any, 0);
+		}
+
+		if (gzip > 0 && gzip >= deflate)
+		{
+			return GZIP;
+		}
+		else if (deflate > 0)
+		{
+			return DEFLATE;
+		}
+		return null;
+	}
+
 	/**
 	 * Decides whether a response body should be written back to the client depending
 	 * on the set status code
@@ -587,6 +1053,10 @@ public abstract class AbstractResource implements IResource
 			{
 				webResponse.setLastModifiedTime(lastModified);
 			}
+			if (data.getETag() != null)
+			{
+				webResponse.setHeader("ETag", data.getEntityTag());
+			}
 
 			// 2. Caching
 			configureCache(data, attributes);
@@ -611,8 +1081,16 @@ public abstract class AbstractResource implements IResource
 
 			String fileName = data.getFileName();
 			ContentDisposition disposition = data.getContentDisposition();
-			String mimeType = data.getContentType();
+			String contentType = getContentTypeHeader(data);
 			long contentLength = data.getContentLength();
+			List<ContentRange> ranges = data.contentRanges;
+
+			if (isRangeNotSatisfiable(data))
+			{
+				webResponse.setHeader("Content-Range", "bytes */" + contentLength);
+				webResponse.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
 
 			// 3. Content Disposition
 			if (ContentDisposition.ATTACHMENT == disposition)
@@ -625,25 +1103,45 @@ public abstract class AbstractResource implements IResource
 			}
 
 			// 4. Mime Type (+ encoding)
-			if (mimeType != null)
+			if (data.boundary != null)
 			{
-				final String encoding = data.getTextEncoding();
-				
-				if (encoding == null)
-				{
-					webResponse.setContentType(mimeType);
-				}
-				else
+				webResponse.setContentType("multipart/byteranges; boundary=" + data.boundary);
+			}
+			else if (contentType != null)
+			{
+				webResponse.setContentType(contentType);
+			}
+
+			// 5. Content Length (+ ranges)
+			if (ranges != null)
+			{
+				webResponse.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				if (data.boundary == null)
 				{
-					webResponse.setContentType(mimeType + "; charset=" + encoding);
+					webResponse.setHeader("Content-Range",
+						ranges.get(0).toHeaderValue(contentLength));
 				}
+				webResponse.setContentLength(ContentRangeWebResponse.getContentLength(ranges,
+					contentLength, contentType, data.boundary));
 			}
-
-			// 5. Content Length
-			if (contentLength != -1)
+			else if (contentLength != -1)
 			{
 				webResponse.setContentLength(contentLength);
 			}
+			if (data.getAcceptRanges())
+			{
+				webResponse.setHeader("Accept-Ranges", "bytes");
+			}
+
+			// 6. Content Encoding
+			if (data.getContentEncoding() != null)
+			{
+				webResponse.setHeader("Content-Encoding", data.getContentEncoding());
+			}
+			if (data.varyAcceptEncoding || data.getContentEncoding() != null)
+			{
+				webResponse.addHeader("Vary", "Accept-Encoding");
+			}
 
 			// add custom headers and values
 			final HttpHeaderCollection headers = data.getHeaders();
@@ -658,7 +1156,7 @@ public abstract class AbstractResource implements IResource
 				}
 			}
 
-			// 6. Flush the response
+			// 7. Flush the response
 			flushResponseAfterHeaders(webResponse);
 		}
 	}
@@ -694,7 +1192,9 @@ public abstract class AbstractResource implements IResource
 		public abstract void writeData(Attributes attributes) throws IOException;
 
 		/**
-		 * Convenience method to write an {@link InputStream} to response.
+		 * Convenience method to write an {@link InputStream} to response. If only ranges of the
+		 * data are requested, the bytes between them are skipped instead of read. Files are
+		 * transferred with {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
 		 * 
 		 * @param attributes
 		 *            request attributes
@@ -704,7 +1204,32 @@ public abstract class AbstractResource implements IResource
 		protected final void writeStream(Attributes attributes, InputStream stream) throws IOException
 		{
 			final Response response = attributes.getResponse();
-			Streams.copy(stream, response.getOutputStream());
+			if (response instanceof ContentRangeWebResponse)
+			{
+				((ContentRangeWebResponse)response).write(stream);
+			}
+			else if (stream instanceof FileInputStream)
+			{
+				FileChannel channel = ((FileInputStream)stream).getChannel();
+				WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+				long position = channel.position();
+				long size = channel.size();
+				while (position < size)
+				{
+					long transferred = channel.transferTo(position, size - position, target);
+					if (transferred <= 0)
+					{
+						// the file has been truncated meanwhile
+						break;
+					}
+					position += transferred;
+				}
+				channel.position(position);
+			}
+			else
+			{
+				Streams.copy(stream, response.getOutputStream());
+			}
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.Cookie;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * A web response which compresses everything written to it with gzip or deflate before writing it
+ * to the original response. Headers are set on the original response directly.
+ * 
+ * @see AbstractResource#getAcceptedContentEncoding(IResource.Attributes)
+ */
+class CompressingWebResponse extends WebResponse
+{
+	private final WebResponse originalResponse;
+
+	private final String charset;
+
+	private final DeflaterOutputStream compressor;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param originalResponse
+	 *            the response the compressed bytes are written to
+	 * @param contentEncoding
+	 *            {@link AbstractResource#GZIP} or {@link AbstractResource#DEFLATE}
+	 * @param charset
+	 *            the charset to encode written characters with
+	 */
+	CompressingWebResponse(final WebResponse originalResponse, final String contentEncoding,
+		final String charset)
+	{
+		this.originalResponse = originalResponse;
+		this.charset = charset;
+
+		OutputStream out = new OutputStream()
+		{
+			@Override
+			public void write(int b)
+			{
+				originalResponse.write(new byte[] { (byte)b });
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len)
+			{
+				originalResponse.write(b, off, len);
+			}
+		};
+
+		try
+		{
+			if (AbstractResource.GZIP.equals(contentEncoding))
+			{
+				compressor = new GZIPOutputStream(out, 8192);
+			}
+			else
+			{
+				compressor = new DeflaterOutputStream(out);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	/**
+	 * Writes the remaining compressed bytes to the original response.
+	 */
+	void finish()
+	{
+		try
+		{
+			compressor.finish();
+		}
+		catch (IOException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	@Override
+	public void write(CharSequence sequence)
+	{
+		try
+		{
+			write(sequence.toString().getBytes(charset));
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	@Override
+	public void write(byte[] array)
+	{
+		write(array, 0, array.length);
+	}
+
+	@Override
+	public void write(byte[] array, int offset, int length)
+	{
+		try
+		{
+			compressor.write(array, offset, length);
+		}
+		catch (IOException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	@Override
+	public void flush()
+	{
+		originalResponse.flush();
+	}
+
+	@Override
+	public void addCookie(Cookie cookie)
+	{
+		originalResponse.addCookie(cookie);
+	}
+
+	@Override
+	public void clearCookie(Cookie cookie)
+	{
+		originalResponse.clearCookie(cookie);
+	}
+
+	@Override
+	public void setHeader(String name, String value)
+	{
+		originalResponse.setHeader(name, value);
+	}
+
+	@Override
+	public void addHeader(String name, String value)
+	{
+		originalResponse.addHeader(name, value);
+	}
+
+	@Override
+	public void setDateHeader(String name, Time date)
+	{
+		originalResponse.setDateHeader(name, date);
+	}
+
+	@Override
+	public void setContentLength(long length)
+	{
+		// the length of the compressed content is not known in advance
+	}
+
+	@Override
+	public void setContentType(String mimeType)
+	{
+		originalResponse.setContentType(mimeType);
+	}
+
+	@Override
+	public void setStatus(int sc)
+	{
+		originalResponse.setStatus(sc);
+	}
+
+	@Override
+	public void sendError(int sc, String msg)
+	{
+		originalResponse.sendError(sc, msg);
+	}
+
+	@Override
+	public String encodeRedirectURL(CharSequence url)
+	{
+		return originalResponse.encodeRedirectURL(url);
+	}
+
+	@Override
+	public void sendRedirect(String url)
+	{
+		originalResponse.sendRedirect(url);
+	}
+
+	@Override
+	public boolean isRedirect()
+	{
+		return originalResponse.isRedirect();
+	}
+
+	@Override
+	public String encodeURL(CharSequence url)
+	{
+		return originalResponse.encodeURL(url);
+	}
+
+	@Override
+	public Object getContainerResponse()
+	{
+		return originalResponse.getContainerResponse();
+	}
+}
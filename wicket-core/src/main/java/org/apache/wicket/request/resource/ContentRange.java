@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.wicket.util.string.Strings;
+
+/**
+ * A range of bytes of a resource, as requested with the <code>Range</code> header.
+ * 
+ * @see <a href="http://tools.ietf.org/html/rfc2616#section-14.35">RFC 2616, section 14.35</a>
+ */
+final class ContentRange implements Comparable<ContentRange>
+{
+	/**
+	 * More ranges than this are not served as a multipart response, the whole resource is sent
+	 * instead
+	 */
+	static final int MAX_RANGES = 16;
+
+	private final long first;
+
+	private final long last;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param first
+	 *            position of the first byte
+	 * @param last
+	 *            position of the last byte, inclusive
+	 */
+	ContentRange(final long first, final long last)
+	{
+		this.first = first;
+		this.last = last;
+	}
+
+	/**
+	 * @return position of the first byte
+	 */
+	long getFirst()
+	{
+		return first;
+	}
+
+	/**
+	 * @return position of the last byte, inclusive
+	 */
+	long getLast()
+	{
+		return last;
+	}
+
+	/**
+	 * @return number of bytes in this range
+	 */
+	long getLength()
+	{
+		return last - first + 1;
+	}
+
+	/**
+	 * @param length
+	 *            the length of the whole resource
+	 * @return the value of the <code>Content-Range</code> header for this range
+	 */
+	String toHeaderValue(final long length)
+	{
+		return "bytes " + first + "-" + last + "/" + length;
+	}
+
+	@Override
+	public int compareTo(final ContentRange other)
+	{
+		return first < other.first ? -1 : (first == other.first ? 0 : 1);
+	}
+
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (obj instanceof ContentRange == false)
+		{
+			return false;
+		}
+		ContentRange other = (ContentRange)obj;
+		return first == other.first && last == other.last;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (int)(first ^ (first >>> 32)) * 31 + (int)(last ^ (last >>> 32));
+	}
+
+	@Override
+	public String toString()
+	{
+		return first + "-" + last;
+	}
+
+	/**
+	 * Parses the value of a <code>Range</code> header. The satisfiable ranges are sorted and
+	 * overlapping or adjacent ranges are coalesced, so the ranges can be written in a single pass
+	 * over the resource.
+	 * 
+	 * @param header
+	 *            the value of the <code>Range</code> header
+	 * @param length
+	 *            the length of the whole resource
+	 * @return the satisfiable ranges, an empty list if none of the ranges is satisfiable or
+	 *         <code>null</code> if the header is invalid or should be ignored
+	 */
+	static List<ContentRange> parse(final String header, final long length)
+	{
+		if (Strings.isEmpty(header))
+		{
+			return null;
+		}
+
+		String value = header.trim();
+		if (value.regionMatches(true, 0, "bytes=", 0, 6) == false)
+		{
+			// other units are not supported
+			return null;
+		}
+
+		List<ContentRange> ranges = new ArrayList<ContentRange>();
+		for (String spec : Strings.split(value.substring(6), ','))
+		{
+			spec = spec.trim();
+			if (spec.length() == 0)
+			{
+				continue;
+			}
+
+			int dash = spec.indexOf('-');
+			if (dash == -1)
+			{
+				return null;
+			}
+
+			try
+			{
+				long first;
+				long last;
+				if (dash == 0)
+				{
+					// suffix range, i.e. the last n bytes
+					long suffix = parsePosition(spec.substring(1));
+					if (suffix == 0)
+					{
+						continue;
+					}
+					first = Math.max(0, length - suffix);
+					last = length - 1;
+				}
+				else
+				{
+					first = parsePosition(spec.substring(0, dash));
+					if (dash == spec.length() - 1)
+					{
+						last = length - 1;
+					}
+					else
+					{
+						last = parsePosition(spec.substring(dash + 1));
+						if (last < first)
+						{
+							return null;
+						}
+						last = Math.min(last, length - 1);
+					}
+				}
+
+				if (first < length)
+				{
+					ranges.add(new ContentRange(first, last));
+				}
+			}
+			catch (NumberFormatException e)
+			{
+				return null;
+			}
+		}
+
+		if (ranges.size() > 1)
+		{
+			ranges = coalesce(ranges);
+			if (ranges.size() > MAX_RANGES)
+			{
+				return null;
+			}
+		}
+		return ranges;
+	}
+
+	private static long parsePosition(final String position)
+	{
+		String trimmed = position.trim();
+		if (trimmed.length() == 0 || trimmed.charAt(0) == '+')
+		{
+			throw new NumberFormatException(position);
+		}
+		long value = Long.parseLong(trimmed);
+		if (value < 0)
+		{
+			throw new NumberFormatException(position);
+		}
+		return value;
+	}
+
+	private static List<ContentRange> coalesce(final List<ContentRange> ranges)
+	{
+		Collections.sort(ranges);
+
+		List<ContentRange> coalesced = new ArrayList<ContentRange>(ranges.size());
+		ContentRange current = ranges.get(0);
+		for (int i = 1; i < ranges.size(); i++)
+		{
+			ContentRange next = ranges.get(i);
+			if (next.first <= current.last + 1)
+			{
+				current = new ContentRange(current.first, Math.max(current.last, next.last));
+			}
+			else
+			{
+				coalesced.add(current);
+				current = next;
+			}
+		}
+		coalesced.add(current);
+		return coalesced;
+	}
+}
@@ -0,0 +1,416 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import javax.servlet.http.Cookie;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * A web response which writes only the requested ranges of everything written to it to the
+ * original response. If there is more than one range each one is written as a part of a
+ * <code>multipart/byteranges</code> body. Headers are set on the original response directly.
+ * <p>
+ * {@link AbstractResource.WriteCallback#writeStream(IResource.Attributes, InputStream)} skips the
+ * bytes between the ranges instead of reading them, files are transferred with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ * 
+ * @see ContentRange
+ */
+class ContentRangeWebResponse extends WebResponse
+{
+	private static final String CRLF = "\r\n";
+
+	private final WebResponse originalResponse;
+
+	private final List<ContentRange> ranges;
+
+	private final long totalLength;
+
+	private final String contentType;
+
+	private final String boundary;
+
+	private final String charset;
+
+	/** index of the range currently written */
+	private int index;
+
+	/** position in the whole resource */
+	private long position;
+
+	/** whether the part header of the current range has been written */
+	private boolean partStarted;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param originalResponse
+	 *            the response the ranges are written to
+	 * @param ranges
+	 *            the sorted, not overlapping ranges
+	 * @param length
+	 *            the length of the whole resource
+	 * @param contentType
+	 *            the content type of the resource, used for the parts of a multipart response
+	 * @param boundary
+	 *            the multipart boundary or <code>null</code> if there is a single range
+	 * @param charset
+	 *            the charset to encode written characters with
+	 */
+	ContentRangeWebResponse(final WebResponse originalResponse, final List<ContentRange> ranges,
+		final long length, final String contentType, final String boundary, final String charset)
+	{
+		this.originalResponse = originalResponse;
+		this.ranges = ranges;
+		totalLength = length;
+		this.contentType = contentType;
+		this.boundary = boundary;
+		this.charset = charset;
+	}
+
+	/**
+	 * Computes the length of the body written for the given ranges.
+	 * 
+	 * @param ranges
+	 *            the sorted, not overlapping ranges
+	 * @param length
+	 *            the length of the whole resource
+	 * @param contentType
+	 *            the content type of the resource
+	 * @param boundary
+	 *            the multipart boundary or <code>null</code> if there is a single range
+	 * @return the number of bytes of the body
+	 */
+	static long getContentLength(final List<ContentRange> ranges, final long length,
+		final String contentType, final String boundary)
+	{
+		long contentLength = 0;
+		for (ContentRange range : ranges)
+		{
+			if (boundary != null)
+			{
+				contentLength += getPartHeader(range, length, contentType, boundary).length();
+			}
+			contentLength += range.getLength();
+		}
+		if (boundary != null)
+		{
+			contentLength += getClosingDelimiter(boundary).length();
+		}
+		return contentLength;
+	}
+
+	private static String getPartHeader(final ContentRange range, final long length,
+		final String contentType, final String boundary)
+	{
+		StringBuilder header = new StringBuilder();
+		header.append(CRLF).append("--").append(boundary).append(CRLF);
+		if (contentType != null)
+		{
+			header.append("Content-Type: ").append(contentType).append(CRLF);
+		}
+		header.append("Content-Range: ").append(range.toHeaderValue(length)).append(CRLF);
+		header.append(CRLF);
+		return header.toString();
+	}
+
+	private static String getClosingDelimiter(final String boundary)
+	{
+		return CRLF + "--" + boundary + "--" + CRLF;
+	}
+
+	/**
+	 * Writes the requested ranges of the stream, starting at the current position. Bytes between
+	 * the ranges are skipped, the rest of the stream after the last range is not read at all.
+	 * 
+	 * @param stream
+	 *            the stream to read from
+	 * @throws IOException
+	 */
+	void write(final InputStream stream) throws IOException
+	{
+		if (stream instanceof FileInputStream)
+		{
+			transfer(((FileInputStream)stream).getChannel());
+			return;
+		}
+
+		byte[] buffer = null;
+		for (; index < ranges.size(); index++)
+		{
+			ContentRange range = ranges.get(index);
+
+			while (position < range.getFirst())
+			{
+				long skipped = stream.skip(range.getFirst() - position);
+				if (skipped <= 0)
+				{
+					// skip() may return 0 before the end of the stream
+					if (stream.read() == -1)
+					{
+						throw new EOFException("Unexpected end of stream at " + position);
+					}
+					skipped = 1;
+				}
+				position += skipped;
+			}
+
+			startPart(range);
+
+			if (buffer == null)
+			{
+				buffer = new byte[4096];
+			}
+			while (position <= range.getLast())
+			{
+				int read = stream.read(buffer, 0,
+					(int)Math.min(buffer.length, range.getLast() - position + 1));
+				if (read == -1)
+				{
+					throw new EOFException("Unexpected end of stream at " + position);
+				}
+				originalResponse.write(buffer, 0, read);
+				position += read;
+			}
+			partStarted = false;
+		}
+	}
+
+	/**
+	 * Transfers the requested ranges of the file, starting at the current position of the
+	 * channel.
+	 * 
+	 * @param channel
+	 *            the channel to transfer from
+	 * @throws IOException
+	 */
+	private void transfer(final FileChannel channel) throws IOException
+	{
+		final long offset = channel.position() - position;
+		final WritableByteChannel target = Channels.newChannel(originalResponse.getOutputStream());
+
+		for (; index < ranges.size(); index++)
+		{
+			ContentRange range = ranges.get(index);
+
+			position = Math.max(position, range.getFirst());
+			startPart(range);
+
+			while (position <= range.getLast())
+			{
+				long transferred = channel.transferTo(offset + position, range.getLast() -
+					position + 1, target);
+				if (transferred <= 0)
+				{
+					throw new EOFException("Unexpected end of file at " + position);
+				}
+				position += transferred;
+			}
+			partStarted = false;
+		}
+		channel.position(offset + position);
+	}
+
+	private void startPart(final ContentRange range)
+	{
+		if (boundary != null && partStarted == false)
+		{
+			writeAscii(getPartHeader(range, totalLength, contentType, boundary));
+		}
+		partStarted = true;
+	}
+
+	private void writeAscii(final String string)
+	{
+		try
+		{
+			originalResponse.write(string.getBytes("ISO-8859-1"));
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	/**
+	 * Writes the closing delimiter of a multipart response.
+	 */
+	void finish()
+	{
+		if (boundary != null)
+		{
+			writeAscii(getClosingDelimiter(boundary));
+		}
+	}
+
+	@Override
+	public void write(CharSequence sequence)
+	{
+		try
+		{
+			write(sequence.toString().getBytes(charset));
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	@Override
+	public void write(byte[] array)
+	{
+		write(array, 0, array.length);
+	}
+
+	@Override
+	public void write(byte[] array, int offset, int length)
+	{
+		while (length > 0 && index < ranges.size())
+		{
+			ContentRange range = ranges.get(index);
+
+			if (position < range.getFirst())
+			{
+				int skip = (int)Math.min(length, range.getFirst() - position);
+				position += skip;
+				offset += skip;
+				length -= skip;
+				continue;
+			}
+
+			startPart(range);
+
+			int count = (int)Math.min(length, range.getLast() - position + 1);
+			originalResponse.write(array, offset, count);
+			position += count;
+			offset += count;
+			length -= count;
+
+			if (position > range.getLast())
+			{
+				index++;
+				partStarted = false;
+			}
+		}
+
+		// everything after the last range is discarded
+		position += length;
+	}
+
+	@Override
+	public void flush()
+	{
+		originalResponse.flush();
+	}
+
+	@Override
+	public void addCookie(Cookie cookie)
+	{
+		originalResponse.addCookie(cookie);
+	}
+
+	@Override
+	public void clearCookie(Cookie cookie)
+	{
+		originalResponse.clearCookie(cookie);
+	}
+
+	@Override
+	public void setHeader(String name, String value)
+	{
+		originalResponse.setHeader(name, value);
+	}
+
+	@Override
+	public void addHeader(String name, String value)
+	{
+		originalResponse.addHeader(name, value);
+	}
+
+	@Override
+	public void setDateHeader(String name, Time date)
+	{
+		originalResponse.setDateHeader(name, date);
+	}
+
+	@Override
+	public void setContentLength(long length)
+	{
+		// the length of the ranges has already been set
+	}
+
+	@Override
+	public void setContentType(String mimeType)
+	{
+		originalResponse.setContentType(mimeType);
+	}
+
+	@Override
+	public void setStatus(int sc)
+	{
+		originalResponse.setStatus(sc);
+	}
+
+	@Override
+	public void sendError(int sc, String msg)
+	{
+		originalResponse.sendError(sc, msg);
+	}
+
+	@Override
+	public String encodeRedirectURL(CharSequence url)
+	{
+		return originalResponse.encodeRedirectURL(url);
+	}
+
+	@Override
+	public void sendRedirect(String url)
+	{
+		originalResponse.sendRedirect(url);
+	}
+
+	@Override
+	public boolean isRedirect()
+	{
+		return originalResponse.isRedirect();
+	}
+
+	@Override
+	public String encodeURL(CharSequence url)
+	{
+		return originalResponse.encodeURL(url);
+	}
+
+	@Override
+	public Object getContainerResponse()
+	{
+		return originalResponse.getContainerResponse();
+	}
+}
@@ -48,6 +48,9 @@ public class CssPackageResource extends PackageResource
 
 		// CSS resources can be compressed if there is configured ICssCompressor
 		setCompress(true);
+
+		// the application's compressor doesn't depend on the request, subclasses may do
+		setCacheProcessedResponse(getClass() == CssPackageResource.class);
 	}
 
 	@Override
@@ -48,6 +48,9 @@ public class JavaScriptPackageResource extends PackageResource
 
 		// JS resources can be compressed if there is configured IJavaScriptCompressor
 		setCompress(true);
+
+		// the application's compressor doesn't depend on the request, subclasses may do
+		setCacheProcessedResponse(getClass() == JavaScriptPackageResource.class);
 	}
 
 	@Override
@@ -136,6 +136,12 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 	 */
 	
 	private String textEncoding = null;
+
+	/**
+	 * A flag indicating whether the processed bytes of this resource are kept in the
+	 * {@link ProcessedResourceCache}
+	 */
+	private boolean cacheProcessedResponse = false;
 	
 	/**
 	 * Hidden constructor.
@@ -295,15 +301,47 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 
 			try
 			{
-				// read resource data
-				final byte[] bytes;
+				final String contentEncoding = getAcceptedContentEncoding(attributes);
 
-				bytes = IOUtils.toByteArray(resourceStream.getInputStream());
-
-				final byte[] processed = processResponse(attributes, bytes);
+				final byte[] processed;
+				byte[] precompressed = null;
+				if (GZIP.equals(contentEncoding))
+				{
+					// prefer a pre-compressed variant next to the resource
+					precompressed = getPrecompressedResponse(resourceStream);
+				}
+				if (precompressed != null)
+				{
+					resourceResponse.setContentEncoding(GZIP);
+					processed = precompressed;
+				}
+				else
+				{
+					// read and process resource data, or take it from the cache
+					ProcessedResourceCache.ProcessedResource cached = getProcessedResponse(
+						attributes, resourceStream, lastModified);
+					if (cached == null)
+					{
+						processed = processResponse(attributes,
+							IOUtils.toByteArray(resourceStream.getInputStream()));
+					}
+					else if ((contentEncoding != null) && isCompressible(resourceResponse) &&
+						exceedsCompressionThreshold(cached.getData().length))
+					{
+						// compressed only once for all requests
+						resourceResponse.setContentEncoding(contentEncoding);
+						processed = GZIP.equals(contentEncoding) ? cached.getGzippedData()
+							: cached.getDeflatedData();
+					}
+					else
+					{
+						processed = cached.getData();
+					}
+				}
 
 				// send Content-Length header
 				resourceResponse.setContentLength(processed.length);
+				resourceResponse.setAcceptRanges(true);
 
 				// send response body with resource data
 				resourceResponse.setWriteCallback(new WriteCallback()
@@ -342,7 +380,87 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 	}
 
 	/**
-	 * Gives a chance to modify the resource going to be written in the response
+	 * Reads the resource and processes it with {@link #processResponse(Attributes, byte[])}. If
+	 * {@link #getCacheProcessedResponse()} is true the result is kept in the
+	 * {@link ProcessedResourceCache} until the resource is modified.
+	 * 
+	 * @param attributes
+	 * @param resourceStream
+	 * @param lastModified
+	 * @return the processed bytes
+	 * @throws IOException
+	 * @throws ResourceStreamNotFoundException
+	 */
+	private ProcessedResourceCache.ProcessedResource getProcessedResponse(
+		final Attributes attributes, final IResourceStream resourceStream, final Time lastModified)
+		throws IOException, ResourceStreamNotFoundException
+	{
+		if ((cacheProcessedResponse == false) || (lastModified == null) ||
+			(Application.exists() == false))
+		{
+			return null;
+		}
+
+		ProcessedResourceCache cache = ProcessedResourceCache.get(Application.get());
+		Object key = new ProcessedResponseKey(getClass().getName(), new CacheKey(scopeName,
+			absolutePath, resourceStream.getLocale(), resourceStream.getStyle(),
+			resourceStream.getVariation()), compress);
+
+		ProcessedResourceCache.ProcessedResource cached = cache.get(key, lastModified);
+		if (cached == null)
+		{
+			final byte[] bytes = IOUtils.toByteArray(resourceStream.getInputStream());
+			cached = cache.put(key, processResponse(attributes, bytes), lastModified);
+		}
+		return cached;
+	}
+
+	/**
+	 * Looks up a gzipped variant of this resource, i.e. a sibling with an additional
+	 * <code>.gz</code> extension, which is sent as is instead of compressing the resource at
+	 * request time.
+	 * 
+	 * @param resourceStream
+	 *            the located resource stream
+	 * @return the gzipped bytes or <code>null</code> if there is no such variant
+	 * @throws IOException
+	 * @throws ResourceStreamNotFoundException
+	 */
+	private byte[] getPrecompressedResponse(final IResourceStream resourceStream)
+		throws IOException, ResourceStreamNotFoundException
+	{
+		if (Application.exists() == false)
+		{
+			return null;
+		}
+
+		IResourceStream gzipped = Application.get()
+			.getResourceSettings()
+			.getResourceStreamLocator()
+			.locate(getScope(), absolutePath + ".gz", resourceStream.getStyle(),
+				resourceStream.getVariation(), resourceStream.getLocale(), null, true);
+		if (gzipped == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			return IOUtils.toByteArray(gzipped.getInputStream());
+		}
+		finally
+		{
+			gzipped.close();
+		}
+	}
+
+	/**
+	 * Gives a chance to modify the resource going to be written in the response.
+	 * <p>
+	 * If {@link #setCacheProcessedResponse(boolean)} is enabled the processed bytes are cached, so
+	 * this method is only called again after the resource has been modified. Enable it only if the
+	 * result does not depend on the request.
+	 * </p>
 	 * 
 	 * @param attributes
 	 *            current request attributes from client
@@ -423,6 +541,27 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 		this.compress = compress;
 	}
 
+	/**
+	 * @return whether the result of {@link #processResponse(Attributes, byte[])} is cached in the
+	 *         {@link ProcessedResourceCache}
+	 */
+	public boolean getCacheProcessedResponse()
+	{
+		return cacheProcessedResponse;
+	}
+
+	/**
+	 * @param cacheProcessedResponse
+	 *            A flag indicating whether the result of
+	 *            {@link #processResponse(Attributes, byte[])} is cached in the
+	 *            {@link ProcessedResourceCache}. Disabled by default, enable it only if the
+	 *            processing does not depend on the request.
+	 */
+	public void setCacheProcessedResponse(boolean cacheProcessedResponse)
+	{
+		this.cacheProcessedResponse = cacheProcessedResponse;
+	}
+
 	private IResourceStream internalGetResourceStream(final String style, final Locale locale)
 	{
 		IResourceStreamLocator resourceStreamLocator = Application.get()
@@ -681,4 +820,51 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 			return sb.toString();
 		}
 	}
+
+	/**
+	 * The key of the processed bytes in the {@link ProcessedResourceCache}
+	 */
+	private static final class ProcessedResponseKey implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String resourceClass;
+		private final CacheKey cacheKey;
+		private final boolean compress;
+
+		private ProcessedResponseKey(String resourceClass, CacheKey cacheKey, boolean compress)
+		{
+			this.resourceClass = resourceClass;
+			this.cacheKey = cacheKey;
+			this.compress = compress;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+				return true;
+			if (!(o instanceof ProcessedResponseKey))
+				return false;
+
+			ProcessedResponseKey other = (ProcessedResponseKey)o;
+			return compress == other.compress && resourceClass.equals(other.resourceClass) &&
+				cacheKey.equals(other.cacheKey);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = resourceClass.hashCode();
+			result = 31 * result + cacheKey.hashCode();
+			result = 31 * result + (compress ? 1 : 0);
+			return result;
+		}
+
+		@Override
+		public String toString()
+		{
+			return resourceClass + ':' + cacheKey + (compress ? ":compressed" : "");
+		}
+	}
 }
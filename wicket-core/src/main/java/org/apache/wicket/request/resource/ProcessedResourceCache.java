@@ -0,0 +1,348 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.markup.MarkupCache.BoundedCacheImplementation;
+import org.apache.wicket.markup.MarkupCache.Weigher;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * An application wide cache of the final bytes of {@link PackageResource}s, i.e. after they have
+ * been read and {@linkplain PackageResource#processResponse(IResource.Attributes, byte[])
+ * processed}, e.g. by a JavaScript or CSS compressor. A cached entry is valid as long as the last
+ * modification time of the resource does not change.
+ * <p>
+ * Each entry can also hold gzip and deflate compressed variants of the bytes. These are either
+ * computed when the entry is stored (see {@link #ProcessedResourceCache(Bytes, boolean)}) or on
+ * first use.
+ * </p>
+ * <p>
+ * The cache is bounded by the total size of the cached bytes, the least frequently used entries are
+ * evicted first. Use {@link #set(Application, ProcessedResourceCache)} to configure a different
+ * size.
+ * </p>
+ * 
+ * @see PackageResource#setCacheProcessedResponse(boolean)
+ */
+public class ProcessedResourceCache
+{
+	/** the default maximum size of all cached bytes */
+	public static final Bytes DEFAULT_MAX_SIZE = Bytes.megabytes(10);
+
+	private static final MetaDataKey<ProcessedResourceCache> KEY =
+		new MetaDataKey<ProcessedResourceCache>()
+		{
+			private static final long serialVersionUID = 1L;
+		};
+
+	private final BoundedCacheImplementation<Object, ProcessedResource> cache;
+
+	private final boolean precompress;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of all cached bytes
+	 * @param precompress
+	 *            whether to compute the compressed variants when an entry is stored
+	 */
+	public ProcessedResourceCache(final Bytes maxSize, final boolean precompress)
+	{
+		Args.notNull(maxSize, "maxSize");
+
+		this.precompress = precompress;
+		cache = new BoundedCacheImplementation<Object, ProcessedResource>(maxSize.bytes(),
+			Weigher.ENTRY_COUNT)
+		{
+			@Override
+			protected long weigh(final Object key, final ProcessedResource value)
+			{
+				return value.getWeight();
+			}
+		};
+	}
+
+	/**
+	 * Gets a cached entry.
+	 * 
+	 * @param key
+	 *            the key of the resource
+	 * @param lastModified
+	 *            the current last modification time of the resource
+	 * @return the cached entry or {@code null} if there is none or it is outdated
+	 */
+	public ProcessedResource get(final Object key, final Time lastModified)
+	{
+		ProcessedResource resource = cache.get(key);
+		if ((resource != null) && (resource.getLastModified().equals(lastModified) == false))
+		{
+			cache.remove(key);
+			resource = null;
+		}
+
+		if (resource != null)
+		{
+			hits.incrementAndGet();
+		}
+		else
+		{
+			misses.incrementAndGet();
+		}
+		return resource;
+	}
+
+	/**
+	 * Stores the processed bytes of a resource.
+	 * 
+	 * @param key
+	 *            the key of the resource
+	 * @param data
+	 *            the processed bytes
+	 * @param lastModified
+	 *            the last modification time of the resource
+	 * @return the new entry
+	 */
+	public ProcessedResource put(final Object key, final byte[] data, final Time lastModified)
+	{
+		ProcessedResource resource = new ProcessedResource(this, key, data, lastModified);
+		if (precompress)
+		{
+			resource.getGzippedData();
+			resource.getDeflatedData();
+		}
+		cache.put(key, resource);
+		return resource;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear()
+	{
+		cache.clear();
+	}
+
+	/**
+	 * @return the number of cached entries
+	 */
+	public int size()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * @return the size of all cached bytes, including the compressed variants
+	 */
+	public long getWeight()
+	{
+		return cache.getWeight();
+	}
+
+	/**
+	 * @return the number of lookups which found a valid entry
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups which found no valid entry
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[ProcessedResourceCache size = " + size() + ", hits = " + hits + ", misses = " +
+			misses + "]";
+	}
+
+	/**
+	 * @param application
+	 * @return the processed resource cache of the application
+	 */
+	public static ProcessedResourceCache get(final Application application)
+	{
+		ProcessedResourceCache cache = application.getMetaData(KEY);
+		if (cache == null)
+		{
+			synchronized (application)
+			{
+				cache = application.getMetaData(KEY);
+				if (cache == null)
+				{
+					cache = new ProcessedResourceCache(DEFAULT_MAX_SIZE, false);
+					application.setMetaData(KEY, cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Replaces the processed resource cache of an application, e.g. with one of a different size.
+	 * 
+	 * @param application
+	 * @param cache
+	 */
+	public static void set(final Application application, final ProcessedResourceCache cache)
+	{
+		Args.notNull(cache, "cache");
+
+		application.setMetaData(KEY, cache);
+	}
+
+	/**
+	 * The processed bytes of a resource and their compressed variants. All requests share the
+	 * same arrays, they must not be modified.
+	 * <p>
+	 * The compressed variants are computed on demand, the entry is weighed again afterwards.
+	 */
+	public static final class ProcessedResource
+	{
+		private final ProcessedResourceCache owner;
+
+		private final Object key;
+
+		private final byte[] data;
+
+		private final Time lastModified;
+
+		private volatile byte[] gzippedData;
+
+		private volatile byte[] deflatedData;
+
+		private ProcessedResource(final ProcessedResourceCache owner, final Object key,
+			final byte[] data, final Time lastModified)
+		{
+			this.owner = owner;
+			this.key = key;
+			this.data = Args.notNull(data, "data");
+			this.lastModified = Args.notNull(lastModified, "lastModified");
+		}
+
+		/**
+		 * @return the processed bytes
+		 */
+		public byte[] getData()
+		{
+			return data;
+		}
+
+		/**
+		 * @return the last modification time of the resource the bytes were read from
+		 */
+		public Time getLastModified()
+		{
+			return lastModified;
+		}
+
+		/**
+		 * @return the processed bytes compressed with gzip
+		 */
+		public byte[] getGzippedData()
+		{
+			byte[] gzipped = gzippedData;
+			if (gzipped == null)
+			{
+				try
+				{
+					ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+					gzipped = compress(new GZIPOutputStream(out), out);
+				}
+				catch (IOException e)
+				{
+					throw new WicketRuntimeException(e);
+				}
+				gzippedData = gzipped;
+				owner.cache.reweigh(key, this);
+			}
+			return gzipped;
+		}
+
+		/**
+		 * @return the processed bytes compressed with deflate (zlib format)
+		 */
+		public byte[] getDeflatedData()
+		{
+			byte[] deflated = deflatedData;
+			if (deflated == null)
+			{
+				ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+				deflated = compress(new DeflaterOutputStream(out), out);
+				deflatedData = deflated;
+				owner.cache.reweigh(key, this);
+			}
+			return deflated;
+		}
+
+		private byte[] compress(final OutputStream compressor, final ByteArrayOutputStream out)
+		{
+			try
+			{
+				compressor.write(data);
+				compressor.close();
+			}
+			catch (IOException e)
+			{
+				// not thrown by a ByteArrayOutputStream
+				throw new WicketRuntimeException(e);
+			}
+			return out.toByteArray();
+		}
+
+		/**
+		 * @return the size of the bytes including the compressed variants computed so far
+		 */
+		long getWeight()
+		{
+			long weight = data.length;
+			byte[] gzipped = gzippedData;
+			if (gzipped != null)
+			{
+				weight += gzipped.length;
+			}
+			byte[] deflated = deflatedData;
+			if (deflated != null)
+			{
+				weight += deflated.length;
+			}
+			return Math.max(1, weight);
+		}
+	}
+}
@@ -171,6 +171,7 @@ public class ResourceStreamResource extends AbstractResource
 			if (length != null)
 			{
 				data.setContentLength(length.bytes());
+				data.setAcceptRanges(true);
 			}
 			data.setFileName(fileName);
 
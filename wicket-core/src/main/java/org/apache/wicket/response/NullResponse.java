@@ -53,6 +53,12 @@ public class NullResponse extends Response
 		// Does nothing
 	}
 
+	@Override
+	public void write(CharSequence sequence, int start, int end)
+	{
+		// Does nothing
+	}
+
 	@Override
 	public void write(byte[] array)
 	{
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.ObjectStreamClass;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.model.CompoundPropertyModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.model.PropertyModel;
+import org.apache.wicket.model.ResourceModel;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * An application wide dictionary of the class descriptors used by {@link DictionaryJavaSerializer}.
+ * Each descriptor gets a small integer id the first time it is written, so the serialized data
+ * contains just the id instead of the class name, the serialVersionUID and the field
+ * descriptions.
+ * <p>
+ * The ids are valid only for the lifetime of the registry. Each registry has a random
+ * {@link #getEpoch() epoch} which is written along with the ids so data written with another
+ * registry (e.g. by another node of a cluster or before a restart) is detected.
+ * </p>
+ */
+public class ClassDescriptorRegistry
+{
+	/**
+	 * Classes which are part of almost every serialized page. They are registered upfront so their
+	 * ids are the smallest ones.
+	 */
+	private static final Class<?>[] WELL_KNOWN_CLASSES = new Class<?>[] { Object[].class,
+			Component.class, MarkupContainer.class, WebMarkupContainer.class, Page.class,
+			WebPage.class, Model.class, PropertyModel.class, CompoundPropertyModel.class,
+			ResourceModel.class, LoadableDetachableModel.class, PageParameters.class,
+			ArrayList.class, HashMap.class, Integer.class, Long.class, Boolean.class };
+
+	private final long epoch;
+
+	private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+
+	private final ConcurrentMap<Integer, ObjectStreamClass> descriptors = new ConcurrentHashMap<Integer, ObjectStreamClass>();
+
+	/**
+	 * Construct.
+	 */
+	public ClassDescriptorRegistry()
+	{
+		epoch = new SecureRandom().nextLong();
+
+		for (Class<?> type : WELL_KNOWN_CLASSES)
+		{
+			getId(ObjectStreamClass.lookup(type));
+		}
+	}
+
+	/**
+	 * @return the random identifier of this registry
+	 */
+	public long getEpoch()
+	{
+		return epoch;
+	}
+
+	/**
+	 * Returns the id of the descriptor, registering it if it is not known yet.
+	 *
+	 * @param descriptor
+	 *            the descriptor of a class which is available locally
+	 * @return the id of the descriptor
+	 */
+	public int getId(final ObjectStreamClass descriptor)
+	{
+		Args.notNull(descriptor, "descriptor");
+
+		String name = descriptor.getName();
+		Integer id = ids.get(name);
+		if (id == null)
+		{
+			synchronized (this)
+			{
+				id = ids.get(name);
+				if (id == null)
+				{
+					id = ids.size();
+					// publish the descriptor first, a reader may see the id right after
+					descriptors.put(id, descriptor);
+					ids.put(name, id);
+				}
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * @param id
+	 *            the id returned by {@link #getId(ObjectStreamClass)}
+	 * @return the descriptor with the given id or {@code null} if there is no such
+	 */
+	public ObjectStreamClass getDescriptor(final int id)
+	{
+		return descriptors.get(id);
+	}
+
+	/**
+	 * @return the number of registered descriptors
+	 */
+	public int size()
+	{
+		return ids.size();
+	}
+}
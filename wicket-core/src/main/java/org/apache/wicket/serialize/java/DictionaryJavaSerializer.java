@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.core.util.io.SerializableChecker;
+import org.apache.wicket.core.util.objects.checker.CheckingObjectOutputStream;
+import org.apache.wicket.core.util.objects.checker.IObjectChecker;
+import org.apache.wicket.core.util.objects.checker.NotDetachedModelChecker;
+import org.apache.wicket.util.lang.Args;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link JavaSerializer} that replaces the class descriptors in the serialized data with ids
+ * from an application wide {@link ClassDescriptorRegistry}.
+ * <p>
+ * Java Serialization writes the full descriptor (class name, serialVersionUID and all field names
+ * and types) of every class once per stream. For Wicket pages this is often a third of the bytes.
+ * With this serializer a descriptor costs one or two bytes.
+ * </p>
+ * <p>
+ * The ids are known only to the registry which wrote them, so the serialized pages can be read
+ * only by the same application instance. Pages written by another node of a cluster or before a
+ * restart are treated as expired. Do not use this serializer if the pages have to be replicated.
+ * </p>
+ * <p>
+ * In development mode the objects are checked with the {@link IObjectChecker}s returned by
+ * {@link #getCheckers()} before they are serialized.
+ * </p>
+ * To use this serializer, put the following code in your application's init:
+ *
+ * <pre>
+ * getFrameworkSettings().setSerializer(new DictionaryJavaSerializer(getApplicationKey()));
+ * </pre>
+ */
+public class DictionaryJavaSerializer extends JavaSerializer
+{
+	private static final Logger log = LoggerFactory.getLogger(DictionaryJavaSerializer.class);
+
+	private final ClassDescriptorRegistry registry;
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationKey
+	 *            the name of the application
+	 */
+	public DictionaryJavaSerializer(final String applicationKey)
+	{
+		this(applicationKey, new ClassDescriptorRegistry());
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationKey
+	 *            the name of the application
+	 * @param registry
+	 *            the registry with the class descriptors
+	 */
+	public DictionaryJavaSerializer(final String applicationKey,
+		final ClassDescriptorRegistry registry)
+	{
+		super(applicationKey);
+		this.registry = Args.notNull(registry, "registry");
+	}
+
+	/**
+	 * @return the registry with the class descriptors
+	 */
+	public ClassDescriptorRegistry getRegistry()
+	{
+		return registry;
+	}
+
+	@Override
+	public Object deserialize(final byte[] data)
+	{
+		try
+		{
+			return super.deserialize(data);
+		}
+		catch (RuntimeException e)
+		{
+			if (e.getCause() instanceof UnknownRegistryException)
+			{
+				log.debug("Ignoring data which has been serialized with another registry");
+				return null;
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	protected ObjectOutputStream newObjectOutputStream(final OutputStream out) throws IOException
+	{
+		return new CheckingDictionaryObjectOutputStream(out, registry, getCheckers());
+	}
+
+	@Override
+	protected ObjectInputStream newObjectInputStream(final InputStream in) throws IOException
+	{
+		return new DictionaryObjectInputStream(in, registry);
+	}
+
+	/**
+	 * Returns the checkers which are run against each object before it is serialized. By default
+	 * there are no checkers in deployment mode and a {@link NotDetachedModelChecker} in
+	 * development mode.
+	 *
+	 * @return the checkers to use for the next serialization
+	 */
+	protected IObjectChecker[] getCheckers()
+	{
+		if (Application.exists() && Application.get().usesDevelopmentConfig())
+		{
+			return new IObjectChecker[] { new NotDetachedModelChecker() };
+		}
+		return new IObjectChecker[0];
+	}
+
+	/**
+	 * Thrown when the data has been written with another registry
+	 */
+	private static class UnknownRegistryException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		private UnknownRegistryException(final long epoch)
+		{
+			super("Unknown class descriptor registry: " + epoch);
+		}
+	}
+
+	/**
+	 * Writes the id of the class descriptor instead of the descriptor itself. The epoch of the
+	 * registry is written before the first id.
+	 */
+	private static class DictionaryObjectOutputStream extends ObjectOutputStream
+	{
+		private final ClassDescriptorRegistry registry;
+
+		private boolean epochWritten = false;
+
+		private DictionaryObjectOutputStream(final OutputStream out,
+			final ClassDescriptorRegistry registry) throws IOException
+		{
+			super(out);
+			this.registry = registry;
+		}
+
+		@Override
+		protected void writeClassDescriptor(final ObjectStreamClass desc) throws IOException
+		{
+			if (epochWritten == false)
+			{
+				writeLong(registry.getEpoch());
+				epochWritten = true;
+			}
+
+			// variable length, the ids of the most used classes fit in one byte
+			int id = registry.getId(desc);
+			while ((id & ~0x7F) != 0)
+			{
+				write((id & 0x7F) | 0x80);
+				id >>>= 7;
+			}
+			write(id);
+		}
+	}
+
+	/**
+	 * Reads the class descriptors written by {@link DictionaryObjectOutputStream}
+	 */
+	private static class DictionaryObjectInputStream extends ObjectInputStream
+	{
+		private final ClassDescriptorRegistry registry;
+
+		private boolean epochRead = false;
+
+		private DictionaryObjectInputStream(final InputStream in,
+			final ClassDescriptorRegistry registry) throws IOException
+		{
+			super(in);
+			this.registry = registry;
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor() throws IOException,
+			ClassNotFoundException
+		{
+			if (epochRead == false)
+			{
+				long epoch = readLong();
+				if (epoch != registry.getEpoch())
+				{
+					throw new UnknownRegistryException(epoch);
+				}
+				epochRead = true;
+			}
+
+			int id = 0;
+			int shift = 0;
+			int b;
+			do
+			{
+				b = read();
+				if (b < 0)
+				{
+					throw new EOFException();
+				}
+				id |= (b & 0x7F) << shift;
+				shift += 7;
+			}
+			while ((b & 0x80) != 0);
+
+			ObjectStreamClass descriptor = registry.getDescriptor(id);
+			if (descriptor == null)
+			{
+				throw new ClassNotFoundException("Unknown class descriptor id: " + id);
+			}
+			return descriptor;
+		}
+
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException,
+			ClassNotFoundException
+		{
+			// the registered descriptors are always bound to a local class
+			Class<?> type = desc.forClass();
+			return type != null ? type : super.resolveClass(desc);
+		}
+	}
+
+	/**
+	 * Runs the checkers (if any) and then writes the objects with a
+	 * {@link DictionaryObjectOutputStream}. Like {@link JavaSerializer} it logs a meaningful
+	 * message for {@link NotSerializableException}s.
+	 */
+	private static class CheckingDictionaryObjectOutputStream extends ObjectOutputStream
+	{
+		private final OutputStream outputStream;
+
+		private final ObjectOutputStream oos;
+
+		private final IObjectChecker[] checkers;
+
+		private CheckingDictionaryObjectOutputStream(final OutputStream outputStream,
+			final ClassDescriptorRegistry registry, final IObjectChecker[] checkers)
+			throws IOException
+		{
+			this.outputStream = outputStream;
+			this.checkers = checkers;
+			oos = new DictionaryObjectOutputStream(outputStream, registry);
+		}
+
+		@Override
+		protected final void writeObjectOverride(final Object obj) throws IOException
+		{
+			if (checkers.length > 0 && CheckingObjectOutputStream.isAvailable())
+			{
+				// the checking stream writes with plain Java Serialization so its output is
+				// thrown away
+				new CheckingObjectOutputStream(new NoopOutputStream(), checkers).writeObject(obj);
+			}
+
+			try
+			{
+				oos.writeObject(obj);
+			}
+			catch (NotSerializableException nsx)
+			{
+				if (CheckingObjectOutputStream.isAvailable())
+				{
+					// trigger serialization again, but this time gather
+					// some more info
+					new SerializableChecker(new NoopOutputStream(), nsx).writeObject(obj);
+					// if we get here, we didn't fail, while we
+					// should;
+					throw nsx;
+				}
+				throw nsx;
+			}
+			catch (IOException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				log.error("error writing object " + obj + ": " + e.getMessage(), e);
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			oos.flush();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			oos.close();
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * Discards everything written to it
+	 */
+	private static class NoopOutputStream extends OutputStream
+	{
+		@Override
+		public void write(final int b)
+		{
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len)
+		{
+		}
+	}
+}
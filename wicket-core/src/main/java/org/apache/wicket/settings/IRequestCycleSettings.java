@@ -38,7 +38,8 @@ import org.apache.wicket.util.time.Duration;
  * <li>Direct, IRequestCycleSettings.RenderStrategy.ONE_PASS_RENDER. Everything is handled in one
  * physical request. This is efficient, and is the best option if you want to do sophisticated
  * clustering. It does not however, shield you from what is commonly known as the <i>Double submit
- * problem </i></li>
+ * problem </i>. With IRequestCycleSettings.RenderStrategy.ONE_PASS_STREAMING the page is even
+ * sent to the browser while it is still being rendered.</li>
  * <li>Using a redirect. This follows the pattern <a
  * href="http://www.theserverside.com/articles/article.tss?l=RedirectAfterPost" >as described at the
  * serverside </a> and that is commonly known as Redirect after post. Wicket takes it one step
@@ -128,7 +129,22 @@ public interface IRequestCycleSettings
 		 * because otherwise they wouldn't be bookmarkable.
 		 * </p>
 		 */
-		REDIRECT_TO_RENDER
+		REDIRECT_TO_RENDER,
+
+		/**
+		 * Like 'ONE_PASS_RENDER', but instead of buffering the whole page before it is sent, the
+		 * page is streamed to the browser while it is rendered: the &lt;head&gt; is flushed as
+		 * soon as it has been rendered, the body in chunks.
+		 * <p>
+		 * This lowers the time to the first byte and the memory needed for big pages. Since the
+		 * response is committed with the first chunk, headers and cookies have to be set before
+		 * the page renders, and an error or another request handler scheduled after the head has
+		 * been flushed can no longer replace the page. Ajax requests and pages which have to be
+		 * redirected to are still buffered, as are all pages if there are {@link IResponseFilter}s,
+		 * which need the text of the whole page.
+		 * </p>
+		 */
+		ONE_PASS_STREAMING
 	}
 
 	/**
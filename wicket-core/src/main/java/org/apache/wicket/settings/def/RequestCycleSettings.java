@@ -19,7 +19,10 @@ package org.apache.wicket.settings.def;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
+import org.apache.wicket.RequestListenerInterface;
 import org.apache.wicket.response.filter.IResponseFilter;
 import org.apache.wicket.settings.IExceptionSettings;
 import org.apache.wicket.settings.IRequestCycleSettings;
@@ -41,6 +44,9 @@ public class RequestCycleSettings implements IRequestCycleSettings
 	/** True if the response should be buffered */
 	private boolean bufferResponse = true;
 
+	/** True if rendered pages should be buffered as bytes */
+	private boolean bufferPagesAsBytes = false;
+
 	/**
 	 * Whether Wicket should try to get extensive client info by redirecting to
 	 * {@link org.apache.wicket.markup.html.pages.BrowserInfoPage a page that polls for client
@@ -58,6 +64,10 @@ public class RequestCycleSettings implements IRequestCycleSettings
 	/** List of {@link IResponseFilter}s. */
 	private List<IResponseFilter> responseFilters;
 
+	/** The listener interfaces whose invocations only read the page */
+	private final Set<RequestListenerInterface> readOnlyListenerInterfaces =
+		new CopyOnWriteArraySet<RequestListenerInterface>();
+
 	/**
 	 * In order to do proper form parameter decoding it is important that the response and the
 	 * following request have the same encoding. see
@@ -88,6 +98,43 @@ public class RequestCycleSettings implements IRequestCycleSettings
 		responseFilters.add(responseFilter);
 	}
 
+	/**
+	 * Registers a listener interface as read-only in this application. The listeners of a read-only
+	 * interface must not modify the page or its components. They are invoked with a shared lock of
+	 * the page, so several read-only requests may use the same page instance concurrently, and the
+	 * page is neither marked dirty nor stored after the invocation.
+	 * <p>
+	 * This is useful for {@link org.apache.wicket.IResourceListener} when a page has many dynamic
+	 * images which otherwise are served one after another:
+	 * 
+	 * <pre>
+	 * getRequestCycleSettings().addReadOnlyListenerInterface(IResourceListener.INTERFACE);
+	 * </pre>
+	 * 
+	 * The registration applies to components and behaviors implementing the interface alike.
+	 * 
+	 * @param listenerInterface
+	 *            the listener interface
+	 * @see org.apache.wicket.page.ReadOnlyPageAccess
+	 */
+	public void addReadOnlyListenerInterface(RequestListenerInterface listenerInterface)
+	{
+		Args.notNull(listenerInterface, "listenerInterface");
+
+		readOnlyListenerInterfaces.add(listenerInterface);
+	}
+
+	/**
+	 * @param listenerInterface
+	 *            the listener interface
+	 * @return whether the invocations of the listener interface only read the page
+	 * @see #addReadOnlyListenerInterface(RequestListenerInterface)
+	 */
+	public boolean isReadOnlyListenerInterface(RequestListenerInterface listenerInterface)
+	{
+		return readOnlyListenerInterfaces.contains(listenerInterface);
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IRequestCycleSettings#getBufferResponse()
 	 */
@@ -97,6 +144,16 @@ public class RequestCycleSettings implements IRequestCycleSettings
 		return bufferResponse;
 	}
 
+	/**
+	 * @return {@code true} if rendered pages are buffered as bytes encoded with the
+	 *         {@link #getResponseRequestEncoding() response encoding}
+	 * @see #setBufferPagesAsBytes(boolean)
+	 */
+	public boolean getBufferPagesAsBytes()
+	{
+		return bufferPagesAsBytes;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IRequestCycleSettings#getGatherExtendedBrowserInfo()
 	 */
@@ -158,6 +215,21 @@ public class RequestCycleSettings implements IRequestCycleSettings
 		this.bufferResponse = bufferResponse;
 	}
 
+	/**
+	 * Sets whether rendered pages are buffered as bytes encoded with the
+	 * {@link #getResponseRequestEncoding() response encoding} instead of characters. Static markup
+	 * is then written from bytes which are encoded once and cached, and the buffer is sent to the
+	 * client without encoding it again. Since {@link IResponseFilter}s work on the text of the
+	 * page, pages are buffered as characters as long as there are response filters.
+	 * 
+	 * @param bufferPagesAsBytes
+	 *            {@code true} to buffer pages as bytes
+	 */
+	public void setBufferPagesAsBytes(boolean bufferPagesAsBytes)
+	{
+		this.bufferPagesAsBytes = bufferPagesAsBytes;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IRequestCycleSettings#setGatherExtendedBrowserInfo(boolean)
 	 */
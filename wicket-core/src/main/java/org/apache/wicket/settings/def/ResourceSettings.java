@@ -35,6 +35,7 @@ import org.apache.wicket.markup.head.ResourceAggregator.RecordedHeaderItem;
 import org.apache.wicket.markup.html.IPackageResourceGuard;
 import org.apache.wicket.markup.html.SecurePackageResourceGuard;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.resource.ProcessedResourceCache;
 import org.apache.wicket.request.resource.caching.FilenameWithVersionResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.NoOpResourceCachingStrategy;
@@ -54,6 +55,7 @@ import org.apache.wicket.settings.IResourceSettings;
 import org.apache.wicket.util.file.IFileCleaner;
 import org.apache.wicket.util.file.IResourceFinder;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.Generics;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.time.Duration;
@@ -138,6 +140,10 @@ public class ResourceSettings implements IResourceSettings
 
 	private boolean encodeJSessionId = false;
 
+	private boolean compressResponses = false;
+
+	private Bytes compressionThreshold = Bytes.kilobytes(1);
+
 	/**
 	 * Configures Wicket's default ResourceLoaders.<br>
 	 * For an example in {@code FooApplication} let {@code bar.Foo} extend {@link Component}, this
@@ -460,6 +466,9 @@ public class ResourceSettings implements IResourceSettings
 	{
 		IJavaScriptCompressor old = javascriptCompressor;
 		javascriptCompressor = compressor;
+
+		// the cached resources have been compressed with the old compressor
+		ProcessedResourceCache.get(application).clear();
 		return old;
 	}
 
@@ -474,6 +483,9 @@ public class ResourceSettings implements IResourceSettings
 	{
 		ICssCompressor old = cssCompressor;
 		cssCompressor = compressor;
+
+		// the cached resources have been compressed with the old compressor
+		ProcessedResourceCache.get(application).clear();
 		return old;
 	}
 
@@ -578,4 +590,46 @@ public class ResourceSettings implements IResourceSettings
 	{
 		this.encodeJSessionId = encodeJSessionId;
 	}
+
+	/**
+	 * Sets whether the responses of {@link org.apache.wicket.request.resource.AbstractResource}s
+	 * with textual content are compressed with gzip or deflate for clients which accept it (see
+	 * the <tt>Accept-Encoding</tt> request header). Disabled by default.
+	 * 
+	 * @param compressResponses
+	 *            {@code true} to compress responses
+	 * @see #setCompressionThreshold(Bytes)
+	 */
+	public void setCompressResponses(boolean compressResponses)
+	{
+		this.compressResponses = compressResponses;
+	}
+
+	/**
+	 * @return whether resource responses are compressed
+	 */
+	public boolean getCompressResponses()
+	{
+		return compressResponses;
+	}
+
+	/**
+	 * Sets the minimum size of a resource response to be compressed. Responses of unknown size are
+	 * always compressed.
+	 * 
+	 * @param threshold
+	 *            the minimum size
+	 */
+	public void setCompressionThreshold(Bytes threshold)
+	{
+		compressionThreshold = Args.notNull(threshold, "threshold");
+	}
+
+	/**
+	 * @return the minimum size of a resource response to be compressed
+	 */
+	public Bytes getCompressionThreshold()
+	{
+		return compressionThreshold;
+	}
 }
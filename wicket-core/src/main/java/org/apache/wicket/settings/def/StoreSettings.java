@@ -21,6 +21,8 @@ import java.io.IOException;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.pageStore.AsynchronousDataStore;
+import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.settings.IStoreSettings;
 import org.apache.wicket.util.lang.Args;
@@ -33,18 +35,28 @@ public class StoreSettings implements IStoreSettings
 {
 	private static final int DEFAULT_CACHE_SIZE = 40;
 
+	private static final Bytes DEFAULT_CACHE_MAX_SIZE = Bytes.bytes(Long.MAX_VALUE);
+
 	private static final Bytes DEFAULT_MAX_SIZE_PER_SESSION = Bytes.megabytes(10);
 
 	private static final int DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY = 100;
 
+	private static final int DEFAULT_ASYNCHRONOUS_WRITER_COUNT = 1;
+
 	private int inmemoryCacheSize = DEFAULT_CACHE_SIZE;
 
+	private Bytes inmemoryCacheMaxSize = DEFAULT_CACHE_MAX_SIZE;
+
+	private boolean inmemoryCacheSoftReferences = true;
+
 	private Bytes maxSizePerSession = DEFAULT_MAX_SIZE_PER_SESSION;
 
 	private File fileStoreFolder = null;
 
 	private int asynchronousQueueCapacity = DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY;
 
+	private int asynchronousWriterCount = DEFAULT_ASYNCHRONOUS_WRITER_COUNT;
+
 	private boolean isAsynchronous = true;
 
 	/**
@@ -68,6 +80,51 @@ public class StoreSettings implements IStoreSettings
 		this.inmemoryCacheSize = inmemoryCacheSize;
 	}
 
+	/**
+	 * @return the maximum size of the data of all page instances in the application scoped cache,
+	 *         unlimited by default
+	 */
+	public Bytes getInmemoryCacheMaxSize()
+	{
+		return inmemoryCacheMaxSize;
+	}
+
+	/**
+	 * Sets the maximum size of the data of all page instances in the application scoped second
+	 * level cache. The least recently used pages are removed from the cache when either this size
+	 * or the number of pages set with {@link #setInmemoryCacheSize(int)} is exceeded.
+	 * 
+	 * @param inmemoryCacheMaxSize
+	 *            the maximum size of the data of the cached page instances
+	 */
+	public void setInmemoryCacheMaxSize(final Bytes inmemoryCacheMaxSize)
+	{
+		this.inmemoryCacheMaxSize = Args.notNull(inmemoryCacheMaxSize, "inmemoryCacheMaxSize");
+	}
+
+	/**
+	 * Sets a flag whether the page instances in the application scoped cache are held with soft
+	 * references. With soft references the garbage collector may drop the cached pages when the
+	 * memory gets low. Without them the memory used by the cache is limited only by
+	 * {@link #setInmemoryCacheMaxSize(Bytes)}, which makes the garbage collection more predictable.
+	 * 
+	 * @param softReferences
+	 *            {@code true} to use soft references, {@code false} - otherwise
+	 */
+	public void setInmemoryCacheSoftReferences(boolean softReferences)
+	{
+		inmemoryCacheSoftReferences = softReferences;
+	}
+
+	/**
+	 * @return {@code true} if the page instances in the application scoped cache are held with soft
+	 *         references
+	 */
+	public boolean isInmemoryCacheSoftReferences()
+	{
+		return inmemoryCacheSoftReferences;
+	}
+
 	@Override
 	public Bytes getMaxSizePerSession()
 	{
@@ -131,6 +188,35 @@ public class StoreSettings implements IStoreSettings
 		asynchronousQueueCapacity = queueCapacity;
 	}
 
+	/**
+	 * @return the number of threads which save the pages asynchronously
+	 * @see AsynchronousDataStore
+	 */
+	public int getAsynchronousWriterCount()
+	{
+		return asynchronousWriterCount;
+	}
+
+	/**
+	 * Sets the number of threads which save the pages asynchronously. The pages of a session are
+	 * always saved by the same thread so they are written in order, while the pages of different
+	 * sessions may be written in parallel. Use a value greater than one only if the
+	 * {@link IDataStore} can store the data of different sessions concurrently.
+	 * 
+	 * @param writerCount
+	 *            the number of writer threads
+	 * @see AsynchronousDataStore
+	 */
+	public void setAsynchronousWriterCount(int writerCount)
+	{
+		if (writerCount < 1)
+		{
+			throw new IllegalArgumentException(
+				"The number of asynchronous writers should be at least 1.");
+		}
+		asynchronousWriterCount = writerCount;
+	}
+
 	@Override
 	public void setAsynchronous(boolean async)
 	{
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket;
+
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.util.SlowTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures adding children to a {@link MarkupContainer} and looking them up by their id for
+ * containers with 1, 10, 1000 and 10000 children.
+ */
+@Category(SlowTests.class)
+public class MarkupContainerPerformanceTest extends WicketTestCase
+{
+	private static final Logger log = LoggerFactory.getLogger(MarkupContainerPerformanceTest.class);
+
+	private static final int ROUNDS = 5;
+
+	/**
+	 * The time per child must not grow with the number of children
+	 */
+	@Test
+	public void addAndGet()
+	{
+		String[] ids = new String[10000];
+		for (int i = 0; i < ids.length; i++)
+		{
+			ids[i] = Integer.toString(i);
+		}
+
+		// warm up
+		measure(ids, 1000, 100);
+
+		long[] nanosPerChild = new long[4];
+		int[] sizes = { 1, 10, 1000, 10000 };
+		for (int i = 0; i < sizes.length; i++)
+		{
+			int size = sizes[i];
+			long nanos = measure(ids, size, Math.max(1, 10000 / size));
+			nanosPerChild[i] = nanos / size;
+			log.info("{} children: {}ns per child", size, nanosPerChild[i]);
+		}
+
+		// linear lookups would make it 10 times slower
+		assertTrue(nanosPerChild[3] < nanosPerChild[2] * 5);
+	}
+
+	/**
+	 * @return the best time in nanos to add the children and look up each of them
+	 */
+	private long measure(String[] ids, int size, int repetitions)
+	{
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++)
+		{
+			long start = System.nanoTime();
+			for (int r = 0; r < repetitions; r++)
+			{
+				MarkupContainer container = new WebMarkupContainer("container");
+				for (int i = 0; i < size; i++)
+				{
+					container.add(new WebComponent(ids[i]));
+				}
+				for (int i = 0; i < size; i++)
+				{
+					if (container.get(ids[i]) == null)
+					{
+						fail();
+					}
+				}
+			}
+			best = Math.min(best, (System.nanoTime() - start) / repetitions);
+		}
+		return best;
+	}
+}
@@ -16,6 +16,9 @@
  */
 package org.apache.wicket;
 
+import java.util.Iterator;
+
+import org.apache.wicket.core.util.lang.WicketObjects;
 import org.apache.wicket.markup.IMarkupResourceStreamProvider;
 import org.apache.wicket.markup.html.WebComponent;
 import org.apache.wicket.markup.html.WebMarkupContainer;
@@ -58,6 +61,94 @@ public class MarkupContainerTest extends WicketTestCase
 		executeTest(MarkupIdTestPage.class, "MarkupIdTestPageExpectedResult.html");
 	}
 
+	/**
+	 * The children of a container with many children are found by their id after adding, removing,
+	 * replacing and swapping them
+	 */
+	@Test
+	public void manyChildren()
+	{
+		MarkupContainer container = new WebMarkupContainer("component");
+		for (int i = 0; i < 100; i++)
+		{
+			container.add(new WebComponent(Integer.toString(i)));
+		}
+		assertChildren(container, 0, 100);
+
+		// remove from the middle and the end
+		container.remove("50");
+		container.remove("99");
+		assertNull(container.get("50"));
+		assertNull(container.get("99"));
+		assertEquals(98, container.size());
+		assertEquals("51", container.get(50).getId());
+		assertSame(container.get(50), container.get("51"));
+
+		// replace
+		WebComponent replacement = new WebComponent("10");
+		container.replace(replacement);
+		assertSame(replacement, container.get("10"));
+		assertSame(replacement, container.get(10));
+
+		// swap
+		container.swap(0, 97);
+		assertSame(container.get(0), container.get("98"));
+		assertSame(container.get(97), container.get("0"));
+		container.swap(0, 97);
+
+		// remove by the iterator
+		Iterator<Component> iterator = container.iterator();
+		while (iterator.hasNext())
+		{
+			if (iterator.next().getId().startsWith("2"))
+			{
+				iterator.remove();
+			}
+		}
+		assertNull(container.get("2"));
+		assertNull(container.get("25"));
+		assertEquals("30", container.get(19).getId());
+		assertSame(container.get(19), container.get("30"));
+
+		// the index is not serialized but rebuilt
+		MarkupContainer clone = (MarkupContainer)WicketObjects.cloneObject(container);
+		assertEquals(container.size(), clone.size());
+		for (int i = 0; i < clone.size(); i++)
+		{
+			Component child = clone.get(i);
+			assertSame(child, clone.get(child.getId()));
+		}
+
+		// shrink below the threshold and grow again
+		while (container.size() > 5)
+		{
+			container.remove(container.get(container.size() / 2));
+		}
+		for (int i = 100; i < 150; i++)
+		{
+			container.add(new WebComponent(Integer.toString(i)));
+		}
+		for (int i = 0; i < container.size(); i++)
+		{
+			Component child = container.get(i);
+			assertSame(child, container.get(child.getId()));
+		}
+		assertChildren(container, 100, 150);
+
+		container.removeAll();
+		assertNull(container.get("100"));
+	}
+
+	private void assertChildren(MarkupContainer container, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			Component child = container.get(Integer.toString(i));
+			assertNotNull(child);
+			assertSame(container, child.getParent());
+		}
+	}
+
 	/**
 	 * 
 	 */
@@ -19,6 +19,7 @@ package org.apache.wicket.core.request.handler;
 import java.io.IOException;
 import java.text.ParseException;
 
+import org.apache.wicket.IRequestListener;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.Page;
 import org.apache.wicket.RequestListenerInterface;
@@ -27,9 +28,12 @@ import org.apache.wicket.WicketTestCase;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.markup.html.AjaxLink;
 import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebComponent;
 import org.apache.wicket.markup.html.WebPage;
 import org.apache.wicket.markup.html.link.ILinkListener;
+import org.apache.wicket.page.ReadOnlyPageAccess;
 import org.apache.wicket.request.Url;
+import org.apache.wicket.settings.def.RequestCycleSettings;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
 import org.apache.wicket.util.resource.StringResourceStream;
@@ -125,4 +129,98 @@ public class ListenerInterfaceRequestHandlerTest extends WicketTestCase
 		assertFalse("Handler should not report a page instance is available ",
 			handler.isPageInstanceCreated());
 	}
+
+	/**
+	 * A read-only listener interface is invoked without making the page dirty, the page is still
+	 * detached afterwards
+	 */
+	@Test
+	public void readOnlyListenerInterface()
+	{
+		RequestCycleSettings settings = (RequestCycleSettings)tester.getApplication()
+			.getRequestCycleSettings();
+		settings.addReadOnlyListenerInterface(IReadOnlyTestListener.INTERFACE);
+
+		ReadOnlyListenerPage page = tester.startPage(ReadOnlyListenerPage.class);
+		int pageId = page.getPageId();
+		int detachCount = page.detachCount;
+
+		tester.executeListener(page.component, IReadOnlyTestListener.INTERFACE);
+
+		assertTrue(page.component.invokedReadOnly);
+		assertEquals(pageId, page.getPageId());
+		assertEquals(detachCount + 1, page.detachCount);
+		assertFalse(ReadOnlyPageAccess.isActive());
+	}
+
+	/**
+	 * A read-only listener interface for #readOnlyListenerInterface()
+	 */
+	public static interface IReadOnlyTestListener extends IRequestListener
+	{
+		/** the listener interface */
+		RequestListenerInterface INTERFACE = new RequestListenerInterface(
+			IReadOnlyTestListener.class).setIncludeRenderCount(false)
+			.setRenderPageAfterInvocation(false);
+
+		/**
+		 * Called when the page is read.
+		 */
+		void onRead();
+	}
+
+	private static class ReadOnlyComponent extends WebComponent implements IReadOnlyTestListener
+	{
+		private static final long serialVersionUID = 1L;
+
+		private boolean invokedReadOnly;
+
+		private ReadOnlyComponent(String id)
+		{
+			super(id);
+		}
+
+		@Override
+		public void onRead()
+		{
+			invokedReadOnly = ReadOnlyPageAccess.isActive();
+
+			// must be ignored
+			getPage().dirty();
+		}
+	}
+
+	/**
+	 * Test page for #readOnlyListenerInterface()
+	 */
+	public static class ReadOnlyListenerPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final ReadOnlyComponent component;
+
+		private int detachCount;
+
+		/**
+		 * Constructor.
+		 */
+		public ReadOnlyListenerPage()
+		{
+			add(component = new ReadOnlyComponent("image"));
+		}
+
+		@Override
+		protected void onDetach()
+		{
+			super.onDetach();
+			detachCount++;
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream("<html><body><img wicket:id='image'/></body></html>");
+		}
+	}
 }
@@ -16,9 +16,16 @@
  */
 package org.apache.wicket.markup;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.MarkupCache.BoundedCacheImplementation;
+import org.apache.wicket.markup.MarkupCache.Weigher;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.junit.Before;
@@ -86,6 +93,217 @@ public class MarkupCacheTest extends WicketTestCase
 		assertNull(markup);
 	}
 
+	/**
+	 * Hits, misses and loads are counted
+	 */
+	@Test
+	public void statistics()
+	{
+		cache.resetStatistics();
+
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		long loads = cache.getLoadCount();
+		assertTrue(loads > 0);
+		assertTrue(cache.getMissCount() > 0);
+
+		long hits = cache.getHitCount();
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		assertEquals(loads, cache.getLoadCount());
+		assertTrue(cache.getHitCount() > hits);
+		assertEquals(0, cache.getEvictionCount());
+		assertEquals(-1, cache.getWeight());
+	}
+
+	/**
+	 * The oldest entry without uses is evicted
+	 */
+	@Test
+	public void boundedCacheEvictsUnusedEntries()
+	{
+		final List<String> evicted = new ArrayList<String>();
+		BoundedCacheImplementation<String, String> bounded = new BoundedCacheImplementation<String, String>(
+			3, Weigher.ENTRY_COUNT)
+		{
+			@Override
+			protected void onEvict(String key, String value)
+			{
+				evicted.add(key);
+			}
+		};
+
+		bounded.put("a", "a");
+		bounded.put("b", "b");
+		bounded.put("c", "c");
+		bounded.get("a");
+		bounded.get("a");
+		bounded.get("b");
+		bounded.get("c");
+		assertEquals(3, bounded.getWeight());
+		assertTrue(evicted.isEmpty());
+
+		// a was used twice, so it survives two passes of the clock hand
+		bounded.put("d", "d");
+		assertEquals(3, bounded.size());
+		assertEquals(3, bounded.getWeight());
+		assertNull(bounded.get("b"));
+		assertEquals("[b]", evicted.toString());
+
+		// c has been used since the last sweep, d is the next one without uses
+		bounded.get("c");
+		bounded.put("e", "e");
+		assertNull(bounded.get("d"));
+		assertEquals("[b, d]", evicted.toString());
+		assertEquals("a", bounded.get("a"));
+		assertEquals("c", bounded.get("c"));
+		assertEquals("e", bounded.get("e"));
+
+		// replacing doesn't evict
+		bounded.put("e", "e2");
+		assertEquals(3, bounded.getWeight());
+		assertEquals(2, evicted.size());
+
+		assertTrue(bounded.remove("e"));
+		assertFalse(bounded.remove("e"));
+		assertEquals(2, bounded.getWeight());
+	}
+
+	/**
+	 * Frequently used entries survive the eviction of many others
+	 */
+	@Test
+	public void boundedCacheKeepsFrequentlyUsedEntries()
+	{
+		final AtomicInteger evictions = new AtomicInteger();
+		BoundedCacheImplementation<String, String> bounded = new BoundedCacheImplementation<String, String>(
+			100, Weigher.ENTRY_COUNT)
+		{
+			@Override
+			protected void onEvict(String key, String value)
+			{
+				evictions.incrementAndGet();
+			}
+		};
+
+		bounded.put("hot", "hot");
+		for (int i = 0; i < 1000; i++)
+		{
+			assertEquals("hot", bounded.get("hot"));
+			bounded.put("key" + i, "value" + i);
+			assertTrue(bounded.getWeight() <= 100);
+		}
+		assertEquals(100, bounded.size());
+		assertEquals(100, bounded.getWeight());
+		assertEquals(901, evictions.get());
+		assertEquals("value999", bounded.get("key999"));
+
+		bounded.clear();
+		assertEquals(0, bounded.size());
+		assertEquals(0, bounded.getWeight());
+	}
+
+	/**
+	 * The weight stays consistent with concurrent puts, gets and removes
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void boundedCacheConcurrentAccess() throws Exception
+	{
+		final BoundedCacheImplementation<Integer, String> bounded = new BoundedCacheImplementation<Integer, String>(
+			500, Weigher.CHARACTER_COUNT);
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final int seed = t;
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					Random random = new Random(seed);
+					for (int i = 0; i < 20000; i++)
+					{
+						Integer key = random.nextInt(200);
+						switch (random.nextInt(3))
+						{
+							case 0 :
+								bounded.put(key, "value" + key);
+								break;
+							case 1 :
+								bounded.get(key);
+								break;
+							default :
+								bounded.remove(key);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		long weight = 0;
+		for (String value : bounded.getValues())
+		{
+			weight += value.length();
+		}
+		assertEquals(weight, bounded.getWeight());
+		assertTrue(bounded.getWeight() <= 500);
+	}
+
+	/**
+	 * Entries are weighed and entries heavier than the maximum are not cached
+	 */
+	@Test
+	public void boundedCacheWeighs()
+	{
+		Markup markup = Markup.of("<span wicket:id='label'>text</span>");
+		assertEquals(markup.size(), Weigher.ELEMENT_COUNT.weigh(markup));
+		assertTrue(Weigher.CHARACTER_COUNT.weigh(markup) > markup.size());
+		assertEquals(5, Weigher.CHARACTER_COUNT.weigh("chars"));
+		assertEquals(1, Weigher.ELEMENT_COUNT.weigh("chars"));
+
+		BoundedCacheImplementation<String, Object> bounded = new BoundedCacheImplementation<String, Object>(
+			10, Weigher.CHARACTER_COUNT);
+		bounded.put("small", "small");
+		bounded.put("large", "larger than the maximum");
+		assertFalse(bounded.containsKey("large"));
+		assertEquals(5, bounded.getWeight());
+
+		bounded.put("small2", "small");
+		assertEquals(10, bounded.getWeight());
+		bounded.put("small3", "small");
+		assertEquals(2, bounded.size());
+		assertEquals(10, bounded.getWeight());
+	}
+
+	/**
+	 * A markup cache with a maximum weight evicts markups
+	 */
+	@Test
+	public void boundedMarkupCache()
+	{
+		cache = new MarkupCache()
+		{
+			@Override
+			protected <K, V> ICache<K, V> newCacheImplementation()
+			{
+				return newBoundedCacheImplementation(1, Weigher.ENTRY_COUNT);
+			}
+		};
+
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		tester.assertRenderedPage(MarkupInheritanceExtension_1.class);
+
+		assertTrue(cache.getEvictionCount() > 0);
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getWeight());
+	}
+
 	private static class MarkupCachingAssumingComponent extends Panel
 		implements
 			IMarkupResourceStreamProvider
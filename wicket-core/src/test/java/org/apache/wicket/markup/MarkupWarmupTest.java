@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.util.Locale;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.warmup.WarmupPage;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MarkupWarmup}
+ */
+public class MarkupWarmupTest extends WicketTestCase
+{
+	private MarkupCache cache;
+
+	/**
+	 * Installs an empty markup cache
+	 */
+	@Before
+	public void before()
+	{
+		cache = new MarkupCache();
+
+		tester.getApplication().getMarkupSettings().setMarkupFactory(new MarkupFactory()
+		{
+			@Override
+			public IMarkupCache getMarkupCache()
+			{
+				return cache;
+			}
+		});
+	}
+
+	/**
+	 * The markup of pages and panels is loaded for all locales, rendering doesn't load it again
+	 */
+	@Test
+	public void warmUp()
+	{
+		MarkupWarmup warmup = new MarkupWarmup("org.apache.wicket.markup.warmup").setLocales(
+			Locale.ENGLISH, Locale.GERMAN).setThreads(2);
+		assertNull(warmup.getDuration());
+
+		assertNotNull(warmup.warmUp(tester.getApplication()));
+		assertNotNull(warmup.getDuration());
+
+		// the abstract base page, the panel without (String id) constructor and the panel which
+		// fails to initialize are skipped
+		assertEquals(2, warmup.getWarmedUpCount());
+		long loads = cache.getLoadCount();
+		assertTrue(loads > 0);
+
+		tester.getSession().setLocale(Locale.GERMAN);
+		tester.startPage(WarmupPage.class);
+		tester.assertContains("Seite");
+
+		tester.getSession().setLocale(Locale.ENGLISH);
+		tester.startPage(WarmupPage.class);
+		tester.assertContains("page");
+
+		assertEquals(loads, cache.getLoadCount());
+	}
+
+	/**
+	 * Unknown packages are no problem
+	 */
+	@Test
+	public void unknownPackage()
+	{
+		MarkupWarmup warmup = new MarkupWarmup("org.apache.wicket.markup.unknown");
+		warmup.warmUp(tester.getApplication());
+
+		assertEquals(0, warmup.getWarmedUpCount());
+		assertEquals(0, cache.getLoadCount());
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.settings.def.RequestCycleSettings;
+import org.apache.wicket.util.SlowTests;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures rendering a large, mostly static page buffered as characters and as pre-encoded bytes.
+ */
+@Category(SlowTests.class)
+public class PreEncodedMarkupPerformanceTest extends WicketTestCase
+{
+	private static final Logger log = LoggerFactory.getLogger(PreEncodedMarkupPerformanceTest.class);
+
+	private static final int ROUNDS = 5;
+
+	private static final int RENDERS = 50;
+
+	@Override
+	protected WebApplication newApplication()
+	{
+		return new MockApplication()
+		{
+			@Override
+			public RuntimeConfigurationType getConfigurationType()
+			{
+				// development mode registers a response filter, which needs the page as text
+				return RuntimeConfigurationType.DEPLOYMENT;
+			}
+		};
+	}
+
+	/**
+	 * Buffering as bytes must not be slower than buffering as characters
+	 */
+	@Test
+	public void render()
+	{
+		// warm up
+		measure(false);
+		measure(true);
+
+		long chars = measure(false);
+		long bytes = measure(true);
+		log.info("large static page: {}µs per render as chars, {}µs as bytes", chars / 1000,
+			bytes / 1000);
+
+		assertTrue(bytes < chars * 2);
+	}
+
+	/**
+	 * @return the best time in nanos to render the page
+	 */
+	private long measure(boolean asBytes)
+	{
+		((RequestCycleSettings)tester.getApplication().getRequestCycleSettings()).setBufferPagesAsBytes(asBytes);
+
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++)
+		{
+			long start = System.nanoTime();
+			for (int r = 0; r < RENDERS; r++)
+			{
+				tester.startPage(StaticPage.class);
+			}
+			best = Math.min(best, (System.nanoTime() - start) / RENDERS);
+		}
+		return best;
+	}
+
+	/**
+	 * A page with a large static table around a single label.
+	 */
+	public static class StaticPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		private static final String MARKUP;
+
+		static
+		{
+			StringBuilder markup = new StringBuilder("<html><body><table>");
+			for (int i = 0; i < 2000; i++)
+			{
+				markup.append("<tr><td class=\"row\">Zeile ")
+					.append(i)
+					.append("</td><td>Grüße aus Köln, Überweisung fällig</td></tr>\n");
+			}
+			markup.append("</table><span wicket:id=\"label\"></span></body></html>");
+			MARKUP = markup.toString();
+		}
+
+		/**
+		 * Construct.
+		 */
+		public StaticPage()
+		{
+			add(new Label("label", "dynamic"));
+		}
+
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(MARKUP);
+		}
+	}
+}
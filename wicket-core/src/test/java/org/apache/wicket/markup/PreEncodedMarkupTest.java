@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.nio.charset.Charset;
+
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.mock.MockWebResponse;
+import org.apache.wicket.protocol.http.BufferedWebResponse;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.settings.def.RequestCycleSettings;
+import org.junit.Test;
+
+/**
+ * Tests for pre-encoded rendering of static markup.
+ * 
+ * @see MarkupElement#getBytes(Charset)
+ * @see RequestCycleSettings#setBufferPagesAsBytes(boolean)
+ */
+public class PreEncodedMarkupTest extends WicketTestCase
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+	@Override
+	protected WebApplication newApplication()
+	{
+		return new MockApplication()
+		{
+			@Override
+			public RuntimeConfigurationType getConfigurationType()
+			{
+				// development mode registers a response filter, which needs the page as text
+				return RuntimeConfigurationType.DEPLOYMENT;
+			}
+		};
+	}
+
+	/**
+	 * Raw markup is encoded once per charset.
+	 */
+	@Test
+	public void rawMarkupBytesAreCached()
+	{
+		RawMarkup raw = new RawMarkup("<p>Grüße</p>");
+
+		byte[] bytes = raw.getBytes(UTF_8);
+		assertEquals("<p>Grüße</p>", new String(bytes, UTF_8));
+		assertSame(bytes, raw.getBytes(UTF_8));
+
+		byte[] latin = raw.getBytes(ISO_8859_1);
+		assertEquals("<p>Grüße</p>", new String(latin, ISO_8859_1));
+		assertNotSame(bytes, latin);
+	}
+
+	/**
+	 * Elements are written as bytes only to responses which accept them.
+	 */
+	@Test
+	public void writeTo()
+	{
+		RawMarkup raw = new RawMarkup("<p>Grüße</p>");
+
+		MockWebResponse text = new MockWebResponse();
+		raw.writeTo(text);
+		assertEquals("<p>Grüße</p>", text.getTextResponse().toString());
+
+		BufferedWebResponse buffered = new BufferedWebResponse(new MockWebResponse(), UTF_8);
+		buffered.write("<div>");
+		raw.writeTo(buffered);
+		buffered.write("</div>");
+		assertEquals("<div><p>Grüße</p></div>", buffered.getText().toString());
+	}
+
+	/**
+	 * A page buffered as bytes renders the same document as one buffered as characters.
+	 */
+	@Test
+	public void bufferPagesAsBytes()
+	{
+		tester.startPage(PreEncodedMarkupPage.class);
+		String expected = tester.getLastResponseAsString();
+		assertTrue(expected.contains("Ärger über Öfen"));
+		assertTrue(expected.contains("Grüße aus Köln €"));
+
+		((RequestCycleSettings)tester.getApplication().getRequestCycleSettings()).setBufferPagesAsBytes(true);
+
+		tester.startPage(PreEncodedMarkupPage.class);
+		String actual = new String(tester.getLastResponse().getBinaryContent(), UTF_8);
+		assertEquals(expected, actual);
+	}
+}
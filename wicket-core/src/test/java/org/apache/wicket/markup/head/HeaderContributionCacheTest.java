@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.head;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.IStaticHeaderContributor;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.junit.Test;
+
+/**
+ * Tests for {@link HeaderContributionCache}
+ */
+public class HeaderContributionCacheTest extends WicketTestCase
+{
+	private static int staticContributions;
+
+	private static int staticBehaviorContributions;
+
+	private static int instanceContributions;
+
+	/**
+	 * Static contributions are rendered once per class, but their items are rendered for every
+	 * render of the page.
+	 */
+	@Test
+	public void staticContributionsRenderedOncePerClass()
+	{
+		staticContributions = 0;
+		staticBehaviorContributions = 0;
+		instanceContributions = 0;
+
+		tester.startPage(ContributorsPage.class);
+		assertContributions();
+
+		tester.startPage(ContributorsPage.class);
+		assertContributions();
+
+		assertEquals(1, staticContributions);
+		assertEquals(1, staticBehaviorContributions);
+		assertEquals(6, instanceContributions);
+		assertEquals(2, HeaderContributionCache.get(tester.getApplication()).size());
+	}
+
+	private void assertContributions()
+	{
+		String document = tester.getLastResponseAsString();
+		assertEquals(1, count(document, "static.js"));
+		assertEquals(1, count(document, "behavior.js"));
+		assertTrue(document.contains("instance-a3"));
+		assertTrue(document.contains("instance-b3"));
+		assertTrue(document.contains("instance-c3"));
+	}
+
+	private static int count(String document, String text)
+	{
+		int count = 0;
+		int pos = -1;
+		while ((pos = document.indexOf(text, pos + 1)) != -1)
+		{
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * A component whose contribution only depends on its class
+	 */
+	private static class StaticContributor extends WebMarkupContainer implements
+		IStaticHeaderContributor
+	{
+		private static final long serialVersionUID = 1L;
+
+		private StaticContributor(String id)
+		{
+			super(id);
+
+			add(new StaticBehavior());
+		}
+
+		@Override
+		public void renderHead(IHeaderResponse response)
+		{
+			staticContributions++;
+
+			response.render(JavaScriptHeaderItem.forReference(new JavaScriptResourceReference(
+				HeaderContributionCacheTest.class, "static.js")));
+		}
+	}
+
+	/**
+	 * A behavior whose contribution only depends on its class
+	 */
+	private static class StaticBehavior extends Behavior implements IStaticHeaderContributor
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void renderHead(Component component, IHeaderResponse response)
+		{
+			staticBehaviorContributions++;
+
+			response.render(JavaScriptHeaderItem.forReference(new JavaScriptResourceReference(
+				HeaderContributionCacheTest.class, "behavior.js")));
+		}
+	}
+
+	/**
+	 * A component whose contribution depends on its instance
+	 */
+	private static class InstanceContributor extends WebMarkupContainer
+	{
+		private static final long serialVersionUID = 1L;
+
+		private InstanceContributor(String id)
+		{
+			super(id);
+			setOutputMarkupId(true);
+		}
+
+		@Override
+		public void renderHead(IHeaderResponse response)
+		{
+			instanceContributions++;
+
+			response.render(OnDomReadyHeaderItem.forScript("init('instance-" + getId() + "');"));
+		}
+	}
+
+	/**
+	 * Test page
+	 */
+	public static class ContributorsPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 */
+		public ContributorsPage()
+		{
+			add(new StaticContributor("a1"), new StaticContributor("b1"), new StaticContributor(
+				"c1"));
+			add(new InstanceContributor("a3"), new InstanceContributor("b3"),
+				new InstanceContributor("c3"));
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream("<html><head></head><body>" +
+				"<div wicket:id='a1'></div><div wicket:id='b1'></div><div wicket:id='c1'></div>" +
+				"<div wicket:id='a3'></div><div wicket:id='b3'></div><div wicket:id='c3'></div>" +
+				"</body></html>");
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.html.form.encryption;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.util.SlowTests;
+import org.apache.wicket.util.crypt.AesCrypt;
+import org.apache.wicket.util.crypt.CachingCrypt;
+import org.apache.wicket.util.crypt.ICrypt;
+import org.apache.wicket.util.crypt.SunJceCrypt;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the time to encrypt and decrypt the urls of a page with many links, as
+ * {@link org.apache.wicket.core.request.mapper.CryptoMapper} does, with the available crypts.
+ */
+@Category(SlowTests.class)
+public class CryptPerformanceTest extends Assert
+{
+	private static final Logger log = LoggerFactory.getLogger(CryptPerformanceTest.class);
+
+	private static final int LINKS = 500;
+
+	private static final int ROUNDS = 5;
+
+	private static final String KEY = "performance";
+
+	/**
+	 * The key of a {@link SunJceCrypt} was generated for each url, which
+	 * {@link org.apache.wicket.core.util.crypt.KeyInSessionSunJceCryptFactory} still does as it
+	 * creates a new crypt for each url.
+	 */
+	private static final CryptProvider SUN_JCE_PER_URL = new CryptProvider()
+	{
+		@Override
+		public ICrypt get()
+		{
+			ICrypt crypt = new SunJceCrypt();
+			crypt.setKey(KEY);
+			return crypt;
+		}
+	};
+
+	/**
+	 * Compares the crypts
+	 */
+	@Test
+	public void crypt()
+	{
+		List<String> urls = new ArrayList<String>();
+		for (int i = 0; i < LINKS; i++)
+		{
+			urls.add("wicket/page?5-1.ILinkListener-form-list-" + i + "-link");
+		}
+
+		SunJceCrypt sunJceCrypt = new SunJceCrypt();
+		sunJceCrypt.setKey(KEY);
+		AesCrypt aesCrypt = new AesCrypt();
+		aesCrypt.setKey(KEY);
+		AesCrypt cachedAesCrypt = new AesCrypt();
+		cachedAesCrypt.setKey(KEY);
+		CachingCrypt cachingCrypt = new CachingCrypt(cachedAesCrypt, LINKS);
+
+		// warm up
+		measure(urls, SUN_JCE_PER_URL);
+		measure(urls, new SharedCrypt(sunJceCrypt));
+		measure(urls, new SharedCrypt(aesCrypt));
+		measure(urls, new SharedCrypt(cachingCrypt));
+
+		long perUrl = measure(urls, SUN_JCE_PER_URL);
+		long sunJce = measure(urls, new SharedCrypt(sunJceCrypt));
+		long aes = measure(urls, new SharedCrypt(aesCrypt));
+		long caching = measure(urls, new SharedCrypt(cachingCrypt));
+
+		log.info("{} urls encrypted and decrypted: SunJceCrypt per url {} ms, SunJceCrypt {} ms, " +
+			"AesCrypt {} ms, CachingCrypt(AesCrypt) on re-render {} ms", new Object[] { LINKS,
+				millis(perUrl), millis(sunJce), millis(aes), millis(caching) });
+
+		assertTrue(caching < perUrl);
+	}
+
+	private static String millis(final long nanos)
+	{
+		return String.format("%.2f", nanos / 1000000.0);
+	}
+
+	/**
+	 * @return the best time in nanos to encrypt and decrypt all urls once
+	 */
+	private static long measure(final List<String> urls, final CryptProvider provider)
+	{
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++)
+		{
+			long start = System.nanoTime();
+			for (String url : urls)
+			{
+				String encrypted = provider.get().encryptUrlSafe(url);
+				assertEquals(url, provider.get().decryptUrlSafe(encrypted));
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	private interface CryptProvider
+	{
+		ICrypt get();
+	}
+
+	private static class SharedCrypt implements CryptProvider
+	{
+		private final ICrypt crypt;
+
+		private SharedCrypt(final ICrypt crypt)
+		{
+			this.crypt = crypt;
+		}
+
+		@Override
+		public ICrypt get()
+		{
+			return crypt;
+		}
+	}
+}
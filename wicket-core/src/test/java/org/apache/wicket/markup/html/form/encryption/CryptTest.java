@@ -17,9 +17,13 @@
 package org.apache.wicket.markup.html.form.encryption;
 
 import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.core.util.crypt.KeyInSessionAesCryptFactory;
+import org.apache.wicket.util.crypt.AesCrypt;
+import org.apache.wicket.util.crypt.CachingCrypt;
 import org.apache.wicket.util.crypt.ICrypt;
 import org.apache.wicket.util.crypt.NoCrypt;
 import org.apache.wicket.util.crypt.SunJceCrypt;
+import org.apache.wicket.util.tester.WicketTester;
 import org.junit.Test;
 
 
@@ -69,4 +73,102 @@ public class CryptTest extends WicketTestCase
 		assertEquals("test", crypt.encryptUrlSafe("test"));
 		assertEquals("test", crypt.decryptUrlSafe("test"));
 	}
+
+	/**
+	 * The key of {@link SunJceCrypt} is generated once, but changed with the key
+	 */
+	@Test
+	public void sunJceCryptChangeKey()
+	{
+		final SunJceCrypt crypt = new SunJceCrypt();
+		final String encrypted = crypt.encryptUrlSafe("test");
+		assertEquals(encrypted, crypt.encryptUrlSafe("test"));
+
+		crypt.setKey("other");
+		assertFalse(encrypted.equals(crypt.encryptUrlSafe("test")));
+		assertEquals("test", crypt.decryptUrlSafe(crypt.encryptUrlSafe("test")));
+	}
+
+	/**
+	 * {@link AesCrypt} encrypts with random initialization vectors and rejects modified texts
+	 */
+	@Test
+	public void aesCrypt()
+	{
+		final AesCrypt crypt = new AesCrypt();
+		crypt.setKey("key");
+
+		final String text = "abcdefghijkABC: A test which creates a '/' and/or a '+'";
+		final String encrypted = crypt.encryptUrlSafe(text);
+		assertTrue(encrypted.matches("[A-Za-z0-9_-]+"));
+		assertFalse(encrypted.equals(crypt.encryptUrlSafe(text)));
+		assertEquals(text, crypt.decryptUrlSafe(encrypted));
+		assertEquals("", crypt.decryptUrlSafe(crypt.encryptUrlSafe("")));
+
+		// modified cipher text
+		char c = encrypted.charAt(30) == 'A' ? 'B' : 'A';
+		assertNull(crypt.decryptUrlSafe(encrypted.substring(0, 30) + c + encrypted.substring(31)));
+		assertNull(crypt.decryptUrlSafe(encrypted.substring(0, 40)));
+		assertNull(crypt.decryptUrlSafe("style.css"));
+
+		// other key
+		final AesCrypt other = new AesCrypt();
+		other.setKey("other");
+		assertNull(other.decryptUrlSafe(encrypted));
+
+		crypt.setKey("other");
+		assertEquals(text, crypt.decryptUrlSafe(other.encryptUrlSafe(text)));
+	}
+
+	/**
+	 * {@link CachingCrypt} remembers recently encrypted and decrypted texts
+	 */
+	@Test
+	public void cachingCrypt()
+	{
+		final AesCrypt aesCrypt = new AesCrypt();
+		final ICrypt crypt = new CachingCrypt(aesCrypt, 2);
+
+		final String encrypted = crypt.encryptUrlSafe("a");
+		assertEquals(encrypted, crypt.encryptUrlSafe("a"));
+		assertEquals("a", crypt.decryptUrlSafe(encrypted));
+
+		crypt.encryptUrlSafe("b");
+		crypt.encryptUrlSafe("c");
+		assertFalse(encrypted.equals(crypt.encryptUrlSafe("a")));
+
+		// still decryptable
+		assertEquals("a", crypt.decryptUrlSafe(encrypted));
+		assertEquals("b", crypt.decryptUrlSafe(aesCrypt.encryptUrlSafe("b")));
+		assertNull(crypt.decryptUrlSafe("style.css"));
+
+		crypt.setKey("other");
+		assertNull(crypt.decryptUrlSafe(encrypted));
+	}
+
+	/**
+	 * {@link KeyInSessionAesCryptFactory} creates one crypt per session
+	 */
+	@Test
+	public void keyInSessionAesCryptFactory()
+	{
+		final KeyInSessionAesCryptFactory factory = new KeyInSessionAesCryptFactory();
+
+		final ICrypt crypt = factory.newCrypt();
+		assertSame(crypt, factory.newCrypt());
+
+		final String encrypted = crypt.encryptUrlSafe("test");
+		assertEquals("test", factory.newCrypt().decryptUrlSafe(encrypted));
+
+		// another session
+		final WicketTester other = new WicketTester();
+		try
+		{
+			assertNull(factory.newCrypt().decryptUrlSafe(encrypted));
+		}
+		finally
+		{
+			other.destroy();
+		}
+	}
 }
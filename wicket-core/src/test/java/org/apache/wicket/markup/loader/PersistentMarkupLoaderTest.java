@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.loader;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.List;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.markup.MarkupInheritanceExtension_1;
+import org.apache.wicket.util.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PersistentMarkupLoader}
+ */
+public class PersistentMarkupLoaderTest extends WicketTestCase
+{
+	private File folder;
+
+	private PersistentMarkupLoader loader;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		folder = File.createTempFile("PersistentMarkupLoaderTest", null);
+		folder.delete();
+		restart();
+	}
+
+	/**
+	 * Removes the files
+	 */
+	@After
+	public void after()
+	{
+		Files.removeFolder(folder);
+	}
+
+	/**
+	 * Installs a new markup factory with an empty markup cache, as after a restart of the application
+	 */
+	private void restart()
+	{
+		loader = new PersistentMarkupLoader(folder);
+		tester.getApplication().getMarkupSettings().setMarkupFactory(new MarkupFactory()
+		{
+			@Override
+			public IMarkupLoader getMarkupLoader()
+			{
+				return loader;
+			}
+		});
+	}
+
+	/**
+	 * Parsed markup is stored and restored after a restart
+	 */
+	@Test
+	public void restore()
+	{
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		String document = tester.getLastResponseAsString();
+		// the extension and its base markup
+		assertEquals(2, loader.getStoredCount());
+		assertEquals(0, loader.getRestoredCount());
+		assertEquals(2, folder.list().length);
+
+		restart();
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		assertEquals(document, tester.getLastResponseAsString());
+		assertEquals(0, loader.getStoredCount());
+		assertEquals(2, loader.getRestoredCount());
+	}
+
+	/**
+	 * Markup parsed with other settings is not restored
+	 */
+	@Test
+	public void otherSettings()
+	{
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		assertEquals(2, loader.getStoredCount());
+
+		tester.getApplication().getMarkupSettings().setStripWicketTags(true);
+		restart();
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		assertEquals(0, loader.getRestoredCount());
+		assertEquals(2, loader.getStoredCount());
+		assertEquals(2, folder.list().length);
+	}
+
+	/**
+	 * Corrupt files are ignored and replaced
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void corruptFile() throws IOException
+	{
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		String document = tester.getLastResponseAsString();
+		for (File file : folder.listFiles())
+		{
+			Files.writeTo(file, new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+		}
+
+		restart();
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		assertEquals(document, tester.getLastResponseAsString());
+		assertEquals(0, loader.getRestoredCount());
+		assertEquals(2, loader.getStoredCount());
+	}
+
+	/**
+	 * Files containing objects which are not part of markup are not deserialized
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void foreignObject() throws Exception
+	{
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		String document = tester.getLastResponseAsString();
+		for (File file : folder.listFiles())
+		{
+			ObjectInputStream in = new ObjectInputStream(new FileInputStream(file));
+			int version = in.readInt();
+			Object key = in.readObject();
+			Object encoding = in.readObject();
+			Object doctype = in.readObject();
+			Object wicketNamespace = in.readObject();
+			@SuppressWarnings("unchecked")
+			List<Object> elements = (List<Object>)in.readObject();
+			in.close();
+
+			elements.add(new Foreign());
+			ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file));
+			out.writeInt(version);
+			out.writeObject(key);
+			out.writeObject(encoding);
+			out.writeObject(doctype);
+			out.writeObject(wicketNamespace);
+			out.writeObject(elements);
+			out.close();
+		}
+
+		Foreign.deserialized = false;
+		restart();
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		assertEquals(document, tester.getLastResponseAsString());
+		assertFalse(Foreign.deserialized);
+		assertEquals(0, loader.getRestoredCount());
+		assertEquals(2, loader.getStoredCount());
+	}
+
+	private static class Foreign implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private static boolean deserialized;
+
+		private void readObject(final ObjectInputStream in) throws IOException,
+			ClassNotFoundException
+		{
+			in.defaultReadObject();
+			deserialized = true;
+		}
+	}
+}
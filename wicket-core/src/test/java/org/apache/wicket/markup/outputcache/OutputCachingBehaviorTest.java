@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OutputCachingBehavior}.
+ */
+public class OutputCachingBehaviorTest extends WicketTestCase
+{
+	private final AtomicInteger preparations = new AtomicInteger();
+
+	private String render(final IModel<String> model)
+	{
+		tester.startPage(new OutputCachingPage(model, preparations));
+		tester.assertRenderedPage(OutputCachingPage.class);
+		return tester.getLastResponseAsString();
+	}
+
+	/**
+	 * The second render takes the markup and the header items from the cache, without preparing
+	 * the children for render.
+	 */
+	@Test
+	public void outputIsTakenFromCache()
+	{
+		String first = render(Model.of("one"));
+		assertEquals(1, preparations.get());
+		assertTrue(first.contains("<span wicket:id=\"label\">one</span>"));
+		assertTrue(first.contains("var label = 'one';"));
+
+		String second = render(Model.of("one"));
+		assertEquals(1, preparations.get());
+		assertEquals(first, second);
+
+		OutputCache cache = OutputCache.get(tester.getApplication());
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getStoreCount());
+	}
+
+	/**
+	 * Every key has its own output.
+	 */
+	@Test
+	public void outputPerKey()
+	{
+		render(Model.of("one"));
+		String two = render(Model.of("two"));
+		assertEquals(2, preparations.get());
+		assertTrue(two.contains("<span wicket:id=\"label\">two</span>"));
+		assertTrue(two.contains("var label = 'two';"));
+		assertFalse(two.contains("one"));
+
+		render(Model.of("one"));
+		render(Model.of("two"));
+		assertEquals(2, preparations.get());
+		assertEquals(2, OutputCache.get(tester.getApplication()).size());
+	}
+
+	/**
+	 * A {@code null} key disables caching.
+	 */
+	@Test
+	public void nullKeyIsNotCached()
+	{
+		render(new Model<String>());
+		render(new Model<String>());
+		assertEquals(2, preparations.get());
+
+		OutputCache cache = OutputCache.get(tester.getApplication());
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getMissCount());
+	}
+
+	/**
+	 * Invalidated outputs are rendered again.
+	 */
+	@Test
+	public void invalidate()
+	{
+		OutputCache cache = OutputCache.get(tester.getApplication());
+
+		render(Model.of("one"));
+		render(Model.of("two"));
+		assertEquals(1, cache.invalidate("one"));
+		assertEquals(1, cache.size());
+
+		render(Model.of("one"));
+		render(Model.of("two"));
+		assertEquals(3, preparations.get());
+
+		Class<? extends Component> cachedClass = tester.getLastRenderedPage()
+			.get("cached")
+			.getClass();
+		assertEquals(2, cache.invalidate(cachedClass));
+		assertEquals(0, cache.size());
+		assertEquals(3, cache.getInvalidationCount());
+
+		render(Model.of("two"));
+		assertEquals(4, preparations.get());
+	}
+
+	/**
+	 * Outputs exceeding the maximum size are evicted.
+	 */
+	@Test
+	public void eviction()
+	{
+		OutputCache.set(tester.getApplication(), new OutputCache(Bytes.bytes(200)));
+
+		render(Model.of("one"));
+		render(Model.of("two"));
+
+		OutputCache cache = OutputCache.get(tester.getApplication());
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertTrue(cache.getWeight() <= 200);
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.IModel;
+
+/**
+ * A page whose container output is cached under the object of a model.
+ */
+public class OutputCachingPage extends WebPage
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param model
+	 *            the model of the label, its object is the cache key
+	 * @param preparations
+	 *            counts the calls of the label's onBeforeRender()
+	 */
+	public OutputCachingPage(final IModel<String> model, final AtomicInteger preparations)
+	{
+		WebMarkupContainer cached = new WebMarkupContainer("cached")
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void renderHead(final IHeaderResponse response)
+			{
+				response.render(JavaScriptHeaderItem.forScript("var label = '" +
+					model.getObject() + "';", "label"));
+			}
+		};
+		cached.add(new Label("label", model)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void onBeforeRender()
+			{
+				preparations.incrementAndGet();
+				super.onBeforeRender();
+			}
+		});
+		cached.add(new OutputCachingBehavior(new IOutputCacheKeyProvider()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Object getCacheKey(final Component component)
+			{
+				return model.getObject();
+			}
+		}));
+		add(cached);
+	}
+}
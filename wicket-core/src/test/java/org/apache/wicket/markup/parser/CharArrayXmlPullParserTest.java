@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.markup.parser.IXmlPullParser.HttpTagType;
+import org.apache.wicket.util.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that {@link CharArrayXmlPullParser} produces exactly the same elements as
+ * {@link XmlPullParser}.
+ */
+public class CharArrayXmlPullParserTest extends Assert
+{
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void basics() throws Exception
+	{
+		final CharArrayXmlPullParser parser = new CharArrayXmlPullParser();
+		parser.parse("This is a text");
+		assertNull(parser.nextTag());
+
+		parser.parse("<wicket:panel a='1' b=\"2 \" c=3 d>text</wicket:panel>");
+		XmlTag tag = parser.nextTag();
+		assertTrue(tag.isOpen());
+		assertEquals("panel", tag.getName());
+		assertEquals("wicket", tag.getNamespace());
+		assertEquals("1", tag.getAttributes().getString("a"));
+		assertEquals("2", tag.getAttributes().getString("b"));
+		assertEquals("3", tag.getAttributes().getString("c"));
+		assertEquals("", tag.getAttributes().getString("d"));
+
+		tag = parser.nextTag();
+		assertTrue(tag.isClose());
+		assertEquals("panel", tag.getName());
+		assertNull(parser.nextTag());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void sameAsXmlPullParser() throws Exception
+	{
+		assertSameElements("");
+		assertSameElements("text only");
+		assertSameElements("<a href=\"x.html\" title='a &amp; b'>link</a>");
+		assertSameElements("<tag ></tag >");
+		assertSameElements("<br/><br />");
+		assertSameElements("<p\n class=\"c\"\r\n id=p1>x</p>\n<p>");
+		assertSameElements("<a wicket:id=\"x\" xmlns:wicket=\"http://wicket.apache.org\" a:b:c=d/>");
+		assertSameElements("<a data-x:y=1 1b=c ?? e=#f g= h='unterminated>");
+		assertSameElements("<a b=\"x>y\" c='>'>");
+		assertSameElements("<a b=\"it\\\"s\">");
+		assertSameElements("<a-b:c d>");
+		assertSameElements("<a:1 b>");
+		assertSameElements("<a href=\"foo\"bar>");
+		assertSameElements("<a b=\"  spaced  \" b2=' '>");
+		assertSameElements("<!-- comment with <b>tags</b> -->text");
+		assertSameElements("<!--[if IE]><a href='test.html'>my link</a><![endif]-->");
+		assertSameElements("<!--[if (gt IE9)|!(IE)]><!--><p>x</p><!--<![endif]-->");
+		assertSameElements("<![CDATA[ if (a > b && c < d) { } ]]>text");
+		assertSameElements("<?xml version=\"1.0\" encoding=\"UTF-8\"?><html/>");
+		assertSameElements("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0//EN\"><html/>");
+		assertSameElements("<!ELEMENT x>");
+		assertSameElements("<script type=\"text/javascript\">if (a<b) { x='</a>'; }</script>");
+		assertSameElements("<SCRIPT>var a='<b>';</SCRIPT ><style>p > a {}</style>");
+		assertSameElements("<style type=\"text/css\">p > a {}</STYLE>");
+		assertSameElements("<styles>x</styles>");
+
+		// errors
+		assertSameElements("<a");
+		assertSameElements("text <>");
+		assertSameElements("<1abc>");
+		assertSameElements("<a b=1 b=2>");
+		assertSameElements("<a b=\"1>");
+		assertSameElements("<!-- unclosed");
+		assertSameElements("<!--[if IE]> unclosed");
+		assertSameElements("<script>var a;");
+		assertSameElements("<script>var a;</script");
+	}
+
+	/**
+	 * Parses all markup files of the tests with both parsers.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void sameAsXmlPullParserForTestMarkup() throws Exception
+	{
+		List<File> files = new ArrayList<File>();
+		collectMarkupFiles(new File("src/test/java"), files);
+
+		for (File file : files)
+		{
+			assertSameElements(file.getPath(), readFile(file));
+		}
+	}
+
+	/**
+	 * @param directory
+	 * @param files
+	 */
+	static void collectMarkupFiles(final File directory, final List<File> files)
+	{
+		File[] children = directory.listFiles();
+		if (children == null)
+		{
+			return;
+		}
+		for (File child : children)
+		{
+			if (child.isDirectory())
+			{
+				collectMarkupFiles(child, files);
+			}
+			else if (child.getName().endsWith(".html"))
+			{
+				files.add(child);
+			}
+		}
+	}
+
+	/**
+	 * @param file
+	 * @return the content
+	 * @throws IOException
+	 */
+	static byte[] readFile(final File file) throws IOException
+	{
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			return IOUtils.toByteArray(in);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private void assertSameElements(final String markup) throws Exception
+	{
+		assertSameElements(markup, markup.getBytes("UTF-8"));
+	}
+
+	private void assertSameElements(final String name, final byte[] markup) throws Exception
+	{
+		XmlPullParser expected = new XmlPullParser();
+		expected.parse(new ByteArrayInputStream(markup));
+		CharArrayXmlPullParser actual = new CharArrayXmlPullParser();
+		actual.parse(new ByteArrayInputStream(markup));
+
+		assertEquals(name, expected.getEncoding(), actual.getEncoding());
+
+		while (true)
+		{
+			HttpTagType expectedType;
+			try
+			{
+				expectedType = expected.next();
+			}
+			catch (ParseException e)
+			{
+				try
+				{
+					actual.next();
+					fail(name + ": expected " + e.getMessage());
+				}
+				catch (ParseException e2)
+				{
+					assertEquals(name, e.getMessage(), e2.getMessage());
+					assertEquals(name, e.getErrorOffset(), e2.getErrorOffset());
+				}
+				return;
+			}
+
+			assertEquals(name, expectedType, actual.next());
+			if (expectedType == HttpTagType.NOT_INITIALIZED)
+			{
+				break;
+			}
+
+			assertEquals(name, toString(expected.getString()), toString(actual.getString()));
+			if (expectedType != HttpTagType.BODY)
+			{
+				assertSameTag(name, expected.getElement(), actual.getElement());
+			}
+			if (expectedType == HttpTagType.TAG)
+			{
+				// like MarkupParser does for each tag
+				int pos = expected.getElement().getPos();
+				assertEquals(name, expected.getInputFromPositionMarker(pos).toString(), actual
+					.getInputFromPositionMarker(pos).toString());
+				expected.setPositionMarker();
+				actual.setPositionMarker();
+			}
+		}
+
+		assertEquals(name, toString(expected.getDoctype()), toString(actual.getDoctype()));
+		assertEquals(name, expected.toString(), actual.toString());
+	}
+
+	private static void assertSameTag(final String name, final XmlTag expected, final XmlTag actual)
+	{
+		String message = name + ": " + expected.toString();
+		assertEquals(message, expected.getName(), actual.getName());
+		assertEquals(message, expected.getNamespace(), actual.getNamespace());
+		assertEquals(message, expected.getType(), actual.getType());
+		assertEquals(message, expected.getPos(), actual.getPos());
+		assertEquals(message, expected.getLength(), actual.getLength());
+		assertEquals(message, expected.getLineNumber(), actual.getLineNumber());
+		assertEquals(message, expected.getColumnNumber(), actual.getColumnNumber());
+		assertEquals(message, expected.getAttributes(), actual.getAttributes());
+		assertEquals(message, expected.toString(), actual.toString());
+	}
+
+	private static String toString(final CharSequence text)
+	{
+		return text == null ? null : text.toString();
+	}
+}
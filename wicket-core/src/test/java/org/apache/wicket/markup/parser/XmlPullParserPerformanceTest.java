@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.markup.parser.IXmlPullParser.HttpTagType;
+import org.apache.wicket.util.SlowTests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the parse throughput of {@link XmlPullParser} and {@link CharArrayXmlPullParser} over
+ * the markup of wicket-examples, or the markup of the tests if the examples are not available.
+ */
+@Category(SlowTests.class)
+public class XmlPullParserPerformanceTest extends Assert
+{
+	private static final Logger log = LoggerFactory.getLogger(XmlPullParserPerformanceTest.class);
+
+	private static final int ROUNDS = 5;
+
+	private static final int ITERATIONS = 10;
+
+	/**
+	 * The char[] parser must not be slower than the default one
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void throughput() throws Exception
+	{
+		List<File> files = new ArrayList<File>();
+		CharArrayXmlPullParserTest.collectMarkupFiles(new File("../wicket-examples/src/main/java"),
+			files);
+		if (files.isEmpty())
+		{
+			CharArrayXmlPullParserTest.collectMarkupFiles(new File("src/test/java"), files);
+		}
+
+		long bytes = 0;
+		List<byte[]> markup = new ArrayList<byte[]>();
+		for (File file : files)
+		{
+			byte[] content = CharArrayXmlPullParserTest.readFile(file);
+			markup.add(content);
+			bytes += content.length;
+		}
+
+		// warm up
+		measure(markup, false);
+		measure(markup, true);
+
+		long regex = measure(markup, false);
+		long charArray = measure(markup, true);
+		log.info("{} markup files, {} bytes: XmlPullParser {} MB/s, CharArrayXmlPullParser {} MB/s",
+			new Object[] { markup.size(), bytes, throughput(bytes, regex),
+					throughput(bytes, charArray) });
+
+		assertTrue(charArray < regex * 2);
+	}
+
+	private static String throughput(final long bytes, final long nanos)
+	{
+		return String.format("%.1f", (bytes * 1000.0) / nanos);
+	}
+
+	/**
+	 * @return the best time in nanos to parse all markup once
+	 */
+	private long measure(final List<byte[]> markup, final boolean charArray) throws Exception
+	{
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++)
+		{
+			long start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++)
+			{
+				for (byte[] content : markup)
+				{
+					parse(charArray ? new CharArrayXmlPullParser() : new XmlPullParser(), content);
+				}
+			}
+			best = Math.min(best, (System.nanoTime() - start) / ITERATIONS);
+		}
+		return best;
+	}
+
+	private static void parse(final IXmlPullParser parser, final byte[] content) throws Exception
+	{
+		parser.parse(new ByteArrayInputStream(content));
+		HttpTagType type;
+		while ((type = parser.next()) != HttpTagType.NOT_INITIALIZED)
+		{
+			if (type == HttpTagType.TAG)
+			{
+				parser.setPositionMarker();
+			}
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.page;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.wicket.core.util.lang.WicketObjects;
+import org.apache.wicket.util.SlowTests;
+import org.apache.wicket.util.time.Duration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.Timeout;
+
+/**
+ * Tests for {@link FairPageAccessSynchronizer}
+ */
+@Category(SlowTests.class)
+public class FairPageAccessSynchronizerTest extends Assert
+{
+	/**	 */
+	@Rule
+	public Timeout globalTimeout = new Timeout((int)Duration.seconds(30).getMilliseconds());
+
+	/**
+	 * A thread may lock a page several times and unlocks it once
+	 */
+	@Test
+	public void reentrant()
+	{
+		FairPageAccessSynchronizer sync = new FairPageAccessSynchronizer(Duration.seconds(5));
+		sync.lockPage(0);
+		sync.lockPage(0);
+		sync.lockPage(1);
+		assertEquals(2, sync.getLockCount());
+
+		sync.unlockPage(0);
+		assertEquals(1, sync.getLockCount());
+		sync.unlockAllPages();
+		assertEquals(0, sync.getLockCount());
+		assertEquals(2, sync.getStatistics().getWaitTimes().getCount());
+		assertEquals(2, sync.getStatistics().getHoldTimes().getCount());
+	}
+
+	/**
+	 * The waiting threads get the lock in the order in which they asked for it
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void fifo() throws Exception
+	{
+		final FairPageAccessSynchronizer sync = new FairPageAccessSynchronizer(
+			Duration.seconds(10));
+		final List<String> order = new CopyOnWriteArrayList<String>();
+
+		sync.lockPage(1);
+
+		Thread[] threads = new Thread[5];
+		for (int i = 0; i < threads.length; i++)
+		{
+			final String name = "t" + i;
+			threads[i] = new Thread(name)
+			{
+				@Override
+				public void run()
+				{
+					sync.lockPage(1);
+					order.add(name);
+					sync.unlockAllPages();
+				}
+			};
+			threads[i].start();
+			// let the thread get queued before the next one starts
+			while (threads[i].getState() != Thread.State.WAITING &&
+				threads[i].getState() != Thread.State.TIMED_WAITING)
+			{
+				Thread.sleep(5);
+			}
+		}
+
+		sync.unlockAllPages();
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertEquals("[t0, t1, t2, t3, t4]", order.toString());
+		assertEquals(0, sync.getLockCount());
+	}
+
+	/**
+	 * {@link CouldNotLockPageException} is thrown when the lock is not acquired in time
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void timeout() throws Exception
+	{
+		final FairPageAccessSynchronizer sync = new FairPageAccessSynchronizer(
+			Duration.milliseconds(100));
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+
+		Thread owner = new Thread("owner")
+		{
+			@Override
+			public void run()
+			{
+				sync.lockPage(1);
+				locked.countDown();
+				try
+				{
+					done.await();
+				}
+				catch (InterruptedException e)
+				{
+					throw new RuntimeException(e);
+				}
+				sync.unlockAllPages();
+			}
+		};
+		owner.start();
+		locked.await();
+
+		try
+		{
+			sync.lockPage(1);
+			fail("The lock should not have been acquired");
+		}
+		catch (CouldNotLockPageException expected)
+		{
+			assertEquals(1, expected.getPage());
+		}
+		finally
+		{
+			done.countDown();
+			owner.join();
+		}
+
+		assertEquals(1, sync.getStatistics().getTimeoutCount());
+		assertTrue(sync.getStatistics().getWaitTimes().getMaxNanos() >= Duration.milliseconds(
+			100).getMilliseconds() * 1000000);
+		assertEquals(0, sync.getLockCount());
+
+		// the page is available again
+		sync.lockPage(1);
+		sync.unlockAllPages();
+	}
+
+	/**
+	 * The synchronizer is stored in the session and has to be serializable
+	 */
+	@Test
+	public void serialization()
+	{
+		FairPageAccessSynchronizer sync = new FairPageAccessSynchronizer(Duration.seconds(5));
+		sync.lockPage(1);
+
+		FairPageAccessSynchronizer copy = (FairPageAccessSynchronizer)WicketObjects.cloneObject(sync);
+		assertEquals(0, copy.getLockCount());
+		copy.lockPage(1);
+		copy.unlockAllPages();
+		sync.unlockAllPages();
+	}
+}
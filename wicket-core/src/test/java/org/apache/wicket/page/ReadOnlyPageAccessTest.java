@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.page;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.MockPage;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.mock.MockPageManager;
+import org.apache.wicket.pageStore.memory.DummyPageManagerContext;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.util.time.Duration;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ReadOnlyPageAccess}
+ */
+public class ReadOnlyPageAccessTest extends WicketTestCase
+{
+	/**
+	 * Pages accessed read-only are locked for reading, touched pages are locked exclusively
+	 */
+	@Test
+	public void sharedLock()
+	{
+		PageAccessSynchronizer synchronizer = new PageAccessSynchronizer(Duration.seconds(2));
+		IPageManager pageManager = synchronizer.adapt(new MockPageManager());
+		pageManager.touchPage(new MockPage(1));
+		synchronizer.unlockAllPages();
+
+		assertFalse(ReadOnlyPageAccess.setActive(true));
+		try
+		{
+			assertNotNull(pageManager.getPage(1));
+			assertTrue(synchronizer.getLocks().get().get(1).isShared());
+			pageManager.touchPage(new MockPage(2));
+			assertEquals(Thread.currentThread(), synchronizer.getLocks().get().get(2).getThread());
+		}
+		finally
+		{
+			assertTrue(ReadOnlyPageAccess.setActive(false));
+		}
+
+		synchronizer.unlockAllPages();
+		assertTrue(synchronizer.getLocks().get().isEmpty());
+
+		assertNotNull(pageManager.getPage(1));
+		assertFalse(synchronizer.getLocks().get().get(1).isShared());
+	}
+
+	/**
+	 * Read-only requests share a page, a writing request waits for them and vice versa. The page
+	 * is detached by the last reader only.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void concurrentReadersAndWriter() throws InterruptedException
+	{
+		concurrentReadersAndWriter(new PageAccessSynchronizer(Duration.seconds(5)));
+	}
+
+	/**
+	 * #concurrentReadersAndWriter() with the {@link FairPageAccessSynchronizer}
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void fairConcurrentReadersAndWriter() throws InterruptedException
+	{
+		concurrentReadersAndWriter(new FairPageAccessSynchronizer(Duration.seconds(5)));
+	}
+
+	private void concurrentReadersAndWriter(PageAccessSynchronizer synchronizer)
+		throws InterruptedException
+	{
+		IPageManager pageManager = synchronizer.adapt(new MockPageManager());
+		DetachCountingPage page = new DetachCountingPage(1);
+		pageManager.touchPage(page);
+		synchronizer.unlockAllPages();
+
+		PageRequest reader1 = new PageRequest(pageManager, true);
+		PageRequest reader2 = new PageRequest(pageManager, true);
+		PageRequest writer = new PageRequest(pageManager, false);
+		PageRequest reader3 = new PageRequest(pageManager, true);
+
+		// the readers share the page
+		reader1.start();
+		assertTrue(reader1.accessed.await(5, TimeUnit.SECONDS));
+		reader2.start();
+		assertTrue(reader2.accessed.await(5, TimeUnit.SECONDS));
+
+		// the writer waits for all of them
+		writer.start();
+		assertFalse(writer.accessed.await(200, TimeUnit.MILLISECONDS));
+		reader1.finish();
+		assertFalse(writer.accessed.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(0, page.detaches.get());
+		reader2.finish();
+		assertTrue(writer.accessed.await(5, TimeUnit.SECONDS));
+		assertEquals(1, page.detaches.get());
+
+		// and a reader waits for the writer
+		reader3.start();
+		assertFalse(reader3.accessed.await(200, TimeUnit.MILLISECONDS));
+		writer.finish();
+		assertTrue(reader3.accessed.await(5, TimeUnit.SECONDS));
+		reader3.finish();
+		assertEquals(2, page.detaches.get());
+
+		for (PageRequest request : new PageRequest[] { reader1, reader2, writer, reader3 })
+		{
+			assertNull(request.failure);
+		}
+	}
+
+	/**
+	 * A page which counts how often it is detached
+	 */
+	private static class DetachCountingPage extends MockPage
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final AtomicInteger detaches = new AtomicInteger();
+
+		private DetachCountingPage(int pageId)
+		{
+			super(pageId);
+		}
+
+		@Override
+		public void detach()
+		{
+			detaches.incrementAndGet();
+		}
+	}
+
+	/**
+	 * A request which gets a page and holds it until it is finished
+	 */
+	private class PageRequest extends Thread
+	{
+		private final IPageManager pageManager;
+
+		private final boolean readOnly;
+
+		private final RequestCycle requestCycle;
+
+		private final CountDownLatch accessed = new CountDownLatch(1);
+
+		private final CountDownLatch finished = new CountDownLatch(1);
+
+		private volatile Throwable failure;
+
+		private PageRequest(IPageManager pageManager, boolean readOnly)
+		{
+			this.pageManager = pageManager;
+			this.readOnly = readOnly;
+			RequestCycle current = tester.getRequestCycle();
+			requestCycle = tester.getApplication().createRequestCycle(current.getRequest(),
+				current.getResponse());
+		}
+
+		@Override
+		public void run()
+		{
+			ThreadContext.setRequestCycle(requestCycle);
+			ReadOnlyPageAccess.setActive(readOnly);
+			try
+			{
+				assertNotNull(pageManager.getPage(1));
+				accessed.countDown();
+				finished.await();
+			}
+			catch (Throwable t)
+			{
+				failure = t;
+			}
+			finally
+			{
+				pageManager.commitRequest();
+				ThreadContext.detach();
+			}
+		}
+
+		private void finish() throws InterruptedException
+		{
+			finished.countDown();
+			join();
+		}
+	}
+
+	/**
+	 * Pages accessed read-only are not touched and thus not stored
+	 */
+	@Test
+	public void notTouched()
+	{
+		final IManageablePage page = new MockPage(1);
+		RequestAdapter adapter = new RequestAdapter(new DummyPageManagerContext())
+		{
+			@Override
+			protected IManageablePage getPage(int id)
+			{
+				return null;
+			}
+
+			@Override
+			protected void storeTouchedPages(List<IManageablePage> touchedPages)
+			{
+				fail("Pages accessed read-only must not be stored");
+			}
+
+			@Override
+			protected void newSessionCreated()
+			{
+			}
+		};
+
+		ReadOnlyPageAccess.setActive(true);
+		try
+		{
+			adapter.touch(page);
+		}
+		finally
+		{
+			ReadOnlyPageAccess.setActive(false);
+		}
+		assertNull(adapter.findPage(1));
+		adapter.commitRequest();
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.page.persistent.disk;
+
+import java.util.Random;
+
+import org.apache.wicket.pageStore.PageWindowManager;
+import org.apache.wicket.util.SlowTests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the time {@link PageWindowManager} and its former implementation
+ * {@link ListPageWindowManager} need for the same operations on a file with many small pages.
+ */
+@Category(SlowTests.class)
+public class PageWindowManagerPerformanceTest extends Assert
+{
+	private static final Logger log = LoggerFactory.getLogger(PageWindowManagerPerformanceTest.class);
+
+	/** 10MB file with pages of 1 - 9KB, i.e. about 2000 windows */
+	private static final long MAX_SIZE = 10 * 1024 * 1024;
+
+	private static final int OPERATIONS = 50000;
+
+	private static final int ROUNDS = 3;
+
+	/**
+	 * 
+	 */
+	@Test
+	public void compareWithListImplementation()
+	{
+		long listTime = Long.MAX_VALUE;
+		long arrayTime = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++)
+		{
+			listTime = Math.min(listTime, run(new ListOperations()));
+			arrayTime = Math.min(arrayTime, run(new ArrayOperations()));
+		}
+
+		log.info("{} operations took {}ms with the list and {}ms with the array implementation",
+			new Object[] { OPERATIONS, listTime / 1000000, arrayTime / 1000000 });
+		assertTrue(arrayTime < listTime);
+	}
+
+	private long run(Operations operations)
+	{
+		Random random = new Random(31);
+		int pageId = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < OPERATIONS; i++)
+		{
+			int operation = random.nextInt(10);
+			if (operation < 5)
+			{
+				// new page
+				operations.create(pageId++, 1024 + random.nextInt(8 * 1024));
+			}
+			else if (operation < 7)
+			{
+				// new version of one of the recent pages
+				operations.create(pageId - random.nextInt(Math.min(pageId, 100) + 1),
+					1024 + random.nextInt(8 * 1024));
+			}
+			else if (operation < 9)
+			{
+				operations.get(pageId - random.nextInt(Math.min(pageId, 3000) + 1));
+			}
+			else
+			{
+				operations.remove(pageId - random.nextInt(Math.min(pageId, 3000) + 1));
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private interface Operations
+	{
+		void create(int pageId, int size);
+
+		void get(int pageId);
+
+		void remove(int pageId);
+	}
+
+	private static class ArrayOperations implements Operations
+	{
+		private final PageWindowManager manager = new PageWindowManager(MAX_SIZE);
+
+		@Override
+		public void create(int pageId, int size)
+		{
+			manager.createPageWindow(pageId, size);
+		}
+
+		@Override
+		public void get(int pageId)
+		{
+			manager.getPageWindow(pageId);
+		}
+
+		@Override
+		public void remove(int pageId)
+		{
+			manager.removePage(pageId);
+		}
+	}
+
+	private static class ListOperations implements Operations
+	{
+		private final ListPageWindowManager manager = new ListPageWindowManager(MAX_SIZE);
+
+		@Override
+		public void create(int pageId, int size)
+		{
+			manager.createPageWindow(pageId, size);
+		}
+
+		@Override
+		public void get(int pageId)
+		{
+			manager.getPageWindow(pageId);
+		}
+
+		@Override
+		public void remove(int pageId)
+		{
+			manager.removePage(pageId);
+		}
+	}
+}
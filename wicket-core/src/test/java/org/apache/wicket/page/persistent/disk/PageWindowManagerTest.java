@@ -17,6 +17,8 @@
 package org.apache.wicket.page.persistent.disk;
 
 import java.security.SecureRandom;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -179,6 +181,80 @@ public class PageWindowManagerTest extends Assert
 		assertWindow(window, 8, 50, 10);
 	}
 
+	/**
+	 * Any int can be used as page id, {@link org.apache.wicket.pageStore.DeltaDataStore} stores
+	 * the deltas with the complement of the page id
+	 */
+	@Test
+	public void negativePageIds()
+	{
+		PageWindowManager manager = new PageWindowManager(300);
+
+		manager.createPageWindow(-1, 50);
+		manager.createPageWindow(Integer.MIN_VALUE, 40);
+		assertWindow(manager.getPageWindow(-1), -1, 0, 50);
+		assertWindow(manager.getPageWindow(Integer.MIN_VALUE), Integer.MIN_VALUE, 50, 40);
+
+		manager.removePage(-1);
+		assertNull(manager.getPageWindow(-1));
+		assertEquals(1, manager.getLastPageWindows(10).size());
+	}
+
+	/**
+	 * The windows are the same as the ones of the former implementation
+	 */
+	@Test
+	public void sameWindowsAsListImplementation()
+	{
+		Random random = new Random(17);
+		PageWindowManager manager = new PageWindowManager(5000);
+		ListPageWindowManager expected = new ListPageWindowManager(5000);
+
+		for (int i = 0; i < 20000; i++)
+		{
+			int pageId = random.nextInt(120);
+			int operation = random.nextInt(10);
+			if (operation < 6)
+			{
+				int size = 1 + random.nextInt(random.nextBoolean() ? 50 : 400);
+				PageWindow window = manager.createPageWindow(pageId, size);
+				ListPageWindowManager.PageWindow expectedWindow = expected.createPageWindow(pageId,
+					size);
+				assertWindow(window, expectedWindow.getPageId(),
+					expectedWindow.getFilePartOffset(), expectedWindow.getFilePartSize());
+			}
+			else if (operation < 8)
+			{
+				manager.removePage(pageId);
+				expected.removePage(pageId);
+			}
+			else
+			{
+				PageWindow window = manager.getPageWindow(pageId);
+				ListPageWindowManager.PageWindow expectedWindow = expected.getPageWindow(pageId);
+				if (expectedWindow == null)
+				{
+					assertNull(window);
+				}
+				else
+				{
+					assertWindow(window, expectedWindow.getPageId(),
+						expectedWindow.getFilePartOffset(), expectedWindow.getFilePartSize());
+				}
+			}
+			assertEquals(expected.getTotalSize(), manager.getTotalSize());
+		}
+
+		List<PageWindow> windows = manager.getLastPageWindows(200);
+		List<ListPageWindowManager.PageWindow> expectedWindows = expected.getLastPageWindows(200);
+		assertEquals(expectedWindows.size(), windows.size());
+		for (int i = 0; i < windows.size(); i++)
+		{
+			ListPageWindowManager.PageWindow expectedWindow = expectedWindows.get(i);
+			assertWindow(windows.get(i), expectedWindow.getPageId(),
+				expectedWindow.getFilePartOffset(), expectedWindow.getFilePartSize());
+		}
+	}
 
 	private void assertWindow(PageWindow window, int pageId, int filePartOffset, int filePartSize)
 	{
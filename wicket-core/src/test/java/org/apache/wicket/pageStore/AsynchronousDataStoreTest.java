@@ -17,11 +17,17 @@
 package org.apache.wicket.pageStore;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -77,6 +83,73 @@ public class AsynchronousDataStoreTest
 		DATA_STORE.destroy();
 	}
 
+	/**
+	 * Several writers save the pages of a session in the order they were stored, always by the
+	 * same thread.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void multipleWriters() throws Exception
+	{
+		final Map<String, List<Integer>> storedPages = new ConcurrentHashMap<String, List<Integer>>();
+		final Map<String, Thread> writers = new ConcurrentHashMap<String, Thread>();
+		final AtomicBoolean sharedSession = new AtomicBoolean(false);
+		IDataStore recordingStore = new InMemoryPageStore()
+		{
+			@Override
+			public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+			{
+				Thread previous = writers.put(sessionId, Thread.currentThread());
+				if (previous != null && previous != Thread.currentThread())
+				{
+					sharedSession.set(true);
+				}
+				storedPages.get(sessionId).add(pageId);
+				super.storeData(sessionId, pageId, pageAsBytes);
+			}
+		};
+
+		AsynchronousDataStore dataStore = new AsynchronousDataStore(recordingStore, 1000, 3);
+		Assert.assertEquals(3, dataStore.getWriterCount());
+
+		int pageCount = 100;
+		for (String sessionId : SESSIONS)
+		{
+			storedPages.put(sessionId, new ArrayList<Integer>());
+		}
+		for (int pageId = 0; pageId < pageCount; pageId++)
+		{
+			for (String sessionId : SESSIONS)
+			{
+				dataStore.storeData(sessionId, pageId, DATA);
+			}
+		}
+
+		int total = pageCount * SESSIONS.length;
+		long timeout = System.currentTimeMillis() + 10000;
+		while (dataStore.getAsynchronousStoreCount() + dataStore.getSynchronousStoreCount() < total &&
+			System.currentTimeMillis() < timeout)
+		{
+			Thread.sleep(10);
+		}
+		dataStore.destroy();
+
+		Assert.assertFalse(sharedSession.get());
+		Assert.assertEquals(0, dataStore.getQueueSize());
+		Assert.assertEquals(0, dataStore.getSynchronousStoreCount());
+		Assert.assertEquals(total, dataStore.getAsynchronousStoreCount());
+		for (String sessionId : SESSIONS)
+		{
+			List<Integer> pageIds = storedPages.get(sessionId);
+			Assert.assertEquals(pageCount, pageIds.size());
+			for (int pageId = 0; pageId < pageCount; pageId++)
+			{
+				Assert.assertEquals(Integer.valueOf(pageId), pageIds.get(pageId));
+			}
+		}
+	}
+
 	private static abstract class AbstractTask implements Runnable
 	{
 		protected abstract void r();
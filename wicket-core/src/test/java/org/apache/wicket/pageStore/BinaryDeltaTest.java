@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BinaryDelta}
+ */
+public class BinaryDeltaTest extends Assert
+{
+	private final Random random = new Random(42);
+
+	private byte[] randomBytes(int length)
+	{
+		byte[] data = new byte[length];
+		random.nextBytes(data);
+		return data;
+	}
+
+	private void assertDelta(byte[] base, byte[] target)
+	{
+		byte[] delta = BinaryDelta.create(base, target);
+		assertArrayEquals(target, BinaryDelta.apply(base, delta));
+	}
+
+	/**
+	 * Identical data results in a tiny delta
+	 */
+	@Test
+	public void identical()
+	{
+		byte[] base = randomBytes(10000);
+
+		byte[] delta = BinaryDelta.create(base, base.clone());
+		assertTrue(delta.length < 20);
+		assertArrayEquals(base, BinaryDelta.apply(base, delta));
+	}
+
+	/**
+	 * A few changed, inserted and removed bytes result in a small delta
+	 */
+	@Test
+	public void fewChanges()
+	{
+		byte[] base = randomBytes(20000);
+		byte[] target = new byte[base.length + 5];
+		System.arraycopy(base, 0, target, 0, 5000);
+		// insert five bytes
+		System.arraycopy(base, 5000, target, 5005, base.length - 5000);
+		// change some bytes
+		target[100] ^= 1;
+		target[12345] ^= 1;
+		target[target.length - 1] ^= 1;
+
+		byte[] delta = BinaryDelta.create(base, target);
+		assertTrue("delta too big: " + delta.length, delta.length < 200);
+		assertArrayEquals(target, BinaryDelta.apply(base, delta));
+	}
+
+	/**
+	 * Deltas between unrelated, short and empty arrays
+	 */
+	@Test
+	public void edgeCases()
+	{
+		assertDelta(new byte[0], new byte[0]);
+		assertDelta(new byte[0], randomBytes(100));
+		assertDelta(randomBytes(100), new byte[0]);
+		assertDelta(randomBytes(5), randomBytes(7));
+		assertDelta(randomBytes(1000), randomBytes(3000));
+
+		byte[] base = randomBytes(1000);
+		byte[] repeated = new byte[3000];
+		for (int i = 0; i < 3; i++)
+		{
+			System.arraycopy(base, 0, repeated, i * 1000, 1000);
+		}
+		assertDelta(base, repeated);
+	}
+
+	/**
+	 * A delta is not applied to another base
+	 */
+	@Test
+	public void anotherBase()
+	{
+		byte[] base = randomBytes(1000);
+		byte[] delta = BinaryDelta.create(base, randomBytes(1000));
+
+		assertNull(BinaryDelta.apply(randomBytes(1000), delta));
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.Random;
+
+import org.apache.wicket.pageStore.codec.DeflateCodec;
+import org.apache.wicket.pageStore.codec.FastBlockCodec;
+import org.apache.wicket.pageStore.codec.ICompressionCodec;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompressingDataStore}
+ */
+public class CompressingDataStoreTest extends Assert
+{
+	private static final String SESSION_ID = "sessionId";
+
+	private InMemoryPageStore wrapped;
+
+	private byte[] page;
+
+	/**
+	 * before()
+	 */
+	@Before
+	public void before()
+	{
+		wrapped = new InMemoryPageStore();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 500; i++)
+		{
+			text.append("component-").append(i % 17).append(' ');
+		}
+		page = new JavaSerializer("CompressingDataStoreTest").serialize(text.toString());
+	}
+
+	/**
+	 * The data is compressed and the codec id is stored in the first byte
+	 */
+	@Test
+	public void compress()
+	{
+		CompressingDataStore store = new CompressingDataStore(wrapped, new FastBlockCodec());
+		store.storeData(SESSION_ID, 1, page);
+
+		byte[] stored = wrapped.getData(SESSION_ID, 1);
+		assertEquals(FastBlockCodec.ID, stored[0]);
+		assertTrue(stored.length < page.length / 2);
+		assertArrayEquals(page, store.getData(SESSION_ID, 1));
+		assertEquals(page.length, store.getUncompressedBytes().bytes());
+		assertEquals(stored.length, store.getCompressedBytes().bytes());
+
+		store.removeData(SESSION_ID, 1);
+		assertNull(store.getData(SESSION_ID, 1));
+	}
+
+	/**
+	 * Data which doesn't get smaller is stored uncompressed
+	 */
+	@Test
+	public void incompressible()
+	{
+		byte[] noise = new byte[1000];
+		new Random(42).nextBytes(noise);
+
+		CompressingDataStore store = new CompressingDataStore(wrapped, new FastBlockCodec());
+		store.storeData(SESSION_ID, 1, noise);
+
+		assertEquals(CompressingDataStore.UNCOMPRESSED, wrapped.getData(SESSION_ID, 1)[0]);
+		assertArrayEquals(noise, store.getData(SESSION_ID, 1));
+	}
+
+	/**
+	 * Data written with another codec or without compression stays readable
+	 */
+	@Test
+	public void mixedCodecs()
+	{
+		new CompressingDataStore(wrapped, new DeflateCodec()).storeData(SESSION_ID, 1, page);
+		wrapped.storeData(SESSION_ID, 2, page);
+
+		CompressingDataStore store = new CompressingDataStore(wrapped, new FastBlockCodec());
+		store.storeData(SESSION_ID, 3, page);
+
+		assertEquals(DeflateCodec.ID, wrapped.getData(SESSION_ID, 1)[0]);
+		assertArrayEquals(page, store.getData(SESSION_ID, 1));
+		assertArrayEquals(page, store.getData(SESSION_ID, 2));
+		assertArrayEquals(page, store.getData(SESSION_ID, 3));
+	}
+
+	/**
+	 * Data of unknown codecs or another dictionary is treated as lost
+	 */
+	@Test
+	public void unreadable()
+	{
+		ICompressionCodec custom = new FastBlockCodec()
+		{
+			@Override
+			public byte getId()
+			{
+				return 42;
+			}
+		};
+		new CompressingDataStore(wrapped, custom).storeData(SESSION_ID, 1, page);
+		new CompressingDataStore(wrapped, new FastBlockCodec(page)).storeData(SESSION_ID, 2, page);
+
+		CompressingDataStore store = new CompressingDataStore(wrapped, new FastBlockCodec());
+		assertNull(store.getData(SESSION_ID, 1));
+		assertNull(store.getData(SESSION_ID, 2));
+
+		store = new CompressingDataStore(wrapped, new FastBlockCodec(), custom);
+		assertArrayEquals(page, store.getData(SESSION_ID, 1));
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeltaDataStore}
+ */
+public class DeltaDataStoreTest extends Assert
+{
+	private static final String SESSION_ID = "sessionId";
+
+	private static final int PAGE_ID = 3;
+
+	private final Random random = new Random(42);
+
+	private InMemoryPageStore wrapped;
+
+	private DeltaDataStore store;
+
+	/**
+	 * before()
+	 */
+	@Before
+	public void before()
+	{
+		wrapped = new InMemoryPageStore();
+		store = new DeltaDataStore(wrapped, 3);
+	}
+
+	private byte[] page()
+	{
+		byte[] data = new byte[10000];
+		random.nextBytes(data);
+		return data;
+	}
+
+	private static byte[] change(byte[] data, int index)
+	{
+		byte[] changed = data.clone();
+		changed[index] ^= 1;
+		return changed;
+	}
+
+	/**
+	 * The versions after the first one are stored as deltas until the maximum is reached
+	 */
+	@Test
+	public void deltas()
+	{
+		byte[] version = page();
+		store.storeData(SESSION_ID, PAGE_ID, version);
+		assertArrayEquals(version, store.getData(SESSION_ID, PAGE_ID));
+		assertEquals(10000, store.getSnapshotBytes().bytes());
+
+		for (int i = 1; i <= 3; i++)
+		{
+			version = change(version, i * 100);
+			store.storeData(SESSION_ID, PAGE_ID, version);
+			assertArrayEquals(version, store.getData(SESSION_ID, PAGE_ID));
+		}
+		assertEquals(10000, store.getSnapshotBytes().bytes());
+		assertTrue(store.getDeltaBytes().bytes() < 300);
+		assertNotNull(wrapped.getData(SESSION_ID, store.getDeltaId(PAGE_ID)));
+
+		// the fourth change is stored as a snapshot again
+		version = change(version, 5000);
+		store.storeData(SESSION_ID, PAGE_ID, version);
+		assertArrayEquals(version, store.getData(SESSION_ID, PAGE_ID));
+		assertEquals(20000, store.getSnapshotBytes().bytes());
+		assertNull(wrapped.getData(SESSION_ID, store.getDeltaId(PAGE_ID)));
+	}
+
+	/**
+	 * Unrelated versions are stored as snapshots
+	 */
+	@Test
+	public void bigChange()
+	{
+		store.storeData(SESSION_ID, PAGE_ID, page());
+		byte[] other = page();
+		store.storeData(SESSION_ID, PAGE_ID, other);
+
+		assertArrayEquals(other, store.getData(SESSION_ID, PAGE_ID));
+		assertEquals(20000, store.getSnapshotBytes().bytes());
+		assertEquals(0, store.getDeltaBytes().bytes());
+	}
+
+	/**
+	 * The delta of page 0 is stored under an id the {@link PageWindowManager} of a
+	 * {@link DiskDataStore} can index
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void firstPage() throws IOException
+	{
+		assertTrue(store.getDeltaId(0) < -1);
+
+		File folder = File.createTempFile("DeltaDataStoreTest", null);
+		folder.delete();
+		DiskDataStore disk = new DiskDataStore("app", folder, Bytes.megabytes(1));
+		try
+		{
+			store = new DeltaDataStore(disk, 10);
+			byte[] version = page();
+			store.storeData(SESSION_ID, 0, version);
+			for (int i = 1; i <= 5; i++)
+			{
+				version = change(version, i * 100);
+				store.storeData(SESSION_ID, 0, version);
+
+				// a new instance has no snapshot in memory
+				DeltaDataStore restarted = new DeltaDataStore(disk, 10);
+				assertArrayEquals(version, restarted.getData(SESSION_ID, 0));
+			}
+			assertTrue(store.getDeltaBytes().bytes() > 0);
+		}
+		finally
+		{
+			disk.destroy();
+			Files.removeFolder(folder);
+		}
+	}
+
+	/**
+	 * The pages can be read by a new instance, e.g. after a restart
+	 */
+	@Test
+	public void newInstance()
+	{
+		byte[] version = page();
+		store.storeData(SESSION_ID, PAGE_ID, version);
+		version = change(version, 10);
+		store.storeData(SESSION_ID, PAGE_ID, version);
+
+		DeltaDataStore other = new DeltaDataStore(wrapped, 3);
+		assertArrayEquals(version, other.getData(SESSION_ID, PAGE_ID));
+	}
+
+	/**
+	 * removeData()
+	 */
+	@Test
+	public void removeData()
+	{
+		byte[] version = page();
+		store.storeData(SESSION_ID, PAGE_ID, version);
+		store.storeData(SESSION_ID, PAGE_ID, change(version, 10));
+		store.storeData(SESSION_ID, PAGE_ID + 1, version);
+
+		store.removeData(SESSION_ID, PAGE_ID);
+		assertNull(store.getData(SESSION_ID, PAGE_ID));
+		assertNull(wrapped.getData(SESSION_ID, store.getDeltaId(PAGE_ID)));
+		assertArrayEquals(version, store.getData(SESSION_ID, PAGE_ID + 1));
+
+		store.removeData(SESSION_ID);
+		assertNull(store.getData(SESSION_ID, PAGE_ID + 1));
+	}
+
+	/**
+	 * The snapshot is stored again when the wrapped store has dropped it in favour of the more
+	 * recent deltas
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void snapshotDroppedByWrappedStore() throws IOException
+	{
+		File folder = File.createTempFile("DeltaDataStoreTest", null);
+		folder.delete();
+		DiskDataStore disk = new DiskDataStore("app", folder, Bytes.kilobytes(4));
+		try
+		{
+			store = new DeltaDataStore(disk, Integer.MAX_VALUE);
+			byte[] version = new byte[1000];
+			random.nextBytes(version);
+			for (int i = 0; i < 200; i++)
+			{
+				version = change(version, (i * 7) % version.length);
+				store.storeData(SESSION_ID, PAGE_ID, version);
+
+				// another page pushes the older entries out of the file
+				byte[] other = new byte[1000];
+				random.nextBytes(other);
+				store.storeData(SESSION_ID, PAGE_ID + 1, other);
+
+				// a new instance has no snapshot in memory
+				DeltaDataStore restarted = new DeltaDataStore(disk, Integer.MAX_VALUE);
+				assertArrayEquals(version, restarted.getData(SESSION_ID, PAGE_ID));
+			}
+			assertTrue(store.getSnapshotBytes().bytes() > 1000);
+			assertTrue(store.getDeltaBytes().bytes() > 0);
+		}
+		finally
+		{
+			disk.destroy();
+			Files.removeFolder(folder);
+		}
+	}
+}
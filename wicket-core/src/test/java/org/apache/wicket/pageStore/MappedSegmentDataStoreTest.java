@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.wicket.settings.def.StoreSettings;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MappedSegmentDataStore}
+ */
+public class MappedSegmentDataStoreTest extends Assert
+{
+	private static final String SESSION_ID = "sessionId";
+
+	private String applicationName;
+
+	private File fileStoreFolder;
+
+	private MappedSegmentDataStore store;
+
+	/**
+	 * before()
+	 */
+	@Before
+	public void before()
+	{
+		applicationName = "segments-" + UUID.randomUUID();
+		fileStoreFolder = new StoreSettings(null).getFileStoreFolder();
+		store = newStore(Bytes.megabytes(1));
+	}
+
+	/**
+	 * after()
+	 */
+	@After
+	public void after()
+	{
+		store.destroy();
+		Files.removeFolder(store.getStoreFolder());
+	}
+
+	private MappedSegmentDataStore newStore(Bytes maxSizePerSession)
+	{
+		return new MappedSegmentDataStore(applicationName, fileStoreFolder, maxSizePerSession,
+			Bytes.kilobytes(4), Duration.NONE);
+	}
+
+	private static byte[] data(int length, int value)
+	{
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte)value);
+		return data;
+	}
+
+	/**
+	 * storeData()
+	 */
+	@Test
+	public void storeData()
+	{
+		assertNull(store.getData(SESSION_ID, 1));
+
+		store.storeData(SESSION_ID, 1, data(100, 1));
+		store.storeData(SESSION_ID, 2, data(200, 2));
+
+		assertArrayEquals(data(100, 1), store.getData(SESSION_ID, 1));
+		assertArrayEquals(data(200, 2), store.getData(SESSION_ID, 2));
+		assertNull(store.getData("otherSession", 1));
+
+		store.storeData(SESSION_ID, 1, data(50, 3));
+		assertArrayEquals(data(50, 3), store.getData(SESSION_ID, 1));
+		assertEquals(250, store.getLiveSize().bytes());
+	}
+
+	/**
+	 * getDataBuffer()
+	 */
+	@Test
+	public void getDataBuffer()
+	{
+		store.storeData(SESSION_ID, 1, data(100, 1));
+
+		ByteBuffer buffer = store.getDataBuffer(SESSION_ID, 1);
+		assertTrue(buffer.isReadOnly());
+		assertEquals(100, buffer.remaining());
+		assertEquals(1, buffer.get(99));
+	}
+
+	/**
+	 * removeData()
+	 */
+	@Test
+	public void removeData()
+	{
+		store.storeData(SESSION_ID, 1, data(100, 1));
+		store.storeData(SESSION_ID, 2, data(100, 2));
+
+		store.removeData(SESSION_ID, 1);
+		assertNull(store.getData(SESSION_ID, 1));
+		assertNotNull(store.getData(SESSION_ID, 2));
+
+		store.removeData(SESSION_ID);
+		assertNull(store.getData(SESSION_ID, 2));
+		assertEquals(0, store.getLiveSize().bytes());
+	}
+
+	/**
+	 * The oldest pages are removed when a session exceeds its maximum size
+	 */
+	@Test
+	public void maxSizePerSession()
+	{
+		store.destroy();
+		store = newStore(Bytes.bytes(250));
+
+		store.storeData(SESSION_ID, 1, data(100, 1));
+		store.storeData(SESSION_ID, 2, data(100, 2));
+		store.storeData(SESSION_ID, 3, data(100, 3));
+
+		assertNull(store.getData(SESSION_ID, 1));
+		assertNotNull(store.getData(SESSION_ID, 2));
+		assertNotNull(store.getData(SESSION_ID, 3));
+	}
+
+	/**
+	 * Pages bigger than a segment get a segment on their own
+	 */
+	@Test
+	public void bigPage()
+	{
+		store.storeData(SESSION_ID, 1, data(10000, 1));
+
+		assertArrayEquals(data(10000, 1), store.getData(SESSION_ID, 1));
+	}
+
+	/**
+	 * compact()
+	 */
+	@Test
+	public void compact()
+	{
+		// fill a few segments
+		for (int i = 0; i < 40; i++)
+		{
+			store.storeData(SESSION_ID, i, data(1000, i));
+		}
+		int segmentCount = store.getSegmentCount();
+		assertTrue(segmentCount > 5);
+
+		// keep only every fourth page
+		for (int i = 0; i < 40; i++)
+		{
+			if (i % 4 != 0)
+			{
+				store.removeData(SESSION_ID, i);
+			}
+		}
+
+		store.compact();
+
+		assertTrue(store.getSegmentCount() < segmentCount);
+		assertEquals(10000, store.getLiveSize().bytes());
+		for (int i = 0; i < 40; i++)
+		{
+			if (i % 4 == 0)
+			{
+				assertArrayEquals(data(1000, i), store.getData(SESSION_ID, i));
+			}
+			else
+			{
+				assertNull(store.getData(SESSION_ID, i));
+			}
+		}
+	}
+
+	/**
+	 * The pages are still available after restart
+	 */
+	@Test
+	public void restart()
+	{
+		store.storeData(SESSION_ID, 1, data(3000, 1));
+		store.storeData(SESSION_ID, 2, data(3000, 2));
+		store.destroy();
+
+		store = newStore(Bytes.megabytes(1));
+
+		assertArrayEquals(data(3000, 1), store.getData(SESSION_ID, 1));
+		assertArrayEquals(data(3000, 2), store.getData(SESSION_ID, 2));
+
+		store.storeData(SESSION_ID, 3, data(100, 3));
+		assertArrayEquals(data(100, 3), store.getData(SESSION_ID, 3));
+	}
+
+	/**
+	 * Pages of truncated or missing segment files are expired after restart
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void restartWithTruncatedSegments() throws IOException
+	{
+		// every page goes to its own segment
+		store.storeData(SESSION_ID, 1, data(3000, 1));
+		store.storeData(SESSION_ID, 2, data(3000, 2));
+		store.storeData(SESSION_ID, 3, data(3000, 3));
+		store.destroy();
+
+		List<File> segmentFiles = new ArrayList<File>();
+		for (File file : store.getStoreFolder().listFiles())
+		{
+			if (file.getName().startsWith("segment-"))
+			{
+				segmentFiles.add(file);
+			}
+		}
+		assertEquals(3, segmentFiles.size());
+		Collections.sort(segmentFiles);
+
+		RandomAccessFile truncated = new RandomAccessFile(segmentFiles.get(1), "rw");
+		try
+		{
+			truncated.setLength(100);
+		}
+		finally
+		{
+			truncated.close();
+		}
+		assertTrue(segmentFiles.get(2).delete());
+
+		store = newStore(Bytes.megabytes(1));
+
+		assertArrayEquals(data(3000, 1), store.getData(SESSION_ID, 1));
+		assertNull(store.getData(SESSION_ID, 2));
+		assertNull(store.getData(SESSION_ID, 3));
+
+		store.storeData(SESSION_ID, 4, data(100, 4));
+		assertArrayEquals(data(100, 4), store.getData(SESSION_ID, 4));
+	}
+}
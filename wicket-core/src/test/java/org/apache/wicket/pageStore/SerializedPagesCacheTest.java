@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPage;
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPagesCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SerializedPagesCache}
+ */
+public class SerializedPagesCacheTest extends Assert
+{
+	/**
+	 * The pages are found by session id and page id
+	 */
+	@Test
+	public void storeAndGet()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(40, Long.MAX_VALUE, false);
+		SerializedPage page1 = new SerializedPage("s1", 1, new byte[10]);
+		SerializedPage page2 = new SerializedPage("s2", 1, new byte[20]);
+		cache.storePage(page1);
+		cache.storePage(page2);
+
+		assertSame(page1, cache.getPage("s1", 1));
+		assertSame(page2, cache.getPage("s2", 1));
+		assertNull(cache.getPage("s1", 2));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(2, cache.getSize());
+		assertEquals(30, cache.getByteSize());
+
+		SerializedPage page1b = new SerializedPage("s1", 1, new byte[15]);
+		cache.storePage(page1b);
+		assertSame(page1b, cache.getPage("s1", 1));
+		assertEquals(35, cache.getByteSize());
+	}
+
+	/**
+	 * The least recently used pages are removed when there are too many of them
+	 */
+	@Test
+	public void maxSize()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(1, Long.MAX_VALUE, false);
+		cache.storePage(new SerializedPage("s1", 1, new byte[1]));
+		cache.storePage(new SerializedPage("s1", 2, new byte[1]));
+
+		assertNull(cache.getPage("s1", 1));
+		assertNotNull(cache.getPage("s1", 2));
+		assertEquals(1, cache.getSize());
+	}
+
+	/**
+	 * The least recently used page of the whole cache is removed, no matter which segment it is in
+	 */
+	@Test
+	public void leastRecentlyUsedOfAllSegments()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(40, Long.MAX_VALUE, false);
+		for (int i = 0; i < 40; i++)
+		{
+			cache.storePage(new SerializedPage("s1", i, new byte[1]));
+		}
+		cache.getPage("s1", 0);
+		cache.storePage(new SerializedPage("s1", 40, new byte[1]));
+		cache.storePage(new SerializedPage("s1", 41, new byte[1]));
+
+		assertEquals(40, cache.getSize());
+		assertNotNull(cache.getPage("s1", 0));
+		assertNull(cache.getPage("s1", 1));
+		assertNull(cache.getPage("s1", 2));
+		for (int i = 3; i <= 41; i++)
+		{
+			assertNotNull(cache.getPage("s1", i));
+		}
+	}
+
+	/**
+	 * Without a byte limit even big pages are cached
+	 */
+	@Test
+	public void noByteLimit()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(40);
+		cache.storePage(new SerializedPage("s1", 1, new byte[5 * 1024 * 1024]));
+		assertNotNull(cache.getPage("s1", 1));
+	}
+
+	/**
+	 * The least recently used pages are removed when their data is too big
+	 */
+	@Test
+	public void maxBytes()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(4, 100, false);
+		cache.storePage(new SerializedPage("s1", 1, new byte[40]));
+		cache.storePage(new SerializedPage("s1", 2, new byte[40]));
+		cache.getPage("s1", 1);
+		cache.storePage(new SerializedPage("s1", 3, new byte[40]));
+
+		assertNotNull(cache.getPage("s1", 1));
+		assertNull(cache.getPage("s1", 2));
+		assertNotNull(cache.getPage("s1", 3));
+		assertEquals(80, cache.getByteSize());
+
+		// a page bigger than the whole cache is not cached at all
+		cache.storePage(new SerializedPage("s1", 4, new byte[101]));
+		assertNull(cache.getPage("s1", 4));
+		assertEquals(80, cache.getByteSize());
+	}
+
+	/**
+	 * Removal of single pages and of all pages of a session
+	 */
+	@Test
+	public void remove()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(40, Long.MAX_VALUE, true);
+		for (int i = 0; i < 10; i++)
+		{
+			cache.storePage(new SerializedPage("s1", i, new byte[1]));
+			cache.storePage(new SerializedPage("s2", i, new byte[1]));
+		}
+
+		assertNotNull(cache.removePage("s1", 3));
+		assertNull(cache.removePage("s1", 3));
+		assertEquals(19, cache.getSize());
+
+		cache.removePages("s1");
+		assertEquals(10, cache.getSize());
+		assertEquals(10, cache.getByteSize());
+		for (int i = 0; i < 10; i++)
+		{
+			assertNull(cache.getPage("s1", i));
+			assertNotNull(cache.getPage("s2", i));
+		}
+	}
+
+	/**
+	 * A cache with size 0 caches nothing
+	 */
+	@Test
+	public void disabled()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(0);
+		cache.storePage(new SerializedPage("s1", 1, new byte[1]));
+		assertNull(cache.getPage("s1", 1));
+		assertNull(cache.removePage("s1", 1));
+		assertEquals(0, cache.getSize());
+	}
+}
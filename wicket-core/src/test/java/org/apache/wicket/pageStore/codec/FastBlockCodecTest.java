@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.wicket.model.Model;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FastBlockCodec}, {@link DeflateCodec} and {@link CompressionDictionary}
+ */
+public class FastBlockCodecTest extends Assert
+{
+	private final Random random = new Random(42);
+
+	private final JavaSerializer serializer = new JavaSerializer("FastBlockCodecTest");
+
+	private byte[] page(final int index)
+	{
+		Map<String, Object> page = new HashMap<String, Object>();
+		page.put("parameters", new PageParameters().set("id", random.nextInt(1000)));
+		page.put("model", new Model<String>("value-" + index));
+		page.put("date", new Date(random.nextLong()));
+		page.put("list", new ArrayList<Integer>(Arrays.asList(random.nextInt(), random.nextInt())));
+		page.put("locale", Locale.US);
+		return serializer.serialize(page);
+	}
+
+	private static byte[] roundTrip(final ICompressionCodec codec, final byte[] data)
+	{
+		byte[] compressed = codec.compress(data);
+		byte[] padded = new byte[compressed.length + 3];
+		System.arraycopy(compressed, 0, padded, 3, compressed.length);
+		byte[] decompressed = codec.decompress(padded, 3);
+		assertArrayEquals(data, decompressed);
+		return compressed;
+	}
+
+	/**
+	 * Empty, incompressible, repetitive and long data
+	 */
+	@Test
+	public void roundTrips()
+	{
+		FastBlockCodec codec = new FastBlockCodec();
+
+		roundTrip(codec, new byte[0]);
+		roundTrip(codec, new byte[] { 1, 2, 3 });
+
+		byte[] noise = new byte[100000];
+		random.nextBytes(noise);
+		assertTrue(roundTrip(codec, noise).length < noise.length + noise.length / 100);
+
+		byte[] zeros = new byte[100000];
+		assertTrue(roundTrip(codec, zeros).length < 1000);
+
+		byte[] page = page(0);
+		assertTrue(roundTrip(codec, page).length < page.length);
+	}
+
+	/**
+	 * A trained dictionary makes the data smaller and must be the same for decompression
+	 */
+	@Test
+	public void dictionary()
+	{
+		List<byte[]> samples = new ArrayList<byte[]>();
+		for (int i = 0; i < 20; i++)
+		{
+			samples.add(page(i));
+		}
+		byte[] dictionary = CompressionDictionary.train(samples, 4 * 1024);
+		assertTrue(dictionary.length > 0);
+		assertTrue(dictionary.length <= 4 * 1024);
+
+		byte[] page = page(100);
+		FastBlockCodec withDictionary = new FastBlockCodec(dictionary);
+		FastBlockCodec withoutDictionary = new FastBlockCodec();
+		byte[] compressed = roundTrip(withDictionary, page);
+		assertTrue(compressed.length < roundTrip(withoutDictionary, page).length / 2);
+
+		assertNull(withoutDictionary.decompress(compressed, 0));
+		assertNull(new FastBlockCodec(new byte[] { 1, 2, 3 }).decompress(compressed, 0));
+	}
+
+	/**
+	 * {@link DeflateCodec} with and without dictionary
+	 */
+	@Test
+	public void deflate()
+	{
+		byte[] page = page(0);
+		byte[] dictionary = page(1);
+
+		DeflateCodec codec = new DeflateCodec();
+		assertTrue(roundTrip(codec, page).length < page.length);
+		roundTrip(codec, new byte[0]);
+
+		DeflateCodec withDictionary = new DeflateCodec(9, dictionary);
+		byte[] compressed = roundTrip(withDictionary, page);
+		assertNull(codec.decompress(compressed, 0));
+	}
+}
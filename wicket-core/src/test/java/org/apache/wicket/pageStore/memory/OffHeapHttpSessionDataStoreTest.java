@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore.memory;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.core.util.lang.WicketObjects;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OffHeapHttpSessionDataStore}
+ */
+public class OffHeapHttpSessionDataStoreTest extends WicketTestCase
+{
+	final String sessionId = "anything";
+
+	final byte[] PAGE1 = new byte[] { 1 };
+
+	final byte[] PAGE2 = createPage(3000);
+
+	DummyPageManagerContext context = new DummyPageManagerContext();
+
+	OffHeapHttpSessionDataStore store;
+
+	/**
+	 * after()
+	 */
+	@After
+	public void after()
+	{
+		if (store != null)
+		{
+			store.destroy();
+		}
+	}
+
+	/**
+	 * The pages are stored in blocks and can be read and removed
+	 */
+	@Test
+	public void storeAndRemove()
+	{
+		store = new OffHeapHttpSessionDataStore(context, new PageNumberEvictionStrategy(10),
+			Bytes.megabytes(1), Bytes.kilobytes(64), Bytes.kilobytes(1));
+
+		assertNull(store.getData(sessionId, 1));
+		store.storeData(sessionId, 1, PAGE1);
+		store.storeData(sessionId, 2, PAGE2);
+		assertArrayEquals(PAGE1, store.getData(sessionId, 1));
+		assertArrayEquals(PAGE2, store.getData(sessionId, 2));
+		assertEquals(Bytes.kilobytes(64), store.getCapacity());
+		assertEquals(Bytes.kilobytes(4), store.getUsedSize());
+
+		store.removeData(sessionId, 2);
+		assertNull(store.getData(sessionId, 2));
+		assertEquals(Bytes.kilobytes(1), store.getUsedSize());
+
+		store.removeData(sessionId);
+		assertNull(store.getData(sessionId, 1));
+		assertEquals(Bytes.bytes(0), store.getUsedSize());
+	}
+
+	/**
+	 * {@link MemorySizeEvictionStrategy} uses the size of the blocks
+	 */
+	@Test
+	public void memorySizeEviction()
+	{
+		store = new OffHeapHttpSessionDataStore(context, new MemorySizeEvictionStrategy(
+			Bytes.kilobytes(7)), Bytes.megabytes(1), Bytes.kilobytes(64), Bytes.kilobytes(1));
+
+		store.storeData(sessionId, 1, PAGE2);
+		store.storeData(sessionId, 2, PAGE1);
+		store.storeData(sessionId, 3, PAGE1);
+		assertNotNull(store.getData(sessionId, 1));
+
+		// 3 + 1 + 1 + 3 blocks, the least recently used page 2 is dropped
+		store.storeData(sessionId, 4, PAGE2);
+		assertNull(store.getData(sessionId, 2));
+		assertNotNull(store.getData(sessionId, 1));
+		assertNotNull(store.getData(sessionId, 3));
+		assertNotNull(store.getData(sessionId, 4));
+		assertEquals(Bytes.kilobytes(7), store.getUsedSize());
+	}
+
+	/**
+	 * The pages are kept in the heap when the off-heap memory is exhausted
+	 */
+	@Test
+	public void exhausted()
+	{
+		store = new OffHeapHttpSessionDataStore(context, new PageNumberEvictionStrategy(10),
+			Bytes.kilobytes(4), Bytes.kilobytes(4), Bytes.kilobytes(1));
+
+		store.storeData(sessionId, 1, PAGE2);
+		store.storeData(sessionId, 2, PAGE2);
+		assertEquals(Bytes.kilobytes(3), store.getUsedSize());
+		assertArrayEquals(PAGE2, store.getData(sessionId, 1));
+		assertArrayEquals(PAGE2, store.getData(sessionId, 2));
+	}
+
+	/**
+	 * The data is written with the serialized session and moved to the off-heap memory when the
+	 * deserialized table is used
+	 */
+	@Test
+	public void serialization()
+	{
+		store = new OffHeapHttpSessionDataStore(context, new PageNumberEvictionStrategy(10),
+			Bytes.megabytes(1), Bytes.kilobytes(64), Bytes.kilobytes(1));
+		store.storeData(sessionId, 1, PAGE2);
+
+		context.attribute = (OffHeapPageTable)WicketObjects.cloneObject(context.attribute);
+		assertArrayEquals(PAGE2, store.getData(sessionId, 1));
+		assertEquals(Bytes.kilobytes(6), store.getUsedSize());
+	}
+
+	/**
+	 * The blocks are released when the session is unbound
+	 */
+	@Test
+	public void unbound()
+	{
+		store = new OffHeapHttpSessionDataStore(context, new PageNumberEvictionStrategy(10),
+			Bytes.megabytes(1), Bytes.kilobytes(64), Bytes.kilobytes(1));
+		store.storeData(sessionId, 1, PAGE2);
+		assertEquals(Bytes.kilobytes(3), store.getUsedSize());
+
+		((OffHeapPageTable)context.attribute).valueUnbound(null);
+		assertEquals(Bytes.bytes(0), store.getUsedSize());
+	}
+
+	private static byte[] createPage(final int length)
+	{
+		byte[] page = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			page[i] = (byte)i;
+		}
+		return page;
+	}
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.protocol.http;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 
 import org.apache.wicket.WicketTestCase;
@@ -61,4 +62,26 @@ public class BufferedWebResponseTest extends WicketTestCase
 		assertEquals(0, actionsSequence.indexOf(TestAction.SET_HEADER));
 		assertEquals(1, actionsSequence.indexOf(TestAction.WRITE_RESPONSE));
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Asserting that a response buffered in a charset mixes text and pre-encoded bytes.
+	 */
+	public void testBufferedResponseWithCharset()
+	{
+		Charset utf8 = Charset.forName("UTF-8");
+		MockWebResponse originalResponse = new MockWebResponse();
+		BufferedWebResponse response = new BufferedWebResponse(originalResponse, utf8);
+		assertEquals(utf8, response.getPreEncodedCharset());
+
+		response.write("<p>");
+		response.write("Grüße".getBytes(utf8));
+		response.write("</p>");
+		assertEquals("<p>Grüße</p>", response.getText().toString());
+
+		response.setText("<p>Köln</p>");
+		assertEquals("<p>Köln</p>", response.getText().toString());
+
+		response.writeTo(originalResponse);
+		assertEquals("<p>Köln</p>", new String(originalResponse.getBinaryResponse(), utf8));
+	}
+}
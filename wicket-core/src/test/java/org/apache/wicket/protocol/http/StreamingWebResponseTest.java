@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import java.nio.charset.Charset;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.mock.MockWebResponse;
+import org.junit.Test;
+
+/**
+ * Tests for {@link StreamingWebResponse}
+ */
+public class StreamingWebResponseTest extends WicketTestCase
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Output is passed on when a chunk is full
+	 */
+	@Test
+	public void chunks()
+	{
+		MockWebResponse originalResponse = new MockWebResponse();
+		StreamingWebResponse response = new StreamingWebResponse(originalResponse, null, 10);
+
+		response.write("12345");
+		assertNull(originalResponse.getTextResponse());
+		assertEquals(5, response.getBufferedLength());
+		assertFalse(response.isCommitted());
+		assertEquals(-1, response.getTimeToFirstByte());
+
+		response.write("67890ab");
+		assertEquals("1234567890ab", originalResponse.getTextResponse().toString());
+		assertEquals(0, response.getBufferedLength());
+		assertTrue(response.isCommitted());
+		assertTrue(response.getTimeToFirstByte() >= 0);
+
+		response.write("cd");
+		response.flush();
+		assertEquals("1234567890abcd", originalResponse.getTextResponse().toString());
+		assertEquals(2, response.getFlushCount());
+		assertEquals(12, response.getMaxChunkSize());
+	}
+
+	/**
+	 * A flush without collected output doesn't commit the response
+	 */
+	@Test
+	public void emptyFlush()
+	{
+		MockWebResponse originalResponse = new MockWebResponse();
+		StreamingWebResponse response = new StreamingWebResponse(originalResponse, null, 10);
+
+		response.flush();
+		assertFalse(response.isCommitted());
+		assertEquals(0, response.getFlushCount());
+
+		response.write("12345");
+		response.flush();
+		response.flush();
+		assertTrue(response.isCommitted());
+		assertEquals(1, response.getFlushCount());
+	}
+
+	/**
+	 * Characters and pre-encoded bytes are mixed when streaming in a charset
+	 */
+	@Test
+	public void charset()
+	{
+		MockWebResponse originalResponse = new MockWebResponse();
+		StreamingWebResponse response = new StreamingWebResponse(originalResponse, UTF_8, 1024);
+		assertEquals(UTF_8, response.getPreEncodedCharset());
+
+		response.write("<p>");
+		response.write("Grüße".getBytes(UTF_8));
+		response.write("</p>");
+		response.flush();
+
+		assertEquals("<p>Grüße</p>", new String(originalResponse.getBinaryResponse(), UTF_8));
+	}
+
+	/**
+	 * Bytes can't be streamed as characters
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void bytesWithoutCharset()
+	{
+		StreamingWebResponse response = new StreamingWebResponse(new MockWebResponse(), null, 1024);
+		response.write(new byte[] { 1 });
+	}
+
+	/**
+	 * The response can be reset until it is committed
+	 */
+	@Test
+	public void reset()
+	{
+		MockWebResponse originalResponse = new MockWebResponse();
+		StreamingWebResponse response = new StreamingWebResponse(originalResponse, null, 1024);
+
+		response.setHeader("X-Test", "value");
+		assertEquals("value", originalResponse.getHeader("X-Test"));
+
+		response.write("discarded");
+		response.reset();
+		assertEquals(0, response.getBufferedLength());
+		assertFalse(originalResponse.hasHeader("X-Test"));
+
+		response.write("sent");
+		response.flush();
+		assertEquals("sent", originalResponse.getTextResponse().toString());
+
+		try
+		{
+			response.reset();
+			fail();
+		}
+		catch (IllegalStateException expected)
+		{
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.handler.render;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
+import org.apache.wicket.markup.head.filter.FilteredHeaderPage;
+import org.apache.wicket.markup.head.filter.JavaScriptFilteredIntoFooterHeaderResponse;
+import org.apache.wicket.markup.html.IHeaderResponseDecorator;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.list.Loop;
+import org.apache.wicket.markup.html.list.LoopItem;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.protocol.http.StreamingWebResponse;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.settings.IRequestCycleSettings.RenderStrategy;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RenderStrategy#ONE_PASS_STREAMING}
+ */
+public class StreamingPageRenderTest extends WicketTestCase
+{
+	@Override
+	protected WebApplication newApplication()
+	{
+		return new MockApplication()
+		{
+			@Override
+			public RuntimeConfigurationType getConfigurationType()
+			{
+				// development mode registers a response filter, which needs the whole page
+				return RuntimeConfigurationType.DEPLOYMENT;
+			}
+		};
+	}
+
+	/**
+	 * The head is flushed before the body is rendered
+	 */
+	@Test
+	public void headIsFlushedBeforeBody()
+	{
+		tester.getApplication().getRequestCycleSettings().setRenderStrategy(
+			RenderStrategy.ONE_PASS_STREAMING);
+
+		StreamedPage page = new StreamedPage(10);
+		tester.startPage(page);
+
+		assertTrue(page.headFlushed);
+		String document = tester.getLastResponseAsString();
+		assertTrue(document.contains("<script type=\"text/javascript\" >\n/*<![CDATA[*/\nvar streamed = true;"));
+		assertTrue(document.contains("<span>9</span></body>"));
+
+		PageRenderStatistics statistics = PageRenderStatistics.get(tester.getApplication());
+		assertEquals(1, statistics.getStreamedCount());
+		assertEquals(0, statistics.getBufferedCount());
+	}
+
+	/**
+	 * A big page is flushed in chunks
+	 */
+	@Test
+	public void bigPageIsFlushedInChunks()
+	{
+		tester.getApplication().getRequestCycleSettings().setRenderStrategy(
+			RenderStrategy.ONE_PASS_RENDER);
+		tester.startPage(new StreamedPage(10000));
+		String buffered = tester.getLastResponseAsString();
+
+		tester.getApplication().getRequestCycleSettings().setRenderStrategy(
+			RenderStrategy.ONE_PASS_STREAMING);
+		tester.startPage(new StreamedPage(10000));
+		assertEquals(buffered, tester.getLastResponseAsString());
+
+		PageRenderStatistics statistics = PageRenderStatistics.get(tester.getApplication());
+		assertEquals(1, statistics.getBufferedCount());
+		assertEquals(1, statistics.getStreamedCount());
+		assertTrue(statistics.getMeanFlushCount() > 2);
+		assertTrue(statistics.getMaxChunkSize() < statistics.getMaxBufferedSize());
+	}
+
+	/**
+	 * An exception thrown in the body after the head has been flushed is logged, no error page is
+	 * written into the partially sent page
+	 */
+	@Test
+	public void exceptionAfterHeadFlush()
+	{
+		tester.getApplication().getRequestCycleSettings().setRenderStrategy(
+			RenderStrategy.ONE_PASS_STREAMING);
+
+		StreamedPage page = new StreamedPage(10);
+		page.replace(new Label("loop")
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void onRender()
+			{
+				throw new IllegalStateException("rendering failed");
+			}
+		});
+		tester.startPage(page);
+
+		assertTrue(page.headFlushed);
+		String document = tester.getLastResponseAsString();
+		assertTrue(document.contains("var streamed = true;"));
+		assertFalse(document.contains("</body>"));
+		assertFalse(document.contains("rendering failed"));
+		assertEquals(0, PageRenderStatistics.get(tester.getApplication()).getStreamedCount());
+	}
+
+	/**
+	 * Header items filtered into the footer are still rendered
+	 */
+	@Test
+	public void filteredHeaderItems()
+	{
+		tester.getApplication().setHeaderResponseDecorator(new IHeaderResponseDecorator()
+		{
+			@Override
+			public IHeaderResponse decorate(IHeaderResponse response)
+			{
+				return new JavaScriptFilteredIntoFooterHeaderResponse(response, "footerJS");
+			}
+		});
+
+		tester.getApplication().getRequestCycleSettings().setRenderStrategy(
+			RenderStrategy.ONE_PASS_RENDER);
+		tester.startPage(FilteredHeaderPage.class);
+		String buffered = tester.getLastResponseAsString();
+
+		tester.getApplication().getRequestCycleSettings().setRenderStrategy(
+			RenderStrategy.ONE_PASS_STREAMING);
+		tester.startPage(FilteredHeaderPage.class);
+		assertEquals(buffered, tester.getLastResponseAsString());
+		assertTrue(buffered.contains("bottom.js"));
+
+		assertEquals(1, PageRenderStatistics.get(tester.getApplication()).getStreamedCount());
+	}
+
+	/**
+	 * A page with a header contribution and a number of labels
+	 */
+	private static class StreamedPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		private boolean headFlushed;
+
+		private StreamedPage(int count)
+		{
+			add(new Label("first", "first")
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void onRender()
+				{
+					headFlushed = getResponse() instanceof StreamingWebResponse &&
+						((StreamingWebResponse)getResponse()).isCommitted();
+					super.onRender();
+				}
+			});
+			add(new Loop("loop", count)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void populateItem(LoopItem item)
+				{
+					item.add(new Label("label", Integer.toString(item.getIndex())).setRenderBodyOnly(true));
+				}
+			});
+		}
+
+		@Override
+		public void renderHead(IHeaderResponse response)
+		{
+			response.render(JavaScriptHeaderItem.forScript("var streamed = true;", null));
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<html><head><title>streamed</title></head><body><span wicket:id='first'></span>" +
+					"<span wicket:id='loop'><span wicket:id='label'></span></span></body></html>");
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ContentRange}
+ */
+public class ContentRangeTest extends Assert
+{
+	/**
+	 * Single ranges are limited to the length of the resource
+	 */
+	@Test
+	public void singleRange()
+	{
+		assertEquals("[0-499]", ContentRange.parse("bytes=0-499", 1000).toString());
+		assertEquals("[500-999]", ContentRange.parse("bytes=500-", 1000).toString());
+		assertEquals("[900-999]", ContentRange.parse("bytes=-100", 1000).toString());
+		assertEquals("[0-999]", ContentRange.parse("bytes=-2000", 1000).toString());
+		assertEquals("[990-999]", ContentRange.parse("bytes=990-2000", 1000).toString());
+		assertEquals("[0-0]", ContentRange.parse("BYTES=0-0", 1000).toString());
+		assertEquals(500, ContentRange.parse("bytes=0-499", 1000).get(0).getLength());
+		assertEquals("bytes 0-499/1000",
+			ContentRange.parse("bytes=0-499", 1000).get(0).toHeaderValue(1000));
+	}
+
+	/**
+	 * Multiple ranges are sorted and coalesced
+	 */
+	@Test
+	public void multipleRanges()
+	{
+		assertEquals("[0-99, 200-299]",
+			ContentRange.parse("bytes=200-299, 0-99", 1000).toString());
+		assertEquals("[0-299]", ContentRange.parse("bytes=0-199,100-299", 1000).toString());
+		assertEquals("[0-299]", ContentRange.parse("bytes=0-99,100-299", 1000).toString());
+		assertEquals("[0-99, 900-999]",
+			ContentRange.parse("bytes=0-99,-100,2000-", 1000).toString());
+
+		StringBuilder header = new StringBuilder("bytes=");
+		for (int i = 0; i <= ContentRange.MAX_RANGES; i++)
+		{
+			header.append(i * 10).append('-').append(i * 10 + 1).append(',');
+		}
+		assertNull(ContentRange.parse(header.toString(), 1000));
+	}
+
+	/**
+	 * Ranges beyond the end of the resource are not satisfiable
+	 */
+	@Test
+	public void notSatisfiable()
+	{
+		List<ContentRange> ranges = ContentRange.parse("bytes=1000-", 1000);
+		assertNotNull(ranges);
+		assertTrue(ranges.isEmpty());
+		assertTrue(ContentRange.parse("bytes=-0", 1000).isEmpty());
+		assertTrue(ContentRange.parse("bytes=0-", 0).isEmpty());
+	}
+
+	/**
+	 * Invalid headers are ignored
+	 */
+	@Test
+	public void invalid()
+	{
+		assertNull(ContentRange.parse(null, 1000));
+		assertNull(ContentRange.parse("", 1000));
+		assertNull(ContentRange.parse("items=0-1", 1000));
+		assertNull(ContentRange.parse("bytes 0-1", 1000));
+		assertNull(ContentRange.parse("bytes=5-1", 1000));
+		assertNull(ContentRange.parse("bytes=a-b", 1000));
+		assertNull(ContentRange.parse("bytes=1", 1000));
+		assertNull(ContentRange.parse("bytes=--1", 1000));
+		assertNull(ContentRange.parse("bytes=+1-2", 1000));
+	}
+}
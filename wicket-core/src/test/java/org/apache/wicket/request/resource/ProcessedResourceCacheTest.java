@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.PackageResourceTest;
+import org.apache.wicket.request.resource.ProcessedResourceCache.ProcessedResource;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Time;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ProcessedResourceCache}
+ */
+public class ProcessedResourceCacheTest extends WicketTestCase
+{
+	private static int processed;
+
+	/**
+	 * The processed bytes are computed once and served for all later requests
+	 */
+	@Test
+	public void processOnce()
+	{
+		processed = 0;
+
+		for (int i = 0; i < 3; i++)
+		{
+			CountingPackageResource resource = new CountingPackageResource();
+			resource.setCacheProcessedResponse(true);
+			tester.startResource(resource);
+			assertEquals("TEST", tester.getLastResponseAsString());
+		}
+
+		assertEquals(1, processed);
+		ProcessedResourceCache cache = ProcessedResourceCache.get(tester.getApplication());
+		assertEquals(1, cache.size());
+		assertEquals(2, cache.getHits());
+	}
+
+	/**
+	 * Resources which don't enable the cache are processed for each request
+	 */
+	@Test
+	public void cachingDisabledByDefault()
+	{
+		processed = 0;
+
+		for (int i = 0; i < 3; i++)
+		{
+			tester.startResource(new CountingPackageResource());
+			assertEquals("TEST", tester.getLastResponseAsString());
+		}
+
+		assertEquals(3, processed);
+		assertEquals(0, ProcessedResourceCache.get(tester.getApplication()).size());
+	}
+
+	/**
+	 * Only the framework's own JavaScript and CSS resources are cached by default, subclasses may
+	 * process them depending on the request
+	 */
+	@Test
+	public void javaScriptAndCssCachedByDefault()
+	{
+		assertTrue(new JavaScriptPackageResource(PackageResourceTest.class, "packaged1.txt", null,
+			null, null).getCacheProcessedResponse());
+		assertTrue(new CssPackageResource(PackageResourceTest.class, "packaged1.txt", null, null,
+			null).getCacheProcessedResponse());
+
+		assertFalse(new JavaScriptPackageResource(PackageResourceTest.class, "packaged1.txt", null,
+			null, null)
+		{
+			private static final long serialVersionUID = 1L;
+		}.getCacheProcessedResponse());
+		assertFalse(new CssPackageResource(PackageResourceTest.class, "packaged1.txt", null, null,
+			null)
+		{
+			private static final long serialVersionUID = 1L;
+		}.getCacheProcessedResponse());
+	}
+
+	/**
+	 * An entry is outdated when the resource has been modified
+	 */
+	@Test
+	public void modified()
+	{
+		ProcessedResourceCache cache = new ProcessedResourceCache(Bytes.kilobytes(1), false);
+		Time modified = Time.millis(1000);
+
+		cache.put("key", new byte[] { 1, 2, 3 }, modified);
+		assertNotNull(cache.get("key", modified));
+		assertNull(cache.get("key", Time.millis(2000)));
+		assertNull(cache.get("key", modified));
+	}
+
+	/**
+	 * The compressed variants decompress to the processed bytes
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void compressedVariants() throws Exception
+	{
+		ProcessedResourceCache cache = new ProcessedResourceCache(Bytes.kilobytes(10), true);
+		byte[] data = "function a() { return 'aaaaaaaaaaaaaaaaaaaaaaaaaaaaaa'; }".getBytes("UTF-8");
+
+		ProcessedResource resource = cache.put("key", data, Time.millis(1000));
+		assertSame(data, resource.getData());
+		assertEquals(data.length + resource.getGzippedData().length +
+			resource.getDeflatedData().length, resource.getWeight());
+
+		assertArrayEquals(data, read(new GZIPInputStream(new ByteArrayInputStream(
+			resource.getGzippedData()))));
+		assertArrayEquals(data, read(new InflaterInputStream(new ByteArrayInputStream(
+			resource.getDeflatedData()))));
+	}
+
+	/**
+	 * The compressed variants computed after an entry has been stored count towards the maximum
+	 * size of the cache
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void compressedVariantsAreWeighed() throws Exception
+	{
+		byte[] data = new byte[400];
+		new Random(1).nextBytes(data);
+
+		ProcessedResourceCache cache = new ProcessedResourceCache(Bytes.bytes(1000), false);
+		ProcessedResource first = cache.put("first", data, Time.millis(1000));
+		ProcessedResource second = cache.put("second", data, Time.millis(1000));
+		assertEquals(800, cache.getWeight());
+
+		// random bytes don't shrink, the variants make the cache exceed its maximum size
+		int gzipped = second.getGzippedData().length;
+		assertTrue(gzipped > 200);
+		assertEquals(400 + gzipped, second.getWeight());
+		assertSame(second, cache.get("second", Time.millis(1000)));
+		assertNull(cache.get("first", Time.millis(1000)));
+		assertEquals(second.getWeight(), cache.getWeight());
+
+		// an entry which is no longer cached is not weighed again
+		first.getDeflatedData();
+		assertEquals(second.getWeight(), cache.getWeight());
+	}
+
+	private static byte[] read(InputStream in) throws Exception
+	{
+		try
+		{
+			return IOUtils.toByteArray(in);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private static class CountingPackageResource extends PackageResource
+	{
+		private static final long serialVersionUID = 1L;
+
+		private CountingPackageResource()
+		{
+			super(PackageResourceTest.class, "packaged1.txt", null, null, null);
+		}
+
+		@Override
+		protected byte[] processResponse(Attributes attributes, byte[] original)
+		{
+			processed++;
+			return super.processResponse(attributes, original);
+		}
+	}
+}
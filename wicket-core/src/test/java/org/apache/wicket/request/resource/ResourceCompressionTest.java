@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.settings.def.ResourceSettings;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the content encoding negotiation of {@link AbstractResource}
+ */
+public class ResourceCompressionTest extends WicketTestCase
+{
+	private static final String TEXT = "some text which is long enough to be compressed";
+
+	/**
+	 * Enables compression for all sizes
+	 */
+	@Before
+	public void before()
+	{
+		getResourceSettings().setCompressResponses(true);
+		getResourceSettings().setCompressionThreshold(Bytes.bytes(0));
+	}
+
+	private ResourceSettings getResourceSettings()
+	{
+		return (ResourceSettings)tester.getApplication().getResourceSettings();
+	}
+
+	/**
+	 * Negotiation honors quality values and wildcards
+	 */
+	@Test
+	public void negotiateContentEncoding()
+	{
+		assertNull(AbstractResource.negotiateContentEncoding(null));
+		assertNull(AbstractResource.negotiateContentEncoding(""));
+		assertNull(AbstractResource.negotiateContentEncoding("identity"));
+		assertNull(AbstractResource.negotiateContentEncoding("gzip;q=0, deflate;q=0"));
+		assertEquals("gzip", AbstractResource.negotiateContentEncoding("gzip"));
+		assertEquals("gzip", AbstractResource.negotiateContentEncoding("deflate, gzip"));
+		assertEquals("gzip", AbstractResource.negotiateContentEncoding("GZIP;q=0.5"));
+		assertEquals("gzip", AbstractResource.negotiateContentEncoding("*"));
+		assertEquals("deflate", AbstractResource.negotiateContentEncoding("deflate"));
+		assertEquals("deflate", AbstractResource.negotiateContentEncoding("gzip;q=0.2, deflate"));
+		assertEquals("deflate", AbstractResource.negotiateContentEncoding("gzip;q=0, *"));
+	}
+
+	/**
+	 * Dynamic resources are compressed while written
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void compressDynamicResource() throws IOException
+	{
+		tester.getRequest().setHeader("Accept-Encoding", "gzip, deflate");
+		tester.startResource(new ByteArrayResource("text/plain", TEXT.getBytes("UTF-8")));
+
+		MockHttpServletResponse response = tester.getLastResponse();
+		assertEquals("gzip", response.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+		assertEquals(TEXT, gunzip(response.getBinaryContent()));
+
+		tester.getRequest().setHeader("Accept-Encoding", "deflate");
+		tester.startResource(new ByteArrayResource("text/plain", TEXT.getBytes("UTF-8")));
+
+		response = tester.getLastResponse();
+		assertEquals("deflate", response.getHeader("Content-Encoding"));
+		assertEquals(TEXT, inflate(response.getBinaryContent()));
+	}
+
+	/**
+	 * Without an acceptable encoding the resource is sent as is, but still varies on the
+	 * encoding
+	 */
+	@Test
+	public void notAccepted()
+	{
+		tester.startResource(new ByteArrayResource("text/plain", TEXT.getBytes()));
+
+		MockHttpServletResponse response = tester.getLastResponse();
+		assertNull(response.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+		assertEquals(TEXT, response.getDocument());
+	}
+
+	/**
+	 * Responses below the threshold, not compressible types and disabled compression are sent
+	 * as is
+	 */
+	@Test
+	public void notCompressed()
+	{
+		tester.getRequest().setHeader("Accept-Encoding", "gzip");
+		getResourceSettings().setCompressionThreshold(Bytes.kilobytes(1));
+		tester.startResource(new ByteArrayResource("text/plain", TEXT.getBytes()));
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+		assertEquals(TEXT, tester.getLastResponse().getDocument());
+
+		getResourceSettings().setCompressionThreshold(Bytes.bytes(0));
+		tester.getRequest().setHeader("Accept-Encoding", "gzip");
+		tester.startResource(new ByteArrayResource("image/png", TEXT.getBytes()));
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+		assertNull(tester.getLastResponse().getHeader("Vary"));
+
+		getResourceSettings().setCompressResponses(false);
+		tester.getRequest().setHeader("Accept-Encoding", "gzip");
+		tester.startResource(new ByteArrayResource("text/plain", TEXT.getBytes()));
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+		assertNull(tester.getLastResponse().getHeader("Vary"));
+		assertEquals(TEXT, tester.getLastResponse().getDocument());
+	}
+
+	/**
+	 * Package resources are compressed once and served from the cache
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void compressPackageResource() throws IOException
+	{
+		for (int i = 0; i < 2; i++)
+		{
+			tester.getRequest().setHeader("Accept-Encoding", "gzip");
+			PackageResource resource = new PackageResource(ResourceCompressionTest.class,
+				"resource.txt", null, null, null);
+			resource.setCacheProcessedResponse(true);
+			tester.startResource(resource);
+
+			MockHttpServletResponse response = tester.getLastResponse();
+			assertEquals("gzip", response.getHeader("Content-Encoding"));
+			assertEquals("resource.txt", gunzip(response.getBinaryContent()));
+		}
+		assertEquals(1, ProcessedResourceCache.get(tester.getApplication()).getHits());
+	}
+
+	/**
+	 * A gzipped sibling of a package resource is sent instead of compressing the resource
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void precompressedPackageResource() throws IOException
+	{
+		tester.getRequest().setHeader("Accept-Encoding", "gzip");
+		tester.startResource(new PackageResource(ResourceCompressionTest.class, "compressed.txt",
+			null, null, null));
+
+		MockHttpServletResponse response = tester.getLastResponse();
+		assertEquals("gzip", response.getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", response.getHeader("Vary"));
+		assertEquals("precompressed resource\n", gunzip(response.getBinaryContent()));
+
+		tester.getRequest().setHeader("Accept-Encoding", "deflate");
+		tester.startResource(new PackageResource(ResourceCompressionTest.class, "compressed.txt",
+			null, null, null));
+
+		response = tester.getLastResponse();
+		assertEquals("deflate", response.getHeader("Content-Encoding"));
+		assertEquals("compressed resource\n", inflate(response.getBinaryContent()));
+	}
+
+	private static String gunzip(byte[] data) throws IOException
+	{
+		return read(new GZIPInputStream(new ByteArrayInputStream(data)));
+	}
+
+	private static String inflate(byte[] data) throws IOException
+	{
+		return read(new InflaterInputStream(new ByteArrayInputStream(data)));
+	}
+
+	private static String read(InputStream in) throws IOException
+	{
+		try
+		{
+			return new String(IOUtils.toByteArray(in), "UTF-8");
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
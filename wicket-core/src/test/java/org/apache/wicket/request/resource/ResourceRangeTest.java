@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.request.resource.caching.FilenameWithVersionResourceCachingStrategy;
+import org.apache.wicket.request.resource.caching.version.MessageDigestResourceVersion;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.resource.FileResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.time.Time;
+import org.junit.Test;
+
+/**
+ * Tests for <code>Range</code> and entity tag support of {@link AbstractResource}
+ */
+public class ResourceRangeTest extends WicketTestCase
+{
+	private static final String TEXT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+	/**
+	 * A single range is sent with a <code>Content-Range</code> header
+	 */
+	@Test
+	public void singleRange()
+	{
+		tester.getRequest().setHeader("Range", "bytes=10-15");
+		tester.startResource(new ResourceStreamResource(new StringResourceStream(TEXT)));
+
+		MockHttpServletResponse response = tester.getLastResponse();
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals("bytes 10-15/36", response.getHeader("Content-Range"));
+		assertEquals("bytes", response.getHeader("Accept-Ranges"));
+		assertEquals("6", response.getHeader("Content-Length"));
+		assertEquals("abcdef", response.getDocument());
+	}
+
+	/**
+	 * Multiple ranges are sent as parts of a multipart response
+	 */
+	@Test
+	public void multipleRanges()
+	{
+		tester.getRequest().setHeader("Range", "bytes=-2,0-1");
+		tester.startResource(new ResourceStreamResource(new StringResourceStream(TEXT,
+			"text/plain")));
+
+		MockHttpServletResponse response = tester.getLastResponse();
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertNull(response.getHeader("Content-Range"));
+
+		String contentType = response.getContentType();
+		assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+		String boundary = contentType.substring(contentType.indexOf('=') + 1);
+
+		String expected = "\r\n--" + boundary + "\r\n" + //
+			"Content-Type: text/plain\r\n" + //
+			"Content-Range: bytes 0-1/36\r\n" + //
+			"\r\n" + //
+			"01" + //
+			"\r\n--" + boundary + "\r\n" + //
+			"Content-Type: text/plain\r\n" + //
+			"Content-Range: bytes 34-35/36\r\n" + //
+			"\r\n" + //
+			"yz" + //
+			"\r\n--" + boundary + "--\r\n";
+		assertEquals(expected, response.getDocument());
+		assertEquals(String.valueOf(expected.length()), response.getHeader("Content-Length"));
+	}
+
+	/**
+	 * Ranges of files are transferred from the file channel
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void fileRanges() throws IOException
+	{
+		File file = File.createTempFile("wicket-range", ".txt");
+		try
+		{
+			OutputStream out = new FileOutputStream(file);
+			try
+			{
+				out.write(TEXT.getBytes("ISO-8859-1"));
+			}
+			finally
+			{
+				out.close();
+			}
+
+			tester.getRequest().setHeader("Range", "bytes=30-");
+			tester.startResource(new ResourceStreamResource(new FileResourceStream(file)));
+			assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, tester.getLastResponse()
+				.getStatus());
+			assertEquals("uvwxyz", tester.getLastResponse().getDocument());
+
+			tester.startResource(new ResourceStreamResource(new FileResourceStream(file)));
+			assertEquals(HttpServletResponse.SC_OK, tester.getLastResponse().getStatus());
+			assertEquals(TEXT, tester.getLastResponse().getDocument());
+		}
+		finally
+		{
+			Files.remove(file);
+		}
+	}
+
+	/**
+	 * Ranges beyond the end of the resource are answered with status 416
+	 */
+	@Test
+	public void notSatisfiable()
+	{
+		tester.getRequest().setHeader("Range", "bytes=100-200");
+		tester.startResource(new ResourceStreamResource(new StringResourceStream(TEXT)));
+
+		MockHttpServletResponse response = tester.getLastResponse();
+		assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+		assertEquals("bytes */36", response.getHeader("Content-Range"));
+		assertEquals("", response.getDocument());
+	}
+
+	/**
+	 * The whole resource is sent if it has changed since the <code>If-Range</code> validator
+	 */
+	@Test
+	public void ifRange()
+	{
+		tester.getRequest().setHeader("Range", "bytes=0-1");
+		tester.getRequest().setHeader("If-Range", "\"other\"");
+		tester.startResource(new TaggedResource("tag"));
+		assertEquals(HttpServletResponse.SC_OK, tester.getLastResponse().getStatus());
+		assertEquals(TEXT, tester.getLastResponse().getDocument());
+
+		tester.getRequest().setHeader("Range", "bytes=0-1");
+		tester.getRequest().setHeader("If-Range", "\"tag\"");
+		tester.startResource(new TaggedResource("tag"));
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, tester.getLastResponse()
+			.getStatus());
+		assertEquals("01", tester.getLastResponse().getDocument());
+
+		tester.getRequest().setHeader("Range", "bytes=0-1");
+		tester.getRequest().setHeader("If-Range", "W/\"tag\"");
+		tester.startResource(new TaggedResource("tag"));
+		assertEquals(HttpServletResponse.SC_OK, tester.getLastResponse().getStatus());
+	}
+
+	/**
+	 * A matching <code>If-None-Match</code> header results in status 304
+	 */
+	@Test
+	public void ifNoneMatch()
+	{
+		tester.startResource(new TaggedResource("tag"));
+		assertEquals("\"tag\"", tester.getLastResponse().getHeader("ETag"));
+		assertEquals(TEXT, tester.getLastResponse().getDocument());
+
+		tester.getRequest().setHeader("If-None-Match", "\"other\", W/\"tag\"");
+		tester.startResource(new TaggedResource("tag"));
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, tester.getLastResponse().getStatus());
+		assertEquals("\"tag\"", tester.getLastResponse().getHeader("ETag"));
+
+		tester.getRequest().setHeader("If-None-Match", "\"other\"");
+		tester.startResource(new TaggedResource("tag"));
+		assertEquals(HttpServletResponse.SC_OK, tester.getLastResponse().getStatus());
+		assertEquals(TEXT, tester.getLastResponse().getDocument());
+	}
+
+	/**
+	 * Package resources get the version of the caching strategy as entity tag
+	 */
+	@Test
+	public void packageResourceVersionAsETag()
+	{
+		tester.getApplication()
+			.getResourceSettings()
+			.setCachingStrategy(
+				new FilenameWithVersionResourceCachingStrategy(new MessageDigestResourceVersion()));
+
+		tester.startResource(new PackageResource(ResourceRangeTest.class, "resource.txt", null,
+			null, null));
+		String eTag = tester.getLastResponse().getHeader("ETag");
+		assertNotNull(eTag);
+
+		tester.getRequest().setHeader("If-None-Match", eTag);
+		tester.startResource(new PackageResource(ResourceRangeTest.class, "resource.txt", null,
+			null, null));
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, tester.getLastResponse().getStatus());
+
+		tester.getRequest().setHeader("Range", "bytes=0-7");
+		tester.startResource(new PackageResource(ResourceRangeTest.class, "resource.txt", null,
+			null, null));
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, tester.getLastResponse()
+			.getStatus());
+		assertEquals("resource", tester.getLastResponse().getDocument());
+	}
+
+	private static class TaggedResource extends AbstractResource
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String eTag;
+
+		private TaggedResource(String eTag)
+		{
+			this.eTag = eTag;
+		}
+
+		@Override
+		protected ResourceResponse newResourceResponse(Attributes attributes)
+		{
+			ResourceResponse response = new ResourceResponse();
+			response.setETag(eTag);
+			response.setLastModified(Time.millis(1000));
+			response.setContentLength(TEXT.length());
+			response.setAcceptRanges(true);
+			response.setWriteCallback(new WriteCallback()
+			{
+				@Override
+				public void writeData(Attributes attributes)
+				{
+					attributes.getResponse().write(TEXT);
+				}
+			});
+			return response;
+		}
+	}
+}
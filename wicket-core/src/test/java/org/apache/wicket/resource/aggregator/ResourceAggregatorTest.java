@@ -20,13 +20,16 @@ import static org.apache.wicket.markup.head.JavaScriptHeaderItem.forReference;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.WicketTestCase;
 import org.apache.wicket.markup.head.HeaderItem;
 import org.apache.wicket.markup.head.PriorityHeaderItem;
 import org.apache.wicket.markup.head.ResourceAggregator;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
 import org.apache.wicket.request.resource.ResourceReference;
 import org.apache.wicket.resource.CircularDependencyException;
 import org.junit.Before;
@@ -237,4 +240,32 @@ public class ResourceAggregatorTest extends WicketTestCase
 	{
 		aggregator.render(forReference(new ResourceReferenceCirc1()));
 	}
+
+	/**
+	 * render [e->b->a] several times, should resolve the dependencies of e only once
+	 */
+	@Test
+	public void testDependenciesResolvedOnce()
+	{
+		final AtomicInteger calls = new AtomicInteger();
+		ResourceReference referenceE = new JavaScriptResourceReference(
+			ResourceAggregatorTest.class, "e.js")
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Iterable<? extends HeaderItem> getDependencies()
+			{
+				calls.incrementAndGet();
+				return Collections.singletonList(forReference(new ResourceReferenceB()));
+			}
+		};
+
+		for (int i = 0; i < 10; i++)
+		{
+			aggregator.render(forReference(referenceE));
+		}
+		assertEquals(1, calls.get());
+		assertItems(new ResourceReferenceA(), new ResourceReferenceB(), referenceE);
+	}
 }
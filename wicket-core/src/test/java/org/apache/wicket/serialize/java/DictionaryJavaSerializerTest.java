@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import org.apache.wicket.MockPageWithLink;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DictionaryJavaSerializer}
+ */
+public class DictionaryJavaSerializerTest extends WicketTestCase
+{
+	/**
+	 * A page can be serialized and deserialized and takes less bytes than with
+	 * {@link JavaSerializer}
+	 */
+	@Test
+	public void page()
+	{
+		DictionaryJavaSerializer serializer = new DictionaryJavaSerializer("DictionaryJavaSerializerTest");
+		JavaSerializer javaSerializer = new JavaSerializer("DictionaryJavaSerializerTest");
+
+		MockPageWithLink page = new MockPageWithLink();
+		page.getPageParameters().set("key", "value");
+		page.add(new Label("label", "text"));
+
+		byte[] serialized = serializer.serialize(page);
+		assertNotNull(serialized);
+		assertTrue(serialized.length < javaSerializer.serialize(page).length);
+
+		MockPageWithLink deserialized = (MockPageWithLink)serializer.deserialize(serialized);
+		assertNotSame(page, deserialized);
+		assertEquals(page.getPageId(), deserialized.getPageId());
+		assertEquals("value", deserialized.getPageParameters().get("key").toString());
+		assertEquals("text", deserialized.get("label").getDefaultModelObject());
+	}
+
+	/**
+	 * The registry is shared by all serializations
+	 */
+	@Test
+	public void registryIsShared()
+	{
+		DictionaryJavaSerializer serializer = new DictionaryJavaSerializer("DictionaryJavaSerializerTest");
+		int size = serializer.getRegistry().size();
+
+		PageParameters parameters = new PageParameters().set("a", "b");
+		serializer.serialize(new Model<PageParameters>(parameters));
+		int sizeAfterFirst = serializer.getRegistry().size();
+		assertTrue(sizeAfterFirst > size);
+
+		serializer.serialize(new Model<PageParameters>(parameters));
+		assertEquals(sizeAfterFirst, serializer.getRegistry().size());
+	}
+
+	/**
+	 * Data written with another registry is ignored
+	 */
+	@Test
+	public void anotherRegistry()
+	{
+		byte[] serialized = new DictionaryJavaSerializer("DictionaryJavaSerializerTest").serialize(new Model<String>(
+			"value"));
+
+		assertNull(new DictionaryJavaSerializer("DictionaryJavaSerializerTest").deserialize(serialized));
+	}
+
+	/**
+	 * The checkers are run in development mode
+	 */
+	@Test
+	public void notDetachedModel()
+	{
+		assertTrue(tester.getApplication().usesDevelopmentConfig());
+		DictionaryJavaSerializer serializer = new DictionaryJavaSerializer("DictionaryJavaSerializerTest");
+
+		IModel<String> model = new NotDetachedModel();
+		model.getObject();
+		WebComponent component = new WebComponent("id", model);
+		byte[] serialized = serializer.serialize(component);
+		assertNull("The produced byte[] must be null if there was an error", serialized);
+	}
+
+	/**
+	 * A Model used for #notDetachedModel() test
+	 */
+	private static class NotDetachedModel extends LoadableDetachableModel<String>
+	{
+		@Override
+		protected String load()
+		{
+			return "loaded";
+		}
+	}
+}
@@ -180,6 +180,8 @@ public class Initializer implements IInitializer
 				":type=Application,name=DebugSettings"));
 			register(new MarkupSettings(application), new ObjectName(domain +
 				":type=Application,name=MarkupSettings"));
+			register(new MarkupCache(application), new ObjectName(domain +
+				":type=Application,name=MarkupCache"));
 			register(new ResourceSettings(application), new ObjectName(domain +
 				":type=Application,name=ResourceSettings"));
 			register(new PageSettings(application), new ObjectName(domain +
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.jmx;
+
+import java.io.IOException;
+
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.markup.IMarkupCache;
+
+/**
+ * Exposes the statistics of the markup cache for JMX.
+ */
+public class MarkupCache implements MarkupCacheMBean
+{
+	private final org.apache.wicket.Application application;
+
+	/**
+	 * Create.
+	 * 
+	 * @param application
+	 */
+	public MarkupCache(final org.apache.wicket.Application application)
+	{
+		this.application = application;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupCacheMBean#getSize()
+	 */
+	@Override
+	public int getSize() throws IOException
+	{
+		ThreadContext.setApplication(application);
+
+		try
+		{
+			IMarkupCache cache = application.getMarkupSettings().getMarkupFactory().getMarkupCache();
+			return cache != null ? cache.size() : -1;
+		}
+		finally
+		{
+			ThreadContext.detach();
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupCacheMBean#getHitCount()
+	 */
+	@Override
+	public long getHitCount() throws IOException
+	{
+		org.apache.wicket.markup.MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getHitCount() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupCacheMBean#getMissCount()
+	 */
+	@Override
+	public long getMissCount() throws IOException
+	{
+		org.apache.wicket.markup.MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getMissCount() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupCacheMBean#getHitRatio()
+	 */
+	@Override
+	public double getHitRatio() throws IOException
+	{
+		org.apache.wicket.markup.MarkupCache cache = getMarkupCache();
+		if (cache == null)
+		{
+			return -1;
+		}
+		long hits = cache.getHitCount();
+		long lookups = hits + cache.getMissCount();
+		return lookups > 0 ? (double)hits / lookups : 0;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupCacheMBean#getLoadCount()
+	 */
+	@Override
+	public long getLoadCount() throws IOException
+	{
+		org.apache.wicket.markup.MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getLoadCount() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupCacheMBean#getLoadTime()
+	 */
+	@Override
+	public long getLoadTime() throws IOException
+	{
+		org.apache.wicket.markup.MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getLoadTime().getMilliseconds() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupCacheMBean#getEvictionCount()
+	 */
+	@Override
+	public long getEvictionCount() throws IOException
+	{
+		org.apache.wicket.markup.MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getEvictionCount() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupCacheMBean#getWeight()
+	 */
+	@Override
+	public long getWeight() throws IOException
+	{
+		org.apache.wicket.markup.MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getWeight() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupCacheMBean#getMaxWeight()
+	 */
+	@Override
+	public long getMaxWeight() throws IOException
+	{
+		org.apache.wicket.markup.MarkupCache cache = getMarkupCache();
+		return cache != null ? cache.getMaxWeight() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupCacheMBean#resetStatistics()
+	 */
+	@Override
+	public void resetStatistics() throws IOException
+	{
+		org.apache.wicket.markup.MarkupCache cache = getMarkupCache();
+		if (cache != null)
+		{
+			cache.resetStatistics();
+		}
+	}
+
+	/**
+	 * @return the markup cache of the application or {@code null} if it is no
+	 *         {@link org.apache.wicket.markup.MarkupCache}
+	 */
+	private org.apache.wicket.markup.MarkupCache getMarkupCache()
+	{
+		ThreadContext.setApplication(application);
+
+		try
+		{
+			IMarkupCache cache = application.getMarkupSettings().getMarkupFactory().getMarkupCache();
+			if (cache instanceof org.apache.wicket.markup.MarkupCache)
+			{
+				return (org.apache.wicket.markup.MarkupCache)cache;
+			}
+			return null;
+		}
+		finally
+		{
+			ThreadContext.detach();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.jmx;
+
+import java.io.IOException;
+
+/**
+ * MBean interface for the statistics of the markup cache. All values are -1 if the application
+ * doesn't use a {@link org.apache.wicket.markup.MarkupCache}.
+ */
+public interface MarkupCacheMBean
+{
+	/**
+	 * @return the number of cached markups
+	 * @throws IOException
+	 */
+	int getSize() throws IOException;
+
+	/**
+	 * @return the number of markups found in the cache
+	 * @throws IOException
+	 */
+	long getHitCount() throws IOException;
+
+	/**
+	 * @return the number of markups not found in the cache
+	 * @throws IOException
+	 */
+	long getMissCount() throws IOException;
+
+	/**
+	 * @return the ratio of hits to all lookups, between 0 and 1
+	 * @throws IOException
+	 */
+	double getHitRatio() throws IOException;
+
+	/**
+	 * @return the number of markups loaded from their resources
+	 * @throws IOException
+	 */
+	long getLoadCount() throws IOException;
+
+	/**
+	 * @return the total time spent loading markups in milliseconds
+	 * @throws IOException
+	 */
+	long getLoadTime() throws IOException;
+
+	/**
+	 * @return the number of markups evicted from the bounded cache
+	 * @throws IOException
+	 */
+	long getEvictionCount() throws IOException;
+
+	/**
+	 * @return the weight of the cached markups, -1 if the cache is not bounded
+	 * @throws IOException
+	 */
+	long getWeight() throws IOException;
+
+	/**
+	 * @return the maximum weight of the cached markups, 0 if the cache is not bounded
+	 * @see org.apache.wicket.markup.MarkupCache#getMaxWeight()
+	 * @throws IOException
+	 */
+	long getMaxWeight() throws IOException;
+
+	/**
+	 * Resets the hit, miss, load and eviction counters.
+	 * 
+	 * @throws IOException
+	 */
+	void resetStatistics() throws IOException;
+}
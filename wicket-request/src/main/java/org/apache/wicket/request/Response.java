@@ -18,8 +18,10 @@ package org.apache.wicket.request;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.string.Strings;
 
 /**
  * Abstract base class for different implementations of response writing.
@@ -32,6 +34,9 @@ import org.apache.wicket.util.lang.Args;
  */
 public abstract class Response
 {
+	/** lazily created for {@link #writeEscapedMarkup(CharSequence, boolean, boolean)} */
+	private AppendableAdapter appendable;
+
 	/**
 	 * Writes the {@link CharSequence} to output.
 	 * 
@@ -41,6 +46,56 @@ public abstract class Response
 	 */
 	public abstract void write(CharSequence sequence);
 
+	/**
+	 * Writes a part of the {@link CharSequence} to output. By default a subsequence is written,
+	 * responses which buffer characters may override this method to copy the characters directly.
+	 * 
+	 * @param sequence
+	 * @param start
+	 *            the index of the first character to write
+	 * @param end
+	 *            the index after the last character to write
+	 * @throws IllegalStateException
+	 *             if {@link #write(byte[])} has already been called on this instance
+	 */
+	public void write(final CharSequence sequence, final int start, final int end)
+	{
+		write(sequence.subSequence(start, end));
+	}
+
+	/**
+	 * Writes the {@link CharSequence} to output with the markup sensitive characters escaped as by
+	 * {@link Strings#escapeMarkup(CharSequence, boolean, boolean)}, but without building the
+	 * escaped string first: the parts which need no escaping are written with
+	 * {@link #write(CharSequence, int, int)}, the entities in between.
+	 * 
+	 * @param sequence
+	 *            the characters to escape, nothing is written if {@code null}
+	 * @param escapeSpaces
+	 *            True to replace ' ' with nonbreaking space
+	 * @param convertToHtmlUnicodeEscapes
+	 *            True to convert non-7 bit characters to unicode HTML (&#...)
+	 * @throws IllegalStateException
+	 *             if {@link #write(byte[])} has already been called on this instance
+	 */
+	public final void writeEscapedMarkup(final CharSequence sequence, final boolean escapeSpaces,
+		final boolean convertToHtmlUnicodeEscapes)
+	{
+		if (appendable == null)
+		{
+			appendable = new AppendableAdapter(this);
+		}
+		try
+		{
+			Strings.escapeMarkup(sequence, escapeSpaces, convertToHtmlUnicodeEscapes, appendable);
+		}
+		catch (IOException e)
+		{
+			// the adapter does not throw
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Writes the buffer to output.
 	 * 
@@ -67,6 +122,20 @@ public abstract class Response
 	 */
 	public abstract void write(byte[] array, int offset, int length);
 
+	/**
+	 * Returns the charset of the characters this response takes pre-encoded, if any. A response
+	 * which returns a charset allows to mix {@link #write(CharSequence)} with {@link #write(byte[])}
+	 * for characters encoded in this charset, so callers can write bytes they have encoded and
+	 * cached once instead of encoding the same characters on each request.
+	 * 
+	 * @return the charset or {@code null} if characters must be written with
+	 *         {@link #write(CharSequence)}
+	 */
+	public Charset getPreEncodedCharset()
+	{
+		return null;
+	}
+
 	/**
 	 * Closes the response
 	 */
@@ -156,4 +225,35 @@ public abstract class Response
 		}
 	}
 
+	private static class AppendableAdapter implements Appendable
+	{
+		private final Response response;
+
+		public AppendableAdapter(Response response)
+		{
+			this.response = response;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq)
+		{
+			response.write(csq);
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end)
+		{
+			response.write(csq, start, end);
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c)
+		{
+			response.write(String.valueOf(c));
+			return this;
+		}
+	}
+
 }
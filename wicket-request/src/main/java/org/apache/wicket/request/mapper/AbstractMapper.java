@@ -75,6 +75,30 @@ public abstract class AbstractMapper implements IRequestMapper
 		}
 	}
 
+	/**
+	 * Returns the leading segments which are neither placeholders nor optional placeholders.
+	 * 
+	 * @param segments
+	 *            the mount segments
+	 * @param max
+	 *            maximum number of segments to return
+	 * @return the fixed leading segments
+	 * @see IPrefixedRequestMapper#getPrefixSegments()
+	 */
+	protected String[] getFixedLeadingSegments(final String[] segments, final int max)
+	{
+		int count = 0;
+		while (count < segments.length && count < max && getPlaceholder(segments[count]) == null &&
+			getOptionalPlaceholder(segments[count]) == null)
+		{
+			count++;
+		}
+
+		String[] fixed = new String[count];
+		System.arraycopy(segments, 0, fixed, 0, count);
+		return fixed;
+	}
+
 	/**
 	 * Construct.
 	 */
@@ -18,10 +18,13 @@ package org.apache.wicket.request.mapper;
 
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.wicket.request.IRequestHandler;
@@ -36,6 +39,10 @@ import org.slf4j.LoggerFactory;
  * Thread safe compound {@link IRequestMapper}. The mappers are searched depending on their
  * compatibility score and the orders they were registered. If two or more {@link IRequestMapper}s
  * have the same compatibility score, the last registered mapper has highest priority.
+ * <p>
+ * {@link IPrefixedRequestMapper}s are indexed in a trie of their prefix segments, so only the
+ * mappers whose prefix matches the url of a request, and all mappers without prefix, are scored
+ * and tried.
  * 
  * @author igor.vaynberg
  * @author Matej Knopp
@@ -100,19 +107,114 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 		}
 	}
 
+	/**
+	 * Index of the registered mappers by their prefix segments
+	 */
+	private static final class MapperIndex
+	{
+		/** the mappers in the order they are tried */
+		private final IRequestMapper[] mappers;
+
+		/** positions of the mappers without prefix */
+		private final BitSet unprefixed = new BitSet();
+
+		private final Node root = new Node();
+
+		private MapperIndex(final List<IRequestMapper> list)
+		{
+			mappers = list.toArray(new IRequestMapper[list.size()]);
+
+			for (int position = 0; position < mappers.length; position++)
+			{
+				String[] prefix = null;
+				if (mappers[position] instanceof IPrefixedRequestMapper)
+				{
+					prefix = ((IPrefixedRequestMapper)mappers[position]).getPrefixSegments();
+				}
+
+				if (prefix == null)
+				{
+					unprefixed.set(position);
+				}
+				else
+				{
+					Node node = root;
+					for (String segment : prefix)
+					{
+						node = node.getChild(segment);
+					}
+					node.positions.set(position);
+				}
+			}
+		}
+
+		/**
+		 * @param url
+		 * @return the positions of the mappers which may map the url
+		 */
+		private BitSet getCandidates(final Url url)
+		{
+			BitSet candidates = (BitSet)unprefixed.clone();
+			Node node = root;
+			candidates.or(node.positions);
+			for (String segment : url.getSegments())
+			{
+				node = node.children.get(segment);
+				if (node == null)
+				{
+					break;
+				}
+				candidates.or(node.positions);
+			}
+			return candidates;
+		}
+	}
+
+	/**
+	 * A node of the segment trie
+	 */
+	private static final class Node
+	{
+		private final Map<String, Node> children = new HashMap<String, Node>();
+
+		/** positions of the mappers with the prefix ending at this node */
+		private final BitSet positions = new BitSet();
+
+		private Node getChild(final String segment)
+		{
+			Node child = children.get(segment);
+			if (child == null)
+			{
+				child = new Node();
+				children.put(segment, child);
+			}
+			return child;
+		}
+	}
+
 	private final List<IRequestMapper> mappers = new CopyOnWriteArrayList<IRequestMapper>();
 
+	private volatile MapperIndex index = new MapperIndex(mappers);
+
 	@Override
 	public CompoundRequestMapper add(final IRequestMapper mapper)
 	{
-		mappers.add(0, mapper);
+		synchronized (mappers)
+		{
+			mappers.add(0, mapper);
+			index = new MapperIndex(mappers);
+		}
 		return this;
 	}
 
 	@Override
 	public CompoundRequestMapper remove(final IRequestMapper mapper)
 	{
-		mappers.remove(mapper);
+		synchronized (mappers)
+		{
+			mappers.remove(mapper);
+			index = new MapperIndex(mappers);
+		}
 		return this;
 	}
 
@@ -120,7 +222,7 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 * Searches the registered {@link IRequestMapper}s to find one that can map the {@link Request}.
 	 * Each registered {@link IRequestMapper} is asked to provide its compatibility score. Then the
 	 * mappers are asked to map the request in order depending on the provided compatibility
-	 * score.
+	 * score. {@link IPrefixedRequestMapper}s whose prefix does not match the url are skipped.
 	 * <p>
 	 * The mapper with highest compatibility score which can map the request is returned.
 	 * 
@@ -131,19 +233,37 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	@Override
 	public IRequestHandler mapRequest(final Request request)
 	{
-		List<MapperWithScore> list = new ArrayList<MapperWithScore>(mappers.size());
+		final MapperIndex current = index;
+		final Url url = request.getUrl();
 
-		for (IRequestMapper mapper : mappers)
+		List<MapperWithScore> list;
+		if (url == null || url.getSegments().isEmpty())
+		{
+			// the home page may be mapped by any mapper
+			list = new ArrayList<MapperWithScore>(current.mappers.length);
+			for (IRequestMapper mapper : current.mappers)
+			{
+				int score = mapper.getCompatibilityScore(request);
+				list.add(new MapperWithScore(mapper, score));
+			}
+		}
+		else
 		{
-			int score = mapper.getCompatibilityScore(request);
-			list.add(new MapperWithScore(mapper, score));
+			BitSet candidates = current.getCandidates(url);
+			list = new ArrayList<MapperWithScore>(candidates.cardinality());
+			for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+			{
+				IRequestMapper mapper = current.mappers[i];
+				int score = mapper.getCompatibilityScore(request);
+				list.add(new MapperWithScore(mapper, score));
+			}
 		}
 
 		Collections.sort(list);
 
 		if (LOG.isDebugEnabled())
 		{
-			logMappers(list, request.getUrl().toString());
+			logMappers(list, String.valueOf(url));
 		}
 
 		for (MapperWithScore mapperWithScore : list)
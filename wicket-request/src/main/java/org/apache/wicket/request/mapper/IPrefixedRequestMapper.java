@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Url;
+
+/**
+ * A request mapper which maps only urls starting with a fixed sequence of segments, e.g. the static
+ * part of a mount path. This allows {@link CompoundRequestMapper} to index the mappers by these
+ * segments and to skip the mappers of other mount paths without asking them for their
+ * compatibility score.
+ * <p>
+ * Urls without any segments, i.e. the home page, are offered to all mappers.
+ */
+public interface IPrefixedRequestMapper extends IRequestMapper
+{
+	/**
+	 * Returns the segments every url mapped by this mapper starts with. For any {@link Url} with at
+	 * least one segment which does not start with these segments
+	 * {@link #mapRequest(org.apache.wicket.request.Request)} must return <code>null</code>.
+	 * 
+	 * @return the leading segments, an empty array or <code>null</code> if the mapper may map urls
+	 *         with any segments
+	 */
+	String[] getPrefixSegments();
+}
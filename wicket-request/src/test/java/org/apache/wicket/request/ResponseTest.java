@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link Response}
+ */
+public class ResponseTest
+{
+	/**
+	 * Escaped markup is written in parts, without building the escaped string first.
+	 */
+	@Test
+	public void writeEscapedMarkup()
+	{
+		RecordingResponse response = new RecordingResponse();
+		response.writeEscapedMarkup("a < b & c", false, false);
+		response.writeEscapedMarkup(null, false, false);
+		response.writeEscapedMarkup("plain", false, false);
+
+		assertEquals("[a , &lt;,  b , &amp;,  c, plain]", response.writes.toString());
+	}
+
+	/**
+	 * Spaces and non-ASCII characters are escaped on request.
+	 */
+	@Test
+	public void writeEscapedMarkupSpacesAndUnicode()
+	{
+		RecordingResponse response = new RecordingResponse();
+		response.writeEscapedMarkup("à la", true, true);
+
+		assertEquals("[&#, 224, ;, &nbsp;, la]", response.writes.toString());
+	}
+
+	private static class RecordingResponse extends Response
+	{
+		private final List<String> writes = new ArrayList<String>();
+
+		@Override
+		public void write(CharSequence sequence)
+		{
+			writes.add(sequence.toString());
+		}
+
+		@Override
+		public void write(byte[] array)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void write(byte[] array, int offset, int length)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String encodeURL(CharSequence url)
+		{
+			return url.toString();
+		}
+
+		@Override
+		public Object getContainerResponse()
+		{
+			return null;
+		}
+	}
+}
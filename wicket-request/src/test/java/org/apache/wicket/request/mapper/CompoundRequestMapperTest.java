@@ -16,6 +16,9 @@
  */
 package org.apache.wicket.request.mapper;
 
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.handler.EmptyRequestHandler;
 import org.apache.wicket.request.mapper.CompoundRequestMapper.MapperWithScore;
@@ -60,6 +63,89 @@ public class CompoundRequestMapperTest extends Assert
 			compound.mapRequest(compound.createRequest(Url.parse(MOUNT_PATH_3))) instanceof EmptyRequestHandler);
 	}
 
+	/**
+	 * Mappers of other mount paths are not asked for their compatibility score.
+	 */
+	@Test
+	public void skipMappersOfOtherPrefixes()
+	{
+		CountingMapper mapper1 = new CountingMapper(MOUNT_PATH_1);
+		CountingMapper mapper2 = new CountingMapper(MOUNT_PATH_2);
+		CountingMapper other = new CountingMapper("other/path");
+
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		compound.add(mapper1).add(mapper2).add(other);
+
+		assertNotNull(compound.mapRequest(compound.createRequest(Url.parse(MOUNT_PATH_2 + "/x"))));
+		assertEquals(0, mapper1.scored);
+		assertEquals(1, mapper2.scored);
+		assertEquals(0, other.scored);
+
+		assertNull(compound.mapRequest(compound.createRequest(Url.parse("mount/path"))));
+		assertEquals(0, mapper1.scored);
+		assertEquals(1, mapper2.scored);
+		assertEquals(0, other.scored);
+	}
+
+	/**
+	 * Placeholders end the prefix of a mount path.
+	 */
+	@Test
+	public void placeholderInMountPath()
+	{
+		EmptyRequestHandler handler = new EmptyRequestHandler();
+
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		compound.add(new MountMapper("mount/${name}/path", handler));
+		compound.add(new MountMapper(MOUNT_PATH_1, new EmptyRequestHandler()));
+
+		assertSame(handler, compound.mapRequest(compound.createRequest(Url.parse("mount/x/path"))));
+		assertSame(handler, compound.mapRequest(compound.createRequest(Url.parse("mount/path/path"))));
+		assertNull(compound.mapRequest(compound.createRequest(Url.parse("mount/x/other"))));
+	}
+
+	/**
+	 * Mappers without prefix are always tried, in the order of their score and registration.
+	 */
+	@Test
+	public void unprefixedMappers()
+	{
+		EmptyRequestHandler mounted = new EmptyRequestHandler();
+		EmptyRequestHandler first = new EmptyRequestHandler();
+		EmptyRequestHandler last = new EmptyRequestHandler();
+
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		compound.add(new UnprefixedMapper(first, 0));
+		compound.add(new MountMapper(MOUNT_PATH_1, mounted));
+		compound.add(new UnprefixedMapper(last, 0));
+
+		// the mount mapper has the higher score
+		assertSame(mounted, compound.mapRequest(compound.createRequest(Url.parse(MOUNT_PATH_1))));
+
+		// the last registered mapper wins on equal score
+		assertSame(last, compound.mapRequest(compound.createRequest(Url.parse(MOUNT_PATH_2))));
+
+		compound.add(new UnprefixedMapper(first, 10));
+		assertSame(first, compound.mapRequest(compound.createRequest(Url.parse(MOUNT_PATH_1))));
+	}
+
+	/**
+	 * Urls without segments are offered to all mappers.
+	 */
+	@Test
+	public void homePage()
+	{
+		CountingMapper mapper1 = new CountingMapper(MOUNT_PATH_1);
+		CountingMapper mapper2 = new CountingMapper(MOUNT_PATH_2);
+
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		compound.add(mapper1).add(mapper2);
+
+		assertNull(compound.mapRequest(compound.createRequest(Url.parse(""))));
+		assertEquals(1, mapper1.scored);
+		assertEquals(1, mapper2.scored);
+	}
+
 	/**
 	 * Test {@link MapperWithScore#compareTo(MapperWithScore)}.
 	 */
@@ -82,4 +168,51 @@ public class CompoundRequestMapperTest extends Assert
 	{
 		return new MapperWithScore(null, score);
 	}
+
+	private static class CountingMapper extends MountMapper
+	{
+		private int scored;
+
+		private CountingMapper(String mountPath)
+		{
+			super(mountPath, new EmptyRequestHandler());
+		}
+
+		@Override
+		public int getCompatibilityScore(Request request)
+		{
+			scored++;
+			return super.getCompatibilityScore(request);
+		}
+	}
+
+	private static class UnprefixedMapper implements IRequestMapper
+	{
+		private final IRequestHandler handler;
+		private final int score;
+
+		private UnprefixedMapper(IRequestHandler handler, int score)
+		{
+			this.handler = handler;
+			this.score = score;
+		}
+
+		@Override
+		public IRequestHandler mapRequest(Request request)
+		{
+			return handler;
+		}
+
+		@Override
+		public int getCompatibilityScore(Request request)
+		{
+			return score;
+		}
+
+		@Override
+		public Url mapHandler(IRequestHandler requestHandler)
+		{
+			return null;
+		}
+	}
 }
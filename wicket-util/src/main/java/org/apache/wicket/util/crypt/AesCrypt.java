@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.crypt;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+
+/**
+ * Encrypts and authenticates strings with AES in CBC mode and a HMAC-SHA256 over the initialization
+ * vector and the cipher text (encrypt-then-MAC). Other than {@link SunJceCrypt} the keys are
+ * derived from {@link #getKey()} once only, using PBKDF2, and the {@link Cipher} and {@link Mac}
+ * instances are kept per thread, so encrypting many urls of a page is cheap.
+ * <p>
+ * Each encryption uses a new random initialization vector, thus encrypting the same text twice
+ * results in different cipher texts. Tampered cipher texts are rejected before they are decrypted.
+ * 
+ * @see CachingCrypt
+ */
+public class AesCrypt extends AbstractCrypt
+{
+	/** Name of the cipher transformation */
+	private static final String CIPHER = "AES/CBC/PKCS5Padding";
+
+	/** Name of the MAC algorithm */
+	private static final String MAC = "HmacSHA256";
+
+	/** Name of the key derivation algorithm */
+	private static final String KEY_DERIVATION = "PBKDF2WithHmacSHA1";
+
+	/** Iteration count of the key derivation */
+	private static final int ITERATIONS = 1024;
+
+	/** length of the AES key in bytes, 128 bits are available on all JREs */
+	private static final int CIPHER_KEY_LENGTH = 16;
+
+	/** length of the HMAC key in bytes */
+	private static final int MAC_KEY_LENGTH = 32;
+
+	/** length of the initialization vector, i.e. the AES block size */
+	private static final int IV_LENGTH = 16;
+
+	/** length of the truncated MAC appended to the cipher text */
+	private static final int TAG_LENGTH = 16;
+
+	/** Salt */
+	private static final byte[] SALT = { (byte)0x57, (byte)0x1c, (byte)0xe7, (byte)0x3a,
+			(byte)0x9d, (byte)0x42, (byte)0x08, (byte)0xf1 };
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private static final ThreadLocal<Cipher> CIPHERS = new ThreadLocal<Cipher>();
+
+	private static final ThreadLocal<Mac> MACS = new ThreadLocal<Mac>();
+
+	/** the keys derived from {@link #getKey()} */
+	private volatile SecretKey[] keys;
+
+	/**
+	 * @see org.apache.wicket.util.crypt.AbstractCrypt#setKey(java.lang.String)
+	 */
+	@Override
+	public void setKey(final String key)
+	{
+		super.setKey(key);
+		keys = null;
+	}
+
+	/**
+	 * Crypts the given byte array
+	 * 
+	 * @param input
+	 *            byte array to be crypted
+	 * @param mode
+	 *            crypt mode
+	 * @return the input crypted
+	 * @throws GeneralSecurityException
+	 */
+	@Override
+	protected final byte[] crypt(final byte[] input, final int mode)
+		throws GeneralSecurityException
+	{
+		SecretKey[] secretKeys = getSecretKeys();
+		Cipher cipher = getCipher();
+		Mac mac = getMac();
+		mac.init(secretKeys[1]);
+
+		if (mode == Cipher.ENCRYPT_MODE)
+		{
+			byte[] iv = new byte[IV_LENGTH];
+			RANDOM.nextBytes(iv);
+			cipher.init(Cipher.ENCRYPT_MODE, secretKeys[0], new IvParameterSpec(iv));
+
+			byte[] output = new byte[IV_LENGTH + cipher.getOutputSize(input.length) + TAG_LENGTH];
+			System.arraycopy(iv, 0, output, 0, IV_LENGTH);
+			int length = IV_LENGTH + cipher.doFinal(input, 0, input.length, output, IV_LENGTH);
+
+			mac.update(output, 0, length);
+			System.arraycopy(mac.doFinal(), 0, output, length, TAG_LENGTH);
+			length += TAG_LENGTH;
+
+			if (length == output.length)
+			{
+				return output;
+			}
+			byte[] trimmed = new byte[length];
+			System.arraycopy(output, 0, trimmed, 0, length);
+			return trimmed;
+		}
+		else
+		{
+			int length = input.length - TAG_LENGTH;
+			if (length < IV_LENGTH + IV_LENGTH)
+			{
+				throw new GeneralSecurityException("Input too short");
+			}
+
+			mac.update(input, 0, length);
+			byte[] tag = new byte[TAG_LENGTH];
+			System.arraycopy(mac.doFinal(), 0, tag, 0, TAG_LENGTH);
+			byte[] expected = new byte[TAG_LENGTH];
+			System.arraycopy(input, length, expected, 0, TAG_LENGTH);
+			if (MessageDigest.isEqual(tag, expected) == false)
+			{
+				throw new GeneralSecurityException("Invalid MAC");
+			}
+
+			cipher.init(Cipher.DECRYPT_MODE, secretKeys[0], new IvParameterSpec(input, 0, IV_LENGTH));
+			return cipher.doFinal(input, IV_LENGTH, length - IV_LENGTH);
+		}
+	}
+
+	private SecretKey[] getSecretKeys() throws GeneralSecurityException
+	{
+		SecretKey[] secretKeys = keys;
+		if (secretKeys == null)
+		{
+			secretKeys = generateSecretKeys();
+			keys = secretKeys;
+		}
+		return secretKeys;
+	}
+
+	/**
+	 * Derives the keys for the cipher and the MAC from {@link #getKey()}.
+	 * <p>
+	 * Note: if you don't provide your own encryption key, the implementation will use a default. Be
+	 * aware that this is potential security risk. Thus make sure you always provide your own one.
+	 * 
+	 * @return the cipher key and the MAC key
+	 * @throws GeneralSecurityException
+	 */
+	private SecretKey[] generateSecretKeys() throws GeneralSecurityException
+	{
+		PBEKeySpec spec = new PBEKeySpec(getKey().toCharArray(), SALT, ITERATIONS,
+			(CIPHER_KEY_LENGTH + MAC_KEY_LENGTH) * 8);
+		byte[] derived = SecretKeyFactory.getInstance(KEY_DERIVATION)
+			.generateSecret(spec)
+			.getEncoded();
+		spec.clearPassword();
+
+		return new SecretKey[] { new SecretKeySpec(derived, 0, CIPHER_KEY_LENGTH, "AES"),
+				new SecretKeySpec(derived, CIPHER_KEY_LENGTH, MAC_KEY_LENGTH, MAC) };
+	}
+
+	private static Cipher getCipher() throws GeneralSecurityException
+	{
+		Cipher cipher = CIPHERS.get();
+		if (cipher == null)
+		{
+			cipher = Cipher.getInstance(CIPHER);
+			CIPHERS.set(cipher);
+		}
+		return cipher;
+	}
+
+	private static Mac getMac() throws GeneralSecurityException
+	{
+		Mac mac = MACS.get();
+		if (mac == null)
+		{
+			mac = Mac.getInstance(MAC);
+			MACS.set(mac);
+		}
+		return mac;
+	}
+}
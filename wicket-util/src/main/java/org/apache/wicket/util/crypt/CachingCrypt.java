@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.crypt;
+
+import java.util.Map;
+
+import org.apache.wicket.util.collections.MostRecentlyUsedMap;
+import org.apache.wicket.util.lang.Args;
+
+
+/**
+ * {@link ICrypt} decorator that remembers the most recently encrypted and decrypted texts. Pages
+ * often render the same urls again, e.g. on Ajax updates, and the url encrypted last is most
+ * likely decrypted next.
+ * <p>
+ * Since the cache is held in memory a decorator should not be shared between users with different
+ * keys, use one per session instead.
+ */
+public class CachingCrypt implements ICrypt
+{
+	/** default number of texts remembered in each direction */
+	public static final int DEFAULT_MAX_ENTRIES = 64;
+
+	private final ICrypt delegate;
+
+	private final Map<String, String> encrypted;
+
+	private final Map<String, String> decrypted;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param delegate
+	 *            the crypt to decorate
+	 */
+	public CachingCrypt(final ICrypt delegate)
+	{
+		this(delegate, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param delegate
+	 *            the crypt to decorate
+	 * @param maxEntries
+	 *            number of texts remembered in each direction
+	 */
+	public CachingCrypt(final ICrypt delegate, final int maxEntries)
+	{
+		this.delegate = Args.notNull(delegate, "delegate");
+		encrypted = new MostRecentlyUsedMap<String, String>(maxEntries);
+		decrypted = new MostRecentlyUsedMap<String, String>(maxEntries);
+	}
+
+	@Override
+	public String decryptUrlSafe(final String text)
+	{
+		synchronized (decrypted)
+		{
+			String plainText = decrypted.get(text);
+			if (plainText != null)
+			{
+				return plainText;
+			}
+		}
+
+		String plainText = delegate.decryptUrlSafe(text);
+		if (plainText != null)
+		{
+			synchronized (decrypted)
+			{
+				decrypted.put(text, plainText);
+			}
+		}
+		return plainText;
+	}
+
+	@Override
+	public String encryptUrlSafe(final String plainText)
+	{
+		synchronized (encrypted)
+		{
+			String text = encrypted.get(plainText);
+			if (text != null)
+			{
+				return text;
+			}
+		}
+
+		String text = delegate.encryptUrlSafe(plainText);
+		if (text != null)
+		{
+			synchronized (encrypted)
+			{
+				encrypted.put(plainText, text);
+			}
+			synchronized (decrypted)
+			{
+				decrypted.put(text, plainText);
+			}
+		}
+		return text;
+	}
+
+	@Override
+	public void setKey(final String key)
+	{
+		delegate.setKey(key);
+
+		synchronized (encrypted)
+		{
+			encrypted.clear();
+		}
+		synchronized (decrypted)
+		{
+			decrypted.clear();
+		}
+	}
+}
@@ -51,6 +51,9 @@ public class SunJceCrypt extends AbstractCrypt
 	private final static byte[] salt = { (byte)0x15, (byte)0x8c, (byte)0xa3, (byte)0x4a,
 			(byte)0x66, (byte)0x51, (byte)0x2a, (byte)0xbc };
 
+	/** the key generated from {@link #getKey()}, it is generated once only */
+	private volatile SecretKey secretKey;
+
 	/**
 	 * Constructor
 	 */
@@ -87,13 +90,28 @@ public class SunJceCrypt extends AbstractCrypt
 	protected final byte[] crypt(final byte[] input, final int mode)
 		throws GeneralSecurityException
 	{
-		SecretKey key = generateSecretKey();
+		SecretKey key = secretKey;
+		if (key == null)
+		{
+			key = generateSecretKey();
+			secretKey = key;
+		}
 		PBEParameterSpec spec = new PBEParameterSpec(salt, COUNT);
 		Cipher ciph = Cipher.getInstance(CRYPT_METHOD);
 		ciph.init(mode, key, spec);
 		return ciph.doFinal(input);
 	}
 
+	/**
+	 * @see org.apache.wicket.util.crypt.AbstractCrypt#setKey(java.lang.String)
+	 */
+	@Override
+	public void setKey(final String key)
+	{
+		super.setKey(key);
+		secretKey = null;
+	}
+
 	/**
 	 * Generate the de-/encryption key.
 	 * <p>
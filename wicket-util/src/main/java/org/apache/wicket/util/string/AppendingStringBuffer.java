@@ -30,7 +30,7 @@ import java.io.IOException;
  * @author Johan Compagner
  * @see java.lang.StringBuffer
  */
-public final class AppendingStringBuffer implements java.io.Serializable, CharSequence
+public final class AppendingStringBuffer implements java.io.Serializable, CharSequence, Appendable
 {
 	/** use serialVersionUID from JDK 1.0.2 for interoperability */
 	private static final long serialVersionUID = 1L;
@@ -345,6 +345,76 @@ public final class AppendingStringBuffer implements java.io.Serializable, CharSe
 		return append(String.valueOf(obj));
 	}
 
+	/**
+	 * Appends the character sequence to this string buffer. If <code>s</code> is <code>null</code>,
+	 * then the four characters <code>"null"</code> are appended to this string buffer.
+	 * 
+	 * @param s
+	 *            the character sequence to append.
+	 * @return a reference to this <code>AppendingStringBuffer</code>.
+	 * @see java.lang.Appendable#append(CharSequence)
+	 */
+	@Override
+	public AppendingStringBuffer append(final CharSequence s)
+	{
+		return append((Object)s);
+	}
+
+	/**
+	 * Appends a subsequence of the character sequence to this string buffer, without copying it
+	 * first. If <code>s</code> is <code>null</code>, then characters are appended as if
+	 * <code>s</code> contained the four characters <code>"null"</code>.
+	 * 
+	 * @param s
+	 *            the character sequence to append.
+	 * @param start
+	 *            the index of the first character to append.
+	 * @param end
+	 *            the index after the last character to append.
+	 * @return a reference to this <code>AppendingStringBuffer</code>.
+	 * @see java.lang.Appendable#append(CharSequence, int, int)
+	 */
+	@Override
+	public AppendingStringBuffer append(CharSequence s, final int start, final int end)
+	{
+		if (s == null)
+		{
+			s = "null";
+		}
+		if ((start < 0) || (start > end) || (end > s.length()))
+		{
+			throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " +
+				s.length());
+		}
+
+		int newcount = count + end - start;
+		if (newcount > value.length)
+		{
+			expandCapacity(newcount);
+		}
+		if (s instanceof String)
+		{
+			((String)s).getChars(start, end, value, count);
+		}
+		else if (s instanceof AppendingStringBuffer)
+		{
+			((AppendingStringBuffer)s).getChars(start, end, value, count);
+		}
+		else if (s instanceof StringBuilder)
+		{
+			((StringBuilder)s).getChars(start, end, value, count);
+		}
+		else
+		{
+			for (int i = start; i < end; i++)
+			{
+				value[count + i - start] = s.charAt(i);
+			}
+		}
+		count = newcount;
+		return this;
+	}
+
 	/**
 	 * Appends the string to this string buffer.
 	 * <p>
@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.util.string;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.security.AccessController;
@@ -296,6 +297,9 @@ public final class Strings
 	 * entities where appropriate. Spaces are converted to non-breaking spaces (&lt;nbsp&gt;) if
 	 * escapeSpaces is true, tabs are converted to four non-breaking spaces, less than signs are
 	 * converted to &amp;lt; entities and greater than signs to &amp;gt; entities.
+	 * <p>
+	 * If no character has to be escaped the given characters are returned as they are, without
+	 * copying them.
 	 * 
 	 * @param s
 	 *            The characters to escape
@@ -313,62 +317,156 @@ public final class Strings
 			return null;
 		}
 
+		final int first = indexOfMarkupToEscape(s, 0, escapeSpaces, convertToHtmlUnicodeEscapes);
+		if (first == -1)
+		{
+			return s;
+		}
+
 		int len = s.length();
-		final AppendingStringBuffer buffer = new AppendingStringBuffer((int)(len * 1.1));
+		final AppendingStringBuffer buffer = new AppendingStringBuffer(len + 16 + len / 8);
+		buffer.append(s, 0, first);
+		try
+		{
+			escapeMarkup(s, first, escapeSpaces, convertToHtmlUnicodeEscapes, buffer);
+		}
+		catch (IOException e)
+		{
+			// AppendingStringBuffer does not throw
+			throw new IllegalStateException(e);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Writes a Java String as an HTML markup String to an {@link Appendable}, replacing illegal
+	 * characters with HTML entities the same way as
+	 * {@link #escapeMarkup(CharSequence, boolean, boolean)}. The characters are written as they
+	 * are escaped, without an intermediate buffer.
+	 * 
+	 * @param <T>
+	 *            The type of the appendable
+	 * @param s
+	 *            The characters to escape, nothing is written if {@code null}
+	 * @param escapeSpaces
+	 *            True to replace ' ' with nonbreaking space
+	 * @param convertToHtmlUnicodeEscapes
+	 *            True to convert non-7 bit characters to unicode HTML (&#...)
+	 * @param out
+	 *            The appendable to write to
+	 * @return the appendable
+	 * @throws IOException
+	 *             if the appendable fails
+	 */
+	public static <T extends Appendable> T escapeMarkup(final CharSequence s,
+		final boolean escapeSpaces, final boolean convertToHtmlUnicodeEscapes, final T out)
+		throws IOException
+	{
+		Args.notNull(out, "out");
 
-		for (int i = 0; i < len; i++)
+		if (s != null)
 		{
-			final char c = s.charAt(i);
+			escapeMarkup(s, 0, escapeSpaces, convertToHtmlUnicodeEscapes, out);
+		}
+		return out;
+	}
 
+	/**
+	 * Writes the escaped characters from the given index on, unescaped runs are written at once.
+	 */
+	private static void escapeMarkup(final CharSequence s, final int from,
+		final boolean escapeSpaces, final boolean convertToHtmlUnicodeEscapes, final Appendable out)
+		throws IOException
+	{
+		final int len = s.length();
+		int start = from;
+		int i = indexOfMarkupToEscape(s, from, escapeSpaces, convertToHtmlUnicodeEscapes);
+		while (i != -1)
+		{
+			if (i > start)
+			{
+				out.append(s, start, i);
+			}
+
+			final char c = s.charAt(i);
 			switch (c)
 			{
 				case '\t' :
-					if (escapeSpaces)
-					{
-						// Assumption is four space tabs (sorry, but that's
-						// just how it is!)
-						buffer.append("&nbsp;&nbsp;&nbsp;&nbsp;");
-					}
-					else
-					{
-						buffer.append(c);
-					}
+					// Assumption is four space tabs (sorry, but that's
+					// just how it is!)
+					out.append("&nbsp;&nbsp;&nbsp;&nbsp;");
 					break;
 
 				case ' ' :
-					if (escapeSpaces)
-					{
-						buffer.append("&nbsp;");
-					}
-					else
-					{
-						buffer.append(c);
-					}
+					out.append("&nbsp;");
 					break;
 
 				case '<' :
-					buffer.append("&lt;");
+					out.append("&lt;");
 					break;
 
 				case '>' :
-					buffer.append("&gt;");
+					out.append("&gt;");
 					break;
 
 				case '&' :
-
-					buffer.append("&amp;");
+					out.append("&amp;");
 					break;
 
 				case '"' :
-					buffer.append("&quot;");
+					out.append("&quot;");
 					break;
 
 				case '\'' :
-					buffer.append("&#039;");
+					out.append("&#039;");
 					break;
 
 				default :
+					out.append("&#");
+					out.append(Integer.toString(0xffff & c));
+					out.append(";");
+					break;
+			}
+
+			start = i + 1;
+			i = indexOfMarkupToEscape(s, start, escapeSpaces, convertToHtmlUnicodeEscapes);
+		}
 
+		if (start < len)
+		{
+			out.append(s, start, len);
+		}
+	}
+
+	/**
+	 * @return the index of the first character from the given index on which has to be escaped, -1
+	 *         if there is none
+	 */
+	private static int indexOfMarkupToEscape(final CharSequence s, final int from,
+		final boolean escapeSpaces, final boolean convertToHtmlUnicodeEscapes)
+	{
+		final int len = s.length();
+		for (int i = from; i < len; i++)
+		{
+			final char c = s.charAt(i);
+			switch (c)
+			{
+				case '\t' :
+				case ' ' :
+					if (escapeSpaces)
+					{
+						return i;
+					}
+					break;
+
+				case '<' :
+				case '>' :
+				case '&' :
+				case '"' :
+				case '\'' :
+					return i;
+
+				default :
 					int ci = 0xffff & c;
 
 					if (
@@ -377,20 +475,12 @@ public final class Strings
 					// or non-ASCII (XXX: why 160+ ?!) and need to UNICODE escape it
 						(convertToHtmlUnicodeEscapes && (ci > 159)))
 					{
-						buffer.append("&#");
-						buffer.append(Integer.toString(ci));
-						buffer.append(';');
-					}
-					else
-					{
-						// ASCII or whitespace
-						buffer.append(c);
+						return i;
 					}
 					break;
 			}
 		}
-
-		return buffer;
+		return -1;
 	}
 
 	/**
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.time;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe histogram of durations with a resolution of microseconds.
+ * <p>
+ * The durations are counted in buckets of exponentially growing size: the bucket {@code i}
+ * counts the durations from 2<sup>i-1</sup> (inclusive) to 2<sup>i</sup> (exclusive)
+ * microseconds, the first one all durations shorter than a microsecond. So the percentiles are
+ * accurate within a factor of two, which is enough to tell sub-millisecond waits from long ones,
+ * while recording costs only a few atomic increments.
+ * </p>
+ */
+public final class DurationHistogram
+{
+	/**
+	 * The number of buckets, the last one counts everything longer than ~35 minutes
+	 */
+	private static final int BUCKETS = 32;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong totalNanos = new AtomicLong();
+
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Records a duration
+	 * 
+	 * @param nanos
+	 *            the duration in nanoseconds
+	 */
+	public void record(final long nanos)
+	{
+		long value = Math.max(nanos, 0);
+		counts.incrementAndGet(bucket(value / 1000));
+		count.incrementAndGet();
+		totalNanos.addAndGet(value);
+
+		long max;
+		while (value > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, value))
+		{
+			// retry
+		}
+	}
+
+	/**
+	 * @return the number of recorded durations
+	 */
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	/**
+	 * @return the sum of the recorded durations in nanoseconds
+	 */
+	public long getTotalNanos()
+	{
+		return totalNanos.get();
+	}
+
+	/**
+	 * @return the longest recorded duration in nanoseconds
+	 */
+	public long getMaxNanos()
+	{
+		return maxNanos.get();
+	}
+
+	/**
+	 * @return the average of the recorded durations in nanoseconds
+	 */
+	public long getMeanNanos()
+	{
+		long n = count.get();
+		return n > 0 ? totalNanos.get() / n : 0;
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile, accurate within a factor of two.
+	 * 
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * @return the duration in nanoseconds which is not exceeded by {@code percentile} percent of
+	 *         the recorded durations
+	 */
+	public long getPercentileNanos(final double percentile)
+	{
+		if (percentile < 0 || percentile > 100)
+		{
+			throw new IllegalArgumentException("The percentile must be between 0 and 100: " +
+				percentile);
+		}
+
+		long[] snapshot = getBucketCounts();
+		long total = 0;
+		for (long bucketCount : snapshot)
+		{
+			total += bucketCount;
+		}
+		if (total == 0)
+		{
+			return 0;
+		}
+
+		long threshold = (long)Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++)
+		{
+			seen += snapshot[i];
+			if (seen >= threshold && seen > 0)
+			{
+				return Math.min(upperBoundMicros(i) * 1000, maxNanos.get());
+			}
+		}
+		return maxNanos.get();
+	}
+
+	/**
+	 * @return the counts of the buckets
+	 */
+	public long[] getBucketCounts()
+	{
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			snapshot[i] = counts.get(i);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @param bucket
+	 *            the index of a bucket
+	 * @return the exclusive upper bound of the bucket in microseconds
+	 */
+	public static long upperBoundMicros(final int bucket)
+	{
+		return bucket < BUCKETS - 1 ? 1L << bucket : Long.MAX_VALUE / 1000;
+	}
+
+	/**
+	 * Forgets all recorded durations
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts.set(i, 0);
+		}
+		count.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	private static int bucket(final long micros)
+	{
+		// the number of bits needed for the value: 0 -> 0, 1 -> 1, 2-3 -> 2, 4-7 -> 3, ...
+		return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("count=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms",
+			getCount(), getMeanNanos() / 1e6, getPercentileNanos(50) / 1e6,
+			getPercentileNanos(99) / 1e6, getMaxNanos() / 1e6);
+	}
+}
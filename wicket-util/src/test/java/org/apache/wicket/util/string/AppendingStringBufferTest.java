@@ -158,4 +158,31 @@ public class AppendingStringBufferTest extends Assert
 
 	}
 
+	/**
+	 * Appending parts of character sequences.
+	 */
+	@Test
+	public void appendSubSequence()
+	{
+		AppendingStringBuffer asb = new AppendingStringBuffer(2);
+		asb.append("0123456789", 2, 5);
+		asb.append(new StringBuilder("abcdef"), 0, 2);
+		asb.append(new AppendingStringBuffer("ghi"), 1, 3);
+		asb.append(java.nio.CharBuffer.wrap("xyz"), 1, 2);
+		asb.append((CharSequence)null, 1, 3);
+		asb.append("unused", 3, 3);
+		assertEquals("234abhiyul", asb.toString());
+
+		asb.append((CharSequence)new StringBuffer("!"));
+		assertEquals("234abhiyul!", asb.toString());
+	}
+
+	/**
+	 * Appending a subsequence out of bounds fails.
+	 */
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void appendSubSequenceOutOfBounds()
+	{
+		new AppendingStringBuffer().append("abc", 2, 4);
+	}
 }
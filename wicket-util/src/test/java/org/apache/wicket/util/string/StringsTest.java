@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.util.string;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 
 import org.apache.wicket.util.lang.Args;
@@ -257,6 +258,50 @@ public class StringsTest extends Assert
 
 	}
 
+	/**
+	 * Characters which need no escaping are returned as they are.
+	 */
+	@Test
+	public void escapeMarkupUnchanged()
+	{
+		String s = "nothing to escape here";
+		assertSame(s, Strings.escapeMarkup(s));
+		assertSame(s, Strings.escapeMarkup(s, false, true));
+		assertNotSame(s, Strings.escapeMarkup(s, true, false));
+	}
+
+	/**
+	 * Escaping to an appendable gives the same result as escaping to a string.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void escapeMarkupToAppendable() throws IOException
+	{
+		String[] values = { "", "plain", "<b>", "a & b", "\"quoted\" 'too'",
+				"tab\tand space", "\u00c7a va \u00e0 l'\u00e9cole", "\u0001control" };
+		for (String value : values)
+		{
+			for (int flags = 0; flags < 4; flags++)
+			{
+				boolean escapeSpaces = (flags & 1) != 0;
+				boolean unicode = (flags & 2) != 0;
+				String expected = Strings.escapeMarkup(value, escapeSpaces, unicode).toString();
+
+				assertEquals(expected,
+					Strings.escapeMarkup(value, escapeSpaces, unicode, new StringBuilder())
+						.toString());
+				assertEquals(expected,
+					Strings.escapeMarkup(value, escapeSpaces, unicode, new AppendingStringBuffer())
+						.toString());
+			}
+		}
+
+		StringBuilder out = new StringBuilder("x");
+		assertSame(out, Strings.escapeMarkup(null, false, false, out));
+		assertEquals("x", out.toString());
+	}
+
 	/**
 	 * Tests the <code>replaceHtmlEscapeNumber</code> method.
 	 * 
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.time;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DurationHistogram}
+ */
+public class DurationHistogramTest extends Assert
+{
+	/**
+	 * Count, mean, max and percentiles
+	 */
+	@Test
+	public void record()
+	{
+		DurationHistogram histogram = new DurationHistogram();
+		assertEquals(0, histogram.getPercentileNanos(50));
+
+		// 90 durations of 0.5 microseconds, 10 of 3 milliseconds
+		for (int i = 0; i < 90; i++)
+		{
+			histogram.record(500);
+		}
+		for (int i = 0; i < 10; i++)
+		{
+			histogram.record(3000000);
+		}
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(3000000, histogram.getMaxNanos());
+		assertEquals((90 * 500 + 10 * 3000000) / 100, histogram.getMeanNanos());
+		assertEquals(1000, histogram.getPercentileNanos(50));
+		assertEquals(1000, histogram.getPercentileNanos(90));
+		// the upper bound of the bucket 2048-4095 microseconds is limited by the maximum
+		assertEquals(3000000, histogram.getPercentileNanos(99));
+		assertEquals(3000000, histogram.getPercentileNanos(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMaxNanos());
+	}
+
+	/**
+	 * The buckets double their size
+	 */
+	@Test
+	public void buckets()
+	{
+		DurationHistogram histogram = new DurationHistogram();
+		histogram.record(0);
+		histogram.record(1000);
+		histogram.record(2000);
+		histogram.record(3999);
+		histogram.record(4000);
+		histogram.record(Long.MAX_VALUE);
+
+		long[] counts = histogram.getBucketCounts();
+		assertEquals(1, counts[0]);
+		assertEquals(1, counts[1]);
+		assertEquals(2, counts[2]);
+		assertEquals(1, counts[3]);
+		assertEquals(1, counts[counts.length - 1]);
+		assertEquals(4, DurationHistogram.upperBoundMicros(2));
+	}
+}